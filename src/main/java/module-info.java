@@ -7,6 +7,7 @@ module se.uu.ub.cora.diva.mixedstorage {
 	requires transitive se.uu.ub.cora.storage;
 	requires se.uu.ub.cora.searchstorage;
 
+	exports se.uu.ub.cora.diva.mixedstorage;
 	exports se.uu.ub.cora.diva.mixedstorage.db;
 	exports se.uu.ub.cora.diva.mixedstorage.fedora;
 
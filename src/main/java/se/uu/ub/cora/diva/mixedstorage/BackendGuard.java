@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public final class BackendGuard {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private String backend;
+	private int maxConcurrentCalls;
+	private int failureRatePercent;
+	private long openMillis;
+	private LongSupplier clock;
+	private Semaphore concurrentCalls;
+	private boolean[] failureWindow;
+	private int nextWindowIndex = 0;
+	private int noOfCallsInWindow = 0;
+	private int noOfFailuresInWindow = 0;
+	private State state = State.CLOSED;
+	private long openedAt;
+	private boolean trialCallInProgress = false;
+
+	public static BackendGuard usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+			String backend, int maxConcurrentCalls, int failureRatePercent, int windowSize,
+			long openMillis) {
+		return new BackendGuard(backend, maxConcurrentCalls, failureRatePercent, windowSize,
+				openMillis, System::currentTimeMillis);
+	}
+
+	public static BackendGuard usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillisAndClock(
+			String backend, int maxConcurrentCalls, int failureRatePercent, int windowSize,
+			long openMillis, LongSupplier clock) {
+		return new BackendGuard(backend, maxConcurrentCalls, failureRatePercent, windowSize,
+				openMillis, clock);
+	}
+
+	private BackendGuard(String backend, int maxConcurrentCalls, int failureRatePercent,
+			int windowSize, long openMillis, LongSupplier clock) {
+		this.backend = backend;
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.failureRatePercent = failureRatePercent;
+		this.openMillis = openMillis;
+		this.clock = clock;
+		concurrentCalls = new Semaphore(maxConcurrentCalls);
+		failureWindow = new boolean[windowSize];
+	}
+
+	public <T> T call(Supplier<T> call) {
+		boolean trialCall = acquireCircuitPermissionOrThrow();
+		if (!concurrentCalls.tryAcquire()) {
+			releaseTrialCall(trialCall);
+			throw BackendUnavailableException.withMessage("Backend " + backend
+					+ " is unavailable, max concurrent calls (" + maxConcurrentCalls
+					+ ") reached");
+		}
+		boolean failure = true;
+		try {
+			T result = call.get();
+			failure = false;
+			return result;
+		} catch (RecordNotFoundException | NotImplementedException | InvalidFilterException e) {
+			failure = false;
+			throw e;
+		} finally {
+			recordCallResult(trialCall, failure);
+			concurrentCalls.release();
+		}
+	}
+
+	private synchronized boolean acquireCircuitPermissionOrThrow() {
+		if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+			state = State.HALF_OPEN;
+		}
+		if (state == State.CLOSED) {
+			return false;
+		}
+		if (state == State.HALF_OPEN && !trialCallInProgress) {
+			trialCallInProgress = true;
+			return true;
+		}
+		throw BackendUnavailableException
+				.withMessage("Backend " + backend + " is unavailable, circuit breaker is open");
+	}
+
+	private synchronized void releaseTrialCall(boolean trialCall) {
+		if (trialCall) {
+			trialCallInProgress = false;
+		}
+	}
+
+	private synchronized void recordCallResult(boolean trialCall, boolean failure) {
+		if (trialCall) {
+			trialCallInProgress = false;
+			closeOrOpenAfterTrialCall(failure);
+		} else if (state == State.CLOSED) {
+			addToFailureWindow(failure);
+			possiblyOpen();
+		}
+	}
+
+	private void closeOrOpenAfterTrialCall(boolean failure) {
+		if (failure) {
+			open();
+		} else {
+			state = State.CLOSED;
+			clearFailureWindow();
+		}
+	}
+
+	private void addToFailureWindow(boolean failure) {
+		if (noOfCallsInWindow == failureWindow.length) {
+			if (failureWindow[nextWindowIndex]) {
+				noOfFailuresInWindow--;
+			}
+		} else {
+			noOfCallsInWindow++;
+		}
+		failureWindow[nextWindowIndex] = failure;
+		if (failure) {
+			noOfFailuresInWindow++;
+		}
+		nextWindowIndex = (nextWindowIndex + 1) % failureWindow.length;
+	}
+
+	private void possiblyOpen() {
+		if (noOfCallsInWindow == failureWindow.length
+				&& noOfFailuresInWindow * 100 >= failureRatePercent * noOfCallsInWindow) {
+			open();
+		}
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = clock.getAsLong();
+		clearFailureWindow();
+	}
+
+	private void clearFailureWindow() {
+		failureWindow = new boolean[failureWindow.length];
+		nextWindowIndex = 0;
+		noOfCallsInWindow = 0;
+		noOfFailuresInWindow = 0;
+	}
+
+	public synchronized State getState() {
+		if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	public String getBackend() {
+		return backend;
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	public int getFailureRatePercent() {
+		return failureRatePercent;
+	}
+
+	public int getWindowSize() {
+		return failureWindow.length;
+	}
+
+	public long getOpenMillis() {
+		return openMillis;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public final class DataGroupCopier {
+
+	private DataGroupCopier() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	public static DataGroup copyDataGroup(DataGroup dataGroup) {
+		DataGroup copy = DataGroupProvider.getDataGroupUsingNameInData(dataGroup.getNameInData());
+		copyRepeatIdIfPresent(dataGroup.getRepeatId(), copy);
+		for (Entry<String, String> attribute : dataGroup.getAttributes().entrySet()) {
+			copy.addAttributeByIdWithValue(attribute.getKey(), attribute.getValue());
+		}
+		for (DataElement child : dataGroup.getChildren()) {
+			copy.addChild(copyDataElement(child));
+		}
+		return copy;
+	}
+
+	private static void copyRepeatIdIfPresent(String repeatId, DataGroup copy) {
+		if (repeatId != null) {
+			copy.setRepeatId(repeatId);
+		}
+	}
+
+	private static DataElement copyDataElement(DataElement dataElement) {
+		if (dataElement instanceof DataGroup) {
+			return copyDataGroup((DataGroup) dataElement);
+		}
+		return copyDataAtomic((DataAtomic) dataElement);
+	}
+
+	private static DataAtomic copyDataAtomic(DataAtomic dataAtomic) {
+		DataAtomic copy = DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(
+				dataAtomic.getNameInData(), dataAtomic.getValue());
+		if (dataAtomic.getRepeatId() != null) {
+			copy.setRepeatId(dataAtomic.getRepeatId());
+		}
+		return copy;
+	}
+}
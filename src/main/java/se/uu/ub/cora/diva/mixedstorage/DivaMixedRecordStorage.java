@@ -18,111 +18,267 @@
  */
 package se.uu.ub.cora.diva.mixedstorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.fedora.BatchUpdateReport;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraRecordStorage;
 import se.uu.ub.cora.searchstorage.SearchStorage;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
-public final class DivaMixedRecordStorage implements RecordStorage, SearchStorage {
+public final class DivaMixedRecordStorage
+		implements RecordStorage, SearchStorage, RecordExistenceStorage {
+	private static final String ASYNC_READ_THREAD_NAME_PREFIX = "diva-mixed-async-read-";
+	private static final AtomicInteger ASYNC_READ_THREAD_COUNTER = new AtomicInteger();
 
-	private static final String PERSON = "person";
-	private static final String ORGANISATION = "divaOrganisation";
 	private RecordStorage basicStorage;
 	private RecordStorage divaFedoraToCoraStorage;
 	private RecordStorage divaDbToCoraStorage;
+	private Map<String, RecordStorage> readStorages;
+	private Map<String, RecordStorage> updateStorages;
+	private Map<String, RecordStorage> readListStorages;
+	private Map<String, RecordStorage> recordExistsStorages;
+	private StorageMetrics storageMetrics = new StorageMetrics();
+	private RecordStorage measuredBasicStorage;
+	private BackendGuard fedoraGuard;
+	private BackendGuard dbGuard;
+	private StaleReadCache staleReadCache;
+	private Executor asyncReadExecutor;
 
 	public static RecordStorage usingBasicAndFedoraAndDbStorage(RecordStorage basicStorage,
 			RecordStorage divaToCoraStorage, RecordStorage divaDbToCoraStorage) {
-		return new DivaMixedRecordStorage(basicStorage, divaToCoraStorage, divaDbToCoraStorage);
+		return new DivaMixedRecordStorage(basicStorage, divaToCoraStorage, divaDbToCoraStorage,
+				DivaMixedRecordStorageOptions.createDefaultOptions());
+	}
+
+	public static RecordStorage usingBasicAndFedoraAndDbStorageAndOptions(
+			RecordStorage basicStorage, RecordStorage divaToCoraStorage,
+			RecordStorage divaDbToCoraStorage, DivaMixedRecordStorageOptions options) {
+		return new DivaMixedRecordStorage(basicStorage, divaToCoraStorage, divaDbToCoraStorage,
+				options);
+	}
+
+	public static ExecutorService createAsyncReadExecutorUsingNoOfThreads(int noOfThreads) {
+		return Executors.newFixedThreadPool(noOfThreads, runnable -> {
+			Thread thread = new Thread(runnable,
+					ASYNC_READ_THREAD_NAME_PREFIX + ASYNC_READ_THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 
 	private DivaMixedRecordStorage(RecordStorage basicStorage,
-			RecordStorage divaFedoraToCoraStorage, RecordStorage divaDbToCoraStorage) {
+			RecordStorage divaFedoraToCoraStorage, RecordStorage divaDbToCoraStorage,
+			DivaMixedRecordStorageOptions options) {
 		this.basicStorage = basicStorage;
 		this.divaFedoraToCoraStorage = divaFedoraToCoraStorage;
 		this.divaDbToCoraStorage = divaDbToCoraStorage;
+		fedoraGuard = options.getFedoraGuard();
+		dbGuard = options.getDbGuard();
+		staleReadCache = options.getStaleReadCache();
+		asyncReadExecutor = options.getAsyncReadExecutor();
+		DivaMixedStorageRouting routing = options.getRouting();
+		measuredBasicStorage = measure(basicStorage, DivaMixedStorageRouting.BASIC);
+		Map<String, RecordStorage> storagesByBackend = Map.of(DivaMixedStorageRouting.BASIC,
+				measuredBasicStorage, DivaMixedStorageRouting.FEDORA,
+				measureAndServeStaleAndGuard(divaFedoraToCoraStorage,
+						DivaMixedStorageRouting.FEDORA, fedoraGuard),
+				DivaMixedStorageRouting.DATABASE, measureAndServeStaleAndGuard(
+						divaDbToCoraStorage, DivaMixedStorageRouting.DATABASE, dbGuard));
+		readStorages = createStorageByTypeForOperation(routing, storagesByBackend,
+				DivaMixedStorageRouting.READ);
+		updateStorages = createStorageByTypeForOperation(routing, storagesByBackend,
+				DivaMixedStorageRouting.UPDATE);
+		readListStorages = createStorageByTypeForOperation(routing, storagesByBackend,
+				DivaMixedStorageRouting.READ_LIST);
+		recordExistsStorages = createStorageByTypeForOperation(routing, storagesByBackend,
+				DivaMixedStorageRouting.RECORD_EXISTS);
+	}
+
+	private RecordStorage measureAndServeStaleAndGuard(RecordStorage recordStorage,
+			String backend, BackendGuard backendGuard) {
+		RecordStorage guardedStorage = GuardedRecordStorage
+				.usingRecordStorageAndBackendGuard(recordStorage, backendGuard);
+		RecordStorage staleServingStorage = StaleServingRecordStorage
+				.usingRecordStorageAndBackendAndStaleReadCacheAndStorageMetrics(guardedStorage,
+						backend, staleReadCache, storageMetrics);
+		return measure(staleServingStorage, backend);
+	}
+
+	private RecordStorage measure(RecordStorage recordStorage, String backend) {
+		return MeasuringRecordStorage.usingRecordStorageAndBackendAndStorageMetrics(recordStorage,
+				backend, storageMetrics);
+	}
+
+	private Map<String, RecordStorage> createStorageByTypeForOperation(
+			DivaMixedStorageRouting routing, Map<String, RecordStorage> storagesByBackend,
+			String operation) {
+		Map<String, RecordStorage> storageByType = new HashMap<>();
+		for (Entry<String, String> route : routing.getBackendByTypeForOperation(operation)
+				.entrySet()) {
+			storageByType.put(route.getKey(),
+					storagesByBackend.getOrDefault(route.getValue(), measuredBasicStorage));
+		}
+		return Map.copyOf(storageByType);
 	}
 
 	@Override
 	public DataGroup read(String type, String id) {
-		if (PERSON.equals(type)) {
-			return divaFedoraToCoraStorage.read(type, id);
-		}
-		if (ORGANISATION.equals(type)) {
-			return divaDbToCoraStorage.read(type, id);
-		}
-		return basicStorage.read(type, id);
+		return readStorages.getOrDefault(type, measuredBasicStorage).read(type, id);
 	}
 
 	@Override
 	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
-		basicStorage.create(type, id, record, collectedTerms, linkList, dataDivider);
+		measuredBasicStorage.create(type, id, record, collectedTerms, linkList, dataDivider);
 	}
 
 	@Override
 	public void deleteByTypeAndId(String type, String id) {
-		basicStorage.deleteByTypeAndId(type, id);
+		measuredBasicStorage.deleteByTypeAndId(type, id);
+		staleReadCache.invalidate(type, id);
 	}
 
 	@Override
 	public boolean linksExistForRecord(String type, String id) {
-		return basicStorage.linksExistForRecord(type, id);
+		return measuredBasicStorage.linksExistForRecord(type, id);
 	}
 
 	@Override
 	public void update(String type, String id, DataGroup record, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
-		if (PERSON.equals(type)) {
-			divaFedoraToCoraStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
-		} else if (ORGANISATION.equals(type)) {
-			divaDbToCoraStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
-		} else {
-			basicStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
+		RecordStorage storage = updateStorages.getOrDefault(type, measuredBasicStorage);
+		storage.update(type, id, record, collectedTerms, linkList, dataDivider);
+		staleReadCache.invalidate(type, id);
+	}
+
+	public BatchUpdateReport updatePersonsUsingRecordsById(Map<String, DataGroup> recordsById) {
+		try {
+			return getFedoraPersonStorage().updatePersonsUsingRecordsById(recordsById);
+		} finally {
+			invalidateStaleRecordsForTypeAndIds("person", recordsById.keySet());
 		}
 	}
 
-	@Override
-	public StorageReadResult readList(String type, DataGroup filter) {
-		if (PERSON.equals(type)) {
-			return divaFedoraToCoraStorage.readList(type, filter);
+	private DivaFedoraRecordStorage getFedoraPersonStorage() {
+		if (divaFedoraToCoraStorage instanceof DivaFedoraRecordStorage) {
+			return (DivaFedoraRecordStorage) divaFedoraToCoraStorage;
 		}
-		if (ORGANISATION.equals(type)) {
-			return divaDbToCoraStorage.readList(type, filter);
+		throw NotImplementedException.withMessage(
+				"updatePersonsUsingRecordsById is not implemented for fedora storage: "
+						+ divaFedoraToCoraStorage.getClass().getSimpleName());
+	}
+
+	private void invalidateStaleRecordsForTypeAndIds(String type, Collection<String> ids) {
+		for (String id : ids) {
+			staleReadCache.invalidate(type, id);
 		}
-		return basicStorage.readList(type, filter);
+	}
+
+	@Override
+	public StorageReadResult readList(String type, DataGroup filter) {
+		return readListStorages.getOrDefault(type, measuredBasicStorage).readList(type, filter);
 	}
 
 	@Override
 	public StorageReadResult readAbstractList(String type, DataGroup filter) {
-		return basicStorage.readAbstractList(type, filter);
+		return measuredBasicStorage.readAbstractList(type, filter);
 	}
 
 	@Override
 	public DataGroup readLinkList(String type, String id) {
-		return basicStorage.readLinkList(type, id);
+		return measuredBasicStorage.readLinkList(type, id);
 	}
 
 	@Override
 	public Collection<DataGroup> generateLinkCollectionPointingToRecord(String type, String id) {
-		return basicStorage.generateLinkCollectionPointingToRecord(type, id);
+		return measuredBasicStorage.generateLinkCollectionPointingToRecord(type, id);
 	}
 
 	@Override
 	public boolean recordsExistForRecordType(String type) {
-		return basicStorage.recordsExistForRecordType(type);
+		return measuredBasicStorage.recordsExistForRecordType(type);
 	}
 
 	@Override
 	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String type,
 			String id) {
-		if (ORGANISATION.equals(type)) {
-			return divaDbToCoraStorage
-					.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type, id);
+		return recordExistsStorages.getOrDefault(type, measuredBasicStorage)
+				.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type, id);
+	}
+
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		RecordStorage storage = recordExistsStorages.getOrDefault(type, measuredBasicStorage);
+		return ((RecordExistenceStorage) storage)
+				.readExistingRecordIdsForRecordTypeAndRecordIds(type, ids);
+	}
+
+	public StorageMetrics getStorageMetrics() {
+		return storageMetrics;
+	}
+
+	public BackendGuard getFedoraGuard() {
+		return fedoraGuard;
+	}
+
+	public BackendGuard getDbGuard() {
+		return dbGuard;
+	}
+
+	public CompletableFuture<DataGroup> readAsync(String type, String id) {
+		return CompletableFuture.supplyAsync(() -> read(type, id), asyncReadExecutor);
+	}
+
+	public CompletableFuture<List<DataGroup>> readManyAsync(
+			Collection<RecordReference> recordReferences) {
+		Map<RecordReference, CompletableFuture<DataGroup>> reads = startOneReadPerDistinctReference(
+				recordReferences);
+		return CompletableFuture.allOf(reads.values().toArray(new CompletableFuture<?>[0]))
+				.thenApply(allRead -> collectReadRecordsInReferenceOrder(recordReferences, reads));
+	}
+
+	private Map<RecordReference, CompletableFuture<DataGroup>> startOneReadPerDistinctReference(
+			Collection<RecordReference> recordReferences) {
+		Map<RecordReference, CompletableFuture<DataGroup>> reads = new LinkedHashMap<>();
+		for (RecordReference recordReference : recordReferences) {
+			reads.computeIfAbsent(recordReference, reference -> readAsync(reference.getType(),
+					reference.getId()));
+		}
+		return reads;
+	}
+
+	private List<DataGroup> collectReadRecordsInReferenceOrder(
+			Collection<RecordReference> recordReferences,
+			Map<RecordReference, CompletableFuture<DataGroup>> reads) {
+		List<DataGroup> records = new ArrayList<>(recordReferences.size());
+		for (RecordReference recordReference : recordReferences) {
+			records.add(reads.get(recordReference).join());
 		}
-		return basicStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type, id);
+		return records;
+	}
+
+	public StaleReadCache getStaleReadCache() {
+		return staleReadCache;
+	}
+
+	Executor getAsyncReadExecutor() {
+		// needed for test
+		return asyncReadExecutor;
 	}
 
 	RecordStorage getBasicStorage() {
@@ -140,6 +296,27 @@ public final class DivaMixedRecordStorage implements RecordStorage, SearchStorag
 		return divaDbToCoraStorage;
 	}
 
+	Map<String, RecordStorage> getStorageByTypeForOperation(String operation) {
+		// needed for test
+		Map<String, RecordStorage> storageByType = Map.of(DivaMixedStorageRouting.READ,
+				readStorages, DivaMixedStorageRouting.UPDATE, updateStorages,
+				DivaMixedStorageRouting.READ_LIST, readListStorages,
+				DivaMixedStorageRouting.RECORD_EXISTS, recordExistsStorages).get(operation);
+		Map<String, RecordStorage> unwrappedStorageByType = new HashMap<>();
+		for (Entry<String, RecordStorage> entry : storageByType.entrySet()) {
+			unwrappedStorageByType.put(entry.getKey(), getUnwrappedStorage(entry.getValue()));
+		}
+		return unwrappedStorageByType;
+	}
+
+	private RecordStorage getUnwrappedStorage(RecordStorage storage) {
+		RecordStorage unwrappedStorage = storage;
+		while (unwrappedStorage instanceof RecordStorageDecorator) {
+			unwrappedStorage = ((RecordStorageDecorator) unwrappedStorage).getRecordStorage();
+		}
+		return unwrappedStorage;
+	}
+
 	@Override
 	public DataGroup getSearchTerm(String searchTermId) {
 		return ((SearchStorage) basicStorage).getSearchTerm(searchTermId);
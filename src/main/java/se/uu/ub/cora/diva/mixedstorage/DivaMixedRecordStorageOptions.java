@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+public final class DivaMixedRecordStorageOptions {
+	private static final int DEFAULT_MAX_CONCURRENT_CALLS = 50;
+	private static final int DEFAULT_FAILURE_RATE_PERCENT = 50;
+	private static final int DEFAULT_FAILURE_WINDOW_SIZE = 20;
+	private static final long DEFAULT_OPEN_MILLIS = 30000;
+	private static final int DEFAULT_ASYNC_READ_THREADS = 16;
+	private static ExecutorService sharedAsyncReadExecutor;
+	private DivaMixedStorageRouting routing;
+	private BackendGuard fedoraGuard;
+	private BackendGuard dbGuard;
+	private StaleReadCache staleReadCache;
+	private Executor asyncReadExecutor;
+
+	public static DivaMixedRecordStorageOptions createDefaultOptions() {
+		return new DivaMixedRecordStorageOptions(DivaMixedStorageRouting.createDefaultRouting(),
+				createDefaultGuard(DivaMixedStorageRouting.FEDORA),
+				createDefaultGuard(DivaMixedStorageRouting.DATABASE),
+				StaleReadCache.createDisabled(), getSharedAsyncReadExecutor());
+	}
+
+	private static BackendGuard createDefaultGuard(String backend) {
+		return BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						backend, DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_FAILURE_RATE_PERCENT,
+						DEFAULT_FAILURE_WINDOW_SIZE, DEFAULT_OPEN_MILLIS);
+	}
+
+	private static synchronized Executor getSharedAsyncReadExecutor() {
+		if (sharedAsyncReadExecutor == null) {
+			sharedAsyncReadExecutor = DivaMixedRecordStorage
+					.createAsyncReadExecutorUsingNoOfThreads(DEFAULT_ASYNC_READ_THREADS);
+		}
+		return sharedAsyncReadExecutor;
+	}
+
+	private DivaMixedRecordStorageOptions(DivaMixedStorageRouting routing,
+			BackendGuard fedoraGuard, BackendGuard dbGuard, StaleReadCache staleReadCache,
+			Executor asyncReadExecutor) {
+		this.routing = routing;
+		this.fedoraGuard = fedoraGuard;
+		this.dbGuard = dbGuard;
+		this.staleReadCache = staleReadCache;
+		this.asyncReadExecutor = asyncReadExecutor;
+	}
+
+	public DivaMixedRecordStorageOptions withRouting(DivaMixedStorageRouting routing) {
+		return new DivaMixedRecordStorageOptions(routing, fedoraGuard, dbGuard, staleReadCache,
+				asyncReadExecutor);
+	}
+
+	public DivaMixedRecordStorageOptions withFedoraGuard(BackendGuard fedoraGuard) {
+		return new DivaMixedRecordStorageOptions(routing, fedoraGuard, dbGuard, staleReadCache,
+				asyncReadExecutor);
+	}
+
+	public DivaMixedRecordStorageOptions withDbGuard(BackendGuard dbGuard) {
+		return new DivaMixedRecordStorageOptions(routing, fedoraGuard, dbGuard, staleReadCache,
+				asyncReadExecutor);
+	}
+
+	public DivaMixedRecordStorageOptions withStaleReadCache(StaleReadCache staleReadCache) {
+		return new DivaMixedRecordStorageOptions(routing, fedoraGuard, dbGuard, staleReadCache,
+				asyncReadExecutor);
+	}
+
+	public DivaMixedRecordStorageOptions withAsyncReadExecutor(Executor asyncReadExecutor) {
+		return new DivaMixedRecordStorageOptions(routing, fedoraGuard, dbGuard, staleReadCache,
+				asyncReadExecutor);
+	}
+
+	public DivaMixedStorageRouting getRouting() {
+		return routing;
+	}
+
+	public BackendGuard getFedoraGuard() {
+		return fedoraGuard;
+	}
+
+	public BackendGuard getDbGuard() {
+		return dbGuard;
+	}
+
+	public StaleReadCache getStaleReadCache() {
+		return staleReadCache;
+	}
+
+	public Executor getAsyncReadExecutor() {
+		return asyncReadExecutor;
+	}
+}
@@ -18,7 +18,12 @@
  */
 package se.uu.ub.cora.diva.mixedstorage;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.naming.InitialContext;
 
@@ -28,16 +33,24 @@ import se.uu.ub.cora.basicstorage.RecordStorageInstance;
 import se.uu.ub.cora.basicstorage.RecordStorageOnDisk;
 import se.uu.ub.cora.connection.ContextConnectionProviderImp;
 import se.uu.ub.cora.connection.SqlConnectionProvider;
+import se.uu.ub.cora.diva.mixedstorage.db.DivaDbCursorReader;
+import se.uu.ub.cora.diva.mixedstorage.db.DivaDbOrganisationCache;
+import se.uu.ub.cora.diva.mixedstorage.db.DivaDbOrganisationExistenceChecker;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraConverterFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.fedora.CachedPerson;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraConverterFactory;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraConverterFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraRecordStorageOptions;
+import se.uu.ub.cora.diva.mixedstorage.fedora.ParallelFetcher;
 import se.uu.ub.cora.httphandler.HttpHandlerFactory;
 import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.sqldatabase.DataReader;
+import se.uu.ub.cora.sqldatabase.DataReaderImp;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactoryImp;
 import se.uu.ub.cora.sqldatabase.RecordUpdaterFactory;
 import se.uu.ub.cora.sqldatabase.RecordUpdaterFactoryImp;
@@ -49,6 +62,27 @@ import se.uu.ub.cora.storage.RecordStorageProvider;
 public class DivaMixedRecordStorageProvider
 		implements RecordStorageProvider, MetadataStorageProvider {
 
+	private static final int DEFAULT_FEDORA_MAX_CONCURRENT_READS = 10;
+	private static final int DEFAULT_FEDORA_MAX_CONCURRENT_BATCH_UPDATES = 2;
+	private static final int DEFAULT_FEDORA_PERSON_CACHE_MAX_SIZE = 1000;
+	private static final int DEFAULT_FEDORA_PERSON_CACHE_TIME_TO_LIVE_SECONDS = 300;
+	private static final int DEFAULT_DATABASE_EXPORT_FETCH_SIZE = 500;
+	private static final int DEFAULT_DATABASE_ORGANISATION_EXISTS_CACHE_MAX_SIZE = 10000;
+	private static final int DEFAULT_DATABASE_ORGANISATION_EXISTS_CACHE_TIME_TO_LIVE_SECONDS = 10;
+	private static final int DEFAULT_DATABASE_ORGANISATION_CACHE_MAX_SIZE = 1000;
+	private static final int DEFAULT_DATABASE_ORGANISATION_CACHE_TIME_TO_LIVE_SECONDS = 60;
+	private static final int DEFAULT_MAX_CONCURRENT_CALLS = 50;
+	private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT = 50;
+	private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+	private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS = 30;
+	private static final int DEFAULT_STALE_READ_MAX_SIZE = 10000;
+	private static final int DEFAULT_STALE_READ_FRESH_SECONDS = 60;
+	private static final int DEFAULT_STALE_READ_REFRESH_THREADS = 2;
+	private static final int DEFAULT_STALE_READ_MAX_STALE_SECONDS = 600;
+	private static final int DEFAULT_ASYNC_READ_THREADS = 16;
+	private static final List<String> ROUTING_BACKENDS = List.of(DivaMixedStorageRouting.BASIC,
+			DivaMixedStorageRouting.FEDORA, DivaMixedStorageRouting.DATABASE);
+	private static ExecutorService asyncReadExecutor;
 	private Logger log = LoggerProvider.getLoggerForClass(DivaMixedRecordStorageProvider.class);
 	private Map<String, String> initInfo;
 
@@ -85,10 +119,127 @@ public class DivaMixedRecordStorageProvider
 		DivaDbToCoraRecordStorage dbStorage = createDbStorage();
 
 		RecordStorage mixedRecordStorage = DivaMixedRecordStorage
-				.usingBasicAndFedoraAndDbStorage(basicStorage, fedoraStorage, dbStorage);
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, fedoraStorage, dbStorage,
+						createMixedRecordStorageOptions());
 		setStaticInstance(mixedRecordStorage);
 	}
 
+	private DivaMixedRecordStorageOptions createMixedRecordStorageOptions() {
+		return DivaMixedRecordStorageOptions.createDefaultOptions().withRouting(createRouting())
+				.withFedoraGuard(createBackendGuard(DivaMixedStorageRouting.FEDORA))
+				.withDbGuard(createBackendGuard(DivaMixedStorageRouting.DATABASE))
+				.withStaleReadCache(createStaleReadCache())
+				.withAsyncReadExecutor(createAsyncReadExecutor());
+	}
+
+	private DivaMixedStorageRouting createRouting() {
+		DivaMixedStorageRouting routing = DivaMixedStorageRouting.createDefaultRouting();
+		routing = possiblyAddRoutesForOperation(routing, "storageRoutingRead",
+				DivaMixedStorageRouting.READ);
+		routing = possiblyAddRoutesForOperation(routing, "storageRoutingUpdate",
+				DivaMixedStorageRouting.UPDATE);
+		routing = possiblyAddRoutesForOperation(routing, "storageRoutingReadList",
+				DivaMixedStorageRouting.READ_LIST);
+		return possiblyAddRoutesForOperation(routing, "storageRoutingRecordExists",
+				DivaMixedStorageRouting.RECORD_EXISTS);
+	}
+
+	private BackendGuard createBackendGuard(String backend) {
+		int maxConcurrentCalls = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				backend + "MaxConcurrentCalls", DEFAULT_MAX_CONCURRENT_CALLS);
+		int failureRatePercent = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				backend + "CircuitBreakerFailureRatePercent",
+				DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_PERCENT);
+		int windowSize = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				backend + "CircuitBreakerWindowSize", DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE);
+		int openSeconds = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				backend + "CircuitBreakerOpenSeconds", DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS);
+		return BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						backend, maxConcurrentCalls, failureRatePercent, windowSize,
+						openSeconds * 1000L);
+	}
+
+	private ExecutorService createAsyncReadExecutor() {
+		int noOfThreads = tryToGetOptionalPositiveIntInitParameterLogIfFound("asyncReadThreads",
+				DEFAULT_ASYNC_READ_THREADS);
+		replaceAsyncReadExecutor(
+				DivaMixedRecordStorage.createAsyncReadExecutorUsingNoOfThreads(noOfThreads));
+		return asyncReadExecutor;
+	}
+
+	private static synchronized void replaceAsyncReadExecutor(ExecutorService executor) {
+		if (asyncReadExecutor != null) {
+			asyncReadExecutor.shutdown();
+		}
+		asyncReadExecutor = executor;
+	}
+
+	private StaleReadCache createStaleReadCache() {
+		if (!initInfo.containsKey("staleReadRecordTypes")) {
+			return StaleReadCache.createDisabled();
+		}
+		Set<String> recordTypes = parseRecordTypes(
+				tryToGetInitParameterLogIfFound("staleReadRecordTypes"));
+		int maxSize = tryToGetOptionalPositiveIntInitParameterLogIfFound("staleReadMaxSize",
+				DEFAULT_STALE_READ_MAX_SIZE);
+		int freshSeconds = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				"staleReadFreshSeconds", DEFAULT_STALE_READ_FRESH_SECONDS);
+		int maxStaleSeconds = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				"staleReadMaxStaleSeconds", DEFAULT_STALE_READ_MAX_STALE_SECONDS);
+		int refreshThreads = tryToGetOptionalPositiveIntInitParameterLogIfFound(
+				"staleReadRefreshThreads", DEFAULT_STALE_READ_REFRESH_THREADS);
+		return StaleReadCache.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndNoOfRefreshThreads(
+				recordTypes,
+				TimedLruCache.usingMaxSizeAndTimeToLiveMillis(maxSize, freshSeconds * 1000L),
+				maxStaleSeconds * 1000L, refreshThreads);
+	}
+
+	private Set<String> parseRecordTypes(String recordTypes) {
+		Set<String> parsedRecordTypes = new HashSet<>();
+		for (String recordType : recordTypes.split(",")) {
+			if (!recordType.isBlank()) {
+				parsedRecordTypes.add(recordType.trim());
+			}
+		}
+		return parsedRecordTypes;
+	}
+
+	private DivaMixedStorageRouting possiblyAddRoutesForOperation(
+			DivaMixedStorageRouting routing, String parameterName, String operation) {
+		if (initInfo.containsKey(parameterName)) {
+			String routes = tryToGetInitParameterLogIfFound(parameterName);
+			return routing.withBackendByTypeAddedForOperation(operation,
+					parseRoutesUsingParameterName(parameterName, routes));
+		}
+		return routing;
+	}
+
+	private Map<String, String> parseRoutesUsingParameterName(String parameterName,
+			String routes) {
+		Map<String, String> backendByType = new HashMap<>();
+		for (String route : routes.split(",")) {
+			String trimmedRoute = route.trim();
+			if (!trimmedRoute.isEmpty()) {
+				addRouteUsingParameterName(backendByType, parameterName, trimmedRoute);
+			}
+		}
+		return backendByType;
+	}
+
+	private void addRouteUsingParameterName(Map<String, String> backendByType,
+			String parameterName, String route) {
+		String[] typeAndBackend = route.split(":");
+		if (typeAndBackend.length != 2 || !ROUTING_BACKENDS.contains(typeAndBackend[1].trim())) {
+			String errorMessage = "InitInfo parameter " + parameterName
+					+ " must contain routes as type:backend where backend is one of "
+					+ ROUTING_BACKENDS + ", found: " + route;
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessage(errorMessage);
+		}
+		backendByType.put(typeAndBackend[0].trim(), typeAndBackend[1].trim());
+	}
+
 	private RecordStorage createBasicStorage() {
 		String basePath = tryToGetInitParameterLogIfFound("storageOnDiskBasePath");
 		String type = tryToGetInitParameterLogIfFound("storageType");
@@ -107,37 +258,96 @@ public class DivaMixedRecordStorageProvider
 
 		HttpHandlerFactory httpHandlerFactory = new HttpHandlerFactoryImp();
 
+		boolean streamingPersonConversion = tryToGetOptionalBooleanInitParameterLogIfFound(
+				"fedoraStreamingPersonConverter");
 		DivaFedoraConverterFactory converterFactory = DivaFedoraConverterFactoryImp
-				.usingFedoraURL(fedoraURL);
+				.usingFedoraURLAndStreamingPersonConversion(fedoraURL, streamingPersonConversion);
 
 		return DivaFedoraRecordStorage
-				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPassword(
+				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPasswordAndOptions(
 						httpHandlerFactory, converterFactory, fedoraURL, fedoraUsername,
-						fedoraPassword);
+						fedoraPassword, createFedoraRecordStorageOptions());
+	}
+
+	private DivaFedoraRecordStorageOptions createFedoraRecordStorageOptions() {
+		return DivaFedoraRecordStorageOptions.createDefaultOptions()
+				.withParallelFetcher(createParallelFetcher())
+				.withBatchUpdateFetcher(createBatchUpdateFetcher())
+				.withPersonCache(createPersonCache())
+				.withRevalidationOfExpiredPersons(
+						tryToGetOptionalBooleanInitParameterLogIfFound("fedoraPersonRevalidation"));
+	}
+
+	private TimedLruCache<String, CachedPerson> createPersonCache() {
+		int maxSize = tryToGetOptionalIntInitParameterLogIfFound("fedoraPersonCacheMaxSize",
+				DEFAULT_FEDORA_PERSON_CACHE_MAX_SIZE);
+		int timeToLiveSeconds = tryToGetOptionalIntInitParameterLogIfFound(
+				"fedoraPersonCacheTimeToLiveSeconds",
+				DEFAULT_FEDORA_PERSON_CACHE_TIME_TO_LIVE_SECONDS);
+		return TimedLruCache.usingMaxSizeAndTimeToLiveMillis(maxSize, timeToLiveSeconds * 1000L);
+	}
+
+	private ParallelFetcher createParallelFetcher() {
+		int maxConcurrentReads = tryToGetOptionalIntInitParameterLogIfFound(
+				"fedoraMaxConcurrentReads", DEFAULT_FEDORA_MAX_CONCURRENT_READS);
+		return ParallelFetcher.usingMaxConcurrentFetches(maxConcurrentReads);
+	}
+
+	private ParallelFetcher createBatchUpdateFetcher() {
+		int maxConcurrentBatchUpdates = tryToGetOptionalIntInitParameterLogIfFound(
+				"fedoraMaxConcurrentBatchUpdates", DEFAULT_FEDORA_MAX_CONCURRENT_BATCH_UPDATES);
+		return ParallelFetcher.usingMaxConcurrentFetches(maxConcurrentBatchUpdates);
 	}
 
 	private DivaDbToCoraRecordStorage createDbStorage() {
-		RecordReaderFactoryImp recordReaderFactory = createRecordReaderFactory();
+		SqlConnectionProvider sqlConnectionProvider = tryToCreateConnectionProvider();
+		RecordReaderFactoryImp recordReaderFactory = RecordReaderFactoryImp
+				.usingSqlConnectionProvider(sqlConnectionProvider);
+		DataReader dataReader = DataReaderImp.usingSqlConnectionProvider(sqlConnectionProvider);
 		RecordUpdaterFactory recordUpdaterFactory = createRecordUpdaterFactory();
 
 		DivaDbToCoraConverterFactoryImp divaDbToCoraConverterFactory = new DivaDbToCoraConverterFactoryImp();
 		DivaDbToCoraFactoryImp divaDbToCoraFactory = new DivaDbToCoraFactoryImp(recordReaderFactory,
-				divaDbToCoraConverterFactory);
+				divaDbToCoraConverterFactory, dataReader);
+
+		int exportFetchSize = tryToGetOptionalIntInitParameterLogIfFound(
+				"databaseExportFetchSize", DEFAULT_DATABASE_EXPORT_FETCH_SIZE);
+		DivaDbCursorReader cursorReader = DivaDbCursorReader
+				.usingSqlConnectionProviderAndFetchSize(sqlConnectionProvider, exportFetchSize);
+
+		DivaDbOrganisationExistenceChecker existenceChecker = DivaDbOrganisationExistenceChecker
+				.usingDataReaderAndExistenceCache(dataReader, createOrganisationExistenceCache());
 
 		return DivaDbToCoraRecordStorage
-				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactory(
+				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
 						recordReaderFactory, divaDbToCoraConverterFactory, divaDbToCoraFactory,
-						recordUpdaterFactory);
+						recordUpdaterFactory, cursorReader, existenceChecker,
+						createOrganisationCache());
 	}
 
-	private RecordUpdaterFactory createRecordUpdaterFactory() {
-		SqlConnectionProvider sqlConnectionProvider = tryToCreateConnectionProvider();
-		return RecordUpdaterFactoryImp.usingSqlConnectionProvider(sqlConnectionProvider);
+	private DivaDbOrganisationCache createOrganisationCache() {
+		int maxSize = tryToGetOptionalIntInitParameterLogIfFound(
+				"databaseOrganisationCacheMaxSize", DEFAULT_DATABASE_ORGANISATION_CACHE_MAX_SIZE);
+		int timeToLiveSeconds = tryToGetOptionalIntInitParameterLogIfFound(
+				"databaseOrganisationCacheTimeToLiveSeconds",
+				DEFAULT_DATABASE_ORGANISATION_CACHE_TIME_TO_LIVE_SECONDS);
+		return DivaDbOrganisationCache.usingTimedLruCache(TimedLruCache
+				.usingMaxSizeAndTimeToLiveMillis(maxSize, timeToLiveSeconds * 1000L));
+	}
+
+	private TimedLruCache<String, Boolean> createOrganisationExistenceCache() {
+		int maxSize = tryToGetOptionalIntInitParameterLogIfFound(
+				"databaseOrganisationExistsCacheMaxSize",
+				DEFAULT_DATABASE_ORGANISATION_EXISTS_CACHE_MAX_SIZE);
+		int timeToLiveSeconds = tryToGetOptionalIntInitParameterLogIfFound(
+				"databaseOrganisationExistsCacheTimeToLiveSeconds",
+				DEFAULT_DATABASE_ORGANISATION_EXISTS_CACHE_TIME_TO_LIVE_SECONDS);
+		return TimedLruCache.usingMaxSizeAndTimeToLiveMillis(maxSize, timeToLiveSeconds * 1000L);
 	}
 
-	private RecordReaderFactoryImp createRecordReaderFactory() {
+	private RecordUpdaterFactory createRecordUpdaterFactory() {
 		SqlConnectionProvider sqlConnectionProvider = tryToCreateConnectionProvider();
-		return RecordReaderFactoryImp.usingSqlConnectionProvider(sqlConnectionProvider);
+		return RecordUpdaterFactoryImp.usingSqlConnectionProvider(sqlConnectionProvider);
 	}
 
 	private SqlConnectionProvider tryToCreateConnectionProvider() {
@@ -162,6 +372,44 @@ public class DivaMixedRecordStorageProvider
 		return basePath;
 	}
 
+	private int tryToGetOptionalIntInitParameterLogIfFound(String parameterName,
+			int defaultValue) {
+		if (initInfo.containsKey(parameterName)) {
+			return tryToGetIntInitParameterLogIfFound(parameterName);
+		}
+		return defaultValue;
+	}
+
+	private int tryToGetOptionalPositiveIntInitParameterLogIfFound(String parameterName,
+			int defaultValue) {
+		int value = tryToGetOptionalIntInitParameterLogIfFound(parameterName, defaultValue);
+		if (value < 1) {
+			String errorMessage = "InitInfo parameter " + parameterName
+					+ " must be a positive integer";
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessage(errorMessage);
+		}
+		return value;
+	}
+
+	private boolean tryToGetOptionalBooleanInitParameterLogIfFound(String parameterName) {
+		if (initInfo.containsKey(parameterName)) {
+			return Boolean.parseBoolean(tryToGetInitParameterLogIfFound(parameterName));
+		}
+		return false;
+	}
+
+	private int tryToGetIntInitParameterLogIfFound(String parameterName) {
+		String value = tryToGetInitParameterLogIfFound(parameterName);
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			String errorMessage = "InitInfo parameter " + parameterName + " must be an integer";
+			log.logFatalUsingMessage(errorMessage);
+			throw DataStorageException.withMessageAndException(errorMessage, e);
+		}
+	}
+
 	static void setStaticInstance(RecordStorage recordStorage) {
 		RecordStorageInstance.setInstance(recordStorage);
 	}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class DivaMixedStorageRouting {
+	public static final String READ = "read";
+	public static final String UPDATE = "update";
+	public static final String READ_LIST = "readList";
+	public static final String RECORD_EXISTS = "recordExists";
+	public static final String BASIC = "basic";
+	public static final String FEDORA = "fedora";
+	public static final String DATABASE = "database";
+	private static final String PERSON = "person";
+	private static final String ORGANISATION = "divaOrganisation";
+	private Map<String, Map<String, String>> backendByTypeForOperations;
+
+	private DivaMixedStorageRouting(Map<String, Map<String, String>> backendByTypeForOperations) {
+		this.backendByTypeForOperations = backendByTypeForOperations;
+	}
+
+	public static DivaMixedStorageRouting createDefaultRouting() {
+		Map<String, Map<String, String>> backendByTypeForOperations = new HashMap<>();
+		backendByTypeForOperations.put(READ, Map.of(PERSON, FEDORA, ORGANISATION, DATABASE));
+		backendByTypeForOperations.put(UPDATE, Map.of(PERSON, FEDORA, ORGANISATION, DATABASE));
+		backendByTypeForOperations.put(READ_LIST,
+				Map.of(PERSON, FEDORA, ORGANISATION, DATABASE));
+		backendByTypeForOperations.put(RECORD_EXISTS, Map.of(ORGANISATION, DATABASE));
+		return new DivaMixedStorageRouting(Map.copyOf(backendByTypeForOperations));
+	}
+
+	public DivaMixedStorageRouting withBackendByTypeAddedForOperation(String operation,
+			Map<String, String> backendByType) {
+		Map<String, String> mergedBackendByType = new HashMap<>(
+				getBackendByTypeForOperation(operation));
+		mergedBackendByType.putAll(backendByType);
+		Map<String, Map<String, String>> changedBackendByTypeForOperations = new HashMap<>(
+				backendByTypeForOperations);
+		changedBackendByTypeForOperations.put(operation, Map.copyOf(mergedBackendByType));
+		return new DivaMixedStorageRouting(Map.copyOf(changedBackendByTypeForOperations));
+	}
+
+	public Map<String, String> getBackendByTypeForOperation(String operation) {
+		return backendByTypeForOperations.getOrDefault(operation, Map.of());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Collection;
+import java.util.Set;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+final class GuardedRecordStorage
+		implements RecordStorage, RecordExistenceStorage, RecordStorageDecorator {
+	private RecordStorage recordStorage;
+	private BackendGuard backendGuard;
+
+	private GuardedRecordStorage(RecordStorage recordStorage, BackendGuard backendGuard) {
+		this.recordStorage = recordStorage;
+		this.backendGuard = backendGuard;
+	}
+
+	static GuardedRecordStorage usingRecordStorageAndBackendGuard(RecordStorage recordStorage,
+			BackendGuard backendGuard) {
+		return new GuardedRecordStorage(recordStorage, backendGuard);
+	}
+
+	@Override
+	public DataGroup read(String type, String id) {
+		return backendGuard.call(() -> recordStorage.read(type, id));
+	}
+
+	@Override
+	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		backendGuard.call(() -> {
+			recordStorage.create(type, id, record, collectedTerms, linkList, dataDivider);
+			return null;
+		});
+	}
+
+	@Override
+	public void deleteByTypeAndId(String type, String id) {
+		backendGuard.call(() -> {
+			recordStorage.deleteByTypeAndId(type, id);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean linksExistForRecord(String type, String id) {
+		return backendGuard.call(() -> recordStorage.linksExistForRecord(type, id));
+	}
+
+	@Override
+	public void update(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		backendGuard.call(() -> {
+			recordStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
+			return null;
+		});
+	}
+
+	@Override
+	public StorageReadResult readList(String type, DataGroup filter) {
+		return backendGuard.call(() -> recordStorage.readList(type, filter));
+	}
+
+	@Override
+	public StorageReadResult readAbstractList(String type, DataGroup filter) {
+		return backendGuard.call(() -> recordStorage.readAbstractList(type, filter));
+	}
+
+	@Override
+	public DataGroup readLinkList(String type, String id) {
+		return backendGuard.call(() -> recordStorage.readLinkList(type, id));
+	}
+
+	@Override
+	public Collection<DataGroup> generateLinkCollectionPointingToRecord(String type, String id) {
+		return backendGuard
+				.call(() -> recordStorage.generateLinkCollectionPointingToRecord(type, id));
+	}
+
+	@Override
+	public boolean recordsExistForRecordType(String type) {
+		return backendGuard.call(() -> recordStorage.recordsExistForRecordType(type));
+	}
+
+	@Override
+	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String type,
+			String id) {
+		return backendGuard.call(() -> recordStorage
+				.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type, id));
+	}
+
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		return backendGuard.call(() -> readExistingRecordIdsFromDecoratedStorage(type, ids));
+	}
+
+	@Override
+	public RecordStorage getRecordStorage() {
+		return recordStorage;
+	}
+
+	BackendGuard getBackendGuard() {
+		// needed for test
+		return backendGuard;
+	}
+}
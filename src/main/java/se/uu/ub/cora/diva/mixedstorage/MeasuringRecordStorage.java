@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+final class MeasuringRecordStorage
+		implements RecordStorage, RecordExistenceStorage, RecordStorageDecorator {
+	private RecordStorage recordStorage;
+	private String backend;
+	private ConcurrentMap<String, OperationMetrics> readMetrics;
+	private ConcurrentMap<String, OperationMetrics> createMetrics;
+	private ConcurrentMap<String, OperationMetrics> deleteMetrics;
+	private ConcurrentMap<String, OperationMetrics> linksExistMetrics;
+	private ConcurrentMap<String, OperationMetrics> updateMetrics;
+	private ConcurrentMap<String, OperationMetrics> readListMetrics;
+	private ConcurrentMap<String, OperationMetrics> readAbstractListMetrics;
+	private ConcurrentMap<String, OperationMetrics> readLinkListMetrics;
+	private ConcurrentMap<String, OperationMetrics> generateLinkCollectionMetrics;
+	private ConcurrentMap<String, OperationMetrics> recordsExistForTypeMetrics;
+	private ConcurrentMap<String, OperationMetrics> recordExistsMetrics;
+	private ConcurrentMap<String, OperationMetrics> readExistingRecordIdsMetrics;
+
+	private MeasuringRecordStorage(RecordStorage recordStorage, String backend,
+			StorageMetrics storageMetrics) {
+		this.recordStorage = recordStorage;
+		this.backend = backend;
+		readMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend, "read");
+		createMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend, "create");
+		deleteMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"deleteByTypeAndId");
+		linksExistMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"linksExistForRecord");
+		updateMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend, "update");
+		readListMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"readList");
+		readAbstractListMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"readAbstractList");
+		readLinkListMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"readLinkList");
+		generateLinkCollectionMetrics = storageMetrics
+				.getMetricsByTypeForBackendAndOperation(backend,
+						"generateLinkCollectionPointingToRecord");
+		recordsExistForTypeMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"recordsExistForRecordType");
+		recordExistsMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"recordExists");
+		readExistingRecordIdsMetrics = storageMetrics
+				.getMetricsByTypeForBackendAndOperation(backend, "readExistingRecordIds");
+	}
+
+	static MeasuringRecordStorage usingRecordStorageAndBackendAndStorageMetrics(
+			RecordStorage recordStorage, String backend, StorageMetrics storageMetrics) {
+		return new MeasuringRecordStorage(recordStorage, backend, storageMetrics);
+	}
+
+	@Override
+	public DataGroup read(String type, String id) {
+		return measure(readMetrics, type, () -> recordStorage.read(type, id));
+	}
+
+	@Override
+	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		measure(createMetrics, type, () -> {
+			recordStorage.create(type, id, record, collectedTerms, linkList, dataDivider);
+			return null;
+		});
+	}
+
+	@Override
+	public void deleteByTypeAndId(String type, String id) {
+		measure(deleteMetrics, type, () -> {
+			recordStorage.deleteByTypeAndId(type, id);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean linksExistForRecord(String type, String id) {
+		return measure(linksExistMetrics, type,
+				() -> recordStorage.linksExistForRecord(type, id));
+	}
+
+	@Override
+	public void update(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		measure(updateMetrics, type, () -> {
+			recordStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
+			return null;
+		});
+	}
+
+	@Override
+	public StorageReadResult readList(String type, DataGroup filter) {
+		return measure(readListMetrics, type, () -> recordStorage.readList(type, filter));
+	}
+
+	@Override
+	public StorageReadResult readAbstractList(String type, DataGroup filter) {
+		return measure(readAbstractListMetrics, type,
+				() -> recordStorage.readAbstractList(type, filter));
+	}
+
+	@Override
+	public DataGroup readLinkList(String type, String id) {
+		return measure(readLinkListMetrics, type, () -> recordStorage.readLinkList(type, id));
+	}
+
+	@Override
+	public Collection<DataGroup> generateLinkCollectionPointingToRecord(String type, String id) {
+		return measure(generateLinkCollectionMetrics, type,
+				() -> recordStorage.generateLinkCollectionPointingToRecord(type, id));
+	}
+
+	@Override
+	public boolean recordsExistForRecordType(String type) {
+		return measure(recordsExistForTypeMetrics, type,
+				() -> recordStorage.recordsExistForRecordType(type));
+	}
+
+	@Override
+	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String type,
+			String id) {
+		return measure(recordExistsMetrics, type, () -> recordStorage
+				.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type, id));
+	}
+
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		return measure(readExistingRecordIdsMetrics, type,
+				() -> readExistingRecordIdsFromDecoratedStorage(type, ids));
+	}
+
+	private <T> T measure(ConcurrentMap<String, OperationMetrics> metricsByType, String type,
+			Supplier<T> call) {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			T result = call.get();
+			error = false;
+			return result;
+		} finally {
+			StorageMetrics.getOrCreateMetricsForType(metricsByType, type)
+					.recordNanosAndError(System.nanoTime() - start, error);
+		}
+	}
+
+	@Override
+	public RecordStorage getRecordStorage() {
+		return recordStorage;
+	}
+
+	String getBackend() {
+		// needed for test
+		return backend;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+final class OperationMetrics {
+	static final int NO_OF_BUCKETS = 32;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+	private final LongAdder[] buckets = new LongAdder[NO_OF_BUCKETS];
+
+	OperationMetrics() {
+		for (int i = 0; i < NO_OF_BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void recordNanosAndError(long nanos, boolean error) {
+		count.increment();
+		if (error) {
+			errors.increment();
+		}
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		buckets[getBucketIndexForNanos(nanos)].increment();
+	}
+
+	static int getBucketIndexForNanos(long nanos) {
+		long micros = nanos / 1000;
+		int index = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(index, NO_OF_BUCKETS - 1);
+	}
+
+	OperationMetricsSnapshot createSnapshotUsingBackendAndOperationAndType(String backend,
+			String operation, String type) {
+		long[] bucketCounts = new long[NO_OF_BUCKETS];
+		for (int i = 0; i < NO_OF_BUCKETS; i++) {
+			bucketCounts[i] = buckets[i].sum();
+		}
+		return new OperationMetricsSnapshot(backend, operation, type, count.sum(), errors.sum(),
+				totalNanos.sum(), maxNanos.get(), bucketCounts);
+	}
+}
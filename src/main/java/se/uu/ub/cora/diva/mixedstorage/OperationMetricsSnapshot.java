@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Arrays;
+
+public final class OperationMetricsSnapshot {
+	private final String backend;
+	private final String operation;
+	private final String type;
+	private final long count;
+	private final long errors;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long[] bucketCounts;
+
+	OperationMetricsSnapshot(String backend, String operation, String type, long count,
+			long errors, long totalNanos, long maxNanos, long[] bucketCounts) {
+		this.backend = backend;
+		this.operation = operation;
+		this.type = type;
+		this.count = count;
+		this.errors = errors;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.bucketCounts = bucketCounts;
+	}
+
+	public String getBackend() {
+		return backend;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	/**
+	 * Bucket 0 counts calls faster than one microsecond, bucket i (i > 0) counts calls that took
+	 * from 2^(i-1) up to 2^i microseconds. The last bucket also holds everything slower.
+	 */
+	public long[] getBucketCounts() {
+		return Arrays.copyOf(bucketCounts, bucketCounts.length);
+	}
+
+	public long getPercentileUpperBoundMicros(double percentile) {
+		long neededCount = (long) Math.ceil(count * percentile / 100);
+		long seenCount = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seenCount += bucketCounts[i];
+			if (seenCount >= neededCount && seenCount > 0) {
+				return 1L << i;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Objects;
+
+public final class RecordReference {
+	private final String type;
+	private final String id;
+
+	public static RecordReference usingTypeAndId(String type, String id) {
+		return new RecordReference(type, id);
+	}
+
+	private RecordReference(String type, String id) {
+		this.type = type;
+		this.id = id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof RecordReference)) {
+			return false;
+		}
+		RecordReference otherReference = (RecordReference) other;
+		return Objects.equals(type, otherReference.type) && Objects.equals(id, otherReference.id);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(type, id);
+	}
+
+	@Override
+	public String toString() {
+		return type + ":" + id;
+	}
+}
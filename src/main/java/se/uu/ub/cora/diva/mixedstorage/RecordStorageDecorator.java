@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import se.uu.ub.cora.storage.RecordStorage;
+
+interface RecordStorageDecorator {
+
+	RecordStorage getRecordStorage();
+
+	default Set<String> readExistingRecordIdsFromDecoratedStorage(String type,
+			Collection<String> ids) {
+		RecordStorage recordStorage = getRecordStorage();
+		if (recordStorage instanceof RecordExistenceStorage) {
+			return ((RecordExistenceStorage) recordStorage)
+					.readExistingRecordIdsForRecordTypeAndRecordIds(type, ids);
+		}
+		Set<String> existingIds = new LinkedHashSet<>();
+		for (String id : ids) {
+			if (recordStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type,
+					id)) {
+				existingIds.add(id);
+			}
+		}
+		return existingIds;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public final class StaleReadCache {
+	private static final String THREAD_NAME_PREFIX = "diva-stale-read-refresh-";
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private Set<String> recordTypes;
+	private TimedLruCache<String, DataGroup> records;
+	private long maxStaleMillis;
+	private Executor refreshExecutor;
+	private Set<String> refreshesInProgress = ConcurrentHashMap.newKeySet();
+	private AtomicLong noOfInvalidations = new AtomicLong();
+
+	public static StaleReadCache usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndNoOfRefreshThreads(
+			Set<String> recordTypes, TimedLruCache<String, DataGroup> records,
+			long maxStaleMillis, int noOfRefreshThreads) {
+		return new StaleReadCache(recordTypes, records, maxStaleMillis,
+				Executors.newFixedThreadPool(noOfRefreshThreads, runnable -> {
+					Thread thread = new Thread(runnable,
+							THREAD_NAME_PREFIX + THREAD_COUNTER.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}));
+	}
+
+	public static StaleReadCache usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+			Set<String> recordTypes, TimedLruCache<String, DataGroup> records,
+			long maxStaleMillis, Executor refreshExecutor) {
+		return new StaleReadCache(recordTypes, records, maxStaleMillis, refreshExecutor);
+	}
+
+	public static StaleReadCache createDisabled() {
+		return new StaleReadCache(Set.of(), TimedLruCache.usingMaxSizeAndTimeToLiveMillis(0, 0),
+				0, Runnable::run);
+	}
+
+	private StaleReadCache(Set<String> recordTypes, TimedLruCache<String, DataGroup> records,
+			long maxStaleMillis, Executor refreshExecutor) {
+		this.recordTypes = Set.copyOf(recordTypes);
+		this.records = records;
+		this.maxStaleMillis = maxStaleMillis;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	boolean servesRecordType(String type) {
+		return recordTypes.contains(type);
+	}
+
+	DataGroup getCopyOfFreshRecord(String type, String id) {
+		return copyIfNotNull(records.get(createKey(type, id)));
+	}
+
+	private String createKey(String type, String id) {
+		return type + ":" + id;
+	}
+
+	private DataGroup copyIfNotNull(DataGroup record) {
+		return record != null ? DataGroupCopier.copyDataGroup(record) : null;
+	}
+
+	DataGroup getCopyOfStaleRecord(String type, String id) {
+		return copyIfNotNull(records
+				.getIncludingExpiredOrRemoveIfOlderThanMillis(createKey(type, id), maxStaleMillis));
+	}
+
+	long getNoOfInvalidations() {
+		return noOfInvalidations.get();
+	}
+
+	void putCopyIfNotInvalidatedSince(String type, String id, DataGroup record,
+			long noOfInvalidationsBeforeRead) {
+		DataGroup copy = DataGroupCopier.copyDataGroup(record);
+		synchronized (this) {
+			if (noOfInvalidations.get() == noOfInvalidationsBeforeRead) {
+				records.put(createKey(type, id), copy);
+			}
+		}
+	}
+
+	public void invalidate(String type, String id) {
+		synchronized (this) {
+			noOfInvalidations.incrementAndGet();
+			records.invalidate(createKey(type, id));
+		}
+	}
+
+	void refreshInBackgroundUnlessInProgress(String type, String id, Runnable refresh) {
+		String key = createKey(type, id);
+		if (refreshesInProgress.add(key)) {
+			tryToStartRefresh(key, refresh);
+		}
+	}
+
+	private void tryToStartRefresh(String key, Runnable refresh) {
+		try {
+			refreshExecutor.execute(() -> runRefreshAndMarkAsFinished(key, refresh));
+		} catch (RejectedExecutionException e) {
+			refreshesInProgress.remove(key);
+		}
+	}
+
+	private void runRefreshAndMarkAsFinished(String key, Runnable refresh) {
+		try {
+			refresh.run();
+		} finally {
+			refreshesInProgress.remove(key);
+		}
+	}
+
+	public Set<String> getRecordTypes() {
+		return recordTypes;
+	}
+
+	public TimedLruCache<String, DataGroup> getRecords() {
+		return records;
+	}
+
+	public long getMaxStaleMillis() {
+		return maxStaleMillis;
+	}
+
+	Executor getRefreshExecutor() {
+		// needed for test
+		return refreshExecutor;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+final class StaleServingRecordStorage
+		implements RecordStorage, RecordExistenceStorage, RecordStorageDecorator {
+	private RecordStorage recordStorage;
+	private StaleReadCache staleReadCache;
+	private ConcurrentMap<String, OperationMetrics> staleReadMetrics;
+	private ConcurrentMap<String, OperationMetrics> refreshMetrics;
+
+	private StaleServingRecordStorage(RecordStorage recordStorage, String backend,
+			StaleReadCache staleReadCache, StorageMetrics storageMetrics) {
+		this.recordStorage = recordStorage;
+		this.staleReadCache = staleReadCache;
+		staleReadMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"readStale");
+		refreshMetrics = storageMetrics.getMetricsByTypeForBackendAndOperation(backend,
+				"refreshStale");
+	}
+
+	static StaleServingRecordStorage usingRecordStorageAndBackendAndStaleReadCacheAndStorageMetrics(
+			RecordStorage recordStorage, String backend, StaleReadCache staleReadCache,
+			StorageMetrics storageMetrics) {
+		return new StaleServingRecordStorage(recordStorage, backend, staleReadCache,
+				storageMetrics);
+	}
+
+	@Override
+	public DataGroup read(String type, String id) {
+		if (!staleReadCache.servesRecordType(type)) {
+			return recordStorage.read(type, id);
+		}
+		DataGroup freshRecord = staleReadCache.getCopyOfFreshRecord(type, id);
+		if (freshRecord != null) {
+			return freshRecord;
+		}
+		return readStaleRecordAndRefreshOrReadFromStorage(type, id);
+	}
+
+	private DataGroup readStaleRecordAndRefreshOrReadFromStorage(String type, String id) {
+		long start = System.nanoTime();
+		DataGroup staleRecord = staleReadCache.getCopyOfStaleRecord(type, id);
+		if (staleRecord == null) {
+			return readFromStorageAndCache(type, id);
+		}
+		staleReadCache.refreshInBackgroundUnlessInProgress(type, id,
+				() -> refreshFromStorage(type, id));
+		StorageMetrics.getOrCreateMetricsForType(staleReadMetrics, type)
+				.recordNanosAndError(System.nanoTime() - start, false);
+		return staleRecord;
+	}
+
+	private DataGroup readFromStorageAndCache(String type, String id) {
+		long noOfInvalidationsBeforeRead = staleReadCache.getNoOfInvalidations();
+		DataGroup record = recordStorage.read(type, id);
+		staleReadCache.putCopyIfNotInvalidatedSince(type, id, record,
+				noOfInvalidationsBeforeRead);
+		return record;
+	}
+
+	private void refreshFromStorage(String type, String id) {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			readFromStorageAndCache(type, id);
+			error = false;
+		} catch (RecordNotFoundException e) {
+			staleReadCache.invalidate(type, id);
+		} catch (RuntimeException e) {
+			// keep serving the stale record until a refresh succeeds
+		} finally {
+			StorageMetrics.getOrCreateMetricsForType(refreshMetrics, type)
+					.recordNanosAndError(System.nanoTime() - start, error);
+		}
+	}
+
+	@Override
+	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		recordStorage.create(type, id, record, collectedTerms, linkList, dataDivider);
+	}
+
+	@Override
+	public void deleteByTypeAndId(String type, String id) {
+		recordStorage.deleteByTypeAndId(type, id);
+	}
+
+	@Override
+	public boolean linksExistForRecord(String type, String id) {
+		return recordStorage.linksExistForRecord(type, id);
+	}
+
+	@Override
+	public void update(String type, String id, DataGroup record, DataGroup collectedTerms,
+			DataGroup linkList, String dataDivider) {
+		recordStorage.update(type, id, record, collectedTerms, linkList, dataDivider);
+	}
+
+	@Override
+	public StorageReadResult readList(String type, DataGroup filter) {
+		return recordStorage.readList(type, filter);
+	}
+
+	@Override
+	public StorageReadResult readAbstractList(String type, DataGroup filter) {
+		return recordStorage.readAbstractList(type, filter);
+	}
+
+	@Override
+	public DataGroup readLinkList(String type, String id) {
+		return recordStorage.readLinkList(type, id);
+	}
+
+	@Override
+	public Collection<DataGroup> generateLinkCollectionPointingToRecord(String type, String id) {
+		return recordStorage.generateLinkCollectionPointingToRecord(type, id);
+	}
+
+	@Override
+	public boolean recordsExistForRecordType(String type) {
+		return recordStorage.recordsExistForRecordType(type);
+	}
+
+	@Override
+	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String type,
+			String id) {
+		return recordStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId(type,
+				id);
+	}
+
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		return readExistingRecordIdsFromDecoratedStorage(type, ids);
+	}
+
+	@Override
+	public RecordStorage getRecordStorage() {
+		return recordStorage;
+	}
+
+	StaleReadCache getStaleReadCache() {
+		// needed for test
+		return staleReadCache;
+	}
+}
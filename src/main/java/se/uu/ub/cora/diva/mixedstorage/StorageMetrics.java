@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public final class StorageMetrics {
+	private ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>>> metricsByBackendOperationAndType = new ConcurrentHashMap<>();
+
+	ConcurrentMap<String, OperationMetrics> getMetricsByTypeForBackendAndOperation(
+			String backend, String operation) {
+		return metricsByBackendOperationAndType
+				.computeIfAbsent(backend, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(operation, key -> new ConcurrentHashMap<>());
+	}
+
+	static OperationMetrics getOrCreateMetricsForType(
+			ConcurrentMap<String, OperationMetrics> metricsByType, String type) {
+		String key = type != null ? type : "";
+		OperationMetrics metrics = metricsByType.get(key);
+		if (metrics == null) {
+			metrics = metricsByType.computeIfAbsent(key, k -> new OperationMetrics());
+		}
+		return metrics;
+	}
+
+	public List<OperationMetricsSnapshot> createSnapshot() {
+		List<OperationMetricsSnapshot> snapshots = new ArrayList<>();
+		for (Entry<String, ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>>> backend : metricsByBackendOperationAndType
+				.entrySet()) {
+			for (Entry<String, ConcurrentMap<String, OperationMetrics>> operation : backend
+					.getValue().entrySet()) {
+				for (Entry<String, OperationMetrics> type : operation.getValue().entrySet()) {
+					snapshots.add(type.getValue().createSnapshotUsingBackendAndOperationAndType(
+							backend.getKey(), operation.getKey(), type.getKey()));
+				}
+			}
+		}
+		return snapshots;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public final class TimedLruCache<K, V> {
+	private int maxSize;
+	private long timeToLiveMillis;
+	private LongSupplier clock;
+	private Map<K, CacheEntry<V>> entries;
+	private long hits = 0;
+	private long misses = 0;
+
+	public static <K, V> TimedLruCache<K, V> usingMaxSizeAndTimeToLiveMillis(int maxSize,
+			long timeToLiveMillis) {
+		return new TimedLruCache<>(maxSize, timeToLiveMillis, System::currentTimeMillis);
+	}
+
+	public static <K, V> TimedLruCache<K, V> usingMaxSizeAndTimeToLiveMillisAndClock(int maxSize,
+			long timeToLiveMillis, LongSupplier clock) {
+		return new TimedLruCache<>(maxSize, timeToLiveMillis, clock);
+	}
+
+	private TimedLruCache(int maxSize, long timeToLiveMillis, LongSupplier clock) {
+		this.maxSize = maxSize;
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.clock = clock;
+		entries = createAccessOrderedMapRemovingEldestAboveMaxSize();
+	}
+
+	private LinkedHashMap<K, CacheEntry<V>> createAccessOrderedMapRemovingEldestAboveMaxSize() {
+		return new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null || isExpired(entry)) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	public synchronized V getIncludingExpired(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		return entry.value;
+	}
+
+	public synchronized V getIncludingExpiredOrRemoveIfOlderThanMillis(K key, long maxAgeMillis) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (clock.getAsLong() - entry.storedAt >= maxAgeMillis) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+
+	private boolean isExpired(CacheEntry<V> entry) {
+		return clock.getAsLong() - entry.storedAt >= timeToLiveMillis;
+	}
+
+	public synchronized void put(K key, V value) {
+		if (maxSize > 0) {
+			entries.put(key, new CacheEntry<>(value, clock.getAsLong()));
+		}
+	}
+
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	private static final class CacheEntry<V> {
+		private final V value;
+		private final long storedAt;
+
+		private CacheEntry(V value, long storedAt) {
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import se.uu.ub.cora.connection.SqlConnectionProvider;
+
+public final class DivaDbCursorReader {
+	private SqlConnectionProvider sqlConnectionProvider;
+	private int fetchSize;
+
+	private DivaDbCursorReader(SqlConnectionProvider sqlConnectionProvider, int fetchSize) {
+		this.sqlConnectionProvider = sqlConnectionProvider;
+		this.fetchSize = fetchSize;
+	}
+
+	public static DivaDbCursorReader usingSqlConnectionProviderAndFetchSize(
+			SqlConnectionProvider sqlConnectionProvider, int fetchSize) {
+		throwErrorIfFetchSizeIsLessThanOne(fetchSize);
+		return new DivaDbCursorReader(sqlConnectionProvider, fetchSize);
+	}
+
+	private static void throwErrorIfFetchSizeIsLessThanOne(int fetchSize) {
+		if (fetchSize < 1) {
+			throw DbException.withMessage("Fetch size must be at least 1, was: " + fetchSize);
+		}
+	}
+
+	public void readAllFromTableUsingRowConsumer(String tableName,
+			Consumer<Map<String, Object>> rowConsumer) {
+		try (Connection connection = sqlConnectionProvider.getConnection()) {
+			readAllFromTableInTransactionUsingConnection(connection, tableName, rowConsumer);
+		} catch (SQLException e) {
+			throw DbException.withMessageAndException(
+					"Error reading data from " + tableName + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void readAllFromTableInTransactionUsingConnection(Connection connection,
+			String tableName, Consumer<Map<String, Object>> rowConsumer) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			readAllFromTableUsingConnection(connection, tableName, rowConsumer);
+		} finally {
+			connection.rollback();
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	private void readAllFromTableUsingConnection(Connection connection, String tableName,
+			Consumer<Map<String, Object>> rowConsumer) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select * from " + tableName,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(fetchSize);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				handRowsFromResultSetToConsumer(resultSet, rowConsumer);
+			}
+		}
+	}
+
+	private void handRowsFromResultSetToConsumer(ResultSet resultSet,
+			Consumer<Map<String, Object>> rowConsumer) throws SQLException {
+		String[] columnNames = getColumnNamesFromMetaData(resultSet.getMetaData());
+		while (resultSet.next()) {
+			rowConsumer.accept(createRowFromResultSetUsingColumnNames(resultSet, columnNames));
+		}
+	}
+
+	private String[] getColumnNamesFromMetaData(ResultSetMetaData metaData) throws SQLException {
+		String[] columnNames = new String[metaData.getColumnCount()];
+		for (int i = 0; i < columnNames.length; i++) {
+			columnNames[i] = metaData.getColumnName(i + 1);
+		}
+		return columnNames;
+	}
+
+	private Map<String, Object> createRowFromResultSetUsingColumnNames(ResultSet resultSet,
+			String[] columnNames) throws SQLException {
+		Map<String, Object> row = new HashMap<>(columnNames.length * 2);
+		for (int i = 0; i < columnNames.length; i++) {
+			row.put(columnNames[i], resultSet.getObject(i + 1));
+		}
+		return row;
+	}
+
+	public SqlConnectionProvider getSqlConnectionProvider() {
+		// needed for test
+		return sqlConnectionProvider;
+	}
+
+	public int getFetchSize() {
+		// needed for test
+		return fetchSize;
+	}
+}
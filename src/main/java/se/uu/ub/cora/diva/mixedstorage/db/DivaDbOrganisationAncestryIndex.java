@@ -0,0 +1,306 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import se.uu.ub.cora.sqldatabase.RecordReader;
+import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
+
+public final class DivaDbOrganisationAncestryIndex {
+	private static final String DIVA_ORGANISATION_PARENT = "divaOrganisationParent";
+	private static final String ORGANISATION_ID = "organisation_id";
+	private static final String ORGANISATION_PARENT_ID = "organisation_parent_id";
+	private RecordReaderFactory recordReaderFactory;
+	private boolean loaded = false;
+	private Map<String, Set<String>> parentsByOrganisationId = new HashMap<>();
+	private Map<String, Set<String>> childrenByOrganisationId = new HashMap<>();
+	private Map<String, Set<String>> ancestorsByOrganisationId = new HashMap<>();
+	private Map<String, Set<String>> descendantsByOrganisationId = new HashMap<>();
+	private long noOfParentChanges = 0;
+	private Map<String, Long> latestParentChangeByOrganisationId = new HashMap<>();
+	private Set<String> organisationIdsWithParentsToRefresh = new LinkedHashSet<>();
+
+	private DivaDbOrganisationAncestryIndex(RecordReaderFactory recordReaderFactory) {
+		this.recordReaderFactory = recordReaderFactory;
+	}
+
+	public static DivaDbOrganisationAncestryIndex usingRecordReaderFactory(
+			RecordReaderFactory recordReaderFactory) {
+		return new DivaDbOrganisationAncestryIndex(recordReaderFactory);
+	}
+
+	public synchronized void refresh() {
+		RecordReader recordReader = recordReaderFactory.factor();
+		List<Map<String, Object>> parentRows = recordReader
+				.readAllFromTable(DIVA_ORGANISATION_PARENT);
+		parentsByOrganisationId = new HashMap<>();
+		childrenByOrganisationId = new HashMap<>();
+		possiblyAddParentRelations(parentRows);
+		createClosureForAllOrganisations();
+		latestParentChangeByOrganisationId = new HashMap<>();
+		organisationIdsWithParentsToRefresh = new LinkedHashSet<>();
+		loaded = true;
+	}
+
+	private void possiblyAddParentRelations(List<Map<String, Object>> parentRows) {
+		if (parentRows == null) {
+			return;
+		}
+		for (Map<String, Object> parentRow : parentRows) {
+			Object organisationId = parentRow.get(ORGANISATION_ID);
+			Object parentId = parentRow.get(ORGANISATION_PARENT_ID);
+			if (organisationId != null && parentId != null) {
+				addParentRelation(String.valueOf(organisationId), String.valueOf(parentId));
+			}
+		}
+	}
+
+	private void addParentRelation(String organisationId, String parentId) {
+		parentsByOrganisationId.computeIfAbsent(organisationId, key -> new LinkedHashSet<>())
+				.add(parentId);
+		childrenByOrganisationId.computeIfAbsent(parentId, key -> new LinkedHashSet<>())
+				.add(organisationId);
+	}
+
+	private void createClosureForAllOrganisations() {
+		ancestorsByOrganisationId = new HashMap<>();
+		descendantsByOrganisationId = new HashMap<>();
+		for (String organisationId : parentsByOrganisationId.keySet()) {
+			ancestorsByOrganisationId.put(organisationId,
+					collectReachableIds(organisationId, parentsByOrganisationId));
+		}
+		for (String organisationId : childrenByOrganisationId.keySet()) {
+			descendantsByOrganisationId.put(organisationId,
+					collectReachableIds(organisationId, childrenByOrganisationId));
+		}
+	}
+
+	private Set<String> collectReachableIds(String startId, Map<String, Set<String>> edges) {
+		Set<String> reachableIds = new LinkedHashSet<>();
+		Deque<String> idsToVisit = new ArrayDeque<>(edges.getOrDefault(startId, Set.of()));
+		while (!idsToVisit.isEmpty()) {
+			String id = idsToVisit.poll();
+			if (!id.equals(startId) && reachableIds.add(id)) {
+				idsToVisit.addAll(edges.getOrDefault(id, Set.of()));
+			}
+		}
+		return Collections.unmodifiableSet(reachableIds);
+	}
+
+	public Set<String> getAncestorsOfOrganisation(String organisationId) {
+		refreshParentsOfChangedOrganisations();
+		return readAncestorsOfOrganisation(organisationId);
+	}
+
+	private synchronized Set<String> readAncestorsOfOrganisation(String organisationId) {
+		ensureLoaded();
+		return ancestorsByOrganisationId.getOrDefault(organisationId, Collections.emptySet());
+	}
+
+	public Set<String> getDescendantsOfOrganisation(String organisationId) {
+		refreshParentsOfChangedOrganisations();
+		return readDescendantsOfOrganisation(organisationId);
+	}
+
+	private synchronized Set<String> readDescendantsOfOrganisation(String organisationId) {
+		ensureLoaded();
+		return descendantsByOrganisationId.getOrDefault(organisationId, Collections.emptySet());
+	}
+
+	public Set<String> getRootsOfOrganisation(String organisationId) {
+		refreshParentsOfChangedOrganisations();
+		return readRootsOfOrganisation(organisationId);
+	}
+
+	private synchronized Set<String> readRootsOfOrganisation(String organisationId) {
+		ensureLoaded();
+		if (!parentsByOrganisationId.containsKey(organisationId)) {
+			return Set.of(organisationId);
+		}
+		Set<String> roots = new LinkedHashSet<>();
+		for (String ancestorId : ancestorsByOrganisationId.get(organisationId)) {
+			if (!parentsByOrganisationId.containsKey(ancestorId)) {
+				roots.add(ancestorId);
+			}
+		}
+		return Collections.unmodifiableSet(roots);
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			refresh();
+		}
+	}
+
+	public synchronized void replaceParentsOfOrganisation(String organisationId,
+			Collection<String> parentIds) {
+		ensureLoaded();
+		Set<String> affectedAncestors = new LinkedHashSet<>(
+				readAncestorsOfOrganisation(organisationId));
+		removeParentRelationsOfOrganisation(organisationId);
+		for (String parentId : parentIds) {
+			addParentRelation(organisationId, parentId);
+		}
+		updateAncestorsOfOrganisationAndItsDescendants(organisationId);
+		affectedAncestors.addAll(readAncestorsOfOrganisation(organisationId));
+		updateDescendantsOfOrganisations(affectedAncestors);
+	}
+
+	public synchronized void markParentsOfOrganisationAsChanged(String organisationId) {
+		if (!loaded) {
+			return;
+		}
+		noOfParentChanges++;
+		latestParentChangeByOrganisationId.put(organisationId, noOfParentChanges);
+		organisationIdsWithParentsToRefresh.add(organisationId);
+	}
+
+	private void refreshParentsOfChangedOrganisations() {
+		Map<String, Long> parentChanges = takeParentChangesToRefresh();
+		if (parentChanges.isEmpty()) {
+			return;
+		}
+		Map<String, List<String>> parentIdsByOrganisationId = new HashMap<>();
+		try {
+			RecordReader recordReader = recordReaderFactory.factor();
+			for (String organisationId : parentChanges.keySet()) {
+				parentIdsByOrganisationId.put(organisationId,
+						readParentIdsOfOrganisation(recordReader, organisationId));
+			}
+		} catch (RuntimeException e) {
+			returnParentChangesToRefresh(parentChanges);
+			throw e;
+		}
+		replaceParentsOfOrganisationsNotChangedAgain(parentChanges, parentIdsByOrganisationId);
+	}
+
+	private synchronized Map<String, Long> takeParentChangesToRefresh() {
+		Map<String, Long> parentChanges = new HashMap<>();
+		for (String organisationId : organisationIdsWithParentsToRefresh) {
+			parentChanges.put(organisationId,
+					latestParentChangeByOrganisationId.get(organisationId));
+		}
+		organisationIdsWithParentsToRefresh.clear();
+		return parentChanges;
+	}
+
+	private List<String> readParentIdsOfOrganisation(RecordReader recordReader,
+			String organisationId) {
+		Map<String, Object> conditions = new HashMap<>();
+		conditions.put(ORGANISATION_ID, organisationId);
+		return collectParentIds(recordReader
+				.readFromTableUsingConditions(DIVA_ORGANISATION_PARENT, conditions));
+	}
+
+	private synchronized void returnParentChangesToRefresh(Map<String, Long> parentChanges) {
+		for (Map.Entry<String, Long> parentChange : parentChanges.entrySet()) {
+			if (isLatestParentChange(parentChange.getKey(), parentChange.getValue())) {
+				organisationIdsWithParentsToRefresh.add(parentChange.getKey());
+			}
+		}
+	}
+
+	private boolean isLatestParentChange(String organisationId, Long parentChange) {
+		return parentChange.equals(latestParentChangeByOrganisationId.get(organisationId));
+	}
+
+	private synchronized void replaceParentsOfOrganisationsNotChangedAgain(
+			Map<String, Long> parentChanges, Map<String, List<String>> parentIdsByOrganisationId) {
+		for (Map.Entry<String, Long> parentChange : parentChanges.entrySet()) {
+			String organisationId = parentChange.getKey();
+			if (isLatestParentChange(organisationId, parentChange.getValue())) {
+				latestParentChangeByOrganisationId.remove(organisationId);
+				replaceParentsOfOrganisation(organisationId,
+						parentIdsByOrganisationId.get(organisationId));
+			}
+		}
+	}
+
+	private List<String> collectParentIds(List<Map<String, Object>> parentRows) {
+		List<String> parentIds = new ArrayList<>();
+		if (parentRows == null) {
+			return parentIds;
+		}
+		for (Map<String, Object> parentRow : parentRows) {
+			Object parentId = parentRow.get(ORGANISATION_PARENT_ID);
+			if (parentId != null) {
+				parentIds.add(String.valueOf(parentId));
+			}
+		}
+		return parentIds;
+	}
+
+	private void removeParentRelationsOfOrganisation(String organisationId) {
+		Set<String> oldParentIds = parentsByOrganisationId.remove(organisationId);
+		if (oldParentIds == null) {
+			return;
+		}
+		for (String oldParentId : oldParentIds) {
+			Set<String> children = childrenByOrganisationId.get(oldParentId);
+			children.remove(organisationId);
+			if (children.isEmpty()) {
+				childrenByOrganisationId.remove(oldParentId);
+			}
+		}
+	}
+
+	private void updateAncestorsOfOrganisationAndItsDescendants(String organisationId) {
+		updateAncestorsOfOrganisation(organisationId);
+		for (String descendantId : readDescendantsOfOrganisation(organisationId)) {
+			updateAncestorsOfOrganisation(descendantId);
+		}
+	}
+
+	private void updateAncestorsOfOrganisation(String organisationId) {
+		updateClosureForOrganisation(organisationId, parentsByOrganisationId,
+				ancestorsByOrganisationId);
+	}
+
+	private void updateDescendantsOfOrganisations(Set<String> organisationIds) {
+		for (String organisationId : organisationIds) {
+			updateClosureForOrganisation(organisationId, childrenByOrganisationId,
+					descendantsByOrganisationId);
+		}
+	}
+
+	private void updateClosureForOrganisation(String organisationId,
+			Map<String, Set<String>> edges, Map<String, Set<String>> closure) {
+		Set<String> reachableIds = collectReachableIds(organisationId, edges);
+		if (reachableIds.isEmpty()) {
+			closure.remove(organisationId);
+		} else {
+			closure.put(organisationId, reachableIds);
+		}
+	}
+
+	public RecordReaderFactory getRecordReaderFactory() {
+		// needed for test
+		return recordReaderFactory;
+	}
+}
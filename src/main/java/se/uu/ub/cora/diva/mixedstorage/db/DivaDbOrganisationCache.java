@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupCopier;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+
+public final class DivaDbOrganisationCache {
+	private static final String ORGANISATION_LINK = "organisationLink";
+	private static final String[] RELATION_NAMES = { "parentOrganisation", "formerName",
+			"closed" };
+	private TimedLruCache<String, DataGroup> organisations;
+
+	private DivaDbOrganisationCache(TimedLruCache<String, DataGroup> organisations) {
+		this.organisations = organisations;
+	}
+
+	public static DivaDbOrganisationCache usingTimedLruCache(
+			TimedLruCache<String, DataGroup> organisations) {
+		return new DivaDbOrganisationCache(organisations);
+	}
+
+	public DataGroup getCopyOfOrganisation(String id) {
+		DataGroup cachedOrganisation = organisations.get(id);
+		if (cachedOrganisation == null) {
+			return null;
+		}
+		return DataGroupCopier.copyDataGroup(cachedOrganisation);
+	}
+
+	public void putCopyOfOrganisation(String id, DataGroup organisation) {
+		organisations.put(id, DataGroupCopier.copyDataGroup(organisation));
+	}
+
+	public void invalidateOrganisationAndRelatedOrganisations(String id,
+			DataGroup updatedOrganisation) {
+		Set<String> idsToInvalidate = new LinkedHashSet<>();
+		idsToInvalidate.add(id);
+		addRelatedOrganisationIds(organisations.getIncludingExpired(id), idsToInvalidate);
+		addRelatedOrganisationIds(updatedOrganisation, idsToInvalidate);
+		for (String idToInvalidate : idsToInvalidate) {
+			organisations.invalidate(idToInvalidate);
+		}
+	}
+
+	private void addRelatedOrganisationIds(DataGroup organisation, Set<String> ids) {
+		if (organisation == null) {
+			return;
+		}
+		for (String relationName : RELATION_NAMES) {
+			for (DataGroup relation : organisation.getAllGroupsWithNameInData(relationName)) {
+				possiblyAddLinkedOrganisationId(relation, ids);
+			}
+		}
+	}
+
+	private void possiblyAddLinkedOrganisationId(DataGroup relation, Set<String> ids) {
+		if (relation.containsChildWithNameInData(ORGANISATION_LINK)) {
+			DataGroup link = relation.getFirstGroupWithNameInData(ORGANISATION_LINK);
+			String linkedId = link.getFirstAtomicValueWithNameInData("linkedRecordId");
+			if (linkedId != null) {
+				ids.add(linkedId);
+			}
+		}
+	}
+
+	public TimedLruCache<String, DataGroup> getOrganisations() {
+		// needed for test
+		return organisations;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+import se.uu.ub.cora.sqldatabase.DataReader;
+
+public final class DivaDbOrganisationExistenceChecker {
+	private static final Pattern INTEGER_PATTERN = Pattern.compile("-?\\d{1,10}");
+	private static final String EXISTS_SQL = "select 1 from organisation where organisation_id = ? limit 1";
+	private static final String ORGANISATION_ID = "organisation_id";
+	private static final int MAX_IDS_PER_QUERY = 1000;
+	private DataReader dataReader;
+	private TimedLruCache<String, Boolean> existenceCache;
+
+	private DivaDbOrganisationExistenceChecker(DataReader dataReader,
+			TimedLruCache<String, Boolean> existenceCache) {
+		this.dataReader = dataReader;
+		this.existenceCache = existenceCache;
+	}
+
+	public static DivaDbOrganisationExistenceChecker usingDataReaderAndExistenceCache(
+			DataReader dataReader, TimedLruCache<String, Boolean> existenceCache) {
+		return new DivaDbOrganisationExistenceChecker(dataReader, existenceCache);
+	}
+
+	public boolean organisationExists(String id) {
+		if (!isIntegerValue(id)) {
+			return false;
+		}
+		String normalisedId = normaliseId(id);
+		Boolean cachedExists = existenceCache.get(normalisedId);
+		if (cachedExists != null) {
+			return cachedExists;
+		}
+		boolean exists = organisationExistsInDb(Integer.valueOf(normalisedId));
+		existenceCache.put(normalisedId, exists);
+		return exists;
+	}
+
+	private boolean isIntegerValue(String id) {
+		if (id == null || !INTEGER_PATTERN.matcher(id).matches()) {
+			return false;
+		}
+		long value = Long.parseLong(id);
+		return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+	}
+
+	private String normaliseId(String id) {
+		return String.valueOf(Integer.valueOf(id));
+	}
+
+	private boolean organisationExistsInDb(Integer id) {
+		List<Map<String, Object>> rows = dataReader
+				.executePreparedStatementQueryUsingSqlAndValues(EXISTS_SQL, List.of(id));
+		return !rows.isEmpty();
+	}
+
+	public Set<String> readExistingOrganisationIds(Collection<String> ids) {
+		Map<String, Set<String>> requestedIdsByNormalisedId = createRequestedIdsByNormalisedId(
+				ids);
+		Set<String> existingNormalisedIds = new HashSet<>();
+		List<String> idsToReadFromDb = new ArrayList<>();
+		for (String normalisedId : requestedIdsByNormalisedId.keySet()) {
+			addIdToExistingOrIdsToReadFromDb(normalisedId, existingNormalisedIds,
+					idsToReadFromDb);
+		}
+		if (!idsToReadFromDb.isEmpty()) {
+			existingNormalisedIds.addAll(readExistingIdsFromDbAndCacheResult(idsToReadFromDb));
+		}
+		return collectRequestedIdsThatExist(requestedIdsByNormalisedId, existingNormalisedIds);
+	}
+
+	private Map<String, Set<String>> createRequestedIdsByNormalisedId(Collection<String> ids) {
+		Map<String, Set<String>> requestedIdsByNormalisedId = new LinkedHashMap<>();
+		for (String id : ids) {
+			if (isIntegerValue(id)) {
+				requestedIdsByNormalisedId
+						.computeIfAbsent(normaliseId(id), key -> new LinkedHashSet<>()).add(id);
+			}
+		}
+		return requestedIdsByNormalisedId;
+	}
+
+	private void addIdToExistingOrIdsToReadFromDb(String id, Set<String> existingIds,
+			List<String> idsToReadFromDb) {
+		Boolean cachedExists = existenceCache.get(id);
+		if (cachedExists == null) {
+			idsToReadFromDb.add(id);
+		} else if (cachedExists) {
+			existingIds.add(id);
+		}
+	}
+
+	private Set<String> readExistingIdsFromDbAndCacheResult(List<String> ids) {
+		Set<String> existingIds = new HashSet<>();
+		for (int fromIndex = 0; fromIndex < ids.size(); fromIndex += MAX_IDS_PER_QUERY) {
+			int toIndex = Math.min(fromIndex + MAX_IDS_PER_QUERY, ids.size());
+			existingIds.addAll(readExistingIdsFromDb(ids.subList(fromIndex, toIndex)));
+		}
+		for (String id : ids) {
+			existenceCache.put(id, existingIds.contains(id));
+		}
+		return existingIds;
+	}
+
+	private Set<String> readExistingIdsFromDb(List<String> ids) {
+		List<Object> values = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			values.add(Integer.valueOf(id));
+		}
+		String sql = "select organisation_id from organisation where organisation_id in ("
+				+ String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+		List<Map<String, Object>> rows = dataReader
+				.executePreparedStatementQueryUsingSqlAndValues(sql, values);
+		Set<String> existingIds = new HashSet<>(rows.size());
+		for (Map<String, Object> row : rows) {
+			existingIds.add(normaliseId(String.valueOf(row.get(ORGANISATION_ID))));
+		}
+		return existingIds;
+	}
+
+	private Set<String> collectRequestedIdsThatExist(
+			Map<String, Set<String>> requestedIdsByNormalisedId,
+			Set<String> existingNormalisedIds) {
+		Set<String> existingIds = new LinkedHashSet<>();
+		for (Entry<String, Set<String>> entry : requestedIdsByNormalisedId.entrySet()) {
+			if (existingNormalisedIds.contains(entry.getKey())) {
+				existingIds.addAll(entry.getValue());
+			}
+		}
+		return existingIds;
+	}
+
+	public DataReader getDataReader() {
+		// needed for test
+		return dataReader;
+	}
+
+	public TimedLruCache<String, Boolean> getExistenceCache() {
+		// needed for test
+		return existenceCache;
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import se.uu.ub.cora.sqldatabase.RecordReader;
+import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
+
+public final class DivaDbOrganisationLineageIndex {
+	private static final String DIVA_ORGANISATION_PREDECESSOR = "divaOrganisationPredecessor";
+	private static final String ORGANISATION_ID = "organisation_id";
+	private static final String PREDECESSOR_ID = "predecessor_id";
+	private RecordReaderFactory recordReaderFactory;
+	private volatile LineageGraph lineageGraph;
+
+	private DivaDbOrganisationLineageIndex(RecordReaderFactory recordReaderFactory) {
+		this.recordReaderFactory = recordReaderFactory;
+	}
+
+	public static DivaDbOrganisationLineageIndex usingRecordReaderFactory(
+			RecordReaderFactory recordReaderFactory) {
+		return new DivaDbOrganisationLineageIndex(recordReaderFactory);
+	}
+
+	public synchronized void refresh() {
+		RecordReader recordReader = recordReaderFactory.factor();
+		List<Map<String, Object>> predecessorRows = recordReader
+				.readAllFromTable(DIVA_ORGANISATION_PREDECESSOR);
+		lineageGraph = LineageGraph.createFromPredecessorRows(
+				predecessorRows != null ? predecessorRows : Collections.emptyList());
+	}
+
+	public void invalidate() {
+		lineageGraph = null;
+	}
+
+	public void invalidateIfRelationsOfOrganisationDiffer(String organisationId,
+			Collection<String> predecessorIds, Collection<String> successorIds) {
+		LineageGraph graph = lineageGraph;
+		if (graph != null && (!graph.hasDirectRelations(organisationId, graph.predecessorOffsets,
+				graph.predecessors, predecessorIds)
+				|| !graph.hasDirectRelations(organisationId, graph.successorOffsets,
+						graph.successors, successorIds))) {
+			invalidate();
+		}
+	}
+
+	public List<String> getAllPredecessorsOfOrganisation(String organisationId) {
+		LineageGraph graph = getLineageGraph();
+		return graph.collectReachableIds(organisationId, graph.predecessorOffsets,
+				graph.predecessors, false);
+	}
+
+	public List<String> getAllSuccessorsOfOrganisation(String organisationId) {
+		LineageGraph graph = getLineageGraph();
+		return graph.collectReachableIds(organisationId, graph.successorOffsets,
+				graph.successors, false);
+	}
+
+	public List<String> getCurrentSuccessorsOfOrganisation(String organisationId) {
+		LineageGraph graph = getLineageGraph();
+		return graph.collectReachableIds(organisationId, graph.successorOffsets,
+				graph.successors, true);
+	}
+
+	private LineageGraph getLineageGraph() {
+		LineageGraph graph = lineageGraph;
+		if (graph == null) {
+			graph = readLineageGraphIfNotAlreadyRead();
+		}
+		return graph;
+	}
+
+	private synchronized LineageGraph readLineageGraphIfNotAlreadyRead() {
+		if (lineageGraph == null) {
+			refresh();
+		}
+		return lineageGraph;
+	}
+
+	public RecordReaderFactory getRecordReaderFactory() {
+		// needed for test
+		return recordReaderFactory;
+	}
+
+	private static final class LineageGraph {
+		private int[] organisationIds;
+		private int[] predecessorOffsets;
+		private int[] predecessors;
+		private int[] successorOffsets;
+		private int[] successors;
+
+		private static LineageGraph createFromPredecessorRows(
+				List<Map<String, Object>> predecessorRows) {
+			int[] successorIdForEdge = new int[predecessorRows.size()];
+			int[] predecessorIdForEdge = new int[predecessorRows.size()];
+			int noOfEdges = 0;
+			for (Map<String, Object> row : predecessorRows) {
+				Integer successorId = toIntegerOrNull(row.get(ORGANISATION_ID));
+				Integer predecessorId = toIntegerOrNull(row.get(PREDECESSOR_ID));
+				if (successorId != null && predecessorId != null) {
+					successorIdForEdge[noOfEdges] = successorId;
+					predecessorIdForEdge[noOfEdges] = predecessorId;
+					noOfEdges++;
+				}
+			}
+			return new LineageGraph(Arrays.copyOf(successorIdForEdge, noOfEdges),
+					Arrays.copyOf(predecessorIdForEdge, noOfEdges));
+		}
+
+		private static Integer toIntegerOrNull(Object value) {
+			if (value instanceof Number) {
+				return ((Number) value).intValue();
+			}
+			if (value == null) {
+				return null;
+			}
+			try {
+				return Integer.valueOf(value.toString());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private LineageGraph(int[] successorIdForEdge, int[] predecessorIdForEdge) {
+			organisationIds = createSortedDistinctIds(successorIdForEdge, predecessorIdForEdge);
+			int[] successorIndexForEdge = toIndexes(successorIdForEdge);
+			int[] predecessorIndexForEdge = toIndexes(predecessorIdForEdge);
+			predecessorOffsets = createOffsets(successorIndexForEdge);
+			predecessors = createTargets(predecessorOffsets, successorIndexForEdge,
+					predecessorIndexForEdge);
+			successorOffsets = createOffsets(predecessorIndexForEdge);
+			successors = createTargets(successorOffsets, predecessorIndexForEdge,
+					successorIndexForEdge);
+		}
+
+		private static int[] createSortedDistinctIds(int[] firstIds, int[] secondIds) {
+			int[] allIds = new int[firstIds.length + secondIds.length];
+			System.arraycopy(firstIds, 0, allIds, 0, firstIds.length);
+			System.arraycopy(secondIds, 0, allIds, firstIds.length, secondIds.length);
+			Arrays.sort(allIds);
+			int noOfDistinctIds = 0;
+			for (int i = 0; i < allIds.length; i++) {
+				if (i == 0 || allIds[i] != allIds[i - 1]) {
+					allIds[noOfDistinctIds] = allIds[i];
+					noOfDistinctIds++;
+				}
+			}
+			return Arrays.copyOf(allIds, noOfDistinctIds);
+		}
+
+		private int[] toIndexes(int[] ids) {
+			int[] indexes = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				indexes[i] = Arrays.binarySearch(organisationIds, ids[i]);
+			}
+			return indexes;
+		}
+
+		private int[] createOffsets(int[] fromIndexForEdge) {
+			int[] offsets = new int[organisationIds.length + 1];
+			for (int fromIndex : fromIndexForEdge) {
+				offsets[fromIndex + 1]++;
+			}
+			for (int i = 0; i < organisationIds.length; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			return offsets;
+		}
+
+		private int[] createTargets(int[] offsets, int[] fromIndexForEdge,
+				int[] toIndexForEdge) {
+			int[] targets = new int[fromIndexForEdge.length];
+			int[] nextPosition = Arrays.copyOf(offsets, organisationIds.length);
+			for (int edge = 0; edge < fromIndexForEdge.length; edge++) {
+				int fromIndex = fromIndexForEdge[edge];
+				targets[nextPosition[fromIndex]] = toIndexForEdge[edge];
+				nextPosition[fromIndex]++;
+			}
+			return targets;
+		}
+
+		private List<String> collectReachableIds(String organisationId, int[] offsets,
+				int[] targets, boolean onlyEndpoints) {
+			int startIndex = findIndexOfOrganisation(organisationId);
+			if (startIndex < 0) {
+				return Collections.emptyList();
+			}
+			List<String> reachableIds = new ArrayList<>();
+			boolean[] visited = new boolean[organisationIds.length];
+			int[] queue = new int[organisationIds.length];
+			int head = 0;
+			int tail = 0;
+			visited[startIndex] = true;
+			queue[tail++] = startIndex;
+			while (head < tail) {
+				int index = queue[head++];
+				possiblyAddReachableId(index, startIndex, offsets, onlyEndpoints, reachableIds);
+				for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+					int target = targets[i];
+					if (!visited[target]) {
+						visited[target] = true;
+						queue[tail++] = target;
+					}
+				}
+			}
+			return reachableIds;
+		}
+
+		private void possiblyAddReachableId(int index, int startIndex, int[] offsets,
+				boolean onlyEndpoints, List<String> reachableIds) {
+			boolean isEndpoint = offsets[index] == offsets[index + 1];
+			if (index != startIndex && (!onlyEndpoints || isEndpoint)) {
+				reachableIds.add(String.valueOf(organisationIds[index]));
+			}
+		}
+
+		private boolean hasDirectRelations(String organisationId, int[] offsets, int[] targets,
+				Collection<String> relatedIds) {
+			return collectDirectIds(organisationId, offsets, targets)
+					.equals(normaliseIds(relatedIds));
+		}
+
+		private Set<Integer> collectDirectIds(String organisationId, int[] offsets,
+				int[] targets) {
+			Set<Integer> directIds = new HashSet<>();
+			int index = findIndexOfOrganisation(organisationId);
+			if (index >= 0) {
+				for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+					directIds.add(organisationIds[targets[i]]);
+				}
+			}
+			return directIds;
+		}
+
+		private static Set<Integer> normaliseIds(Collection<String> ids) {
+			Set<Integer> normalisedIds = new HashSet<>();
+			for (String id : ids) {
+				Integer normalisedId = toIntegerOrNull(id);
+				if (normalisedId != null) {
+					normalisedIds.add(normalisedId);
+				}
+			}
+			return normalisedIds;
+		}
+
+		private int findIndexOfOrganisation(String organisationId) {
+			Integer id = toIntegerOrNull(organisationId);
+			if (id == null) {
+				return -1;
+			}
+			return Arrays.binarySearch(organisationIds, id);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.InvalidFilterException;
+
+final class DivaDbOrganisationListQuery {
+	private static final String FROM_NO = "fromNo";
+	private static final String TO_NO = "toNo";
+	private String type;
+	private List<String> conditions = new ArrayList<>();
+	private List<Object> values = new ArrayList<>();
+	private long fromNo = 1;
+	private Long toNo = null;
+
+	private DivaDbOrganisationListQuery(String type) {
+		this.type = type;
+	}
+
+	static DivaDbOrganisationListQuery usingTypeAndFilter(String type, DataGroup filter) {
+		DivaDbOrganisationListQuery query = new DivaDbOrganisationListQuery(type);
+		if (filter != null) {
+			query.addConditionsAndLimitsFromFilter(filter);
+		}
+		return query;
+	}
+
+	private void addConditionsAndLimitsFromFilter(DataGroup filter) {
+		for (DataGroup part : filter.getAllGroupsWithNameInData("part")) {
+			addConditionForPart(part);
+		}
+		if (filter.containsChildWithNameInData(FROM_NO)) {
+			fromNo = Math.max(1, parseNumberFromFilter(filter, FROM_NO));
+		}
+		if (filter.containsChildWithNameInData(TO_NO)) {
+			toNo = parseNumberFromFilter(filter, TO_NO);
+		}
+	}
+
+	private void addConditionForPart(DataGroup part) {
+		String key = part.getFirstAtomicValueWithNameInData("key");
+		String value = part.getFirstAtomicValueWithNameInData("value");
+		if ("organisationName".equals(key)) {
+			addConditionUsingSqlAndValue("lower(defaultname) like ? escape '\\'",
+					"%" + escapeLikeWildcards(value.toLowerCase(Locale.ROOT)) + "%");
+		} else if ("organisationCode".equals(key)) {
+			addConditionUsingSqlAndValue("organisation_code = ?", value);
+		} else if ("eligible".equals(key)) {
+			addConditionUsingSqlAndValue("not_eligible = ?", !"yes".equals(value));
+		} else {
+			throw InvalidFilterException.withMessage("Filter key not supported for " + type + ": " + key);
+		}
+	}
+
+	private String escapeLikeWildcards(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	private void addConditionUsingSqlAndValue(String condition, Object value) {
+		conditions.add(condition);
+		values.add(value);
+	}
+
+	private long parseNumberFromFilter(DataGroup filter, String nameInData) {
+		String value = filter.getFirstAtomicValueWithNameInData(nameInData);
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw InvalidFilterException.withMessageAndException(
+					nameInData + " in filter must be a number, was: " + value, e);
+		}
+	}
+
+	boolean readsAllRows() {
+		return conditions.isEmpty() && fromNo == 1 && toNo == null;
+	}
+
+	String createSqlForCount() {
+		return "select count(*) as total from " + type + createWherePart();
+	}
+
+	String createSqlForPage() {
+		String sql = "select * from " + type + createWherePart() + " order by cast(id as integer)";
+		if (toNo != null) {
+			sql += " limit ?";
+		}
+		return sql + " offset ?";
+	}
+
+	private String createWherePart() {
+		if (conditions.isEmpty()) {
+			return "";
+		}
+		return " where " + String.join(" and ", conditions);
+	}
+
+	List<Object> getValuesForCount() {
+		return new ArrayList<>(values);
+	}
+
+	List<Object> getValuesForPage() {
+		List<Object> pageValues = new ArrayList<>(values);
+		if (toNo != null) {
+			pageValues.add(Math.max(0, toNo - fromNo + 1));
+		}
+		pageValues.add(fromNo - 1);
+		return pageValues;
+	}
+}
@@ -1,9 +1,16 @@
 package se.uu.ub.cora.diva.mixedstorage.db;
 
+import java.util.List;
+
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.StorageReadResult;
 
 public interface DivaDbToCora {
 
 	DataGroup convertOneRowData(String type, String id);
 
+	List<DataGroup> convertAllRowData(String type);
+
+	StorageReadResult convertRowDataUsingFilter(String type, DataGroup filter);
+
 }
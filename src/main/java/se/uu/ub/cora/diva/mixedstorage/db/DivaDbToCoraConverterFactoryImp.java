@@ -18,25 +18,24 @@
  */
 package se.uu.ub.cora.diva.mixedstorage.db;
 
+import java.util.Map;
+
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
 
 public class DivaDbToCoraConverterFactoryImp implements DivaDbToCoraConverterFactory {
+	private static final Map<String, DivaDbToCoraConverter> CONVERTERS = Map.of(
+			"divaOrganisation", new DivaDbToCoraOrganisationConverter(),
+			"divaOrganisationParent", new DivaDbToCoraOrganisationParentConverter(),
+			"divaOrganisationPredecessor", new DivaDbToCoraOrganisationPredecessorConverter(),
+			"divaOrganisationSuccessor", new DivaDbToCoraOrganisationSuccessorConverter());
 
 	@Override
 	public DivaDbToCoraConverter factor(String type) {
-		if ("divaOrganisation".equals(type)) {
-			return new DivaDbToCoraOrganisationConverter();
-		}
-		if ("divaOrganisationParent".equals(type)) {
-			return new DivaDbToCoraOrganisationParentConverter();
-		}
-		if ("divaOrganisationPredecessor".equals(type)) {
-			return new DivaDbToCoraOrganisationPredecessorConverter();
-		}
-		if ("divaOrganisationSuccessor".equals(type)) {
-			return new DivaDbToCoraOrganisationSuccessorConverter();
+		DivaDbToCoraConverter converter = CONVERTERS.get(type);
+		if (converter == null) {
+			throw NotImplementedException.withMessage("No converter implemented for: " + type);
 		}
-		throw NotImplementedException.withMessage("No converter implemented for: " + type);
+		return converter;
 	}
 
 }
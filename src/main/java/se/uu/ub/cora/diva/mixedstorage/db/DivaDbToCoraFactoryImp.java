@@ -19,12 +19,14 @@
 package se.uu.ub.cora.diva.mixedstorage.db;
 
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.sqldatabase.DataReader;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
 
 public class DivaDbToCoraFactoryImp implements DivaDbToCoraFactory {
 
 	private RecordReaderFactory readerFactory;
 	private DivaDbToCoraConverterFactory converterFactory;
+	private DataReader dataReader;
 
 	public DivaDbToCoraFactoryImp(RecordReaderFactory readerFactory,
 			DivaDbToCoraConverterFactory converterFactory) {
@@ -32,11 +34,17 @@ public class DivaDbToCoraFactoryImp implements DivaDbToCoraFactory {
 		this.converterFactory = converterFactory;
 	}
 
+	public DivaDbToCoraFactoryImp(RecordReaderFactory readerFactory,
+			DivaDbToCoraConverterFactory converterFactory, DataReader dataReader) {
+		this(readerFactory, converterFactory);
+		this.dataReader = dataReader;
+	}
+
 	@Override
 	public DivaDbToCora factor(String type) {
 		if ("divaOrganisation".equals(type)) {
-			return DivaDbToCoraOrganisation
-					.usingRecordReaderFactoryAndConverterFactory(readerFactory, converterFactory);
+			return DivaDbToCoraOrganisation.usingRecordReaderFactoryAndDataReaderAndConverterFactory(
+					readerFactory, dataReader, converterFactory);
 		}
 		throw NotImplementedException.withMessage("No implementation found for: " + type);
 	}
@@ -51,4 +59,9 @@ public class DivaDbToCoraFactoryImp implements DivaDbToCoraFactory {
 		return converterFactory;
 	}
 
+	public DataReader getDataReader() {
+		// for testing
+		return dataReader;
+	}
+
 }
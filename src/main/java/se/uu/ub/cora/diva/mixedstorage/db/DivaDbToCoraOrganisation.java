@@ -21,26 +21,51 @@ package se.uu.ub.cora.diva.mixedstorage.db;
 import java.sql.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.sqldatabase.DataReader;
 import se.uu.ub.cora.sqldatabase.RecordReader;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
+import se.uu.ub.cora.sqldatabase.SqlStorageException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.StorageReadResult;
 
 public class DivaDbToCoraOrganisation implements DivaDbToCora {
 
 	private static final String DIVA_ORGANISATION_PREDECESSOR = "divaOrganisationPredecessor";
+	private static final String DIVA_ORGANISATION_PARENT = "divaOrganisationParent";
 	private static final String CLOSED_DATE = "closed_date";
+	private static final String ORGANISATION_ID = "organisation_id";
+	private static final String PREDECESSOR_ID = "predecessor_id";
+	private static final String DESCRIPTION = "description";
+	private static final String RELATION_TYPE = "relation_type";
+	private static final String RELATION_ORGANISATION_ID = "relation_organisation_id";
+	private static final String RELATION_RELATED_ID = "relation_related_id";
+	private static final String RELATION_DESCRIPTION = "relation_description";
+	private static final int MAX_IDS_PER_QUERY = 1000;
 	private RecordReaderFactory recordReaderFactory;
+	private DataReader dataReader;
 	private DivaDbToCoraConverterFactory converterFactory;
 	private RecordReader recordReader;
 	private String organisationClosedDate = null;
+	private Map<String, List<Map<String, Object>>> parentsByOrganisationId;
+	private Map<String, List<Map<String, Object>>> predecessorsByOrganisationId;
+	private Map<String, List<Map<String, Object>>> successorsByOrganisationId;
 
 	public DivaDbToCoraOrganisation(RecordReaderFactory recordReaderFactory,
 			DivaDbToCoraConverterFactory converterFactory) {
+		this(recordReaderFactory, null, converterFactory);
+	}
+
+	private DivaDbToCoraOrganisation(RecordReaderFactory recordReaderFactory,
+			DataReader dataReader, DivaDbToCoraConverterFactory converterFactory) {
 		this.recordReaderFactory = recordReaderFactory;
+		this.dataReader = dataReader;
 		this.converterFactory = converterFactory;
 	}
 
@@ -50,8 +75,17 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 		return new DivaDbToCoraOrganisation(recordReaderFactory, converterFactory);
 	}
 
+	public static DivaDbToCoraOrganisation usingRecordReaderFactoryAndDataReaderAndConverterFactory(
+			RecordReaderFactory recordReaderFactory, DataReader dataReader,
+			DivaDbToCoraConverterFactory converterFactory) {
+		return new DivaDbToCoraOrganisation(recordReaderFactory, dataReader, converterFactory);
+	}
+
 	@Override
 	public DataGroup convertOneRowData(String type, String id) {
+		if (dataReader != null) {
+			return readAndConvertOrganisationAndRelationsUsingOneQuery(type, id);
+		}
 		recordReader = getRecordReaderFactory().factor();
 		DataGroup organisation = readAndConvertOrganisationFromDb(type, id);
 		tryToReadAndConvertParents(id, organisation);
@@ -60,6 +94,223 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 		return organisation;
 	}
 
+	@Override
+	public List<DataGroup> convertAllRowData(String type) {
+		recordReader = getRecordReaderFactory().factor();
+		List<Map<String, Object>> organisationRows = readAllFromTableUsingName(type);
+		readAllRelationsAndGroupThemByOrganisationId();
+		return convertOrganisationsAndGroupedRelations(type, organisationRows);
+	}
+
+	private List<DataGroup> convertOrganisationsAndGroupedRelations(String type,
+			List<Map<String, Object>> organisationRows) {
+		List<DataGroup> organisations = new ArrayList<>(organisationRows.size());
+		for (Map<String, Object> organisationRow : organisationRows) {
+			organisations.add(convertOrganisationAndGroupedRelations(type, organisationRow));
+		}
+		return organisations;
+	}
+
+	@Override
+	public StorageReadResult convertRowDataUsingFilter(String type, DataGroup filter) {
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery.usingTypeAndFilter(type,
+				filter);
+		if (dataReader == null || query.readsAllRows()) {
+			return createStorageReadResultUsingAllOrganisations(type);
+		}
+		StorageReadResult storageReadResult = new StorageReadResult();
+		storageReadResult.totalNumberOfMatches = readNumberOfMatchesUsingQuery(query);
+		storageReadResult.listOfDataGroups = readAndConvertPageUsingQuery(type, query);
+		return storageReadResult;
+	}
+
+	private StorageReadResult createStorageReadResultUsingAllOrganisations(String type) {
+		StorageReadResult storageReadResult = new StorageReadResult();
+		storageReadResult.listOfDataGroups = convertAllRowData(type);
+		storageReadResult.totalNumberOfMatches = storageReadResult.listOfDataGroups.size();
+		return storageReadResult;
+	}
+
+	private long readNumberOfMatchesUsingQuery(DivaDbOrganisationListQuery query) {
+		Map<String, Object> countRow = dataReader.readOneRowOrFailUsingSqlAndValues(
+				query.createSqlForCount(), query.getValuesForCount());
+		return ((Number) countRow.get("total")).longValue();
+	}
+
+	private List<DataGroup> readAndConvertPageUsingQuery(String type,
+			DivaDbOrganisationListQuery query) {
+		List<Map<String, Object>> organisationRows = dataReader
+				.executePreparedStatementQueryUsingSqlAndValues(query.createSqlForPage(),
+						query.getValuesForPage());
+		if (organisationRows.isEmpty()) {
+			return new ArrayList<>();
+		}
+		readRelationsForOrganisationsAndGroupThemByOrganisationId(organisationRows);
+		return convertOrganisationsAndGroupedRelations(type, organisationRows);
+	}
+
+	private void readRelationsForOrganisationsAndGroupThemByOrganisationId(
+			List<Map<String, Object>> organisationRows) {
+		List<Object> ids = new ArrayList<>(organisationRows.size());
+		for (Map<String, Object> organisationRow : organisationRows) {
+			ids.add(organisationRow.get("id"));
+		}
+		List<Map<String, Object>> parents = new ArrayList<>();
+		List<Map<String, Object>> predecessors = new ArrayList<>();
+		List<Map<String, Object>> successors = new ArrayList<>();
+		for (int fromIndex = 0; fromIndex < ids.size(); fromIndex += MAX_IDS_PER_QUERY) {
+			List<Object> idsInChunk = ids.subList(fromIndex,
+					Math.min(fromIndex + MAX_IDS_PER_QUERY, ids.size()));
+			parents.addAll(readRowsFromTableWhereColumnIsOneOfIds(DIVA_ORGANISATION_PARENT,
+					ORGANISATION_ID, idsInChunk));
+			predecessors.addAll(readRowsFromTableWhereColumnIsOneOfIds(
+					DIVA_ORGANISATION_PREDECESSOR, ORGANISATION_ID, idsInChunk));
+			successors.addAll(readRowsFromTableWhereColumnIsOneOfIds(
+					DIVA_ORGANISATION_PREDECESSOR, PREDECESSOR_ID, idsInChunk));
+		}
+		parentsByOrganisationId = groupCopiesOfRowsUsingColumn(parents, ORGANISATION_ID);
+		predecessorsByOrganisationId = groupCopiesOfRowsUsingColumn(predecessors,
+				ORGANISATION_ID);
+		successorsByOrganisationId = groupCopiesOfRowsUsingColumn(successors, PREDECESSOR_ID);
+	}
+
+	private List<Map<String, Object>> readRowsFromTableWhereColumnIsOneOfIds(String tableName,
+			String columnName, List<Object> ids) {
+		String sql = "select * from " + tableName + " where " + columnName + " in "
+				+ createPlaceholdersForNoOfValues(ids.size());
+		return dataReader.executePreparedStatementQueryUsingSqlAndValues(sql,
+				new ArrayList<>(ids));
+	}
+
+	private String createPlaceholdersForNoOfValues(int noOfValues) {
+		return "(" + String.join(", ", Collections.nCopies(noOfValues, "?")) + ")";
+	}
+
+	private List<Map<String, Object>> readAllFromTableUsingName(String tableName) {
+		List<Map<String, Object>> rows = recordReader.readAllFromTable(tableName);
+		return rows != null ? rows : Collections.emptyList();
+	}
+
+	private void readAllRelationsAndGroupThemByOrganisationId() {
+		List<Map<String, Object>> parents = readAllFromTableUsingName(DIVA_ORGANISATION_PARENT);
+		List<Map<String, Object>> predecessors = readAllFromTableUsingName(
+				DIVA_ORGANISATION_PREDECESSOR);
+		groupRelations(parents, predecessors);
+	}
+
+	private void groupRelations(List<Map<String, Object>> parents,
+			List<Map<String, Object>> predecessors) {
+		parentsByOrganisationId = groupCopiesOfRowsUsingColumn(parents, ORGANISATION_ID);
+		predecessorsByOrganisationId = groupCopiesOfRowsUsingColumn(predecessors,
+				ORGANISATION_ID);
+		successorsByOrganisationId = groupCopiesOfRowsUsingColumn(predecessors, PREDECESSOR_ID);
+	}
+
+	private Map<String, List<Map<String, Object>>> groupCopiesOfRowsUsingColumn(
+			List<Map<String, Object>> rows, String columnName) {
+		Map<String, List<Map<String, Object>>> groupedRows = new HashMap<>();
+		for (Map<String, Object> row : rows) {
+			String key = String.valueOf(row.get(columnName));
+			groupedRows.computeIfAbsent(key, k -> new ArrayList<>()).add(new HashMap<>(row));
+		}
+		return groupedRows;
+	}
+
+	private DataGroup convertOrganisationAndGroupedRelations(String type,
+			Map<String, Object> organisationRow) {
+		organisationClosedDate = null;
+		saveClosedDateIfItExists(organisationRow);
+		DataGroup organisation = convertOneMapFromDbToDataGroup(type, organisationRow);
+		String id = String.valueOf(organisationRow.get("id"));
+		possiblyConvertParents(organisation, parentsByOrganisationId.get(id));
+		possiblyConvertPredecessors(organisation, predecessorsByOrganisationId.get(id));
+		possiblyConvertSuccessors(organisation, successorsByOrganisationId.get(id));
+		return organisation;
+	}
+
+	private DataGroup readAndConvertOrganisationAndRelationsUsingOneQuery(String type,
+			String id) {
+		List<Map<String, Object>> rows = readOrganisationAndRelationsFromDb(type, id);
+		throwErrorIfOrganisationNotFound(id, rows);
+
+		DataGroup organisation = convertOrganisationRow(type, rows.get(0));
+		List<Map<String, Object>> parents = new ArrayList<>();
+		List<Map<String, Object>> predecessors = new ArrayList<>();
+		List<Map<String, Object>> successors = new ArrayList<>();
+		for (Map<String, Object> row : rows) {
+			addRelationFromRowToMatchingList(row, parents, predecessors, successors);
+		}
+		possiblyConvertParents(organisation, parents);
+		possiblyConvertPredecessors(organisation, predecessors);
+		possiblyConvertSuccessors(organisation, successors);
+		return organisation;
+	}
+
+	private List<Map<String, Object>> readOrganisationAndRelationsFromDb(String type, String id) {
+		String sql = createSqlForOrganisationAndRelationsUsingType(type);
+		List<Object> values = List.of(id, id, id, id);
+		return dataReader.executePreparedStatementQueryUsingSqlAndValues(sql, values);
+	}
+
+	private String createSqlForOrganisationAndRelationsUsingType(String type) {
+		return "select organisation.*, relation." + RELATION_TYPE + ", relation."
+				+ RELATION_ORGANISATION_ID + ", relation." + RELATION_RELATED_ID + ", relation."
+				+ RELATION_DESCRIPTION + " from " + type + " organisation left join ("
+				+ "select 'parent' as " + RELATION_TYPE + ", organisation_id as "
+				+ RELATION_ORGANISATION_ID + ", organisation_parent_id as "
+				+ RELATION_RELATED_ID + ", null as " + RELATION_DESCRIPTION
+				+ " from divaOrganisationParent where organisation_id = ?"
+				+ " union all select 'predecessor', organisation_id, predecessor_id, description"
+				+ " from divaOrganisationPredecessor where organisation_id = ?"
+				+ " union all select 'successor', organisation_id, predecessor_id, description"
+				+ " from divaOrganisationPredecessor where predecessor_id = ?"
+				+ ") relation on true where organisation.id = ?";
+	}
+
+	private void throwErrorIfOrganisationNotFound(String id, List<Map<String, Object>> rows) {
+		if (rows == null || rows.isEmpty()) {
+			throw new RecordNotFoundException("Organisation not found: " + id);
+		}
+	}
+
+	private DataGroup convertOrganisationRow(String type, Map<String, Object> row) {
+		Map<String, Object> organisationRow = new HashMap<>(row);
+		organisationRow.remove(RELATION_TYPE);
+		organisationRow.remove(RELATION_ORGANISATION_ID);
+		organisationRow.remove(RELATION_RELATED_ID);
+		organisationRow.remove(RELATION_DESCRIPTION);
+		saveClosedDateIfItExists(organisationRow);
+		return convertOneMapFromDbToDataGroup(type, organisationRow);
+	}
+
+	private void addRelationFromRowToMatchingList(Map<String, Object> row,
+			List<Map<String, Object>> parents, List<Map<String, Object>> predecessors,
+			List<Map<String, Object>> successors) {
+		Object relationType = row.get(RELATION_TYPE);
+		if ("parent".equals(relationType)) {
+			parents.add(createParentRowFromJoinedRow(row));
+		} else if ("predecessor".equals(relationType)) {
+			predecessors.add(createPredecessorRowFromJoinedRow(row));
+		} else if ("successor".equals(relationType)) {
+			successors.add(createPredecessorRowFromJoinedRow(row));
+		}
+	}
+
+	private Map<String, Object> createParentRowFromJoinedRow(Map<String, Object> row) {
+		Map<String, Object> parentRow = new HashMap<>();
+		parentRow.put(ORGANISATION_ID, row.get(RELATION_ORGANISATION_ID));
+		parentRow.put("organisation_parent_id", row.get(RELATION_RELATED_ID));
+		return parentRow;
+	}
+
+	private Map<String, Object> createPredecessorRowFromJoinedRow(Map<String, Object> row) {
+		Map<String, Object> predecessorRow = new HashMap<>();
+		predecessorRow.put(ORGANISATION_ID, row.get(RELATION_ORGANISATION_ID));
+		predecessorRow.put(PREDECESSOR_ID, row.get(RELATION_RELATED_ID));
+		predecessorRow.put(DESCRIPTION, row.get(RELATION_DESCRIPTION));
+		return predecessorRow;
+	}
+
 	private DataGroup readAndConvertOrganisationFromDb(String type, String id) {
 		Map<String, Object> readRow = readOneRowFromDbUsingTypeAndId(type, id);
 		saveClosedDateIfItExists(readRow);
@@ -69,7 +320,19 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 	private Map<String, Object> readOneRowFromDbUsingTypeAndId(String type, String id) {
 		Map<String, Object> conditions = new HashMap<>();
 		conditions.put("id", id);
-		return recordReader.readOneRowFromDbUsingTableAndConditions(type, conditions);
+		try {
+			return recordReader.readOneRowFromDbUsingTableAndConditions(type, conditions);
+		} catch (SqlStorageException e) {
+			throwErrorIfNoRowExistsForTypeAndConditions(type, id, conditions);
+			throw e;
+		}
+	}
+
+	private void throwErrorIfNoRowExistsForTypeAndConditions(String type, String id,
+			Map<String, Object> conditions) {
+		List<Map<String, Object>> rows = recordReader.readFromTableUsingConditions(type,
+				conditions);
+		throwErrorIfOrganisationNotFound(id, rows);
 	}
 
 	private void saveClosedDateIfItExists(Map<String, Object> readRow) {
@@ -92,9 +355,9 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 
 	private void tryToReadAndConvertParents(String id, DataGroup organisation) {
 		Map<String, Object> conditions = new HashMap<>();
-		conditions.put("organisation_id", id);
+		conditions.put(ORGANISATION_ID, id);
 		List<Map<String, Object>> parents = recordReader
-				.readFromTableUsingConditions("divaOrganisationParent", conditions);
+				.readFromTableUsingConditions(DIVA_ORGANISATION_PARENT, conditions);
 
 		possiblyConvertParents(organisation, parents);
 	}
@@ -116,7 +379,7 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 	private void convertAndAddParent(DataGroup organisation, int repeatId,
 			Map<String, Object> parentValues) {
 		DivaDbToCoraConverter predecessorConverter = getConverterFactory()
-				.factor("divaOrganisationParent");
+				.factor(DIVA_ORGANISATION_PARENT);
 		DataGroup parent = predecessorConverter.fromMap(parentValues);
 		parent.setRepeatId(String.valueOf(repeatId));
 		organisation.addChild(parent);
@@ -124,7 +387,7 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 
 	private void tryToReadAndConvertPredecessors(String id, DataGroup organisation) {
 		Map<String, Object> conditions = new HashMap<>();
-		conditions.put("organisation_id", id);
+		conditions.put(ORGANISATION_ID, id);
 		List<Map<String, Object>> predecessors = recordReader
 				.readFromTableUsingConditions(DIVA_ORGANISATION_PREDECESSOR, conditions);
 
@@ -162,7 +425,7 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 
 	private void tryToReadAndConvertSuccessors(String id, DataGroup organisation) {
 		Map<String, Object> conditions = new HashMap<>();
-		conditions.put("predecessor_id", id);
+		conditions.put(PREDECESSOR_ID, id);
 		List<Map<String, Object>> successors = recordReader
 				.readFromTableUsingConditions(DIVA_ORGANISATION_PREDECESSOR, conditions);
 
@@ -211,4 +474,9 @@ public class DivaDbToCoraOrganisation implements DivaDbToCora {
 		// for testing
 		return converterFactory;
 	}
+
+	public DataReader getDataReader() {
+		// for testing
+		return dataReader;
+	}
 }
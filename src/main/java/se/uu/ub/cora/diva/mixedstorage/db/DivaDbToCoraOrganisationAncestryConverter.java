@@ -27,23 +27,22 @@ import se.uu.ub.cora.data.DataGroupProvider;
 public class DivaDbToCoraOrganisationAncestryConverter {
 	protected static final String PREDECESSOR_ID = "predecessor_id";
 	protected static final String ORGANISATION_ID = "organisation_id";
-	protected Map<String, Object> dbRow;
 
-	protected boolean mandatoryValuesAreMissing() {
-		return organisationIdIsMissing() || predecessorIdIsMissing();
+	protected boolean mandatoryValuesAreMissing(Map<String, Object> dbRow) {
+		return organisationIdIsMissing(dbRow) || predecessorIdIsMissing(dbRow);
 	}
 
-	protected boolean organisationIdIsMissing() {
-		return !dbRowHasValueForKey(ORGANISATION_ID);
+	protected boolean organisationIdIsMissing(Map<String, Object> dbRow) {
+		return !dbRowHasValueForKey(dbRow, ORGANISATION_ID);
 	}
 
-	protected boolean dbRowHasValueForKey(String key) {
+	protected boolean dbRowHasValueForKey(Map<String, Object> dbRow, String key) {
 		Object value = dbRow.get(key);
 		return value != null && !"".equals(value);
 	}
 
-	private boolean predecessorIdIsMissing() {
-		return !dbRowHasValueForKey(PREDECESSOR_ID);
+	private boolean predecessorIdIsMissing(Map<String, Object> dbRow) {
+		return !dbRowHasValueForKey(dbRow, PREDECESSOR_ID);
 	}
 
 	protected DataGroup createOrganisationLinkUsingLinkedRecordId(String organisationId) {
@@ -30,45 +30,46 @@ public class DivaDbToCoraOrganisationConverter implements DivaDbToCoraConverter
 
 	private static final String ORGANISATION_ID = "id";
 	private static final String ALTERNATIVE_NAME = "alternative_name";
-	private Map<String, Object> dbRow;
-	private DataGroup organisation;
+	private static final String PREDEFINED_TIMESTAMP = LocalDateTime
+			.of(2017, 01, 01, 00, 00, 00, 0)
+			.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.S"));
 
 	@Override
 	public DataGroup fromMap(Map<String, Object> dbRow) {
-		this.dbRow = dbRow;
-		if (organisationIsEmpty()) {
+		if (organisationIsEmpty(dbRow)) {
 			throw ConversionException.withMessageAndException(
 					"Error converting organisation to Cora organisation: Map does not contain value for "
 							+ ORGANISATION_ID,
 					null);
 		}
-		return createDataGroup();
+		return createDataGroup(dbRow);
 	}
 
-	private boolean organisationIsEmpty() {
+	private boolean organisationIsEmpty(Map<String, Object> dbRow) {
 		Object organisationId = dbRow.get(ORGANISATION_ID);
 		return organisationId == null || "".equals(organisationId);
 	}
 
-	private DataGroup createDataGroup() {
-		createAndAddOrganisationWithRecordInfo();
-		createAndAddName();
-		createAndAddAlternativeName();
-		createAndAddOrganisationType();
-		possiblyCreateAndAddEligibility();
-		possiblyCreateAndAddAddress();
-		possiblyCreateAndAddOrganisationNumber();
-		possiblyCreateAndAddOrganisationCode();
-		possiblyCreateAndAddURL();
+	private DataGroup createDataGroup(Map<String, Object> dbRow) {
+		DataGroup organisation = createOrganisationWithRecordInfo(dbRow);
+		createAndAddName(dbRow, organisation);
+		createAndAddAlternativeName(dbRow, organisation);
+		createAndAddOrganisationType(organisation);
+		possiblyCreateAndAddEligibility(dbRow, organisation);
+		possiblyCreateAndAddAddress(dbRow, organisation);
+		possiblyCreateAndAddOrganisationNumber(dbRow, organisation);
+		possiblyCreateAndAddOrganisationCode(dbRow, organisation);
+		possiblyCreateAndAddURL(dbRow, organisation);
 
 		return organisation;
 	}
 
-	private void createAndAddOrganisationWithRecordInfo() {
-		organisation = DataGroupProvider.getDataGroupUsingNameInData("organisation");
+	private DataGroup createOrganisationWithRecordInfo(Map<String, Object> dbRow) {
+		DataGroup organisation = DataGroupProvider.getDataGroupUsingNameInData("organisation");
 		String id = (String) dbRow.get(ORGANISATION_ID);
 		DataGroup recordInfo = createRecordInfo(id);
 		organisation.addChild(recordInfo);
+		return organisation;
 	}
 
 	private DataGroup createRecordInfo(String id) {
@@ -126,24 +127,17 @@ public class DivaDbToCoraOrganisationConverter implements DivaDbToCoraConverter
 
 	private void addPredefinedTimestampToDataGroupUsingNameInData(DataGroup recordInfo,
 			String nameInData) {
-		LocalDateTime tsCreated = LocalDateTime.of(2017, 01, 01, 00, 00, 00, 0);
-		String dateTimeString = getLocalTimeDateAsString(tsCreated);
 		recordInfo.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(nameInData,
-				dateTimeString));
-	}
-
-	private String getLocalTimeDateAsString(LocalDateTime localDateTime) {
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.S");
-		return localDateTime.format(formatter);
+				PREDEFINED_TIMESTAMP));
 	}
 
-	private void createAndAddName() {
+	private void createAndAddName(Map<String, Object> dbRow, DataGroup organisation) {
 		String divaOrganisationName = (String) dbRow.get("defaultname");
 		organisation.addChild(DataAtomicProvider
 				.getDataAtomicUsingNameInDataAndValue("organisationName", divaOrganisationName));
 	}
 
-	private void createAndAddAlternativeName() {
+	private void createAndAddAlternativeName(Map<String, Object> dbRow, DataGroup organisation) {
 		DataGroup alternativeNameDataGroup = DataGroupProvider
 				.getDataGroupUsingNameInData("alternativeName");
 		alternativeNameDataGroup.addChild(
@@ -154,20 +148,21 @@ public class DivaDbToCoraOrganisationConverter implements DivaDbToCoraConverter
 		organisation.addChild(alternativeNameDataGroup);
 	}
 
-	private void createAndAddOrganisationType() {
+	private void createAndAddOrganisationType(DataGroup organisation) {
 		organisation.addChild(DataAtomicProvider
 				.getDataAtomicUsingNameInDataAndValue("organisationType", "unit"));
 	}
 
-	private void possiblyCreateAndAddEligibility() {
+	private void possiblyCreateAndAddEligibility(Map<String, Object> dbRow,
+			DataGroup organisation) {
 		Object notEligable = dbRow.get("not_eligible");
 		if (notEligable != null) {
-			createAndAddEligibility(notEligable);
+			createAndAddEligibility(organisation, notEligable);
 
 		}
 	}
 
-	private void createAndAddEligibility(Object notEligable) {
+	private void createAndAddEligibility(DataGroup organisation, Object notEligable) {
 		String coraEligible = isEligible(notEligable) ? "yes" : "no";
 		organisation.addChild(
 				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("eligible", coraEligible));
@@ -177,56 +172,65 @@ public class DivaDbToCoraOrganisationConverter implements DivaDbToCoraConverter
 		return !(boolean) notEligable;
 	}
 
-	private void possiblyCreateAndAddAddress() {
-		possiblyAddAtomicValueUsingKeyAndNameInData("city", "city");
-		possiblyAddAtomicValueUsingKeyAndNameInData("street", "street");
-		possiblyAddAtomicValueUsingKeyAndNameInData("box", "box");
-		possiblyAddAtomicValueUsingKeyAndNameInData("postnumber", "postcode");
-		addCountryConvertedToUpperCaseOrSetDefault();
+	private void possiblyCreateAndAddAddress(Map<String, Object> dbRow, DataGroup organisation) {
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "city", "city");
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "street", "street");
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "box", "box");
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "postnumber",
+				"postcode");
+		addCountryConvertedToUpperCaseOrSetDefault(dbRow, organisation);
 	}
 
-	private void possiblyAddAtomicValueUsingKeyAndNameInData(String key, String nameInData) {
-		if (valueExistsForKey(key)) {
+	private void possiblyAddAtomicValueUsingKeyAndNameInData(Map<String, Object> dbRow,
+			DataGroup organisation, String key, String nameInData) {
+		if (valueExistsForKey(dbRow, key)) {
 			String value = (String) dbRow.get(key);
 			organisation.addChild(
 					DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(nameInData, value));
 		}
 	}
 
-	private boolean valueExistsForKey(String key) {
+	private boolean valueExistsForKey(Map<String, Object> dbRow, String key) {
 		Object value = dbRow.get(key);
 		return value != null && !"".equals(value);
 	}
 
-	private void addCountryConvertedToUpperCaseOrSetDefault() {
-		if (valueExistsForKey("country_code")) {
-			addCountryConvertedToUpperCase();
+	private void addCountryConvertedToUpperCaseOrSetDefault(Map<String, Object> dbRow,
+			DataGroup organisation) {
+		if (valueExistsForKey(dbRow, "country_code")) {
+			addCountryConvertedToUpperCase(dbRow, organisation);
 		} else {
-			setDefaultCountryCode();
+			setDefaultCountryCode(organisation);
 		}
 	}
 
-	private void addCountryConvertedToUpperCase() {
+	private void addCountryConvertedToUpperCase(Map<String, Object> dbRow,
+			DataGroup organisation) {
 		String uppercaseValue = ((String) dbRow.get("country_code")).toUpperCase();
 		organisation.addChild(
 				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("country", uppercaseValue));
 	}
 
-	private void setDefaultCountryCode() {
+	private void setDefaultCountryCode(DataGroup organisation) {
 		organisation
 				.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("country", "SE"));
 	}
 
-	private void possiblyCreateAndAddOrganisationNumber() {
-		possiblyAddAtomicValueUsingKeyAndNameInData("orgnumber", "organisationNumber");
+	private void possiblyCreateAndAddOrganisationNumber(Map<String, Object> dbRow,
+			DataGroup organisation) {
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "orgnumber",
+				"organisationNumber");
 	}
 
-	private void possiblyCreateAndAddOrganisationCode() {
-		possiblyAddAtomicValueUsingKeyAndNameInData("organisation_code", "organisationCode");
+	private void possiblyCreateAndAddOrganisationCode(Map<String, Object> dbRow,
+			DataGroup organisation) {
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "organisation_code",
+				"organisationCode");
 	}
 
-	private void possiblyCreateAndAddURL() {
-		possiblyAddAtomicValueUsingKeyAndNameInData("organisation_homepage", "URL");
+	private void possiblyCreateAndAddURL(Map<String, Object> dbRow, DataGroup organisation) {
+		possiblyAddAtomicValueUsingKeyAndNameInData(dbRow, organisation, "organisation_homepage",
+				"URL");
 	}
 
-}
\ No newline at end of file
+}
@@ -28,32 +28,31 @@ public class DivaDbToCoraOrganisationParentConverter
 
 	@Override
 	public DataGroup fromMap(Map<String, Object> dbRow) {
-		this.dbRow = dbRow;
-		if (mandatoryValuesAreMissing()) {
+		if (mandatoryValuesAreMissing(dbRow)) {
 			throw ConversionException.withMessageAndException(
 					"Error converting organisation parent to Cora organisation parent: Map does not "
 							+ "contain mandatory values for organisation id and parent id",
 					null);
 		}
-		return createDataGroup();
+		return createDataGroup(dbRow);
 	}
 
 	@Override
-	protected boolean mandatoryValuesAreMissing() {
-		return organisationIdIsMissing() || parentIdIsMissing();
+	protected boolean mandatoryValuesAreMissing(Map<String, Object> dbRow) {
+		return organisationIdIsMissing(dbRow) || parentIdIsMissing(dbRow);
 	}
 
-	protected boolean parentIdIsMissing() {
-		return !dbRowHasValueForKey("organisation_parent_id");
+	protected boolean parentIdIsMissing(Map<String, Object> dbRow) {
+		return !dbRowHasValueForKey(dbRow, "organisation_parent_id");
 	}
 
-	private DataGroup createDataGroup() {
+	private DataGroup createDataGroup(Map<String, Object> dbRow) {
 		DataGroup parent = DataGroupProvider.getDataGroupUsingNameInData("parentOrganisation");
-		addParentLink(parent);
+		addParentLink(dbRow, parent);
 		return parent;
 	}
 
-	private void addParentLink(DataGroup formerName) {
+	private void addParentLink(Map<String, Object> dbRow, DataGroup formerName) {
 		String predecessorId = String.valueOf(dbRow.get("organisation_parent_id"));
 		DataGroup predecessor = createOrganisationLinkUsingLinkedRecordId(predecessorId);
 		formerName.addChild(predecessor);
@@ -31,37 +31,36 @@ public class DivaDbToCoraOrganisationPredecessorConverter
 
 	@Override
 	public DataGroup fromMap(Map<String, Object> dbRow) {
-		this.dbRow = dbRow;
-		if (mandatoryValuesAreMissing()) {
+		if (mandatoryValuesAreMissing(dbRow)) {
 			throw ConversionException.withMessageAndException(
 					"Error converting organisation predecessor to Cora organisation predecessor: Map does not "
 							+ "contain mandatory values for organisation id and predecessor id",
 					null);
 		}
-		return createDataGroup();
+		return createDataGroup(dbRow);
 	}
 
-	private DataGroup createDataGroup() {
+	private DataGroup createDataGroup(Map<String, Object> dbRow) {
 		DataGroup formerName = DataGroupProvider.getDataGroupUsingNameInData("formerName");
-		addPredecessorLink(formerName);
-		possiblyAddDescription(formerName);
+		addPredecessorLink(dbRow, formerName);
+		possiblyAddDescription(dbRow, formerName);
 		return formerName;
 	}
 
-	private void addPredecessorLink(DataGroup formerName) {
+	private void addPredecessorLink(Map<String, Object> dbRow, DataGroup formerName) {
 		DataGroup predecessor = createOrganisationLinkUsingLinkedRecordId(
 				(String) dbRow.get(PREDECESSOR_ID));
 		formerName.addChild(predecessor);
 	}
 
-	private void possiblyAddDescription(DataGroup formerName) {
-		if (predecessorHasDescription()) {
+	private void possiblyAddDescription(Map<String, Object> dbRow, DataGroup formerName) {
+		if (predecessorHasDescription(dbRow)) {
 			formerName.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(
 					"organisationComment", (String) dbRow.get(DESCRIPTION)));
 		}
 	}
 
-	private boolean predecessorHasDescription() {
-		return dbRowHasValueForKey(DESCRIPTION);
+	private boolean predecessorHasDescription(Map<String, Object> dbRow) {
+		return dbRowHasValueForKey(dbRow, DESCRIPTION);
 	}
 }
@@ -29,39 +29,38 @@ public class DivaDbToCoraOrganisationSuccessorConverter
 
 	@Override
 	public DataGroup fromMap(Map<String, Object> dbRow) {
-		this.dbRow = dbRow;
-		if (mandatoryValuesAreMissing()) {
+		if (mandatoryValuesAreMissing(dbRow)) {
 			throw ConversionException.withMessageAndException(
 					"Error converting organisation successor to Cora organisation successor: Map does not "
 							+ "contain mandatory values for organisation id and prdecessor id",
 					null);
 		}
-		return createDataGroup();
+		return createDataGroup(dbRow);
 	}
 
-	private DataGroup createDataGroup() {
+	private DataGroup createDataGroup(Map<String, Object> dbRow) {
 		DataGroup closed = DataGroupProvider.getDataGroupUsingNameInData("closed");
-		addSuccessorLink(closed);
-		possiblyAddClosedDate(closed);
+		addSuccessorLink(dbRow, closed);
+		possiblyAddClosedDate(dbRow, closed);
 		return closed;
 	}
 
-	private void addSuccessorLink(DataGroup closed) {
+	private void addSuccessorLink(Map<String, Object> dbRow, DataGroup closed) {
 		String id = (String) dbRow.get(ORGANISATION_ID);
 		DataGroup successor = createOrganisationLinkUsingLinkedRecordId(id);
 		closed.addChild(successor);
 	}
 
-	private void possiblyAddClosedDate(DataGroup closed) {
-		if (successorHasClosedDate()) {
+	private void possiblyAddClosedDate(Map<String, Object> dbRow, DataGroup closed) {
+		if (successorHasClosedDate(dbRow)) {
 			String closedDateAsString = (String) dbRow.get("closed_date");
 			closed.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("closedDate",
 					closedDateAsString));
 		}
 	}
 
-	private boolean successorHasClosedDate() {
-		return dbRowHasValueForKey("closed_date");
+	private boolean successorHasClosedDate(Map<String, Object> dbRow) {
+		return dbRowHasValueForKey(dbRow, "closed_date");
 	}
 
 }
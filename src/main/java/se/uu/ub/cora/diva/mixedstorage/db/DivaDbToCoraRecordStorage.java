@@ -18,14 +18,16 @@
  */
 package se.uu.ub.cora.diva.mixedstorage.db;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.diva.mixedstorage.RecordExistenceStorage;
 import se.uu.ub.cora.sqldatabase.RecordReader;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
 import se.uu.ub.cora.sqldatabase.RecordUpdater;
@@ -35,20 +37,34 @@ import se.uu.ub.cora.storage.RecordNotFoundException;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
-public class DivaDbToCoraRecordStorage implements RecordStorage {
+public class DivaDbToCoraRecordStorage implements RecordStorage, RecordExistenceStorage {
 
 	private static final String DIVA_ORGANISATION = "divaOrganisation";
 	private RecordReaderFactory recordReaderFactory;
 	private DivaDbToCoraConverterFactory converterFactory;
 	private DivaDbToCoraFactory divaDbToCoraFactory;
 	private static RecordUpdaterFactory recordUpdaterFactory;
+	private DivaDbCursorReader cursorReader;
+	private DivaDbOrganisationExistenceChecker existenceChecker;
+	private DivaDbOrganisationCache organisationCache;
+	private DivaDbOrganisationAncestryIndex organisationAncestryIndex;
+	private DivaDbOrganisationLineageIndex organisationLineageIndex;
 
 	private DivaDbToCoraRecordStorage(RecordReaderFactory recordReaderFactory,
 			DivaDbToCoraConverterFactory converterFactory,
-			DivaDbToCoraFactory divaDbToCoraFactory) {
+			DivaDbToCoraFactory divaDbToCoraFactory, DivaDbCursorReader cursorReader,
+			DivaDbOrganisationExistenceChecker existenceChecker,
+			DivaDbOrganisationCache organisationCache) {
 		this.recordReaderFactory = recordReaderFactory;
 		this.converterFactory = converterFactory;
 		this.divaDbToCoraFactory = divaDbToCoraFactory;
+		this.cursorReader = cursorReader;
+		this.existenceChecker = existenceChecker;
+		this.organisationCache = organisationCache;
+		organisationAncestryIndex = DivaDbOrganisationAncestryIndex
+				.usingRecordReaderFactory(recordReaderFactory);
+		organisationLineageIndex = DivaDbOrganisationLineageIndex
+				.usingRecordReaderFactory(recordReaderFactory);
 	}
 
 	public static DivaDbToCoraRecordStorage usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactory(
@@ -56,18 +72,49 @@ public class DivaDbToCoraRecordStorage implements RecordStorage {
 			DivaDbToCoraFactory divaDbToCoraFactory, RecordUpdaterFactory recordUpdaterFactory) {
 		DivaDbToCoraRecordStorage.recordUpdaterFactory = recordUpdaterFactory;
 		return new DivaDbToCoraRecordStorage(recordReaderFactory, converterFactory,
-				divaDbToCoraFactory);
+				divaDbToCoraFactory, null, null, null);
+	}
+
+	public static DivaDbToCoraRecordStorage usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
+			RecordReaderFactory recordReaderFactory, DivaDbToCoraConverterFactory converterFactory,
+			DivaDbToCoraFactory divaDbToCoraFactory, RecordUpdaterFactory recordUpdaterFactory,
+			DivaDbCursorReader cursorReader, DivaDbOrganisationExistenceChecker existenceChecker,
+			DivaDbOrganisationCache organisationCache) {
+		DivaDbToCoraRecordStorage.recordUpdaterFactory = recordUpdaterFactory;
+		return new DivaDbToCoraRecordStorage(recordReaderFactory, converterFactory,
+				divaDbToCoraFactory, cursorReader, existenceChecker, organisationCache);
 	}
 
 	@Override
 	public DataGroup read(String type, String id) {
 		if (DIVA_ORGANISATION.equals(type)) {
-			DivaDbToCora divaDbToCora = divaDbToCoraFactory.factor(type);
-			return divaDbToCora.convertOneRowData(type, id);
+			return readOrganisation(type, id);
 		}
 		throw NotImplementedException.withMessage("read is not implemented for type: " + type);
 	}
 
+	private DataGroup readOrganisation(String type, String id) {
+		if (organisationCache == null) {
+			return readOrganisationFromDb(type, id);
+		}
+		return readOrganisationUsingCache(type, id);
+	}
+
+	private DataGroup readOrganisationFromDb(String type, String id) {
+		DivaDbToCora divaDbToCora = divaDbToCoraFactory.factor(type);
+		return divaDbToCora.convertOneRowData(type, id);
+	}
+
+	private DataGroup readOrganisationUsingCache(String type, String id) {
+		DataGroup cachedOrganisation = organisationCache.getCopyOfOrganisation(id);
+		if (cachedOrganisation != null) {
+			return cachedOrganisation;
+		}
+		DataGroup organisation = readOrganisationFromDb(type, id);
+		organisationCache.putCopyOfOrganisation(id, organisation);
+		return organisation;
+	}
+
 	@Override
 	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
@@ -100,6 +147,28 @@ public class DivaDbToCoraRecordStorage implements RecordStorage {
 		Map<String, Object> conditions = createConditionsAddingOrganisationId(id);
 		recordUpdater.updateTableUsingNameAndColumnsWithValuesAndConditions("organisation", columnsWithValues,
 				conditions);
+		organisationAncestryIndex.markParentsOfOrganisationAsChanged(id);
+		organisationLineageIndex.invalidateIfRelationsOfOrganisationDiffer(id,
+				collectLinkedOrganisationIds(record, "formerName"),
+				collectLinkedOrganisationIds(record, "closed"));
+		possiblyInvalidateCachedOrganisations(id, record);
+	}
+
+	private Set<String> collectLinkedOrganisationIds(DataGroup record, String relationName) {
+		Set<String> linkedIds = new LinkedHashSet<>();
+		for (DataGroup relation : record.getAllGroupsWithNameInData(relationName)) {
+			if (relation.containsChildWithNameInData("organisationLink")) {
+				linkedIds.add(relation.getFirstGroupWithNameInData("organisationLink")
+						.getFirstAtomicValueWithNameInData("linkedRecordId"));
+			}
+		}
+		return linkedIds;
+	}
+
+	private void possiblyInvalidateCachedOrganisations(String id, DataGroup record) {
+		if (organisationCache != null) {
+			organisationCache.invalidateOrganisationAndRelatedOrganisations(id, record);
+		}
 	}
 
 	private Map<String, Object> createColumnsWithValuesForUpdateQuery(DataGroup record) {
@@ -127,37 +196,24 @@ public class DivaDbToCoraRecordStorage implements RecordStorage {
 	@Override
 	public StorageReadResult readList(String type, DataGroup filter) {
 		if (DIVA_ORGANISATION.equals(type)) {
-			List<Map<String, Object>> rowsFromDb = readAllFromDb(type);
-			return createStorageReadResultFromDbData(type, rowsFromDb);
+			DivaDbToCora divaDbToCora = divaDbToCoraFactory.factor(type);
+			return divaDbToCora.convertRowDataUsingFilter(type, filter);
 		}
 		throw NotImplementedException.withMessage("readList is not implemented for type: " + type);
 	}
 
-	private List<Map<String, Object>> readAllFromDb(String type) {
-		RecordReader recordReader = recordReaderFactory.factor();
-		return recordReader.readAllFromTable(type);
-	}
-
-	private StorageReadResult createStorageReadResultFromDbData(String type,
-			List<Map<String, Object>> rowsFromDb) {
-		StorageReadResult storageReadResult = new StorageReadResult();
-		storageReadResult.listOfDataGroups = convertListOfMapsFromDbToDataGroups(type, rowsFromDb);
-		return storageReadResult;
+	public void readAllOrganisationsUsingConsumer(Consumer<DataGroup> organisationConsumer) {
+		throwErrorIfNoCursorReader();
+		DivaDbToCoraConverter dbToCoraConverter = converterFactory.factor(DIVA_ORGANISATION);
+		cursorReader.readAllFromTableUsingRowConsumer(DIVA_ORGANISATION,
+				row -> organisationConsumer.accept(dbToCoraConverter.fromMap(row)));
 	}
 
-	private List<DataGroup> convertListOfMapsFromDbToDataGroups(String type,
-			List<Map<String, Object>> readAllFromTable) {
-		List<DataGroup> convertedList = new ArrayList<>(readAllFromTable.size());
-		for (Map<String, Object> map : readAllFromTable) {
-			DataGroup convertedGroup = convertOneMapFromDbToDataGroup(type, map);
-			convertedList.add(convertedGroup);
+	private void throwErrorIfNoCursorReader() {
+		if (cursorReader == null) {
+			throw NotImplementedException
+					.withMessage("readAllOrganisationsUsingConsumer needs a cursor reader");
 		}
-		return convertedList;
-	}
-
-	private DataGroup convertOneMapFromDbToDataGroup(String type, Map<String, Object> readRow) {
-		DivaDbToCoraConverter dbToCoraConverter = converterFactory.factor(type);
-		return dbToCoraConverter.fromMap(readRow);
 	}
 
 	@Override
@@ -185,12 +241,42 @@ public class DivaDbToCoraRecordStorage implements RecordStorage {
 	public boolean recordExistsForAbstractOrImplementingRecordTypeAndRecordId(String type,
 			String id) {
 		if (DIVA_ORGANISATION.equals(type)) {
-			return organisationExistsInDb(id);
+			return organisationExists(id);
 		}
 		throw NotImplementedException.withMessage(
 				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId is not implemented");
 	}
 
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		if (DIVA_ORGANISATION.equals(type)) {
+			return readExistingOrganisationIds(ids);
+		}
+		throw NotImplementedException.withMessage(
+				"readExistingRecordIdsForRecordTypeAndRecordIds is not implemented for " + type);
+	}
+
+	private Set<String> readExistingOrganisationIds(Collection<String> ids) {
+		if (existenceChecker != null) {
+			return existenceChecker.readExistingOrganisationIds(ids);
+		}
+		Set<String> existingIds = new LinkedHashSet<>();
+		for (String id : ids) {
+			if (organisationExistsInDb(id)) {
+				existingIds.add(id);
+			}
+		}
+		return existingIds;
+	}
+
+	private boolean organisationExists(String id) {
+		if (existenceChecker != null) {
+			return existenceChecker.organisationExists(id);
+		}
+		return organisationExistsInDb(id);
+	}
+
 	private boolean organisationExistsInDb(String id) {
 		try {
 			tryToReadOrganisationFromDb(id);
@@ -225,6 +311,29 @@ public class DivaDbToCoraRecordStorage implements RecordStorage {
 		return divaDbToCoraFactory;
 	}
 
+	public DivaDbCursorReader getCursorReader() {
+		// needed for test
+		return cursorReader;
+	}
+
+	public DivaDbOrganisationExistenceChecker getExistenceChecker() {
+		// needed for test
+		return existenceChecker;
+	}
+
+	public DivaDbOrganisationAncestryIndex getOrganisationAncestryIndex() {
+		return organisationAncestryIndex;
+	}
+
+	public DivaDbOrganisationLineageIndex getOrganisationLineageIndex() {
+		return organisationLineageIndex;
+	}
+
+	public DivaDbOrganisationCache getOrganisationCache() {
+		// needed for test
+		return organisationCache;
+	}
+
 	public RecordUpdaterFactory getRecordUpdaterFactory() {
 		// needed for test
 		return recordUpdaterFactory;
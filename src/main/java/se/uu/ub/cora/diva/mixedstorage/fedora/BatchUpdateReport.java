@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.List;
+import java.util.Map;
+
+public final class BatchUpdateReport {
+	private List<String> updatedIds;
+	private Map<String, Exception> failures;
+
+	private BatchUpdateReport(List<String> updatedIds, Map<String, Exception> failures) {
+		this.updatedIds = updatedIds;
+		this.failures = failures;
+	}
+
+	static BatchUpdateReport usingUpdatedIdsAndFailures(List<String> updatedIds,
+			Map<String, Exception> failures) {
+		return new BatchUpdateReport(updatedIds, failures);
+	}
+
+	public List<String> getUpdatedIds() {
+		return updatedIds;
+	}
+
+	public Map<String, Exception> getFailures() {
+		return failures;
+	}
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public boolean wasUpdated(String id) {
+		return updatedIds.contains(id);
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public final class CachedPerson {
+	private DataGroup dataGroup;
+	private String xml;
+	private DatastreamVersion version;
+
+	private CachedPerson(DataGroup dataGroup, String xml, DatastreamVersion version) {
+		this.dataGroup = dataGroup;
+		this.xml = xml;
+		this.version = version;
+	}
+
+	static CachedPerson usingDataGroupAndXMLAndVersion(DataGroup dataGroup, String xml,
+			DatastreamVersion version) {
+		return new CachedPerson(dataGroup, xml, version);
+	}
+
+	public DataGroup getDataGroup() {
+		return dataGroup;
+	}
+
+	public String getXML() {
+		return xml;
+	}
+
+	public DatastreamVersion getVersion() {
+		return version;
+	}
+
+}
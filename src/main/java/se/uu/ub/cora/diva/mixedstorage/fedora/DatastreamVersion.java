@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+public final class DatastreamVersion {
+	private String checksumType;
+	private String checksum;
+	private String lastModified;
+
+	private DatastreamVersion(String checksumType, String checksum, String lastModified) {
+		this.checksumType = checksumType;
+		this.checksum = checksum;
+		this.lastModified = lastModified;
+	}
+
+	public static DatastreamVersion usingChecksumAndLastModified(String checksum,
+			String lastModified) {
+		return new DatastreamVersion(null, checksum, lastModified);
+	}
+
+	public static DatastreamVersion usingChecksumTypeAndChecksumAndLastModified(
+			String checksumType, String checksum, String lastModified) {
+		return new DatastreamVersion(checksumType, checksum, lastModified);
+	}
+
+	public String getChecksumType() {
+		return checksumType;
+	}
+
+	public String getChecksum() {
+		return checksum;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public boolean isSameVersionAs(DatastreamVersion other) {
+		return other != null && Objects.equals(checksum, other.checksum)
+				&& Objects.equals(lastModified, other.lastModified);
+	}
+
+	public boolean isChecksumOfContent(String content) {
+		if (checksumType == null || checksum == null || content == null) {
+			return false;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance(checksumType);
+			byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+			return checksum.equalsIgnoreCase(toHex(hash));
+		} catch (NoSuchAlgorithmException e) {
+			return false;
+		}
+	}
+
+	private String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
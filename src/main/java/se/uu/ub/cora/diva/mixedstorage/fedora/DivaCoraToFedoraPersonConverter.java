@@ -42,7 +42,12 @@ public class DivaCoraToFedoraPersonConverter implements DivaCoraToFedoraConverte
 	public String toXML(DataGroup record) {
 		String recordId = getIdFromRecord(record);
 		String fedoraXML = getXMLForRecordFromFedora(recordId);
-		parser = XMLXPathParser.forXML(fedoraXML);
+		return toXMLUsingRecordAndCurrentFedoraXML(record, fedoraXML);
+	}
+
+	@Override
+	public String toXMLUsingRecordAndCurrentFedoraXML(DataGroup record, String currentFedoraXML) {
+		parser = XMLXPathParser.forXML(currentFedoraXML);
 		convertNames(record);
 		return parser.getDocumentAsString("/");
 	}
@@ -25,23 +25,37 @@ import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 public class DivaFedoraConverterFactoryImp implements DivaFedoraConverterFactory {
 
 	private String fedoraURL;
+	private boolean streamingPersonConversion;
 
 	public static DivaFedoraConverterFactoryImp usingFedoraURL(String fedoraURL) {
-		return new DivaFedoraConverterFactoryImp(fedoraURL);
+		return new DivaFedoraConverterFactoryImp(fedoraURL, false);
 	}
 
-	private DivaFedoraConverterFactoryImp(String fedoraURL) {
+	public static DivaFedoraConverterFactoryImp usingFedoraURLAndStreamingPersonConversion(
+			String fedoraURL, boolean streamingPersonConversion) {
+		return new DivaFedoraConverterFactoryImp(fedoraURL, streamingPersonConversion);
+	}
+
+	private DivaFedoraConverterFactoryImp(String fedoraURL, boolean streamingPersonConversion) {
 		this.fedoraURL = fedoraURL;
+		this.streamingPersonConversion = streamingPersonConversion;
 	}
 
 	@Override
 	public DivaFedoraToCoraConverter factorToCoraConverter(String type) {
 		if ("person".equals(type)) {
-			return new DivaFedoraToCoraPersonConverter();
+			return factorToCoraPersonConverter();
 		}
 		throw NotImplementedException.withMessage("No converter implemented for: " + type);
 	}
 
+	private DivaFedoraToCoraConverter factorToCoraPersonConverter() {
+		if (streamingPersonConversion) {
+			return new DivaFedoraToCoraPersonStaxConverter();
+		}
+		return new DivaFedoraToCoraPersonConverter();
+	}
+
 	@Override
 	public DivaCoraToFedoraConverter factorToFedoraConverter(String type) {
 		if ("person".equals(type)) {
@@ -57,4 +71,9 @@ public class DivaFedoraConverterFactoryImp implements DivaFedoraConverterFactory
 		return fedoraURL;
 	}
 
+	public boolean getStreamingPersonConversion() {
+		// needed for tests
+		return streamingPersonConversion;
+	}
+
 }
@@ -22,58 +22,148 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupCopier;
 import se.uu.ub.cora.diva.mixedstorage.FedoraException;
+import se.uu.ub.cora.diva.mixedstorage.InvalidFilterException;
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
 import se.uu.ub.cora.httphandler.HttpHandler;
 import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
 public final class DivaFedoraRecordStorage implements RecordStorage {
 
 	private static final int OK = 200;
+	private static final int CONFLICT = 409;
 	private static final String PERSON = "person";
+	private static final int PERSON_LIST_PAGE_SIZE = 100;
+	private static final int PENDING_BATCH_UPDATES_PER_FETCH = 2;
+	private Logger log = LoggerProvider.getLoggerForClass(DivaFedoraRecordStorage.class);
 	private HttpHandlerFactory httpHandlerFactory;
 	private String baseURL;
 	private DivaFedoraConverterFactory converterFactory;
+	private ParallelFetcher parallelFetcher;
+	private ParallelFetcher batchUpdateFetcher;
+	private TimedLruCache<String, CachedPerson> personCache;
+	private boolean revalidateExpiredPersons;
 	private String username;
 	private String password;
 
 	private DivaFedoraRecordStorage(HttpHandlerFactory httpHandlerFactory,
 			DivaFedoraConverterFactory converterFactory, String baseURL, String username,
-			String password) {
+			String password, DivaFedoraRecordStorageOptions options) {
 		this.httpHandlerFactory = httpHandlerFactory;
 		this.converterFactory = converterFactory;
 		this.baseURL = baseURL;
 		this.username = username;
 		this.password = password;
+		parallelFetcher = options.getParallelFetcher();
+		batchUpdateFetcher = options.getBatchUpdateFetcher();
+		personCache = options.getPersonCache();
+		revalidateExpiredPersons = options.getRevalidateExpiredPersons();
 	}
 
 	public static DivaFedoraRecordStorage usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPassword(
 			HttpHandlerFactory httpHandlerFactory, DivaFedoraConverterFactory converterFactory,
 			String baseURL, String username, String password) {
 		return new DivaFedoraRecordStorage(httpHandlerFactory, converterFactory, baseURL, username,
-				password);
+				password, DivaFedoraRecordStorageOptions.createDefaultOptions());
+	}
+
+	public static DivaFedoraRecordStorage usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPasswordAndOptions(
+			HttpHandlerFactory httpHandlerFactory, DivaFedoraConverterFactory converterFactory,
+			String baseURL, String username, String password,
+			DivaFedoraRecordStorageOptions options) {
+		return new DivaFedoraRecordStorage(httpHandlerFactory, converterFactory, baseURL, username,
+				password, options);
 	}
 
 	@Override
 	public DataGroup read(String type, String id) {
 		if (PERSON.equals(type)) {
-			return readAndConvertPersonFromFedora(id);
+			return readPersonFromCacheOrFedora(id);
 		}
 		throw NotImplementedException.withMessage("read is not implemented for type: " + type);
 	}
 
-	private DataGroup readAndConvertPersonFromFedora(String id) {
+	private DataGroup readPersonFromCacheOrFedora(String id) {
+		CachedPerson cachedPerson = personCache.get(id);
+		if (cachedPerson != null) {
+			return DataGroupCopier.copyDataGroup(cachedPerson.getDataGroup());
+		}
+		return readPersonFromFedoraAndCache(id);
+	}
+
+	private DataGroup readPersonFromFedoraAndCache(String id) {
+		if (!revalidateExpiredPersons) {
+			return readAndConvertPersonFromFedoraAndCacheCopy(id, null);
+		}
+		DatastreamVersion currentVersion = readMetadataVersionFromFedora(id);
+		CachedPerson expiredPerson = personCache.getIncludingExpired(id);
+		if (expiredPersonIsSameVersion(expiredPerson, currentVersion)) {
+			personCache.put(id, expiredPerson);
+			return DataGroupCopier.copyDataGroup(expiredPerson.getDataGroup());
+		}
+		return readAndConvertPersonFromFedoraAndCacheCopy(id, currentVersion);
+	}
+
+	private boolean expiredPersonIsSameVersion(CachedPerson expiredPerson,
+			DatastreamVersion currentVersion) {
+		return expiredPerson != null && currentVersion.isSameVersionAs(expiredPerson.getVersion());
+	}
+
+	private DataGroup readAndConvertPersonFromFedoraAndCacheCopy(String id,
+			DatastreamVersion version) {
+		CachedPerson person = readAndConvertPersonFromFedoraUsingVersion(id, version);
+		personCache.put(id,
+				CachedPerson.usingDataGroupAndXMLAndVersion(
+						DataGroupCopier.copyDataGroup(person.getDataGroup()), person.getXML(),
+						person.getVersion()));
+		return person.getDataGroup();
+	}
+
+	private DatastreamVersion readMetadataVersionFromFedora(String id) {
+		HttpHandler httpHandler = createHttpHandlerForMetadataProfile(id);
+		String responseText = httpHandler.getResponseText();
+		XMLXPathParser parser = XMLXPathParser.forXML(responseText);
+		String checksumType = parser
+				.getStringFromDocumentUsingXPath("/datastreamProfile/dsChecksumType/text()");
+		String checksum = parser
+				.getStringFromDocumentUsingXPath("/datastreamProfile/dsChecksum/text()");
+		String lastModified = parser
+				.getStringFromDocumentUsingXPath("/datastreamProfile/dsCreateDate/text()");
+		return DatastreamVersion.usingChecksumTypeAndChecksumAndLastModified(checksumType,
+				checksum, lastModified);
+	}
+
+	private HttpHandler createHttpHandlerForMetadataProfile(String id) {
+		String url = baseURL + "objects/" + id + "/datastreams/METADATA?format=xml";
+		HttpHandler httpHandler = httpHandlerFactory.factor(url);
+		httpHandler.setRequestMethod("GET");
+		return httpHandler;
+	}
+
+	private CachedPerson readAndConvertPersonFromFedoraUsingVersion(String id,
+			DatastreamVersion version) {
 		HttpHandler httpHandler = createHttpHandlerForPerson(id);
+		String xml = httpHandler.getResponseText();
 		DivaFedoraToCoraConverter toCoraConverter = converterFactory.factorToCoraConverter(PERSON);
-		return toCoraConverter.fromXML(httpHandler.getResponseText());
+		DataGroup dataGroup = toCoraConverter.fromXML(xml);
+		return CachedPerson.usingDataGroupAndXMLAndVersion(dataGroup, xml, version);
 	}
 
 	private HttpHandler createHttpHandlerForPerson(String id) {
@@ -110,16 +200,81 @@ public final class DivaFedoraRecordStorage implements RecordStorage {
 		}
 	}
 
+	public BatchUpdateReport updatePersonsUsingRecordsById(Map<String, DataGroup> recordsById) {
+		List<String> ids = new ArrayList<>(recordsById.keySet());
+		ParallelFetchResult<String> updateResult = batchUpdateFetcher
+				.fetchInOrderUsingIdsAndFetchFunctionAndMaxPendingFetches(ids,
+						id -> convertAndWritePersonReturningId(id, recordsById.get(id)),
+						batchUpdateFetcher.getMaxConcurrentFetches()
+								* PENDING_BATCH_UPDATES_PER_FETCH);
+		return BatchUpdateReport.usingUpdatedIdsAndFailures(updateResult.getResults(),
+				updateResult.getFailures());
+	}
+
+	private String convertAndWritePersonReturningId(String id, DataGroup record) {
+		convertAndWritePlaceToFedora(PERSON, id, record);
+		return id;
+	}
+
 	private void convertAndWritePlaceToFedora(String type, String id, DataGroup record) {
 		try {
 			tryToConvertAndWritePlaceToFedora(type, id, record);
 		} catch (Exception e) {
 			throw FedoraException
 					.withMessageAndException("update to fedora failed for record: " + id, e);
+		} finally {
+			personCache.invalidate(id);
 		}
 	}
 
 	private void tryToConvertAndWritePlaceToFedora(String type, String id, DataGroup record) {
+		CachedPerson currentPerson = personCache.getIncludingExpired(id);
+		if (currentPerson != null) {
+			convertAndWriteUsingCurrentPersonRetryingOnceOnConflict(type, id, record,
+					ensurePersonHasVersion(id, currentPerson));
+		} else {
+			convertAndWriteReadingCurrentXMLInConverter(type, id, record);
+		}
+	}
+
+	private CachedPerson ensurePersonHasVersion(String id, CachedPerson cachedPerson) {
+		if (cachedPerson.getVersion() != null) {
+			return cachedPerson;
+		}
+		DatastreamVersion currentVersion = readMetadataVersionFromFedora(id);
+		if (currentVersion.isChecksumOfContent(cachedPerson.getXML())) {
+			return CachedPerson.usingDataGroupAndXMLAndVersion(cachedPerson.getDataGroup(),
+					cachedPerson.getXML(), currentVersion);
+		}
+		return readAndConvertPersonFromFedoraUsingVersion(id, currentVersion);
+	}
+
+	private void convertAndWriteUsingCurrentPersonRetryingOnceOnConflict(String type, String id,
+			DataGroup record, CachedPerson currentPerson) {
+		int responseCode = convertAndWriteUsingCurrentPerson(type, id, record, currentPerson);
+		if (CONFLICT == responseCode) {
+			CachedPerson personFromFedora = readAndConvertPersonFromFedoraUsingVersion(id,
+					readMetadataVersionFromFedora(id));
+			responseCode = convertAndWriteUsingCurrentPerson(type, id, record, personFromFedora);
+		}
+		throwErrorIfNotOkFromFedora(id, responseCode);
+	}
+
+	private int convertAndWriteUsingCurrentPerson(String type, String id, DataGroup record,
+			CachedPerson currentPerson) {
+		String lastModified = currentPerson.getVersion().getLastModified();
+		String url = createUrlForWritingMetadataStreamToFedora(id) + "&lastModifiedDate="
+				+ lastModified;
+		HttpHandler httpHandler = createHttpHandlerForUpdatingDatastreamUsingURL(url);
+		DivaCoraToFedoraConverter converter = converterFactory.factorToFedoraConverter(type);
+		String fedoraXML = converter.toXMLUsingRecordAndCurrentFedoraXML(record,
+				currentPerson.getXML());
+		httpHandler.setOutput(fedoraXML);
+		return httpHandler.getResponseCode();
+	}
+
+	private void convertAndWriteReadingCurrentXMLInConverter(String type, String id,
+			DataGroup record) {
 		String url = createUrlForWritingMetadataStreamToFedora(id);
 		HttpHandler httpHandler = createHttpHandlerForUpdatingDatastreamUsingURL(url);
 		String fedoraXML = convertRecordToFedoraXML(type, record);
@@ -165,59 +320,104 @@ public final class DivaFedoraRecordStorage implements RecordStorage {
 	@Override
 	public StorageReadResult readList(String type, DataGroup filter) {
 		if (PERSON.equals(type)) {
-			return readAndConvertPersonListFromFedora();
+			return readAndConvertPersonListFromFedora(filter);
 		}
 		throw NotImplementedException.withMessage("readList is not implemented for type: " + type);
 	}
 
-	private StorageReadResult readAndConvertPersonListFromFedora() {
+	private StorageReadResult readAndConvertPersonListFromFedora(DataGroup filter) {
+		Iterator<DataGroup> persons = readPersonsUsingFilter(filter);
 		try {
-			return tryGetStorageReadResultFromFedoraPersonListConversion();
+			return tryGetStorageReadResultFromFedoraPersonListConversion(persons);
 		} catch (Exception e) {
 			throw FedoraException.withMessageAndException(
 					"Unable to read list of persons: " + e.getMessage(), e);
 		}
 	}
 
-	private StorageReadResult tryGetStorageReadResultFromFedoraPersonListConversion() {
+	private StorageReadResult tryGetStorageReadResultFromFedoraPersonListConversion(
+			Iterator<DataGroup> persons) {
 		StorageReadResult storageReadResult = new StorageReadResult();
-		storageReadResult.listOfDataGroups = (List<DataGroup>) tryReadAndConvertPersonListFromFedora();
+		List<DataGroup> personList = new ArrayList<>();
+		persons.forEachRemaining(personList::add);
+		storageReadResult.listOfDataGroups = personList;
 		return storageReadResult;
 	}
 
-	private Collection<DataGroup> tryReadAndConvertPersonListFromFedora() {
-		String personListXML = getPersonListXMLFromFedora();
-		NodeList list = extractNodeListWithPidsFromXML(personListXML);
-		return constructCollectionOfPersonFromFedora(list);
+	public Stream<DataGroup> streamPersonsUsingFilter(DataGroup filter) {
+		Spliterator<DataGroup> spliterator = Spliterators.spliteratorUnknownSize(
+				readPersonsUsingFilter(filter), Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false);
+	}
+
+	public Iterator<DataGroup> readPersonsUsingFilter(DataGroup filter) {
+		long fromNo = getNumberFromFilterOrDefault(filter, "fromNo", 1);
+		long toNo = getNumberFromFilterOrDefault(filter, "toNo",
+				fromNo + PERSON_LIST_PAGE_SIZE - 1);
+		return PagedPersonIterator
+				.usingPidPageReaderAndPersonFetchStarterAndFetchResultHandlerAndFromNoAndToNo(
+						this::readPersonPidPageFromFedora, this::startFetchOfPersons,
+						this::logFailedFetchesAndGetResults, fromNo, toNo);
+	}
+
+	private long getNumberFromFilterOrDefault(DataGroup filter, String nameInData,
+			long defaultValue) {
+		if (filter == null || !filter.containsChildWithNameInData(nameInData)) {
+			return defaultValue;
+		}
+		return tryToParseNumberFromFilter(filter, nameInData);
+	}
+
+	private long tryToParseNumberFromFilter(DataGroup filter, String nameInData) {
+		String value = filter.getFirstAtomicValueWithNameInData(nameInData);
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw InvalidFilterException.withMessageAndException(
+					nameInData + " in filter must be a number, was: " + value, e);
+		}
+	}
+
+	private FedoraPidPage readPersonPidPageFromFedora(String sessionToken,
+			Consumer<String> pidConsumer) {
+		String personListXML = getPersonListXMLFromFedora(sessionToken);
+		return FedoraPidPageExtractor.extractPidPageUsingXMLAndPidConsumer(personListXML,
+				pidConsumer);
 	}
 
-	private String getPersonListXMLFromFedora() {
-		HttpHandler httpHandler = createHttpHandlerForPersonList();
+	private String getPersonListXMLFromFedora(String sessionToken) {
+		HttpHandler httpHandler = createHttpHandlerForPersonList(sessionToken);
 		return httpHandler.getResponseText();
 	}
 
-	private HttpHandler createHttpHandlerForPersonList() {
-		String url = baseURL
-				+ "objects?pid=true&maxResults=100&resultFormat=xml&query=pid%7Eauthority-person:*";
+	private HttpHandler createHttpHandlerForPersonList(String sessionToken) {
+		String url = createUrlForPersonListUsingSessionToken(sessionToken);
 		HttpHandler httpHandler = httpHandlerFactory.factor(url);
 		httpHandler.setRequestMethod("GET");
 		return httpHandler;
 	}
 
-	private NodeList extractNodeListWithPidsFromXML(String personListXML) {
-		XMLXPathParser parser = XMLXPathParser.forXML(personListXML);
-		return parser
-				.getNodeListFromDocumentUsingXPath("/result/resultList/objectFields/pid/text()");
+	private String createUrlForPersonListUsingSessionToken(String sessionToken) {
+		String url = baseURL + "objects?pid=true&maxResults=" + PERSON_LIST_PAGE_SIZE
+				+ "&resultFormat=xml&query=pid%7Eauthority-person:*";
+		if (sessionToken != null) {
+			url += "&sessionToken=" + sessionToken;
+		}
+		return url;
 	}
 
-	private Collection<DataGroup> constructCollectionOfPersonFromFedora(NodeList list) {
-		Collection<DataGroup> personList = new ArrayList<>(list.getLength());
-		for (int i = 0; i < list.getLength(); i++) {
-			Node node = list.item(i);
-			String pid = node.getTextContent();
-			personList.add(readAndConvertPersonFromFedora(pid));
+	private OrderedFetch<DataGroup> startFetchOfPersons() {
+		return parallelFetcher.startOrderedFetchUsingFetchFunction(
+				this::readPersonFromCacheOrFedora);
+	}
+
+	private List<DataGroup> logFailedFetchesAndGetResults(
+			ParallelFetchResult<DataGroup> fetchResult) {
+		for (Entry<String, Exception> failure : fetchResult.getFailures().entrySet()) {
+			log.logErrorUsingMessageAndException(
+					"Unable to read person from fedora: " + failure.getKey(), failure.getValue());
 		}
-		return personList;
+		return fetchResult.getResults();
 	}
 
 	@Override
@@ -258,6 +458,25 @@ public final class DivaFedoraRecordStorage implements RecordStorage {
 		return converterFactory;
 	}
 
+	public ParallelFetcher getParallelFetcher() {
+		// needed for test
+		return parallelFetcher;
+	}
+
+	public ParallelFetcher getBatchUpdateFetcher() {
+		// needed for test
+		return batchUpdateFetcher;
+	}
+
+	public TimedLruCache<String, CachedPerson> getPersonCache() {
+		return personCache;
+	}
+
+	public boolean getRevalidateExpiredPersons() {
+		// needed for test
+		return revalidateExpiredPersons;
+	}
+
 	public String getBaseURL() {
 		// needed for test
 		return baseURL;
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+
+public final class DivaFedoraRecordStorageOptions {
+	private static final int DEFAULT_MAX_CONCURRENT_READS = 10;
+	private static final int DEFAULT_MAX_CONCURRENT_BATCH_UPDATES = 2;
+	private static ParallelFetcher sharedParallelFetcher;
+	private static ParallelFetcher sharedBatchUpdateFetcher;
+	private ParallelFetcher parallelFetcher;
+	private ParallelFetcher batchUpdateFetcher;
+	private TimedLruCache<String, CachedPerson> personCache;
+	private boolean revalidateExpiredPersons;
+
+	public static DivaFedoraRecordStorageOptions createDefaultOptions() {
+		return new DivaFedoraRecordStorageOptions(getSharedParallelFetcher(),
+				getSharedBatchUpdateFetcher(), TimedLruCache.usingMaxSizeAndTimeToLiveMillis(0, 0),
+				false);
+	}
+
+	private static synchronized ParallelFetcher getSharedParallelFetcher() {
+		if (sharedParallelFetcher == null) {
+			sharedParallelFetcher = ParallelFetcher
+					.usingMaxConcurrentFetches(DEFAULT_MAX_CONCURRENT_READS);
+		}
+		return sharedParallelFetcher;
+	}
+
+	private static synchronized ParallelFetcher getSharedBatchUpdateFetcher() {
+		if (sharedBatchUpdateFetcher == null) {
+			sharedBatchUpdateFetcher = ParallelFetcher
+					.usingMaxConcurrentFetches(DEFAULT_MAX_CONCURRENT_BATCH_UPDATES);
+		}
+		return sharedBatchUpdateFetcher;
+	}
+
+	private DivaFedoraRecordStorageOptions(ParallelFetcher parallelFetcher,
+			ParallelFetcher batchUpdateFetcher, TimedLruCache<String, CachedPerson> personCache,
+			boolean revalidateExpiredPersons) {
+		this.parallelFetcher = parallelFetcher;
+		this.batchUpdateFetcher = batchUpdateFetcher;
+		this.personCache = personCache;
+		this.revalidateExpiredPersons = revalidateExpiredPersons;
+	}
+
+	public DivaFedoraRecordStorageOptions withParallelFetcher(ParallelFetcher parallelFetcher) {
+		return new DivaFedoraRecordStorageOptions(parallelFetcher, batchUpdateFetcher,
+				personCache, revalidateExpiredPersons);
+	}
+
+	public DivaFedoraRecordStorageOptions withBatchUpdateFetcher(
+			ParallelFetcher batchUpdateFetcher) {
+		return new DivaFedoraRecordStorageOptions(parallelFetcher, batchUpdateFetcher,
+				personCache, revalidateExpiredPersons);
+	}
+
+	public DivaFedoraRecordStorageOptions withPersonCache(
+			TimedLruCache<String, CachedPerson> personCache) {
+		return new DivaFedoraRecordStorageOptions(parallelFetcher, batchUpdateFetcher,
+				personCache, revalidateExpiredPersons);
+	}
+
+	public DivaFedoraRecordStorageOptions withRevalidationOfExpiredPersons(
+			boolean revalidateExpiredPersons) {
+		return new DivaFedoraRecordStorageOptions(parallelFetcher, batchUpdateFetcher,
+				personCache, revalidateExpiredPersons);
+	}
+
+	public ParallelFetcher getParallelFetcher() {
+		return parallelFetcher;
+	}
+
+	public ParallelFetcher getBatchUpdateFetcher() {
+		return batchUpdateFetcher;
+	}
+
+	public TimedLruCache<String, CachedPerson> getPersonCache() {
+		return personCache;
+	}
+
+	public boolean getRevalidateExpiredPersons() {
+		return revalidateExpiredPersons;
+	}
+}
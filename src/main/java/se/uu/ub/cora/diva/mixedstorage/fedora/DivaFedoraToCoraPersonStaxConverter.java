@@ -0,0 +1,246 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+public class DivaFedoraToCoraPersonStaxConverter implements DivaFedoraToCoraConverter {
+	private static final String PID = "authorityPerson/pid";
+	private static final String TIMESTAMP = "authorityPerson/recordInfo/events/event/timestamp";
+	private static final String DEFAULT_LAST_NAME = "authorityPerson/defaultName/lastname";
+	private static final String DEFAULT_FIRST_NAME = "authorityPerson/defaultName/firstname";
+	private static final String NAME_FORM = "authorityPerson/alternativeNames/nameForm";
+	private static final String NAME_FORM_LAST_NAME = NAME_FORM + "/lastname";
+	private static final String NAME_FORM_FIRST_NAME = NAME_FORM + "/firstname";
+	private static final String PUBLIC_RECORD = "authorityPerson/publicRecord";
+
+	private Deque<String> path;
+	private Deque<StringBuilder> texts;
+	private String pid;
+	private String tsCreated;
+	private String tsUpdated;
+	private String defaultLastName;
+	private String defaultFirstName;
+	private List<String[]> alternativeNames;
+	private String[] currentAlternativeName;
+	private String publicRecord;
+
+	@Override
+	public DataGroup fromXML(String xml) {
+		try {
+			readValuesFromXML(xml);
+			return createPersonFromReadValues();
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException(
+					"Error converting person to Cora person: " + e.getMessage(), e);
+		}
+	}
+
+	private void readValuesFromXML(String xml) throws XMLStreamException {
+		resetReadValues();
+		XMLStreamReader reader = XMLParsingResources.getXMLInputFactoryForCurrentThread()
+				.createXMLStreamReader(new StringReader(xml));
+		try {
+			readAllEvents(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void resetReadValues() {
+		path = new ArrayDeque<>();
+		texts = new ArrayDeque<>();
+		pid = null;
+		tsCreated = null;
+		tsUpdated = null;
+		defaultLastName = null;
+		defaultFirstName = null;
+		alternativeNames = new ArrayList<>();
+		currentAlternativeName = null;
+		publicRecord = null;
+	}
+
+	private void readAllEvents(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				handleStartElement(reader);
+			} else if (isText(event) && !texts.isEmpty()) {
+				texts.peek().append(reader.getText());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				handleEndElement();
+			}
+		}
+	}
+
+	private boolean isText(int event) {
+		return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+				|| event == XMLStreamConstants.SPACE;
+	}
+
+	private void handleStartElement(XMLStreamReader reader) {
+		String currentPath = createPathForChild(getQualifiedName(reader));
+		path.push(currentPath);
+		texts.push(new StringBuilder());
+		if (NAME_FORM.equals(currentPath)) {
+			currentAlternativeName = new String[2];
+			alternativeNames.add(currentAlternativeName);
+		}
+	}
+
+	private String createPathForChild(String name) {
+		if (path.isEmpty()) {
+			return name;
+		}
+		return path.peek() + "/" + name;
+	}
+
+	private String getQualifiedName(XMLStreamReader reader) {
+		String prefix = reader.getPrefix();
+		if (prefix == null || prefix.isEmpty()) {
+			return reader.getLocalName();
+		}
+		return prefix + ":" + reader.getLocalName();
+	}
+
+	private void handleEndElement() {
+		String currentPath = path.pop();
+		String text = texts.pop().toString();
+		if (PUBLIC_RECORD.equals(currentPath)) {
+			publicRecord = firstValue(publicRecord, text);
+		} else if (!text.isEmpty()) {
+			storeTextNodeValueUsingPathAndText(currentPath, text);
+		}
+	}
+
+	private void storeTextNodeValueUsingPathAndText(String currentPath, String text) {
+		if (PID.equals(currentPath)) {
+			pid = firstValue(pid, text);
+		} else if (TIMESTAMP.equals(currentPath)) {
+			tsCreated = firstValue(tsCreated, text);
+			tsUpdated = text;
+		} else if (DEFAULT_LAST_NAME.equals(currentPath)) {
+			defaultLastName = firstValue(defaultLastName, text);
+		} else if (DEFAULT_FIRST_NAME.equals(currentPath)) {
+			defaultFirstName = firstValue(defaultFirstName, text);
+		} else if (NAME_FORM_LAST_NAME.equals(currentPath)) {
+			currentAlternativeName[0] = firstValue(currentAlternativeName[0], text);
+		} else if (NAME_FORM_FIRST_NAME.equals(currentPath)) {
+			currentAlternativeName[1] = firstValue(currentAlternativeName[1], text);
+		}
+	}
+
+	private String firstValue(String currentValue, String newValue) {
+		return currentValue != null ? currentValue : newValue;
+	}
+
+	private DataGroup createPersonFromReadValues() {
+		DataGroup person = DataGroupProvider.getDataGroupUsingNameInData("authorityPerson");
+		createRecordInfoAndAddToPerson(person);
+		createDefaultNameAndAddToPerson(person);
+		createAlternativeNamesAndAddToPerson(person);
+		createAndAddPublicRecord(person);
+		return person;
+	}
+
+	private void createRecordInfoAndAddToPerson(DataGroup person) {
+		throwErrorIfNoTimestampFound();
+		DataGroup recordInfo = DivaFedoraToCoraRecordInfoConverter
+				.createRecordInfoUsingPidAndTsCreatedAndTsUpdated(valueOrEmpty(pid), tsCreated,
+						tsUpdated);
+		person.addChild(recordInfo);
+	}
+
+	private void throwErrorIfNoTimestampFound() {
+		if (tsUpdated == null) {
+			throw ParseException.withMessage("No timestamp found in recordInfo events");
+		}
+	}
+
+	private String valueOrEmpty(String value) {
+		return value != null ? value : "";
+	}
+
+	private void createDefaultNameAndAddToPerson(DataGroup person) {
+		DataGroup defaultName = DataGroupProvider.getDataGroupUsingNameInData("authorizedName");
+		addNamePartsToGroup(defaultName, defaultLastName, defaultFirstName);
+		if (dataGroupHasChildren(defaultName)) {
+			person.addChild(defaultName);
+		}
+	}
+
+	private void addNamePartsToGroup(DataGroup nameGroup, String lastName, String firstName) {
+		possiblyAddChildToGroupUsingNameInDataAndValue(nameGroup, "familyName", lastName);
+		possiblyAddChildToGroupUsingNameInDataAndValue(nameGroup, "givenName", firstName);
+	}
+
+	private void possiblyAddChildToGroupUsingNameInDataAndValue(DataGroup nameGroup,
+			String childNameInData, String value) {
+		if (valueContainsData(value)) {
+			nameGroup.addChild(DataAtomicProvider
+					.getDataAtomicUsingNameInDataAndValue(childNameInData, value));
+		}
+	}
+
+	private boolean valueContainsData(String value) {
+		return value != null && !"".equals(value);
+	}
+
+	private boolean dataGroupHasChildren(DataGroup dataGroup) {
+		return !dataGroup.getChildren().isEmpty();
+	}
+
+	private void createAlternativeNamesAndAddToPerson(DataGroup person) {
+		for (int i = 0; i < alternativeNames.size(); i++) {
+			String[] nameParts = alternativeNames.get(i);
+			addAlternativeNameToPersonUsingNamePartsAndRepeatId(person, nameParts,
+					String.valueOf(i));
+		}
+	}
+
+	private void addAlternativeNameToPersonUsingNamePartsAndRepeatId(DataGroup person,
+			String[] nameParts, String repeatId) {
+		DataGroup alternativeName = DataGroupProvider
+				.getDataGroupUsingNameInData("alternativeName");
+		addNamePartsToGroup(alternativeName, nameParts[0], nameParts[1]);
+		if (dataGroupHasChildren(alternativeName)) {
+			alternativeName.setRepeatId(repeatId);
+			person.addChild(alternativeName);
+		}
+	}
+
+	private void createAndAddPublicRecord(DataGroup person) {
+		String publicValue = "true".equals(publicRecord) ? "yes" : "no";
+		person.addChild(
+				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("public", publicValue));
+	}
+}
@@ -39,14 +39,32 @@ public class DivaFedoraToCoraRecordInfoConverter {
 		return divaToCoraRecordInfoConverter.createRecordInfoAsDataGroup();
 	}
 
+	public static DataGroup createRecordInfoUsingPidAndTsCreatedAndTsUpdated(String pid,
+			String tsCreatedWithLetters, String tsUpdatedWithLetters) {
+		DivaFedoraToCoraRecordInfoConverter divaToCoraRecordInfoConverter = new DivaFedoraToCoraRecordInfoConverter(
+				null);
+		return divaToCoraRecordInfoConverter.createRecordInfoAsDataGroupUsingPidAndTimestamps(pid,
+				tsCreatedWithLetters, tsUpdatedWithLetters);
+	}
+
 	private DataGroup createRecordInfoAsDataGroup() {
+		String pid = parser.getStringFromDocumentUsingXPath("/authorityPerson/pid/text()");
+		String tsCreatedWithLetters = parser.getStringFromDocumentUsingXPath(
+				"/authorityPerson/recordInfo/events/event/timestamp/text()");
+		String tsUpdatedWithLetters = getLastTsUpdatedFromDocument();
+		return createRecordInfoAsDataGroupUsingPidAndTimestamps(pid, tsCreatedWithLetters,
+				tsUpdatedWithLetters);
+	}
+
+	private DataGroup createRecordInfoAsDataGroupUsingPidAndTimestamps(String pid,
+			String tsCreatedWithLetters, String tsUpdatedWithLetters) {
 		recordInfo = DataGroupProvider.getDataGroupUsingNameInData("recordInfo");
 		addType();
-		parseAndAddId();
+		addId(pid);
 		addDataDivider();
 		addCreatedBy();
-		parseAndAddTsCreated();
-		addUpdated();
+		addTsCreated(tsCreatedWithLetters);
+		addUpdated(tsUpdatedWithLetters);
 		return recordInfo;
 	}
 
@@ -65,8 +83,7 @@ public class DivaFedoraToCoraRecordInfoConverter {
 		return type;
 	}
 
-	private void parseAndAddId() {
-		String pid = parser.getStringFromDocumentUsingXPath("/authorityPerson/pid/text()");
+	private void addId(String pid) {
 		recordInfo.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("id", pid));
 	}
 
@@ -81,9 +98,7 @@ public class DivaFedoraToCoraRecordInfoConverter {
 		recordInfo.addChild(createdBy);
 	}
 
-	private void parseAndAddTsCreated() {
-		String tsCreatedWithLetters = parser.getStringFromDocumentUsingXPath(
-				"/authorityPerson/recordInfo/events/event/timestamp/text()");
+	private void addTsCreated(String tsCreatedWithLetters) {
 		String tsCreated = removeTAndZFromTimestamp(tsCreatedWithLetters);
 		recordInfo.addChild(
 				DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("tsCreated", tsCreated));
@@ -93,12 +108,12 @@ public class DivaFedoraToCoraRecordInfoConverter {
 		return tsCreatedWithLetters.replace('T', ' ').replace("Z", "");
 	}
 
-	private void addUpdated() {
+	private void addUpdated(String tsUpdatedWithLetters) {
 		DataGroup updatedGroup = DataGroupProvider.getDataGroupUsingNameInData("updated");
 		recordInfo.addChild(updatedGroup);
 		updatedGroup.setRepeatId("0");
 		addUpdatedBy(updatedGroup);
-		parseAndAddTsUpdated(updatedGroup);
+		addTsUpdated(updatedGroup, tsUpdatedWithLetters);
 	}
 
 	private void addUpdatedBy(DataGroup updatedGroup) {
@@ -106,8 +121,7 @@ public class DivaFedoraToCoraRecordInfoConverter {
 		updatedGroup.addChild(updatedBy);
 	}
 
-	private void parseAndAddTsUpdated(DataGroup updatedGroup) {
-		String tsUpdatedWithLetters = getLastTsUpdatedFromDocument();
+	private void addTsUpdated(DataGroup updatedGroup, String tsUpdatedWithLetters) {
 		String tsUpdated = removeTAndZFromTimestamp(tsUpdatedWithLetters);
 
 		updatedGroup.addChild(
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+final class FedoraPidPage {
+	private int noOfPids;
+	private String sessionToken;
+
+	private FedoraPidPage(int noOfPids, String sessionToken) {
+		this.noOfPids = noOfPids;
+		this.sessionToken = sessionToken;
+	}
+
+	static FedoraPidPage usingNoOfPidsAndSessionToken(int noOfPids, String sessionToken) {
+		return new FedoraPidPage(noOfPids, sessionToken);
+	}
+
+	int getNoOfPids() {
+		return noOfPids;
+	}
+
+	String getSessionToken() {
+		return sessionToken;
+	}
+
+	boolean hasMorePages() {
+		return sessionToken != null && !sessionToken.isEmpty() && noOfPids > 0;
+	}
+
+}
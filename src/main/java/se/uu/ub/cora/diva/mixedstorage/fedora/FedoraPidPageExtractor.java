@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+final class FedoraPidPageExtractor {
+	private static final String PID = "result/resultList/objectFields/pid";
+	private static final String SESSION_TOKEN = "result/listSession/token";
+
+	private Consumer<String> pidConsumer;
+	private Deque<String> path = new ArrayDeque<>();
+	private StringBuilder text = new StringBuilder();
+	private String sessionToken;
+	private int noOfPids = 0;
+
+	private FedoraPidPageExtractor(Consumer<String> pidConsumer) {
+		this.pidConsumer = pidConsumer;
+	}
+
+	static FedoraPidPage extractPidPageUsingXMLAndPidConsumer(String xml,
+			Consumer<String> pidConsumer) {
+		FedoraPidPageExtractor extractor = new FedoraPidPageExtractor(pidConsumer);
+		try {
+			return extractor.readPidsAndCreatePidPage(xml);
+		} catch (XMLStreamException e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
+	private FedoraPidPage readPidsAndCreatePidPage(String xml) throws XMLStreamException {
+		XMLStreamReader reader = XMLParsingResources.getXMLInputFactoryForCurrentThread()
+				.createXMLStreamReader(new StringReader(xml));
+		try {
+			readAllEvents(reader);
+		} finally {
+			reader.close();
+		}
+		return FedoraPidPage.usingNoOfPidsAndSessionToken(noOfPids,
+				sessionToken != null ? sessionToken : "");
+	}
+
+	private void readAllEvents(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				path.push(createPathForChild(reader.getLocalName()));
+				text.setLength(0);
+			} else if (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA) {
+				text.append(reader.getText());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				handleEndElement(path.pop());
+			}
+		}
+	}
+
+	private String createPathForChild(String name) {
+		if (path.isEmpty()) {
+			return name;
+		}
+		return path.peek() + "/" + name;
+	}
+
+	private void handleEndElement(String currentPath) {
+		if (text.length() > 0) {
+			handleTextUsingPath(currentPath);
+		}
+		text.setLength(0);
+	}
+
+	private void handleTextUsingPath(String currentPath) {
+		if (PID.equals(currentPath)) {
+			noOfPids++;
+			pidConsumer.accept(text.toString());
+		} else if (SESSION_TOKEN.equals(currentPath) && sessionToken == null) {
+			sessionToken = text.toString();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import se.uu.ub.cora.diva.mixedstorage.FedoraException;
+
+public final class OrderedFetch<T> {
+	private ExecutorService executor;
+	private Function<String, T> fetchFunction;
+	private List<String> ids = new ArrayList<>();
+	private List<Future<T>> futures = new ArrayList<>();
+
+	OrderedFetch(ExecutorService executor, Function<String, T> fetchFunction) {
+		this.executor = executor;
+		this.fetchFunction = fetchFunction;
+	}
+
+	public void submitFetchForId(String id) {
+		ids.add(id);
+		futures.add(executor.submit(() -> fetchFunction.apply(id)));
+	}
+
+	public ParallelFetchResult<T> collectResultsInIdOrder() {
+		ParallelFetchResult<T> result = new ParallelFetchResult<>(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			waitForFetchAndAddToResult(i, result);
+		}
+		return result;
+	}
+
+	private void waitForFetchAndAddToResult(int index, ParallelFetchResult<T> result) {
+		String id = ids.get(index);
+		try {
+			result.addResult(futures.get(index).get());
+		} catch (ExecutionException e) {
+			result.addFailure(id, getCauseAsException(e));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancelRemainingFetches(index);
+			throw FedoraException.withMessageAndException(
+					"Interrupted while waiting for fetch of: " + id, e);
+		}
+	}
+
+	private Exception getCauseAsException(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		}
+		return e;
+	}
+
+	private void cancelRemainingFetches(int fromIndex) {
+		for (int i = fromIndex; i < futures.size(); i++) {
+			futures.get(i).cancel(true);
+		}
+	}
+}
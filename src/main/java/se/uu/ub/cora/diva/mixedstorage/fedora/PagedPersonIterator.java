@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.data.DataGroup;
+
+final class PagedPersonIterator implements Iterator<DataGroup> {
+	private BiFunction<String, Consumer<String>, FedoraPidPage> pidPageReader;
+	private Supplier<OrderedFetch<DataGroup>> personFetchStarter;
+	private Function<ParallelFetchResult<DataGroup>, List<DataGroup>> fetchResultHandler;
+	private long fromNo;
+	private long toNo;
+	private long noOfPassedPids = 0;
+	private String sessionToken = null;
+	private boolean morePagesInFedora = true;
+	private Iterator<DataGroup> currentPage = Collections.emptyIterator();
+
+	private PagedPersonIterator(BiFunction<String, Consumer<String>, FedoraPidPage> pidPageReader,
+			Supplier<OrderedFetch<DataGroup>> personFetchStarter,
+			Function<ParallelFetchResult<DataGroup>, List<DataGroup>> fetchResultHandler,
+			long fromNo, long toNo) {
+		this.pidPageReader = pidPageReader;
+		this.personFetchStarter = personFetchStarter;
+		this.fetchResultHandler = fetchResultHandler;
+		this.fromNo = fromNo;
+		this.toNo = toNo;
+	}
+
+	static PagedPersonIterator usingPidPageReaderAndPersonFetchStarterAndFetchResultHandlerAndFromNoAndToNo(
+			BiFunction<String, Consumer<String>, FedoraPidPage> pidPageReader,
+			Supplier<OrderedFetch<DataGroup>> personFetchStarter,
+			Function<ParallelFetchResult<DataGroup>, List<DataGroup>> fetchResultHandler,
+			long fromNo, long toNo) {
+		return new PagedPersonIterator(pidPageReader, personFetchStarter, fetchResultHandler,
+				fromNo, toNo);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!currentPage.hasNext() && morePidsToReadInWindow()) {
+			readNextPage();
+		}
+		return currentPage.hasNext();
+	}
+
+	private boolean morePidsToReadInWindow() {
+		return morePagesInFedora && noOfPassedPids < toNo;
+	}
+
+	private void readNextPage() {
+		OrderedFetch<DataGroup> personFetch = personFetchStarter.get();
+		FedoraPidPage page = pidPageReader.apply(sessionToken,
+				pid -> startFetchOfPersonIfInWindow(personFetch, pid));
+		sessionToken = page.getSessionToken();
+		morePagesInFedora = page.hasMorePages();
+		currentPage = fetchResultHandler.apply(personFetch.collectResultsInIdOrder()).iterator();
+	}
+
+	private void startFetchOfPersonIfInWindow(OrderedFetch<DataGroup> personFetch, String pid) {
+		noOfPassedPids++;
+		if (noOfPassedPids >= fromNo && noOfPassedPids <= toNo) {
+			personFetch.submitFetchForId(pid);
+		}
+	}
+
+	@Override
+	public DataGroup next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentPage.next();
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import se.uu.ub.cora.diva.mixedstorage.FedoraException;
+
+public final class ParallelFetcher {
+	private static final String THREAD_NAME_PREFIX = "diva-fedora-fetcher-";
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private int maxConcurrentFetches;
+	private ExecutorService executor;
+
+	public static ParallelFetcher usingMaxConcurrentFetches(int maxConcurrentFetches) {
+		throwErrorIfLessThanOne(maxConcurrentFetches);
+		return new ParallelFetcher(maxConcurrentFetches);
+	}
+
+	private static void throwErrorIfLessThanOne(int maxConcurrentFetches) {
+		if (maxConcurrentFetches < 1) {
+			throw FedoraException.withMessage(
+					"maxConcurrentFetches must be at least 1, was: " + maxConcurrentFetches);
+		}
+	}
+
+	private ParallelFetcher(int maxConcurrentFetches) {
+		this.maxConcurrentFetches = maxConcurrentFetches;
+		executor = Executors.newFixedThreadPool(maxConcurrentFetches, createDaemonThreadFactory());
+	}
+
+	private ThreadFactory createDaemonThreadFactory() {
+		return runnable -> {
+			Thread thread = new Thread(runnable,
+					THREAD_NAME_PREFIX + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public <T> ParallelFetchResult<T> fetchInOrderUsingIdsAndFetchFunction(List<String> ids,
+			Function<String, T> fetchFunction) {
+		OrderedFetch<T> fetch = startOrderedFetchUsingFetchFunction(fetchFunction);
+		for (String id : ids) {
+			fetch.submitFetchForId(id);
+		}
+		return fetch.collectResultsInIdOrder();
+	}
+
+	public <T> ParallelFetchResult<T> fetchInOrderUsingIdsAndFetchFunctionAndMaxPendingFetches(
+			List<String> ids, Function<String, T> fetchFunction, int maxPendingFetches) {
+		Semaphore pendingFetches = new Semaphore(maxPendingFetches);
+		OrderedFetch<T> fetch = startOrderedFetchUsingFetchFunction(
+				id -> fetchAndReleasePendingFetch(id, fetchFunction, pendingFetches));
+		for (String id : ids) {
+			waitForPendingFetchOrThrow(id, pendingFetches);
+			fetch.submitFetchForId(id);
+		}
+		return fetch.collectResultsInIdOrder();
+	}
+
+	private <T> T fetchAndReleasePendingFetch(String id, Function<String, T> fetchFunction,
+			Semaphore pendingFetches) {
+		try {
+			return fetchFunction.apply(id);
+		} finally {
+			pendingFetches.release();
+		}
+	}
+
+	private void waitForPendingFetchOrThrow(String id, Semaphore pendingFetches) {
+		try {
+			pendingFetches.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw FedoraException.withMessageAndException(
+					"Interrupted while waiting to submit fetch of: " + id, e);
+		}
+	}
+
+	public <T> OrderedFetch<T> startOrderedFetchUsingFetchFunction(
+			Function<String, T> fetchFunction) {
+		return new OrderedFetch<>(executor, fetchFunction);
+	}
+
+	public int getMaxConcurrentFetches() {
+		return maxConcurrentFetches;
+	}
+
+}
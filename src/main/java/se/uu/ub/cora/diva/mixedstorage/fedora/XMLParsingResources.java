@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+final class XMLParsingResources {
+	private static final ErrorHandler ERROR_HANDLER_WITHOUT_SYSTEM_OUT_PRINTING = new DefaultHandler();
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = ThreadLocal
+			.withInitial(XMLParsingResources::createDocumentBuilder);
+	private static final ThreadLocal<XPath> XPATHS = ThreadLocal
+			.withInitial(XMLParsingResources::createXPath);
+	private static final ThreadLocal<Transformer> TRANSFORMERS = ThreadLocal
+			.withInitial(XMLParsingResources::createTransformer);
+	private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORIES = ThreadLocal
+			.withInitial(XMLParsingResources::createXMLInputFactory);
+	private static final int MAX_NO_OF_COMPILED_XPATHS_PER_THREAD = 256;
+	private static final ThreadLocal<Map<String, XPathExpression>> COMPILED_XPATHS = ThreadLocal
+			.withInitial(HashMap::new);
+
+	private XMLParsingResources() {
+		// prevent instantiation
+	}
+
+	static DocumentBuilder getDocumentBuilderForCurrentThread() {
+		DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.get();
+		documentBuilder.reset();
+		documentBuilder.setErrorHandler(ERROR_HANDLER_WITHOUT_SYSTEM_OUT_PRINTING);
+		return documentBuilder;
+	}
+
+	static XPath getXPathForCurrentThread() {
+		XPath xpath = XPATHS.get();
+		xpath.reset();
+		return xpath;
+	}
+
+	static XPathExpression getCompiledXPathForCurrentThread(String xpathString)
+			throws XPathExpressionException {
+		Map<String, XPathExpression> compiledXPaths = COMPILED_XPATHS.get();
+		XPathExpression expression = compiledXPaths.get(xpathString);
+		if (expression == null) {
+			expression = getXPathForCurrentThread().compile(xpathString);
+			storeIfRoomForMoreCompiledXPaths(compiledXPaths, xpathString, expression);
+		}
+		return expression;
+	}
+
+	private static void storeIfRoomForMoreCompiledXPaths(
+			Map<String, XPathExpression> compiledXPaths, String xpathString,
+			XPathExpression expression) {
+		if (compiledXPaths.size() < MAX_NO_OF_COMPILED_XPATHS_PER_THREAD) {
+			compiledXPaths.put(xpathString, expression);
+		}
+	}
+
+	static int getNoOfCompiledXPathsForCurrentThread() {
+		return COMPILED_XPATHS.get().size();
+	}
+
+	static Transformer getTransformerForCurrentThread() {
+		return TRANSFORMERS.get();
+	}
+
+	static XMLInputFactory getXMLInputFactoryForCurrentThread() {
+		return XML_INPUT_FACTORIES.get();
+	}
+
+	private static DocumentBuilder createDocumentBuilder() {
+		try {
+			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+			dbFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			dbFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			return dbFactory.newDocumentBuilder();
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException(
+					"Unable to create DocumentBuilder: " + e.getMessage(), e);
+		}
+	}
+
+	private static XMLInputFactory createXMLInputFactory() {
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return xmlInputFactory;
+	}
+
+	private static XPath createXPath() {
+		XPathFactory xpathFactory = XPathFactory.newInstance();
+		return xpathFactory.newXPath();
+	}
+
+	private static Transformer createTransformer() {
+		try {
+			TransformerFactory tf = TransformerFactory.newInstance();
+			tf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			Transformer transformer = tf.newTransformer();
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+			transformer.setOutputProperty(OutputKeys.INDENT, "no");
+			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+			return transformer;
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException(
+					"Unable to create Transformer: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -4,40 +4,28 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import se.uu.ub.cora.diva.mixedstorage.ParseException;
 
 public final class XMLXPathParser {
 	private static final String XPATH_STRING_ERROR_MESSAGE = "Unable to use xpathString: ";
 	private Document document;
-	private XPath xpath;
 
-	private XMLXPathParser(String xml)
-			throws ParserConfigurationException, SAXException, IOException {
+	private XMLXPathParser(String xml) throws SAXException, IOException {
 		document = createDocumentFromXML(xml);
-		setupXPath();
 	}
 
 	public static XMLXPathParser forXML(String xml) {
@@ -48,27 +36,11 @@ public final class XMLXPathParser {
 		}
 	}
 
-	private void setupXPath() {
-		XPathFactory xpathFactory = XPathFactory.newInstance();
-		xpath = xpathFactory.newXPath();
-	}
-
-	public Document createDocumentFromXML(String xml)
-			throws ParserConfigurationException, SAXException, IOException {
-		DocumentBuilder dBuilder = createDocumentBuilder();
+	public Document createDocumentFromXML(String xml) throws SAXException, IOException {
+		DocumentBuilder dBuilder = XMLParsingResources.getDocumentBuilderForCurrentThread();
 		return readXMLUsingBuilderAndXML(dBuilder, xml);
 	}
 
-	private DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
-		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-		dbFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-		dbFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-		DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-		ErrorHandler errorHandlerWithoutSystemOutPrinting = new DefaultHandler();
-		dBuilder.setErrorHandler(errorHandlerWithoutSystemOutPrinting);
-		return dBuilder;
-	}
-
 	private Document readXMLUsingBuilderAndXML(DocumentBuilder dBuilder, String xml)
 			throws SAXException, IOException {
 		StringReader reader = new StringReader(xml);
@@ -78,10 +50,14 @@ public final class XMLXPathParser {
 		return doc;
 	}
 
+	private XPathExpression compileXPath(String xpathString) throws XPathExpressionException {
+		return XMLParsingResources.getCompiledXPathForCurrentThread(xpathString);
+	}
+
 	public String getStringFromDocumentUsingXPath(String xpathString) {
 		try {
 			XPathExpression expr;
-			expr = xpath.compile(xpathString);
+			expr = compileXPath(xpathString);
 			return (String) expr.evaluate(document, XPathConstants.STRING);
 		} catch (XPathExpressionException e) {
 			throw ParseException
@@ -93,7 +69,7 @@ public final class XMLXPathParser {
 	public String getStringFromDocumentUsingNodeAndXPath(Node node, String xpathString) {
 		try {
 			XPathExpression expr;
-			expr = xpath.compile(xpathString);
+			expr = compileXPath(xpathString);
 			return (String) expr.evaluate(node, XPathConstants.STRING);
 		} catch (XPathExpressionException e) {
 			throw ParseException
@@ -104,7 +80,7 @@ public final class XMLXPathParser {
 
 	public NodeList getNodeListFromDocumentUsingXPath(String xpathString) {
 		try {
-			XPathExpression expr = xpath.compile(xpathString);
+			XPathExpression expr = compileXPath(xpathString);
 			return (NodeList) expr.evaluate(document, XPathConstants.NODESET);
 		} catch (XPathExpressionException e) {
 			throw ParseException
@@ -114,7 +90,7 @@ public final class XMLXPathParser {
 
 	public void setStringInDocumentUsingXPath(String xpathString, String newValue) {
 		try {
-			XPathExpression expr = xpath.compile(xpathString);
+			XPathExpression expr = compileXPath(xpathString);
 			Node nodeToSet = (Node) expr.evaluate(document, XPathConstants.NODE);
 			nodeToSet.setTextContent(newValue);
 		} catch (XPathExpressionException e) {
@@ -124,17 +100,10 @@ public final class XMLXPathParser {
 
 	public String getDocumentAsString(String xpathString) {
 		try {
-			XPathExpression expr = xpath.compile(xpathString);
+			XPathExpression expr = compileXPath(xpathString);
 			Node nodeToExport = (Node) expr.evaluate(document, XPathConstants.NODE);
 			StringWriter sw = new StringWriter();
-			TransformerFactory tf = TransformerFactory.newInstance();
-			tf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-			Transformer transformer = tf.newTransformer();
-			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-			transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-			transformer.setOutputProperty(OutputKeys.INDENT, "no");
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-
+			Transformer transformer = XMLParsingResources.getTransformerForCurrentThread();
 			transformer.transform(new DOMSource(nodeToExport), new StreamResult(sw));
 			return sw.toString();
 		} catch (Exception e) {
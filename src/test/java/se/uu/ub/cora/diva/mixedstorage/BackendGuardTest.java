@@ -0,0 +1,358 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class BackendGuardTest {
+	private long now;
+	private BackendGuard backendGuard;
+	private int noOfCalls;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 1000;
+		noOfCalls = 0;
+		backendGuard = BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillisAndClock(
+						"fedora", 2, 50, 4, 5000, () -> now);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(backendGuard.getBackend(), "fedora");
+		assertEquals(backendGuard.getMaxConcurrentCalls(), 2);
+		assertEquals(backendGuard.getFailureRatePercent(), 50);
+		assertEquals(backendGuard.getWindowSize(), 4);
+		assertEquals(backendGuard.getOpenMillis(), 5000);
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testCallReturnsResult() throws Exception {
+		assertEquals(backendGuard.call(() -> "result"), "result");
+	}
+
+	@Test
+	public void testExceptionFromCallIsRethrown() throws Exception {
+		RuntimeException error = new RuntimeException("failed");
+		try {
+			backendGuard.call(() -> {
+				throw error;
+			});
+			fail("exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertSame(e, error);
+		}
+	}
+
+	@Test
+	public void testStaysClosedUntilWindowIsFull() throws Exception {
+		callAndFail();
+		callAndFail();
+		callAndFail();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	private void callAndFail() {
+		try {
+			backendGuard.call(() -> {
+				noOfCalls++;
+				throw FedoraException.withMessage("fedora is down");
+			});
+		} catch (FedoraException e) {
+			// expected
+		}
+	}
+
+	private void callAndSucceed() {
+		backendGuard.call(() -> noOfCalls++);
+	}
+
+	@Test
+	public void testOpensWhenFailureRateReached() throws Exception {
+		callAndSucceed();
+		callAndSucceed();
+		callAndFail();
+		callAndFail();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+	}
+
+	@Test
+	public void testStaysClosedWhenFailureRateBelowThreshold() throws Exception {
+		callAndFail();
+		callAndSucceed();
+		callAndSucceed();
+		callAndSucceed();
+		callAndFail();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testNotFoundIsNotCountedAsFailure() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			try {
+				backendGuard.call(() -> {
+					throw new RecordNotFoundException("not found");
+				});
+			} catch (RecordNotFoundException e) {
+				// expected
+			}
+		}
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testInvalidFilterIsNotCountedAsFailure() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			try {
+				backendGuard.call(() -> {
+					throw InvalidFilterException.withMessage("toNo in filter must be a number");
+				});
+			} catch (InvalidFilterException e) {
+				// expected
+			}
+		}
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testInvalidFilterInTrialCallCloses() throws Exception {
+		openGuard();
+		now += 5000;
+		try {
+			backendGuard.call(() -> {
+				throw InvalidFilterException.withMessage("toNo in filter must be a number");
+			});
+		} catch (InvalidFilterException e) {
+			// expected
+		}
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testErrorInTrialCallOpensAgainAndAllowsNextTrialCall() throws Exception {
+		openGuard();
+		now += 5000;
+		AssertionError error = new AssertionError("error in call");
+		try {
+			backendGuard.call(() -> {
+				throw error;
+			});
+			fail("error should have been thrown");
+		} catch (AssertionError e) {
+			assertSame(e, error);
+		}
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+
+		now += 5000;
+		callAndSucceed();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testOpenGuardFailsFastWithoutCallingBackend() throws Exception {
+		openGuard();
+		try {
+			callAndSucceed();
+			fail("exception should have been thrown");
+		} catch (BackendUnavailableException e) {
+			assertEquals(e.getMessage(),
+					"Backend fedora is unavailable, circuit breaker is open");
+		}
+		assertEquals(noOfCalls, 4);
+	}
+
+	private void openGuard() {
+		for (int i = 0; i < 4; i++) {
+			callAndFail();
+		}
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+	}
+
+	@Test
+	public void testHalfOpenAfterOpenTime() throws Exception {
+		openGuard();
+		now += 4999;
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+		now += 1;
+		assertEquals(backendGuard.getState(), BackendGuard.State.HALF_OPEN);
+	}
+
+	@Test
+	public void testSuccessfulTrialCallCloses() throws Exception {
+		openGuard();
+		now += 5000;
+
+		callAndSucceed();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+		callAndFail();
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testFailedTrialCallOpensAgain() throws Exception {
+		openGuard();
+		now += 5000;
+
+		callAndFail();
+
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+		now += 4999;
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+	}
+
+	@Test
+	public void testOnlyOneTrialCallWhenHalfOpen() throws Exception {
+		openGuard();
+		now += 5000;
+		try {
+			backendGuard.call(() -> {
+				callAndSucceed();
+				return null;
+			});
+			fail("exception should have been thrown");
+		} catch (BackendUnavailableException e) {
+			assertEquals(e.getMessage(),
+					"Backend fedora is unavailable, circuit breaker is open");
+		}
+		assertEquals(backendGuard.getState(), BackendGuard.State.OPEN);
+	}
+
+	@Test
+	public void testOnlyTrialCallDecidesStateWhenHalfOpen() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> slowCall = executor.submit(() -> failInGuardWhenReleased(started, release));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			openGuard();
+			now += 5000;
+
+			backendGuard.call(() -> {
+				release.countDown();
+				waitForSlowCallToFinish(slowCall);
+				assertEquals(backendGuard.getState(), BackendGuard.State.HALF_OPEN);
+				return null;
+			});
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	private Object failInGuardWhenReleased(CountDownLatch started, CountDownLatch release) {
+		return backendGuard.call(() -> {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw FedoraException.withMessage("slow call failed");
+		});
+	}
+
+	private void waitForSlowCallToFinish(Future<?> slowCall) {
+		try {
+			slowCall.get(5, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBulkheadRejectsCallsOverMaxConcurrentCalls() throws Exception {
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> first = executor.submit(() -> blockInGuard(started, release));
+			Future<?> second = executor.submit(() -> blockInGuard(started, release));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			try {
+				callAndSucceed();
+				fail("exception should have been thrown");
+			} catch (BackendUnavailableException e) {
+				assertEquals(e.getMessage(),
+						"Backend fedora is unavailable, max concurrent calls (2) reached");
+			}
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			second.get(5, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		callAndSucceed();
+		assertEquals(noOfCalls, 1);
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	private Object blockInGuard(CountDownLatch started, CountDownLatch release) {
+		return backendGuard.call(() -> {
+			started.countDown();
+			try {
+				return release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		});
+	}
+
+	@Test
+	public void testRejectedCallIsNotCountedAsFailure() throws Exception {
+		openGuard();
+		for (int i = 0; i < 10; i++) {
+			try {
+				callAndSucceed();
+			} catch (BackendUnavailableException e) {
+				// expected
+			}
+		}
+		now += 5000;
+		callAndSucceed();
+		assertEquals(backendGuard.getState(), BackendGuard.State.CLOSED);
+		assertFalse(noOfCalls > 5);
+	}
+}
@@ -32,40 +32,24 @@ public class DataReaderSpy implements DataReader {
 	public boolean readOneRowWasCalled = false;
 	public String sqlSentToReader;
 	public List<Object> valuesSentToReader = new ArrayList<>();
-	public List<Map<String, Object>> listOfRows;
+	public List<Map<String, Object>> listOfRows = new ArrayList<>();
 	public Map<String, Object> row;
+	public Map<String, Object> rowToReturn;
+	public List<String> sqlsSentToReader = new ArrayList<>();
+	public List<List<Object>> valuesListSentToReader = new ArrayList<>();
+	public List<List<Map<String, Object>>> listsOfRowsToReturn = new ArrayList<>();
 
 	@Override
 	public List<Map<String, Object>> executePreparedStatementQueryUsingSqlAndValues(String sql,
 			List<Object> values) {
 		executePreparedStatementWasCalled = true;
 		sqlSentToReader = sql;
-		listOfRows = new ArrayList<>();
-		// if (values != null && !values.isEmpty()) {
-		// valuesSentToReader.addAll(values);
-		// Object userId = values.get(0);
-		// if ("userIdNotFound".equals(userId)) {
-		// return Collections.emptyList();
-		// }
-		//
-		// if ("userIdNotAdmin".equals(userId)) {
-		// listOfRows.add(createDbRowUsingGroupId(22));
-		// }
-		//
-		// if ("someId".equals(userId) || "otherId".equals(userId)) {
-		// listOfRows.add(createDbRowUsingGroupId(53));
-		// listOfRows.add(createDbRowUsingGroupId(54));
-		// }
-		// if ("userHasNoName".equals(userId)) {
-		// Map<String, Object> dbRowUsingGroupId = createDbRowUsingGroupId(54);
-		// dbRowUsingGroupId.remove("firstname");
-		// dbRowUsingGroupId.remove("lastname");
-		// listOfRows.add(dbRowUsingGroupId);
-		// }
-		// } else if (sql.contains("seam_user")) {
-		// listOfRows.add(createDbRowUsingGroupId(53));
-		// listOfRows.add(createDbRowUsingGroupId(54));
-		// }
+		valuesSentToReader.addAll(values);
+		sqlsSentToReader.add(sql);
+		valuesListSentToReader.add(values);
+		if (!listsOfRowsToReturn.isEmpty()) {
+			return listsOfRowsToReturn.remove(0);
+		}
 		return listOfRows;
 	}
 
@@ -87,6 +71,11 @@ public class DataReaderSpy implements DataReader {
 		readOneRowWasCalled = true;
 		sqlSentToReader = sql;
 		valuesSentToReader.addAll(values);
+		sqlsSentToReader.add(sql);
+		valuesListSentToReader.add(values);
+		if (rowToReturn != null) {
+			return rowToReturn;
+		}
 		if (values.get(0).equals(600)) {
 			throw SqlStorageException.withMessage("Error from spy");
 		}
@@ -1,13 +1,16 @@
 package se.uu.ub.cora.diva.mixedstorage;
 
 import java.util.Collection;
+import java.util.Set;
 
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
-public class DivaDbToCoraStorageSpy implements RecordStorage {
+public class DivaDbToCoraStorageSpy implements RecordStorage, RecordExistenceStorage {
 	public RecordStorageSpyData data = new RecordStorageSpyData();
+	public Collection<String> ids;
+	public Set<String> existingIds = Set.of("someExistingId");
 
 	@Override
 	public void create(String type, String id, DataGroup record, DataGroup collectedTerms,
@@ -74,6 +77,15 @@ public class DivaDbToCoraStorageSpy implements RecordStorage {
 		return true;
 	}
 
+	@Override
+	public Set<String> readExistingRecordIdsForRecordTypeAndRecordIds(String type,
+			Collection<String> ids) {
+		data.type = type;
+		this.ids = ids;
+		data.calledMethod = "readExistingRecordIdsForRecordTypeAndRecordIds";
+		return existingIds;
+	}
+
 	@Override
 	public boolean recordsExistForRecordType(String arg0) {
 		// TODO Auto-generated method stub
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.testng.annotations.Test;
+
+public class DivaMixedRecordStorageOptionsTest {
+
+	@Test
+	public void testDefaultOptions() {
+		DivaMixedRecordStorageOptions options = DivaMixedRecordStorageOptions
+				.createDefaultOptions();
+
+		assertEquals(options.getRouting().getBackendByTypeForOperation(
+				DivaMixedStorageRouting.READ), DivaMixedStorageRouting.createDefaultRouting()
+						.getBackendByTypeForOperation(DivaMixedStorageRouting.READ));
+		assertDefaultGuardForBackend(options.getFedoraGuard(), DivaMixedStorageRouting.FEDORA);
+		assertDefaultGuardForBackend(options.getDbGuard(), DivaMixedStorageRouting.DATABASE);
+		assertTrue(options.getStaleReadCache().getRecordTypes().isEmpty());
+	}
+
+	private void assertDefaultGuardForBackend(BackendGuard guard, String backend) {
+		assertEquals(guard.getBackend(), backend);
+		assertEquals(guard.getMaxConcurrentCalls(), 50);
+		assertEquals(guard.getFailureRatePercent(), 50);
+		assertEquals(guard.getWindowSize(), 20);
+		assertEquals(guard.getOpenMillis(), 30000);
+	}
+
+	@Test
+	public void testDefaultOptionsShareOneAsyncReadExecutor() {
+		assertSame(DivaMixedRecordStorageOptions.createDefaultOptions().getAsyncReadExecutor(),
+				DivaMixedRecordStorageOptions.createDefaultOptions().getAsyncReadExecutor());
+	}
+
+	@Test
+	public void testWithMethodsReturnChangedCopy() {
+		DivaMixedRecordStorageOptions defaultOptions = DivaMixedRecordStorageOptions
+				.createDefaultOptions();
+		DivaMixedStorageRouting routing = DivaMixedStorageRouting.createDefaultRouting()
+				.withBackendByTypeAddedForOperation(DivaMixedStorageRouting.READ,
+						Map.of("someType", DivaMixedStorageRouting.DATABASE));
+		BackendGuard fedoraGuard = createGuardForBackend(DivaMixedStorageRouting.FEDORA);
+		BackendGuard dbGuard = createGuardForBackend(DivaMixedStorageRouting.DATABASE);
+		StaleReadCache staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person"), TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 1000),
+						1000, Runnable::run);
+		Executor asyncReadExecutor = Runnable::run;
+
+		DivaMixedRecordStorageOptions options = defaultOptions.withRouting(routing)
+				.withFedoraGuard(fedoraGuard).withDbGuard(dbGuard)
+				.withStaleReadCache(staleReadCache).withAsyncReadExecutor(asyncReadExecutor);
+
+		assertSame(options.getRouting(), routing);
+		assertSame(options.getFedoraGuard(), fedoraGuard);
+		assertSame(options.getDbGuard(), dbGuard);
+		assertSame(options.getStaleReadCache(), staleReadCache);
+		assertSame(options.getAsyncReadExecutor(), asyncReadExecutor);
+		assertNotSame(defaultOptions.getRouting(), routing);
+		assertNotSame(defaultOptions.getFedoraGuard(), fedoraGuard);
+		assertNotSame(defaultOptions.getAsyncReadExecutor(), asyncReadExecutor);
+	}
+
+	private BackendGuard createGuardForBackend(String backend) {
+		return BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						backend, 1, 50, 1, 1000);
+	}
+}
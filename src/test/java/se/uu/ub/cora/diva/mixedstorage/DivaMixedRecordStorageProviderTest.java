@@ -20,8 +20,10 @@ package se.uu.ub.cora.diva.mixedstorage;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
@@ -30,6 +32,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Stream;
 
 import javax.naming.InitialContext;
@@ -42,15 +47,21 @@ import se.uu.ub.cora.basicstorage.RecordStorageInMemoryReadFromDisk;
 import se.uu.ub.cora.basicstorage.RecordStorageInstance;
 import se.uu.ub.cora.basicstorage.RecordStorageOnDisk;
 import se.uu.ub.cora.connection.ContextConnectionProviderImp;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.db.DivaDbCursorReader;
+import se.uu.ub.cora.diva.mixedstorage.db.DivaDbOrganisationExistenceChecker;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraConverterFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.db.DivaDbToCoraRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.fedora.CachedPerson;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraConverterFactory;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraConverterFactoryImp;
 import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.fedora.ParallelFetcher;
 import se.uu.ub.cora.diva.mixedstorage.log.LoggerFactorySpy;
 import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.sqldatabase.DataReaderImp;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactoryImp;
 import se.uu.ub.cora.sqldatabase.RecordUpdaterFactoryImp;
 import se.uu.ub.cora.storage.MetadataStorage;
@@ -160,6 +171,8 @@ public class DivaMixedRecordStorageProviderTest {
 		String fedoraURLInConverter = ((DivaFedoraConverterFactoryImp) divaFedoraConverterFactory)
 				.getFedoraURL();
 		assertEquals(fedoraURLInConverter, initInfo.get("fedoraURL"));
+		assertFalse(((DivaFedoraConverterFactoryImp) divaFedoraConverterFactory)
+				.getStreamingPersonConversion());
 
 		String baseURLInFedoraToCoraStorage = fedoraToCoraStorage.getBaseURL();
 		assertEquals(baseURLInFedoraToCoraStorage, initInfo.get("fedoraURL"));
@@ -169,6 +182,350 @@ public class DivaMixedRecordStorageProviderTest {
 
 		String fedoraPassword = fedoraToCoraStorage.getFedoraPassword();
 		assertEquals(fedoraPassword, initInfo.get("fedoraPassword"));
+
+		ParallelFetcher parallelFetcher = fedoraToCoraStorage.getParallelFetcher();
+		assertEquals(parallelFetcher.getMaxConcurrentFetches(), 10);
+		ParallelFetcher batchUpdateFetcher = fedoraToCoraStorage.getBatchUpdateFetcher();
+		assertNotSame(batchUpdateFetcher, parallelFetcher);
+		assertEquals(batchUpdateFetcher.getMaxConcurrentFetches(), 2);
+
+		TimedLruCache<String, CachedPerson> personCache = fedoraToCoraStorage.getPersonCache();
+		assertEquals(personCache.getMaxSize(), 1000);
+		assertEquals(personCache.getTimeToLiveMillis(), 300000);
+		assertFalse(fedoraToCoraStorage.getRevalidateExpiredPersons());
+	}
+
+	@Test
+	public void testFedoraStorageUsesPersonRevalidationFromInitInfo() {
+		initInfo.put("fedoraPersonRevalidation", "true");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaFedoraRecordStorage fedoraToCoraStorage = (DivaFedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+
+		assertTrue(fedoraToCoraStorage.getRevalidateExpiredPersons());
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found true as fedoraPersonRevalidation");
+	}
+
+	@Test
+	public void testFedoraStorageUsesStreamingPersonConverterFromInitInfo() {
+		initInfo.put("fedoraStreamingPersonConverter", "true");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaFedoraRecordStorage fedoraToCoraStorage = (DivaFedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+		DivaFedoraConverterFactoryImp converterFactory = (DivaFedoraConverterFactoryImp) fedoraToCoraStorage
+				.getDivaFedoraConverterFactory();
+
+		assertTrue(converterFactory.getStreamingPersonConversion());
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found true as fedoraStreamingPersonConverter");
+	}
+
+	@Test
+	public void testFedoraStorageUsesPersonCacheSettingsFromInitInfo() {
+		initInfo.put("fedoraPersonCacheMaxSize", "50");
+		initInfo.put("fedoraPersonCacheTimeToLiveSeconds", "20");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaFedoraRecordStorage fedoraToCoraStorage = (DivaFedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+
+		TimedLruCache<String, CachedPerson> personCache = fedoraToCoraStorage.getPersonCache();
+		assertEquals(personCache.getMaxSize(), 50);
+		assertEquals(personCache.getTimeToLiveMillis(), 20000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 50 as fedoraPersonCacheMaxSize");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 5),
+				"Found 20 as fedoraPersonCacheTimeToLiveSeconds");
+	}
+
+	@Test
+	public void testFedoraStorageUsesMaxConcurrentReadsFromInitInfo() {
+		initInfo.put("fedoraMaxConcurrentReads", "4");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaFedoraRecordStorage fedoraToCoraStorage = (DivaFedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+
+		ParallelFetcher parallelFetcher = fedoraToCoraStorage.getParallelFetcher();
+		assertEquals(parallelFetcher.getMaxConcurrentFetches(), 4);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 4 as fedoraMaxConcurrentReads");
+		assertEquals(loggerFactorySpy.getNoOfInfoLogMessagesUsingClassName(testedClassName), 8);
+	}
+
+	@Test
+	public void testFedoraStorageUsesMaxConcurrentBatchUpdatesFromInitInfo() {
+		initInfo.put("fedoraMaxConcurrentBatchUpdates", "3");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaFedoraRecordStorage fedoraToCoraStorage = (DivaFedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+
+		assertEquals(fedoraToCoraStorage.getBatchUpdateFetcher().getMaxConcurrentFetches(), 3);
+		assertEquals(fedoraToCoraStorage.getParallelFetcher().getMaxConcurrentFetches(), 10);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 3 as fedoraMaxConcurrentBatchUpdates");
+	}
+
+	@Test
+	public void testLoggingAndErrorIfMaxConcurrentReadsIsNotAnInteger() {
+		initInfo.put("fedoraMaxConcurrentReads", "many");
+		String errorMessage = "InitInfo parameter fedoraMaxConcurrentReads must be an integer";
+		try {
+			recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		} catch (Exception e) {
+			assertTrue(e instanceof DataStorageException);
+			assertEquals(e.getMessage(), errorMessage);
+			assertTrue(e.getCause() instanceof NumberFormatException);
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				errorMessage);
+		assertEquals(loggerFactorySpy.getNoOfFatalLogMessagesUsingClassName(testedClassName), 1);
+	}
+
+	@Test
+	public void testDefaultRouting() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		RecordStorage fedoraStorage = recordStorage.getFedoraStorage();
+		RecordStorage dbStorage = recordStorage.getDbStorage();
+
+		Map<String, RecordStorage> readStorages = recordStorage
+				.getStorageByTypeForOperation(DivaMixedStorageRouting.READ);
+		assertEquals(readStorages, Map.of("person", fedoraStorage, "divaOrganisation", dbStorage));
+		assertEquals(recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.UPDATE),
+				readStorages);
+		assertEquals(
+				recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.READ_LIST),
+				readStorages);
+		assertEquals(
+				recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.RECORD_EXISTS),
+				Map.of("divaOrganisation", dbStorage));
+	}
+
+	@Test
+	public void testDefaultBackendGuards() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		assertCorrectBackendGuard(recordStorage.getFedoraGuard(), "fedora", 50, 50, 20, 30000);
+		assertCorrectBackendGuard(recordStorage.getDbGuard(), "database", 50, 50, 20, 30000);
+	}
+
+	private void assertCorrectBackendGuard(BackendGuard backendGuard, String backend,
+			int maxConcurrentCalls, int failureRatePercent, int windowSize, long openMillis) {
+		assertEquals(backendGuard.getBackend(), backend);
+		assertEquals(backendGuard.getMaxConcurrentCalls(), maxConcurrentCalls);
+		assertEquals(backendGuard.getFailureRatePercent(), failureRatePercent);
+		assertEquals(backendGuard.getWindowSize(), windowSize);
+		assertEquals(backendGuard.getOpenMillis(), openMillis);
+	}
+
+	@Test
+	public void testBackendGuardsFromInitInfo() {
+		initInfo.put("fedoraMaxConcurrentCalls", "5");
+		initInfo.put("fedoraCircuitBreakerFailureRatePercent", "25");
+		initInfo.put("fedoraCircuitBreakerWindowSize", "10");
+		initInfo.put("fedoraCircuitBreakerOpenSeconds", "3");
+		initInfo.put("databaseMaxConcurrentCalls", "7");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		assertCorrectBackendGuard(recordStorage.getFedoraGuard(), "fedora", 5, 25, 10, 3000);
+		assertCorrectBackendGuard(recordStorage.getDbGuard(), "database", 7, 50, 20, 30000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found 5 as fedoraMaxConcurrentCalls");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 10),
+				"Found 7 as databaseMaxConcurrentCalls");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 11),
+				"DivaMixedRecordStorageProvider started DivaMixedRecordStorage");
+	}
+
+	@Test
+	public void testLoggingAndErrorIfCircuitBreakerWindowSizeIsNotPositive() {
+		initInfo.put("databaseCircuitBreakerWindowSize", "0");
+		String errorMessage = "InitInfo parameter databaseCircuitBreakerWindowSize"
+				+ " must be a positive integer";
+		try {
+			recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+			fail("Exception should have been thrown");
+		} catch (Exception e) {
+			assertTrue(e instanceof DataStorageException);
+			assertEquals(e.getMessage(), errorMessage);
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				errorMessage);
+		assertEquals(loggerFactorySpy.getNoOfFatalLogMessagesUsingClassName(testedClassName), 1);
+	}
+
+	@Test
+	public void testStaleReadsDisabledByDefault() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		assertTrue(recordStorage.getStaleReadCache().getRecordTypes().isEmpty());
+	}
+
+	@Test
+	public void testStaleReadCacheFromInitInfo() {
+		initInfo.put("staleReadRecordTypes", "person, divaOrganisation,");
+		initInfo.put("staleReadFreshSeconds", "15");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		StaleReadCache staleReadCache = recordStorage.getStaleReadCache();
+		assertEquals(staleReadCache.getRecordTypes(), Set.of("person", "divaOrganisation"));
+		assertEquals(staleReadCache.getRecords().getMaxSize(), 10000);
+		assertEquals(staleReadCache.getRecords().getTimeToLiveMillis(), 15000);
+		assertEquals(staleReadCache.getMaxStaleMillis(), 600000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found person, divaOrganisation, as staleReadRecordTypes");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 7),
+				"Found 15 as staleReadFreshSeconds");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 8),
+				"DivaMixedRecordStorageProvider started DivaMixedRecordStorage");
+	}
+
+	@Test
+	public void testStaleReadMaxStaleSecondsFromInitInfo() {
+		initInfo.put("staleReadRecordTypes", "person");
+		initInfo.put("staleReadMaxStaleSeconds", "120");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		assertEquals(recordStorage.getStaleReadCache().getMaxStaleMillis(), 120000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 7),
+				"Found 120 as staleReadMaxStaleSeconds");
+	}
+
+	@Test
+	public void testAsyncReadExecutorFromInitInfo() {
+		initInfo.put("asyncReadThreads", "4");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) recordStorage.getAsyncReadExecutor();
+		assertEquals(executor.getCorePoolSize(), 4);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found 4 as asyncReadThreads");
+	}
+
+	@Test
+	public void testDefaultAsyncReadExecutor() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) recordStorage.getAsyncReadExecutor();
+		assertEquals(executor.getCorePoolSize(), 16);
+	}
+
+	@Test
+	public void testStartingNewRecordStorageShutsDownPreviousAsyncReadExecutor() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		ExecutorService previousExecutor = getAsyncReadExecutorFromProvider(
+				recordStorageOnDiskProvider);
+		RecordStorageInstance.setInstance(null);
+		DivaMixedRecordStorageProvider newProvider = new DivaMixedRecordStorageProvider();
+
+		newProvider.startUsingInitInfo(initInfo);
+
+		assertTrue(previousExecutor.isShutdown());
+		assertFalse(getAsyncReadExecutorFromProvider(newProvider).isShutdown());
+	}
+
+	private ExecutorService getAsyncReadExecutorFromProvider(
+			DivaMixedRecordStorageProvider provider) {
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) provider
+				.getRecordStorage();
+		return (ExecutorService) recordStorage.getAsyncReadExecutor();
+	}
+
+	@Test
+	public void testRoutingFromInitInfo() {
+		initInfo.put("storageRoutingRead", "person:basic, divaOrganisation:database,"
+				+ "divaPublication:database");
+		initInfo.put("storageRoutingUpdate", "");
+		initInfo.put("storageRoutingReadList", "divaPublication:fedora");
+		initInfo.put("storageRoutingRecordExists", "divaPublication:database");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		RecordStorage basicStorage = recordStorage.getBasicStorage();
+		RecordStorage fedoraStorage = recordStorage.getFedoraStorage();
+		RecordStorage dbStorage = recordStorage.getDbStorage();
+
+		assertEquals(recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.READ),
+				Map.of("person", basicStorage, "divaOrganisation", dbStorage, "divaPublication",
+						dbStorage));
+		assertEquals(recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.UPDATE),
+				Map.of("person", fedoraStorage, "divaOrganisation", dbStorage));
+		assertEquals(
+				recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.READ_LIST),
+				Map.of("person", fedoraStorage, "divaOrganisation", dbStorage, "divaPublication",
+						fedoraStorage));
+		assertEquals(
+				recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.RECORD_EXISTS),
+				Map.of("divaOrganisation", dbStorage, "divaPublication", dbStorage));
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found person:basic, divaOrganisation:database,divaPublication:database"
+						+ " as storageRoutingRead");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 10),
+				"DivaMixedRecordStorageProvider started DivaMixedRecordStorage");
+	}
+
+	@Test
+	public void testPartialRoutingFromInitInfoKeepsDefaultRoutesForOtherTypes() {
+		initInfo.put("storageRoutingRead", "divaPublication:database");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		RecordStorage fedoraStorage = recordStorage.getFedoraStorage();
+		RecordStorage dbStorage = recordStorage.getDbStorage();
+
+		assertEquals(recordStorage.getStorageByTypeForOperation(DivaMixedStorageRouting.READ),
+				Map.of("person", fedoraStorage, "divaOrganisation", dbStorage, "divaPublication",
+						dbStorage));
+	}
+
+	@Test
+	public void testLoggingAndErrorIfRouteHasUnknownBackend() {
+		initInfo.put("storageRoutingRead", "person:fedora,divaPublication:solr");
+		String errorMessage = "InitInfo parameter storageRoutingRead must contain routes as"
+				+ " type:backend where backend is one of [basic, fedora, database],"
+				+ " found: divaPublication:solr";
+		try {
+			recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+			fail("Exception should have been thrown");
+		} catch (Exception e) {
+			assertTrue(e instanceof DataStorageException);
+			assertEquals(e.getMessage(), errorMessage);
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				errorMessage);
+	}
+
+	@Test(expectedExceptions = DataStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "InitInfo parameter storageRoutingUpdate must contain routes as type:backend .*"
+			+ "found: person")
+	public void testErrorIfRouteHasNoBackend() {
+		initInfo.put("storageRoutingUpdate", "person");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
 	}
 
 	@Test
@@ -192,6 +549,79 @@ public class DivaMixedRecordStorageProviderTest {
 		assertSame(divaDbToCoraFactory.getReaderFactory(), recordReaderFactory);
 		assertSame(divaDbToCoraFactory.getConverterFactory(), dbStorage.getConverterFactory());
 
+		DataReaderImp dataReader = (DataReaderImp) divaDbToCoraFactory.getDataReader();
+		assertSame(dataReader.getSqlConnectionProvider(),
+				recordReaderFactory.getSqlConnectionProvider());
+
+		DivaDbCursorReader cursorReader = dbStorage.getCursorReader();
+		assertSame(cursorReader.getSqlConnectionProvider(),
+				recordReaderFactory.getSqlConnectionProvider());
+		assertEquals(cursorReader.getFetchSize(), 500);
+
+		DivaDbOrganisationExistenceChecker existenceChecker = dbStorage.getExistenceChecker();
+		assertSame(existenceChecker.getDataReader(), dataReader);
+		TimedLruCache<String, Boolean> existenceCache = existenceChecker.getExistenceCache();
+		assertEquals(existenceCache.getMaxSize(), 10000);
+		assertEquals(existenceCache.getTimeToLiveMillis(), 10000);
+
+		TimedLruCache<String, DataGroup> organisations = dbStorage.getOrganisationCache()
+				.getOrganisations();
+		assertEquals(organisations.getMaxSize(), 1000);
+		assertEquals(organisations.getTimeToLiveMillis(), 60000);
+	}
+
+	@Test
+	public void testDbStorageUsesExportFetchSizeFromInitInfo() {
+		initInfo.put("databaseExportFetchSize", "2000");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaDbToCoraRecordStorage dbStorage = (DivaDbToCoraRecordStorage) recordStorage
+				.getDbStorage();
+
+		assertEquals(dbStorage.getCursorReader().getFetchSize(), 2000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found 2000 as databaseExportFetchSize");
+	}
+
+	@Test
+	public void testDbStorageUsesOrganisationExistsCacheSettingsFromInitInfo() {
+		initInfo.put("databaseOrganisationExistsCacheMaxSize", "50");
+		initInfo.put("databaseOrganisationExistsCacheTimeToLiveSeconds", "2");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaDbToCoraRecordStorage dbStorage = (DivaDbToCoraRecordStorage) recordStorage
+				.getDbStorage();
+
+		TimedLruCache<String, Boolean> existenceCache = dbStorage.getExistenceChecker()
+				.getExistenceCache();
+		assertEquals(existenceCache.getMaxSize(), 50);
+		assertEquals(existenceCache.getTimeToLiveMillis(), 2000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found 50 as databaseOrganisationExistsCacheMaxSize");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 7),
+				"Found 2 as databaseOrganisationExistsCacheTimeToLiveSeconds");
+	}
+
+	@Test
+	public void testDbStorageUsesOrganisationCacheSettingsFromInitInfo() {
+		initInfo.put("databaseOrganisationCacheMaxSize", "20");
+		initInfo.put("databaseOrganisationCacheTimeToLiveSeconds", "3");
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		DivaMixedRecordStorage recordStorage = (DivaMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		DivaDbToCoraRecordStorage dbStorage = (DivaDbToCoraRecordStorage) recordStorage
+				.getDbStorage();
+
+		TimedLruCache<String, DataGroup> organisations = dbStorage.getOrganisationCache()
+				.getOrganisations();
+		assertEquals(organisations.getMaxSize(), 20);
+		assertEquals(organisations.getTimeToLiveMillis(), 3000);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found 20 as databaseOrganisationCacheMaxSize");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 7),
+				"Found 3 as databaseOrganisationCacheTimeToLiveSeconds");
 	}
 
 	private RecordReaderFactoryImp assertCorrectRecordReaderFactory(
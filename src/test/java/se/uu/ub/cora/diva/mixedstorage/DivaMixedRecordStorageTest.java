@@ -23,11 +23,31 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.fedora.BatchUpdateReport;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DataGroupFactorySpy;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraConverterFactorySpy;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DivaFedoraRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.fedora.HttpHandlerFactorySpy;
 import se.uu.ub.cora.storage.RecordStorage;
 
 public class DivaMixedRecordStorageTest {
@@ -400,6 +420,86 @@ public class DivaMixedRecordStorageTest {
 		assertCorrectSpyData(expectedData, spyData);
 	}
 
+	@Test
+	public void readExistingRecordIdsForOrganisationGoesToDbStorageInOneCall() throws Exception {
+		DivaDbToCoraStorageSpy divaDbToCoraStorageSpy = new DivaDbToCoraStorageSpy();
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorage(basicStorage, divaFedoraToCoraStorage,
+						divaDbToCoraStorageSpy);
+		List<String> ids = List.of("someId", "someExistingId");
+
+		Set<String> existingIds = mixedStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("divaOrganisation", ids);
+
+		assertSame(existingIds, divaDbToCoraStorageSpy.existingIds);
+		assertSame(divaDbToCoraStorageSpy.ids, ids);
+		assertEquals(divaDbToCoraStorageSpy.data.type, "divaOrganisation");
+		assertEquals(divaDbToCoraStorageSpy.data.calledMethod,
+				"readExistingRecordIdsForRecordTypeAndRecordIds");
+		assertNoInteractionWithStorage(basicStorage);
+		assertNoInteractionWithStorage(divaFedoraToCoraStorage);
+	}
+
+	@Test
+	public void readExistingRecordIdsForOtherTypeGoesToBasicStorageOneByOne() throws Exception {
+		Set<String> existingIds = ((DivaMixedRecordStorage) divaMixedRecordStorage)
+				.readExistingRecordIdsForRecordTypeAndRecordIds("someType",
+						List.of("someId", "someOtherId"));
+
+		assertTrue(existingIds.isEmpty());
+		assertEquals(basicStorage.data.type, "someType");
+		assertEquals(basicStorage.data.id, "someOtherId");
+		assertEquals(basicStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+		assertNoInteractionWithStorage(divaFedoraToCoraStorage);
+		assertNoInteractionWithStorage(divaDbToCoraStorage);
+	}
+
+	@Test
+	public void testRoutingDecidesStorageForEachOperation() throws Exception {
+		DivaMixedStorageRouting routing = DivaMixedStorageRouting.createDefaultRouting()
+				.withBackendByTypeAddedForOperation(DivaMixedStorageRouting.READ,
+						Map.of("divaPublication", DivaMixedStorageRouting.DATABASE, "person",
+								DivaMixedStorageRouting.BASIC))
+				.withBackendByTypeAddedForOperation(DivaMixedStorageRouting.READ_LIST,
+						Map.of("divaPublication", DivaMixedStorageRouting.FEDORA));
+		divaMixedRecordStorage = DivaMixedRecordStorage.usingBasicAndFedoraAndDbStorageAndOptions(
+				basicStorage, divaFedoraToCoraStorage, divaDbToCoraStorage,
+				DivaMixedRecordStorageOptions.createDefaultOptions().withRouting(routing));
+
+		divaMixedRecordStorage.read("divaPublication", "someId");
+		assertEquals(divaDbToCoraStorage.data.calledMethod, "read");
+		assertEquals(divaDbToCoraStorage.data.type, "divaPublication");
+
+		divaMixedRecordStorage.read("person", "someId");
+		assertEquals(basicStorage.data.calledMethod, "read");
+		assertEquals(basicStorage.data.type, "person");
+
+		divaMixedRecordStorage.readList("divaPublication", new DataGroupSpy("filter"));
+		assertEquals(divaFedoraToCoraStorage.data.calledMethod, "readList");
+		assertEquals(divaFedoraToCoraStorage.data.type, "divaPublication");
+	}
+
+	@Test
+	public void readExistingRecordIdsOneByOneWhenRoutedStorageHasNoBulkCheck() throws Exception {
+		DivaMixedStorageRouting routing = DivaMixedStorageRouting.createDefaultRouting()
+				.withBackendByTypeAddedForOperation(DivaMixedStorageRouting.RECORD_EXISTS,
+						Map.of("divaPublication", DivaMixedStorageRouting.DATABASE));
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, divaFedoraToCoraStorage,
+						divaDbToCoraStorage,
+						DivaMixedRecordStorageOptions.createDefaultOptions().withRouting(routing));
+
+		Set<String> existingIds = mixedStorage.readExistingRecordIdsForRecordTypeAndRecordIds(
+				"divaPublication", List.of("someId", "someOtherId"));
+
+		assertTrue(existingIds.isEmpty());
+		assertEquals(divaDbToCoraStorage.data.id, "someOtherId");
+		assertEquals(divaDbToCoraStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+		assertNoInteractionWithStorage(basicStorage);
+	}
+
 	private void assertCorrectSpyData(RecordStorageSpyData expectedData,
 			RecordStorageSpyData spyData) {
 		assertEquals(spyData.type, expectedData.type);
@@ -423,4 +523,323 @@ public class DivaMixedRecordStorageTest {
 		assertSame(searchTerm, basicStorage.returnedIndexTerm);
 	}
 
+
+	@Test
+	public void testMetricsAreRecordedPerBackendOperationAndType() throws Exception {
+		divaMixedRecordStorage.read("person", "someId");
+		divaMixedRecordStorage.read("divaOrganisation", "someId");
+		divaMixedRecordStorage.read("divaOrganisation", "someOtherId");
+		divaMixedRecordStorage.create("someType", "someId", null, null, null, "divider");
+
+		StorageMetrics storageMetrics = ((DivaMixedRecordStorage) divaMixedRecordStorage)
+				.getStorageMetrics();
+		List<OperationMetricsSnapshot> snapshots = storageMetrics.createSnapshot();
+		assertEquals(snapshots.size(), 3);
+		assertEquals(getCountForBackendOperationAndType(snapshots, "fedora", "read", "person"),
+				1);
+		assertEquals(getCountForBackendOperationAndType(snapshots, "database", "read",
+				"divaOrganisation"), 2);
+		assertEquals(
+				getCountForBackendOperationAndType(snapshots, "basic", "create", "someType"), 1);
+	}
+
+	private long getCountForBackendOperationAndType(List<OperationMetricsSnapshot> snapshots,
+			String backend, String operation, String type) {
+		for (OperationMetricsSnapshot snapshot : snapshots) {
+			if (snapshot.getBackend().equals(backend) && snapshot.getOperation().equals(operation)
+					&& snapshot.getType().equals(type)) {
+				return snapshot.getCount();
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void testDefaultBackendGuards() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) divaMixedRecordStorage;
+
+		assertEquals(mixedStorage.getFedoraGuard().getBackend(), "fedora");
+		assertEquals(mixedStorage.getDbGuard().getBackend(), "database");
+		assertEquals(mixedStorage.getFedoraGuard().getMaxConcurrentCalls(), 50);
+		assertEquals(mixedStorage.getFedoraGuard().getFailureRatePercent(), 50);
+		assertEquals(mixedStorage.getFedoraGuard().getWindowSize(), 20);
+		assertEquals(mixedStorage.getFedoraGuard().getOpenMillis(), 30000);
+	}
+
+	@Test
+	public void testOpenFedoraGuardFailsFastAndLeavesOtherBackendsResponsive()
+			throws Exception {
+		BackendGuard fedoraGuard = BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						"fedora", 10, 50, 1, 60000);
+		BackendGuard dbGuard = BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						"database", 10, 50, 1, 60000);
+		RecordStorageSpy failingFedoraStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				throw FedoraException.withMessage("fedora is down");
+			}
+		};
+		divaMixedRecordStorage = DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, failingFedoraStorage,
+						divaDbToCoraStorage, DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withFedoraGuard(fedoraGuard).withDbGuard(dbGuard));
+		assertSame(((DivaMixedRecordStorage) divaMixedRecordStorage).getFedoraGuard(),
+				fedoraGuard);
+		assertSame(((DivaMixedRecordStorage) divaMixedRecordStorage).getDbGuard(), dbGuard);
+
+		readPersonAndExpectException(FedoraException.class);
+		readPersonAndExpectException(BackendUnavailableException.class);
+
+		assertEquals(fedoraGuard.getState(), BackendGuard.State.OPEN);
+		assertNotNull(divaMixedRecordStorage.read("divaOrganisation", "someOrgId"));
+		assertNotNull(divaMixedRecordStorage.read("someType", "someId"));
+		assertEquals(dbGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	private void readPersonAndExpectException(Class<? extends Exception> exceptionClass) {
+		try {
+			divaMixedRecordStorage.read("person", "someId");
+			fail("exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertTrue(exceptionClass.isInstance(e));
+		}
+	}
+
+	@Test
+	public void testStaleReadsAreDisabledByDefault() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) divaMixedRecordStorage;
+
+		assertTrue(mixedStorage.getStaleReadCache().getRecordTypes().isEmpty());
+	}
+
+	@Test
+	public void testStaleReadCacheIsUsedForFedoraAndDbReadsAndInvalidatedOnUpdate()
+			throws Exception {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		StaleReadCache staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person", "divaOrganisation"),
+						TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 60000), 600000,
+						Runnable::run);
+		divaMixedRecordStorage = DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, divaFedoraToCoraStorage,
+						divaDbToCoraStorage, DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withStaleReadCache(staleReadCache));
+		assertSame(((DivaMixedRecordStorage) divaMixedRecordStorage).getStaleReadCache(),
+				staleReadCache);
+
+		divaMixedRecordStorage.read("person", "1");
+		divaMixedRecordStorage.read("divaOrganisation", "2");
+		divaFedoraToCoraStorage.data.calledMethod = null;
+
+		assertNotNull(divaMixedRecordStorage.read("person", "1"));
+		assertNull(divaFedoraToCoraStorage.data.calledMethod);
+
+		divaMixedRecordStorage.update("person", "1", null, null, null, "divider");
+		divaMixedRecordStorage.read("person", "1");
+		assertEquals(divaFedoraToCoraStorage.data.calledMethod, "read");
+
+		assertNotNull(staleReadCache.getCopyOfStaleRecord("divaOrganisation", "2"));
+		divaMixedRecordStorage.deleteByTypeAndId("divaOrganisation", "2");
+		assertNull(staleReadCache.getCopyOfStaleRecord("divaOrganisation", "2"));
+	}
+
+	@Test
+	public void testBatchUpdateOfPersonsInvalidatesStaleRecords() throws Exception {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		StaleReadCache staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person"), TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 60000),
+						600000, Runnable::run);
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "authority-person:1",
+				new DataGroupSpy("person"), 0);
+		DivaFedoraRecordStorage fedoraStorage = DivaFedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPassword(
+						new HttpHandlerFactorySpy(), new DivaFedoraConverterFactorySpy(),
+						"http://fedora/", "user", "pass");
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, fedoraStorage,
+						divaDbToCoraStorage, DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withStaleReadCache(staleReadCache));
+
+		BatchUpdateReport report = mixedStorage.updatePersonsUsingRecordsById(
+				Map.of("authority-person:1", new DataGroupSpy("authority")));
+
+		assertTrue(report.wasUpdated("authority-person:1"));
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "authority-person:1"));
+	}
+
+	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
+			+ "updatePersonsUsingRecordsById is not implemented for fedora storage: "
+			+ "RecordStorageSpy")
+	public void testBatchUpdateOfPersonsRequiresFedoraRecordStorage() throws Exception {
+		((DivaMixedRecordStorage) divaMixedRecordStorage)
+				.updatePersonsUsingRecordsById(Map.of());
+	}
+
+	@Test
+	public void testReadAsyncUsesRouting() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) divaMixedRecordStorage;
+
+		DataGroup read = mixedStorage.readAsync("person", "someId").get(5, TimeUnit.SECONDS);
+
+		assertSame(read, divaFedoraToCoraStorage.data.answer);
+		assertEquals(divaFedoraToCoraStorage.data.id, "someId");
+		assertNoInteractionWithStorage(basicStorage);
+	}
+
+	@Test
+	public void testReadAsyncRunsOnAsyncReadExecutor() throws Exception {
+		List<Runnable> executed = new ArrayList<>();
+		Executor executor = runnable -> {
+			executed.add(runnable);
+			runnable.run();
+		};
+		DivaMixedRecordStorage mixedStorage = createMixedStorageUsingAsyncReadExecutor(executor);
+		assertSame(mixedStorage.getAsyncReadExecutor(), executor);
+
+		mixedStorage.readAsync("someType", "someId").get(5, TimeUnit.SECONDS);
+
+		assertEquals(executed.size(), 1);
+		assertEquals(basicStorage.data.calledMethod, "read");
+	}
+
+	private DivaMixedRecordStorage createMixedStorageUsingAsyncReadExecutor(Executor executor) {
+		return (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage, divaFedoraToCoraStorage,
+						divaDbToCoraStorage, DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withAsyncReadExecutor(executor));
+	}
+
+	@Test
+	public void testReadManyAsyncReadsBackendsConcurrently() throws Exception {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		RecordStorageSpy fedoraStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				return awaitOtherReadAndReturnGroup(bothStarted, "person" + id);
+			}
+		};
+		RecordStorageSpy dbStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				return awaitOtherReadAndReturnGroup(bothStarted, "organisation" + id);
+			}
+		};
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorage(basicStorage, fedoraStorage, dbStorage);
+
+		List<DataGroup> records = mixedStorage
+				.readManyAsync(List.of(RecordReference.usingTypeAndId("person", "1"),
+						RecordReference.usingTypeAndId("divaOrganisation", "2")))
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals(records.get(0).getNameInData(), "person1");
+		assertEquals(records.get(1).getNameInData(), "organisation2");
+	}
+
+	private DataGroup awaitOtherReadAndReturnGroup(CountDownLatch bothStarted,
+			String nameInData) {
+		bothStarted.countDown();
+		try {
+			if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+				throw new RuntimeException("reads did not run concurrently");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new DataGroupSpy(nameInData);
+	}
+
+	@Test
+	public void testReadManyAsyncReadsDuplicateReferencesOnceAndKeepsOrder() throws Exception {
+		List<String> readIds = new ArrayList<>();
+		RecordStorageSpy countingBasicStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				readIds.add(id);
+				return new DataGroupSpy(id);
+			}
+		};
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(countingBasicStorage,
+						divaFedoraToCoraStorage, divaDbToCoraStorage,
+						DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withAsyncReadExecutor(Runnable::run));
+
+		List<DataGroup> records = mixedStorage.readManyAsync(List.of(
+				RecordReference.usingTypeAndId("someType", "a"),
+				RecordReference.usingTypeAndId("someType", "b"),
+				RecordReference.usingTypeAndId("someType", "a"))).get(5, TimeUnit.SECONDS);
+
+		assertEquals(readIds, List.of("a", "b"));
+		assertEquals(records.size(), 3);
+		assertEquals(records.get(0).getNameInData(), "a");
+		assertEquals(records.get(1).getNameInData(), "b");
+		assertSame(records.get(2), records.get(0));
+	}
+
+	@Test
+	public void testReadManyAsyncWithNoReferences() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) divaMixedRecordStorage;
+
+		assertTrue(mixedStorage.readManyAsync(List.of()).get(5, TimeUnit.SECONDS).isEmpty());
+	}
+
+	@Test
+	public void testReadManyAsyncCompletesExceptionallyIfAReadFails() throws Exception {
+		RuntimeException error = FedoraException.withMessage("fedora is down");
+		RecordStorageSpy failingFedoraStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				throw error;
+			}
+		};
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorage(basicStorage, failingFedoraStorage,
+						divaDbToCoraStorage);
+
+		CompletableFuture<List<DataGroup>> records = mixedStorage
+				.readManyAsync(List.of(RecordReference.usingTypeAndId("someType", "1"),
+						RecordReference.usingTypeAndId("person", "2")));
+		try {
+			records.get(5, TimeUnit.SECONDS);
+			fail("exception should have been thrown");
+		} catch (ExecutionException e) {
+			assertSame(e.getCause(), error);
+		}
+	}
+
+	@Test
+	public void testStoragesCreatedWithoutAsyncReadExecutorShareOneExecutor() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorage(basicStorage, divaFedoraToCoraStorage,
+						divaDbToCoraStorage);
+		DivaMixedRecordStorage otherMixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(basicStorage,
+						divaFedoraToCoraStorage, divaDbToCoraStorage,
+						DivaMixedRecordStorageOptions.createDefaultOptions());
+
+		assertSame(mixedStorage.getAsyncReadExecutor(), otherMixedStorage.getAsyncReadExecutor());
+		assertEquals(((ThreadPoolExecutor) mixedStorage.getAsyncReadExecutor()).getCorePoolSize(),
+				16);
+	}
+
+	@Test
+	public void testCreateAsyncReadExecutorUsesDaemonThreads() throws Exception {
+		ExecutorService executor = DivaMixedRecordStorage
+				.createAsyncReadExecutorUsingNoOfThreads(3);
+		try {
+			assertEquals(((ThreadPoolExecutor) executor).getCorePoolSize(), 3);
+			Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+			assertTrue(thread.isDaemon());
+			assertTrue(thread.getName().startsWith("diva-mixed-async-read-"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
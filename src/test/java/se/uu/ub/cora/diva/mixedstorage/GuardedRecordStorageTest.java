@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public class GuardedRecordStorageTest {
+	private RecordStorageSpy recordStorage;
+	private BackendGuard backendGuard;
+	private GuardedRecordStorage guardedStorage;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		recordStorage = new RecordStorageSpy();
+		backendGuard = BackendGuard
+				.usingBackendAndMaxConcurrentCallsAndFailureRatePercentAndWindowSizeAndOpenMillis(
+						"fedora", 2, 50, 2, 60000);
+		guardedStorage = GuardedRecordStorage.usingRecordStorageAndBackendGuard(recordStorage,
+				backendGuard);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(guardedStorage instanceof RecordStorage);
+		assertTrue(guardedStorage instanceof RecordExistenceStorage);
+		assertSame(guardedStorage.getRecordStorage(), recordStorage);
+		assertSame(guardedStorage.getBackendGuard(), backendGuard);
+	}
+
+	@Test
+	public void testAllOperationsAreDelegated() throws Exception {
+		DataGroup record = new DataGroupSpy("record");
+		assertSame(guardedStorage.read("someType", "id"), recordStorage.data.answer);
+		guardedStorage.create("someType", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "create");
+		assertSame(recordStorage.data.record, record);
+		guardedStorage.update("someType", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "update");
+		guardedStorage.deleteByTypeAndId("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "deleteByTypeAndId");
+		guardedStorage.linksExistForRecord("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "linksExistForRecord");
+		guardedStorage.readList("someType", null);
+		assertEquals(recordStorage.data.calledMethod, "readList");
+		guardedStorage.readAbstractList("someType", null);
+		assertEquals(recordStorage.data.calledMethod, "readAbstractList");
+		guardedStorage.readLinkList("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "readLinkList");
+		guardedStorage.generateLinkCollectionPointingToRecord("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "generateLinkCollectionPointingToRecord");
+		guardedStorage.recordsExistForRecordType("someType");
+		assertEquals(recordStorage.data.calledMethod, "recordsExistForRecordType");
+		guardedStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("someType",
+				"id");
+		assertEquals(recordStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+	}
+
+	@Test
+	public void testReadExistingRecordIdsUsesBulkSupport() throws Exception {
+		DivaDbToCoraStorageSpy dbStorage = new DivaDbToCoraStorageSpy();
+		dbStorage.existingIds = Set.of("2");
+		guardedStorage = GuardedRecordStorage.usingRecordStorageAndBackendGuard(dbStorage,
+				backendGuard);
+
+		Set<String> existing = guardedStorage.readExistingRecordIdsForRecordTypeAndRecordIds(
+				"divaOrganisation", List.of("1", "2"));
+
+		assertEquals(existing, Set.of("2"));
+		assertEquals(dbStorage.ids, List.of("1", "2"));
+	}
+
+	@Test
+	public void testReadExistingRecordIdsOneByOneWhenNoBulkSupport() throws Exception {
+		Set<String> existing = guardedStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("someType", List.of("1", "2"));
+
+		assertTrue(existing.isEmpty());
+		assertEquals(recordStorage.data.id, "2");
+	}
+
+	@Test
+	public void testFailingBackendOpensGuardAndFailsFast() throws Exception {
+		RecordStorageSpy failingStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				data.calledMethod = "read";
+				throw FedoraException.withMessage("fedora is down");
+			}
+		};
+		guardedStorage = GuardedRecordStorage.usingRecordStorageAndBackendGuard(failingStorage,
+				backendGuard);
+		readAndExpectException(FedoraException.class);
+		readAndExpectException(FedoraException.class);
+		failingStorage.data.calledMethod = null;
+
+		readAndExpectException(BackendUnavailableException.class);
+
+		assertEquals(failingStorage.data.calledMethod, null);
+	}
+
+	private void readAndExpectException(Class<? extends Exception> exceptionClass) {
+		try {
+			guardedStorage.read("person", "someId");
+			fail("exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertTrue(exceptionClass.isInstance(e));
+		}
+	}
+}
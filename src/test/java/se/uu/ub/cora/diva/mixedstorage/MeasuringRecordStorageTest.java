@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public class MeasuringRecordStorageTest {
+	private RecordStorageSpy recordStorage;
+	private StorageMetrics storageMetrics;
+	private MeasuringRecordStorage measuringStorage;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		recordStorage = new RecordStorageSpy();
+		storageMetrics = new StorageMetrics();
+		measuringStorage = MeasuringRecordStorage.usingRecordStorageAndBackendAndStorageMetrics(
+				recordStorage, "fedora", storageMetrics);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(measuringStorage instanceof RecordStorage);
+		assertTrue(measuringStorage instanceof RecordExistenceStorage);
+		assertSame(measuringStorage.getRecordStorage(), recordStorage);
+		assertEquals(measuringStorage.getBackend(), "fedora");
+		assertTrue(storageMetrics.createSnapshot().isEmpty());
+	}
+
+	@Test
+	public void testReadIsDelegatedAndMeasured() throws Exception {
+		DataGroup readGroup = measuringStorage.read("person", "someId");
+
+		assertSame(readGroup, recordStorage.data.answer);
+		assertEquals(recordStorage.data.calledMethod, "read");
+		assertEquals(recordStorage.data.id, "someId");
+
+		OperationMetricsSnapshot snapshot = getOnlySnapshot();
+		assertEquals(snapshot.getBackend(), "fedora");
+		assertEquals(snapshot.getOperation(), "read");
+		assertEquals(snapshot.getType(), "person");
+		assertEquals(snapshot.getCount(), 1);
+		assertEquals(snapshot.getErrors(), 0);
+		assertTrue(snapshot.getTotalNanos() >= 0);
+	}
+
+	private OperationMetricsSnapshot getOnlySnapshot() {
+		List<OperationMetricsSnapshot> snapshots = storageMetrics.createSnapshot();
+		assertEquals(snapshots.size(), 1);
+		return snapshots.get(0);
+	}
+
+	@Test
+	public void testCallsAreCountedPerType() throws Exception {
+		measuringStorage.read("person", "someId");
+		measuringStorage.read("person", "someOtherId");
+		measuringStorage.read("otherType", "someId");
+
+		List<OperationMetricsSnapshot> snapshots = storageMetrics.createSnapshot();
+		assertEquals(snapshots.size(), 2);
+		for (OperationMetricsSnapshot snapshot : snapshots) {
+			long expectedCount = "person".equals(snapshot.getType()) ? 2 : 1;
+			assertEquals(snapshot.getCount(), expectedCount);
+		}
+	}
+
+	@Test
+	public void testFailingCallIsCountedAsErrorAndRethrown() throws Exception {
+		RuntimeException error = new RuntimeException("read failed");
+		RecordStorageSpy failingStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				throw error;
+			}
+		};
+		measuringStorage = MeasuringRecordStorage.usingRecordStorageAndBackendAndStorageMetrics(
+				failingStorage, "database", storageMetrics);
+		try {
+			measuringStorage.read("divaOrganisation", "1");
+			fail("exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertSame(e, error);
+		}
+
+		OperationMetricsSnapshot snapshot = getOnlySnapshot();
+		assertEquals(snapshot.getBackend(), "database");
+		assertEquals(snapshot.getCount(), 1);
+		assertEquals(snapshot.getErrors(), 1);
+	}
+
+	@Test
+	public void testNullTypeIsMeasuredAsEmptyType() throws Exception {
+		measuringStorage.readAbstractList(null, null);
+
+		OperationMetricsSnapshot snapshot = getOnlySnapshot();
+		assertEquals(snapshot.getOperation(), "readAbstractList");
+		assertEquals(snapshot.getType(), "");
+	}
+
+	@Test
+	public void testAllOperationsAreDelegatedAndMeasured() throws Exception {
+		DataGroup record = new DataGroupSpy("record");
+		measuringStorage.create("someType", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "create");
+		assertSame(recordStorage.data.record, record);
+		measuringStorage.update("someType", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "update");
+		measuringStorage.deleteByTypeAndId("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "deleteByTypeAndId");
+		measuringStorage.linksExistForRecord("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "linksExistForRecord");
+		measuringStorage.readList("someType", null);
+		assertEquals(recordStorage.data.calledMethod, "readList");
+		measuringStorage.readAbstractList("someType", null);
+		assertEquals(recordStorage.data.calledMethod, "readAbstractList");
+		measuringStorage.readLinkList("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "readLinkList");
+		measuringStorage.generateLinkCollectionPointingToRecord("someType", "id");
+		assertEquals(recordStorage.data.calledMethod, "generateLinkCollectionPointingToRecord");
+		measuringStorage.recordsExistForRecordType("someType");
+		assertEquals(recordStorage.data.calledMethod, "recordsExistForRecordType");
+		measuringStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("someType",
+				"id");
+		assertEquals(recordStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+
+		assertEquals(storageMetrics.createSnapshot().size(), 10);
+	}
+
+	@Test
+	public void testReadExistingRecordIdsOneByOneWhenNoBulkSupport() throws Exception {
+		Set<String> existing = measuringStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("someType", List.of("1", "2"));
+
+		assertTrue(existing.isEmpty());
+		assertEquals(recordStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+		assertEquals(recordStorage.data.id, "2");
+		assertEquals(getOnlySnapshot().getOperation(), "readExistingRecordIds");
+	}
+
+	@Test
+	public void testReadExistingRecordIdsUsesBulkSupport() throws Exception {
+		DivaDbToCoraStorageSpy dbStorage = new DivaDbToCoraStorageSpy();
+		dbStorage.existingIds = Set.of("2");
+		measuringStorage = MeasuringRecordStorage.usingRecordStorageAndBackendAndStorageMetrics(
+				dbStorage, "database", storageMetrics);
+
+		Set<String> existing = measuringStorage.readExistingRecordIdsForRecordTypeAndRecordIds(
+				"divaOrganisation", List.of("1", "2"));
+
+		assertEquals(existing, Set.of("2"));
+		assertEquals(dbStorage.ids, List.of("1", "2"));
+		assertEquals(getOnlySnapshot().getCount(), 1);
+	}
+}
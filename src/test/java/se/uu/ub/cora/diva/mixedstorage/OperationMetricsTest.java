@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class OperationMetricsTest {
+
+	@Test
+	public void testBucketIndexForNanos() throws Exception {
+		assertEquals(OperationMetrics.getBucketIndexForNanos(0), 0);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(999), 0);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(1_000), 1);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(1_999), 1);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(2_000), 2);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(1_000_000), 10);
+		assertEquals(OperationMetrics.getBucketIndexForNanos(Long.MAX_VALUE), 31);
+	}
+
+	@Test
+	public void testEmptySnapshot() throws Exception {
+		OperationMetrics metrics = new OperationMetrics();
+		OperationMetricsSnapshot snapshot = metrics
+				.createSnapshotUsingBackendAndOperationAndType("fedora", "read", "person");
+
+		assertEquals(snapshot.getBackend(), "fedora");
+		assertEquals(snapshot.getOperation(), "read");
+		assertEquals(snapshot.getType(), "person");
+		assertEquals(snapshot.getCount(), 0);
+		assertEquals(snapshot.getErrors(), 0);
+		assertEquals(snapshot.getMeanNanos(), 0);
+		assertEquals(snapshot.getMaxNanos(), 0);
+		assertEquals(snapshot.getPercentileUpperBoundMicros(99), 0);
+	}
+
+	@Test
+	public void testSnapshotContainsRecordedCalls() throws Exception {
+		OperationMetrics metrics = new OperationMetrics();
+		metrics.recordNanosAndError(500, false);
+		metrics.recordNanosAndError(1_500, false);
+		metrics.recordNanosAndError(3_000, true);
+		metrics.recordNanosAndError(3_000_000, false);
+
+		OperationMetricsSnapshot snapshot = metrics
+				.createSnapshotUsingBackendAndOperationAndType("database", "read", "org");
+
+		assertEquals(snapshot.getCount(), 4);
+		assertEquals(snapshot.getErrors(), 1);
+		assertEquals(snapshot.getTotalNanos(), 3_005_000);
+		assertEquals(snapshot.getMeanNanos(), 751_250);
+		assertEquals(snapshot.getMaxNanos(), 3_000_000);
+		long[] bucketCounts = snapshot.getBucketCounts();
+		assertEquals(bucketCounts.length, 32);
+		assertEquals(bucketCounts[0], 1);
+		assertEquals(bucketCounts[1], 1);
+		assertEquals(bucketCounts[2], 1);
+		assertEquals(bucketCounts[12], 1);
+	}
+
+	@Test
+	public void testPercentileUpperBound() throws Exception {
+		OperationMetrics metrics = new OperationMetrics();
+		for (int i = 0; i < 99; i++) {
+			metrics.recordNanosAndError(1_500, false);
+		}
+		metrics.recordNanosAndError(3_000_000, false);
+
+		OperationMetricsSnapshot snapshot = metrics
+				.createSnapshotUsingBackendAndOperationAndType("basic", "read", "someType");
+
+		assertEquals(snapshot.getPercentileUpperBoundMicros(50), 2);
+		assertEquals(snapshot.getPercentileUpperBoundMicros(99), 2);
+		assertEquals(snapshot.getPercentileUpperBoundMicros(100), 4096);
+	}
+
+	@Test
+	public void testBucketCountsIsACopy() throws Exception {
+		OperationMetrics metrics = new OperationMetrics();
+		metrics.recordNanosAndError(500, false);
+		OperationMetricsSnapshot snapshot = metrics
+				.createSnapshotUsingBackendAndOperationAndType("basic", "read", "someType");
+
+		snapshot.getBucketCounts()[0] = 100;
+
+		assertEquals(snapshot.getBucketCounts()[0], 1);
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class RecordReferenceTest {
+
+	@Test
+	public void testTypeAndId() throws Exception {
+		RecordReference reference = RecordReference.usingTypeAndId("person", "1");
+
+		assertEquals(reference.getType(), "person");
+		assertEquals(reference.getId(), "1");
+		assertEquals(reference.toString(), "person:1");
+	}
+
+	@Test
+	public void testEqualsAndHashCode() throws Exception {
+		RecordReference reference = RecordReference.usingTypeAndId("person", "1");
+
+		assertTrue(reference.equals(reference));
+		assertEquals(reference, RecordReference.usingTypeAndId("person", "1"));
+		assertEquals(reference.hashCode(),
+				RecordReference.usingTypeAndId("person", "1").hashCode());
+		assertNotEquals(reference, RecordReference.usingTypeAndId("person", "2"));
+		assertNotEquals(reference, RecordReference.usingTypeAndId("divaOrganisation", "1"));
+		assertFalse(reference.equals("person:1"));
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DataGroupFactorySpy;
+
+public class StaleReadCacheTest {
+	private long now;
+	private TimedLruCache<String, DataGroup> records;
+	private List<Runnable> queuedRefreshes;
+	private StaleReadCache staleReadCache;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		now = 0;
+		records = TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(10, 1000, () -> now);
+		queuedRefreshes = new ArrayList<>();
+		staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person", "divaOrganisation"), records, 5000, queuedRefreshes::add);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(staleReadCache.getRecordTypes(), Set.of("person", "divaOrganisation"));
+		assertSame(staleReadCache.getRecords(), records);
+		assertEquals(staleReadCache.getMaxStaleMillis(), 5000);
+		assertTrue(staleReadCache.servesRecordType("person"));
+		assertFalse(staleReadCache.servesRecordType("divaPublication"));
+	}
+
+	@Test
+	public void testDisabledServesNoRecordTypes() throws Exception {
+		StaleReadCache disabled = StaleReadCache.createDisabled();
+
+		assertTrue(disabled.getRecordTypes().isEmpty());
+		assertEquals(disabled.getRecords().getMaxSize(), 0);
+	}
+
+	@Test
+	public void testUsingNoOfRefreshThreadsRunsRefreshInOtherThread() throws Exception {
+		staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndNoOfRefreshThreads(
+						Set.of("person"), records, 5000, 1);
+		List<String> threadNames = new ArrayList<>();
+		Object lock = new Object();
+		synchronized (lock) {
+			staleReadCache.refreshInBackgroundUnlessInProgress("person", "1", () -> {
+				synchronized (lock) {
+					threadNames.add(Thread.currentThread().getName());
+					lock.notifyAll();
+				}
+			});
+			lock.wait(5000);
+		}
+		assertTrue(threadNames.get(0).startsWith("diva-stale-read-refresh-"));
+	}
+
+	@Test
+	public void testPutAndGetFreshAndStaleCopies() throws Exception {
+		DataGroupSpy person = new DataGroupSpy("person");
+
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "1", person, 0);
+
+		DataGroup fresh = staleReadCache.getCopyOfFreshRecord("person", "1");
+		assertNotNull(fresh);
+		assertNotSame(fresh, person);
+		assertEquals(fresh.getNameInData(), "person");
+		now = 1000;
+		assertNull(staleReadCache.getCopyOfFreshRecord("person", "1"));
+		DataGroup stale = staleReadCache.getCopyOfStaleRecord("person", "1");
+		assertNotSame(stale, person);
+		assertEquals(stale.getNameInData(), "person");
+	}
+
+	@Test
+	public void testStaleRecordIsRemovedWhenOlderThanMaxStale() throws Exception {
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "1", new DataGroupSpy("person"),
+				0);
+
+		now = 4999;
+		assertNotNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+		now = 5000;
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+		assertEquals(records.size(), 0);
+	}
+
+	@Test
+	public void testRecordsAreKeyedOnTypeAndId() throws Exception {
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "1", new DataGroupSpy("person"),
+				0);
+
+		assertNull(staleReadCache.getCopyOfFreshRecord("divaOrganisation", "1"));
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "2"));
+	}
+
+	@Test
+	public void testInvalidateRemovesRecord() throws Exception {
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "1", new DataGroupSpy("person"),
+				0);
+
+		staleReadCache.invalidate("person", "1");
+
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+		assertEquals(staleReadCache.getNoOfInvalidations(), 1);
+	}
+
+	@Test
+	public void testPutIsSkippedIfInvalidatedDuringRead() throws Exception {
+		long noOfInvalidationsBeforeRead = staleReadCache.getNoOfInvalidations();
+		staleReadCache.invalidate("person", "1");
+
+		staleReadCache.putCopyIfNotInvalidatedSince("person", "1", new DataGroupSpy("person"),
+				noOfInvalidationsBeforeRead);
+
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+	}
+
+	@Test
+	public void testOnlyOneRefreshInProgressPerRecord() throws Exception {
+		List<String> refreshed = new ArrayList<>();
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1",
+				() -> refreshed.add("first"));
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1",
+				() -> refreshed.add("second"));
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "2",
+				() -> refreshed.add("other"));
+		assertEquals(queuedRefreshes.size(), 2);
+
+		queuedRefreshes.get(0).run();
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1",
+				() -> refreshed.add("third"));
+		queuedRefreshes.get(1).run();
+		queuedRefreshes.get(2).run();
+
+		assertEquals(refreshed, List.of("first", "other", "third"));
+	}
+
+	@Test
+	public void testRefreshIsMarkedAsFinishedWhenItFails() throws Exception {
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1", () -> {
+			throw new RuntimeException("refresh failed");
+		});
+		try {
+			queuedRefreshes.get(0).run();
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1", () -> {
+		});
+
+		assertEquals(queuedRefreshes.size(), 2);
+	}
+
+	@Test
+	public void testRejectedRefreshIsMarkedAsFinished() throws Exception {
+		List<Runnable> accepted = new ArrayList<>();
+		Executor rejectOnce = new Executor() {
+			private boolean rejected = false;
+
+			@Override
+			public void execute(Runnable command) {
+				if (!rejected) {
+					rejected = true;
+					throw new RejectedExecutionException();
+				}
+				accepted.add(command);
+			}
+		};
+		staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person"), records, 5000, rejectOnce);
+
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1", () -> {
+		});
+		staleReadCache.refreshInBackgroundUnlessInProgress("person", "1", () -> {
+		});
+
+		assertEquals(accepted.size(), 1);
+		assertSame(staleReadCache.getRefreshExecutor(), rejectOnce);
+	}
+}
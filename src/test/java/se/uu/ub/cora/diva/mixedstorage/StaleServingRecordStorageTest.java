@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DataGroupFactorySpy;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public class StaleServingRecordStorageTest {
+	private long now;
+	private RecordStorageSpy recordStorage;
+	private List<Runnable> queuedRefreshes;
+	private StaleReadCache staleReadCache;
+	private StorageMetrics storageMetrics;
+	private StaleServingRecordStorage staleServingStorage;
+	private RuntimeException readError;
+	private int noOfReads;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		now = 0;
+		readError = null;
+		noOfReads = 0;
+		recordStorage = new RecordStorageSpy() {
+			@Override
+			public DataGroup read(String type, String id) {
+				noOfReads++;
+				if (readError != null) {
+					throw readError;
+				}
+				return super.read(type, id);
+			}
+		};
+		queuedRefreshes = new ArrayList<>();
+		staleReadCache = StaleReadCache
+				.usingRecordTypesAndTimedLruCacheAndMaxStaleMillisAndRefreshExecutor(
+						Set.of("person"),
+						TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(10, 1000, () -> now),
+						5000, queuedRefreshes::add);
+		storageMetrics = new StorageMetrics();
+		staleServingStorage = StaleServingRecordStorage
+				.usingRecordStorageAndBackendAndStaleReadCacheAndStorageMetrics(recordStorage,
+						"fedora", staleReadCache, storageMetrics);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertTrue(staleServingStorage instanceof RecordStorage);
+		assertTrue(staleServingStorage instanceof RecordExistenceStorage);
+		assertSame(staleServingStorage.getRecordStorage(), recordStorage);
+		assertSame(staleServingStorage.getStaleReadCache(), staleReadCache);
+	}
+
+	@Test
+	public void testReadOfOtherTypeIsNotCached() throws Exception {
+		DataGroup read = staleServingStorage.read("divaPublication", "1");
+
+		assertSame(read, recordStorage.data.answer);
+		staleServingStorage.read("divaPublication", "1");
+		assertEquals(noOfReads, 2);
+		assertNull(staleReadCache.getCopyOfStaleRecord("divaPublication", "1"));
+	}
+
+	@Test
+	public void testFirstReadGoesToStorageAndIsCached() throws Exception {
+		DataGroup read = staleServingStorage.read("person", "1");
+
+		assertSame(read, recordStorage.data.answer);
+		assertEquals(noOfReads, 1);
+		DataGroup cached = staleServingStorage.read("person", "1");
+		assertNotSame(cached, read);
+		assertEquals(cached.getNameInData(), read.getNameInData());
+		assertEquals(noOfReads, 1);
+		assertTrue(queuedRefreshes.isEmpty());
+	}
+
+	@Test
+	public void testExpiredRecordIsServedAndRefreshedInBackground() throws Exception {
+		staleServingStorage.read("person", "1");
+		now = 1000;
+
+		DataGroup stale = staleServingStorage.read("person", "1");
+
+		assertEquals(stale.getNameInData(), "DummyGroupFromRecordStorageSpy");
+		assertEquals(noOfReads, 1);
+		assertEquals(queuedRefreshes.size(), 1);
+		queuedRefreshes.get(0).run();
+		assertEquals(noOfReads, 2);
+		staleServingStorage.read("person", "1");
+		assertEquals(noOfReads, 2);
+		assertEquals(queuedRefreshes.size(), 1);
+
+		assertEquals(getSnapshotForOperation("readStale").getCount(), 1);
+		OperationMetricsSnapshot refreshSnapshot = getSnapshotForOperation("refreshStale");
+		assertEquals(refreshSnapshot.getBackend(), "fedora");
+		assertEquals(refreshSnapshot.getType(), "person");
+		assertEquals(refreshSnapshot.getCount(), 1);
+		assertEquals(refreshSnapshot.getErrors(), 0);
+	}
+
+	private OperationMetricsSnapshot getSnapshotForOperation(String operation) {
+		for (OperationMetricsSnapshot snapshot : storageMetrics.createSnapshot()) {
+			if (snapshot.getOperation().equals(operation)) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testStaleRecordIsServedWhileBackendFails() throws Exception {
+		staleServingStorage.read("person", "1");
+		now = 1000;
+		readError = BackendUnavailableException
+				.withMessage("Backend fedora is unavailable, circuit breaker is open");
+
+		staleServingStorage.read("person", "1");
+		queuedRefreshes.get(0).run();
+		DataGroup stale = staleServingStorage.read("person", "1");
+
+		assertEquals(stale.getNameInData(), "DummyGroupFromRecordStorageSpy");
+		assertEquals(queuedRefreshes.size(), 2);
+		assertEquals(getSnapshotForOperation("readStale").getCount(), 2);
+		assertEquals(getSnapshotForOperation("refreshStale").getErrors(), 1);
+	}
+
+	@Test
+	public void testRecordNotFoundOnRefreshRemovesStaleRecord() throws Exception {
+		staleServingStorage.read("person", "1");
+		now = 1000;
+		readError = new RecordNotFoundException("not found");
+
+		staleServingStorage.read("person", "1");
+		queuedRefreshes.get(0).run();
+
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+	}
+
+	@Test
+	public void testRecordOlderThanMaxStaleIsReadFromStorageAndErrorIsThrown()
+			throws Exception {
+		staleServingStorage.read("person", "1");
+		now = 5000;
+		readError = BackendUnavailableException
+				.withMessage("Backend fedora is unavailable, circuit breaker is open");
+
+		try {
+			staleServingStorage.read("person", "1");
+			fail("exception should have been thrown");
+		} catch (BackendUnavailableException e) {
+			assertSame(e, readError);
+		}
+		assertEquals(noOfReads, 2);
+		assertTrue(queuedRefreshes.isEmpty());
+		assertNull(staleReadCache.getCopyOfStaleRecord("person", "1"));
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class)
+	public void testReadErrorWithoutStaleRecordIsThrown() throws Exception {
+		readError = new RecordNotFoundException("not found");
+
+		staleServingStorage.read("person", "1");
+	}
+
+	@Test
+	public void testOtherOperationsAreDelegated() throws Exception {
+		DataGroup record = new DataGroupSpy("record");
+		staleServingStorage.create("person", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "create");
+		staleServingStorage.update("person", "id", record, null, null, "divider");
+		assertEquals(recordStorage.data.calledMethod, "update");
+		staleServingStorage.deleteByTypeAndId("person", "id");
+		assertEquals(recordStorage.data.calledMethod, "deleteByTypeAndId");
+		staleServingStorage.linksExistForRecord("person", "id");
+		assertEquals(recordStorage.data.calledMethod, "linksExistForRecord");
+		staleServingStorage.readList("person", null);
+		assertEquals(recordStorage.data.calledMethod, "readList");
+		staleServingStorage.readAbstractList("person", null);
+		assertEquals(recordStorage.data.calledMethod, "readAbstractList");
+		staleServingStorage.readLinkList("person", "id");
+		assertEquals(recordStorage.data.calledMethod, "readLinkList");
+		staleServingStorage.generateLinkCollectionPointingToRecord("person", "id");
+		assertEquals(recordStorage.data.calledMethod, "generateLinkCollectionPointingToRecord");
+		staleServingStorage.recordsExistForRecordType("person");
+		assertEquals(recordStorage.data.calledMethod, "recordsExistForRecordType");
+		staleServingStorage.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("person",
+				"id");
+		assertEquals(recordStorage.data.calledMethod,
+				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId");
+		assertTrue(staleServingStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("person", List.of("1"))
+				.isEmpty());
+	}
+
+	@Test
+	public void testReadExistingRecordIdsUsesBulkSupport() throws Exception {
+		DivaDbToCoraStorageSpy dbStorage = new DivaDbToCoraStorageSpy();
+		staleServingStorage = StaleServingRecordStorage
+				.usingRecordStorageAndBackendAndStaleReadCacheAndStorageMetrics(dbStorage,
+						"database", staleReadCache, storageMetrics);
+
+		Set<String> existing = staleServingStorage.readExistingRecordIdsForRecordTypeAndRecordIds(
+				"divaOrganisation", List.of("someExistingId", "2"));
+
+		assertEquals(existing, Set.of("someExistingId"));
+		assertEquals(dbStorage.ids, List.of("someExistingId", "2"));
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TimedLruCacheTest {
+	private AtomicLong now;
+	private TimedLruCache<String, String> cache;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = new AtomicLong(0);
+		cache = TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(2, 100, now::get);
+	}
+
+	@Test
+	public void testInit() throws Exception {
+		assertEquals(cache.getMaxSize(), 2);
+		assertEquals(cache.getTimeToLiveMillis(), 100);
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testInitWithoutClock() throws Exception {
+		TimedLruCache<String, String> cacheWithSystemClock = TimedLruCache
+				.usingMaxSizeAndTimeToLiveMillis(5, 1000);
+		cacheWithSystemClock.put("key", "value");
+		assertEquals(cacheWithSystemClock.get("key"), "value");
+	}
+
+	@Test
+	public void testGetMissingCountsMiss() throws Exception {
+		assertNull(cache.get("key"));
+		assertEquals(cache.getMisses(), 1);
+		assertEquals(cache.getHits(), 0);
+	}
+
+	@Test
+	public void testGetStoredCountsHit() throws Exception {
+		cache.put("key", "value");
+		assertEquals(cache.get("key"), "value");
+		assertEquals(cache.getMisses(), 0);
+		assertEquals(cache.getHits(), 1);
+	}
+
+	@Test
+	public void testEntryExpiresAfterTimeToLive() throws Exception {
+		cache.put("key", "value");
+		now.set(99);
+		assertEquals(cache.get("key"), "value");
+		now.set(100);
+		assertNull(cache.get("key"));
+		assertEquals(cache.getMisses(), 1);
+	}
+
+	@Test
+	public void testExpiredEntryCanBeReadUsingGetIncludingExpired() throws Exception {
+		cache.put("key", "value");
+		now.set(100);
+		assertEquals(cache.getIncludingExpired("key"), "value");
+		assertNull(cache.getIncludingExpired("otherKey"));
+		assertEquals(cache.getMisses(), 0);
+		assertEquals(cache.getHits(), 0);
+	}
+
+	@Test
+	public void testGetIncludingExpiredOrRemoveIfOlderThanMillis() throws Exception {
+		cache.put("key", "value");
+		now.set(499);
+		assertEquals(cache.getIncludingExpiredOrRemoveIfOlderThanMillis("key", 500), "value");
+		now.set(500);
+		assertNull(cache.getIncludingExpiredOrRemoveIfOlderThanMillis("key", 500));
+		assertEquals(cache.size(), 0);
+		assertNull(cache.getIncludingExpiredOrRemoveIfOlderThanMillis("otherKey", 500));
+		assertEquals(cache.getMisses(), 0);
+	}
+
+	@Test
+	public void testPutRenewsExpiredEntry() throws Exception {
+		cache.put("key", "value");
+		now.set(100);
+		cache.put("key", "value");
+		assertEquals(cache.get("key"), "value");
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvictedWhenFull() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		cache.get("key1");
+		cache.put("key3", "value3");
+
+		assertEquals(cache.size(), 2);
+		assertEquals(cache.get("key1"), "value1");
+		assertNull(cache.get("key2"));
+		assertEquals(cache.get("key3"), "value3");
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		cache.invalidate("key1");
+		assertNull(cache.get("key1"));
+		assertEquals(cache.get("key2"), "value2");
+	}
+
+	@Test
+	public void testInvalidateAll() throws Exception {
+		cache.put("key1", "value1");
+		cache.put("key2", "value2");
+		cache.invalidateAll();
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testMaxSizeZeroStoresNothing() throws Exception {
+		TimedLruCache<String, String> disabledCache = TimedLruCache
+				.usingMaxSizeAndTimeToLiveMillisAndClock(0, 100, now::get);
+		disabledCache.put("key", "value");
+		assertNull(disabledCache.get("key"));
+		assertEquals(disabledCache.size(), 0);
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.BackendGuard;
+import se.uu.ub.cora.diva.mixedstorage.DivaDbToCoraStorageSpy;
+import se.uu.ub.cora.diva.mixedstorage.DivaMixedRecordStorage;
+import se.uu.ub.cora.diva.mixedstorage.DivaMixedRecordStorageOptions;
+import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.diva.mixedstorage.OperationMetricsSnapshot;
+import se.uu.ub.cora.diva.mixedstorage.RecordExistenceStorage;
+import se.uu.ub.cora.diva.mixedstorage.RecordReference;
+import se.uu.ub.cora.diva.mixedstorage.RecordStorageSpy;
+import se.uu.ub.cora.diva.mixedstorage.StorageMetrics;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+import se.uu.ub.cora.storage.RecordStorage;
+
+public class DivaMixedStoragePublicApiTest {
+	private DivaDbToCoraStorageSpy dbStorage;
+	private RecordStorage recordStorage;
+
+	@BeforeMethod
+	public void setUp() {
+		dbStorage = new DivaDbToCoraStorageSpy();
+		recordStorage = DivaMixedRecordStorage.usingBasicAndFedoraAndDbStorage(
+				new RecordStorageSpy(), new RecordStorageSpy(), dbStorage);
+	}
+
+	@Test
+	public void testStorageCanBeCreatedUsingOptions() throws Exception {
+		List<Runnable> executed = new ArrayList<>();
+		Executor asyncReadExecutor = runnable -> {
+			executed.add(runnable);
+			runnable.run();
+		};
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) DivaMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndOptions(new RecordStorageSpy(),
+						new RecordStorageSpy(), dbStorage,
+						DivaMixedRecordStorageOptions.createDefaultOptions()
+								.withAsyncReadExecutor(asyncReadExecutor));
+
+		mixedStorage.readAsync("someType", "someId").get(5, TimeUnit.SECONDS);
+
+		assertEquals(executed.size(), 1);
+	}
+
+	@Test
+	public void testBulkExistenceCheckIsReachableThroughInterface() {
+		RecordExistenceStorage existenceStorage = (RecordExistenceStorage) recordStorage;
+
+		Set<String> existingIds = existenceStorage.readExistingRecordIdsForRecordTypeAndRecordIds(
+				"divaOrganisation", List.of("someExistingId", "someOtherId"));
+
+		assertEquals(existingIds, Set.of("someExistingId"));
+	}
+
+	@Test
+	public void testMetricsAndGuardsAreReachable() {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) recordStorage;
+		mixedStorage.read("person", "someId");
+
+		StorageMetrics storageMetrics = mixedStorage.getStorageMetrics();
+		OperationMetricsSnapshot snapshot = storageMetrics.createSnapshot().get(0);
+		BackendGuard fedoraGuard = mixedStorage.getFedoraGuard();
+
+		assertEquals(snapshot.getBackend(), "fedora");
+		assertEquals(snapshot.getCount(), 1);
+		assertEquals(fedoraGuard.getState(), BackendGuard.State.CLOSED);
+	}
+
+	@Test
+	public void testAsyncReadsAreReachable() throws Exception {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) recordStorage;
+
+		DataGroup person = mixedStorage.readAsync("person", "someId").get(5, TimeUnit.SECONDS);
+		List<DataGroup> persons = mixedStorage
+				.readManyAsync(List.of(RecordReference.usingTypeAndId("person", "someId")))
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals(person.getNameInData(), "DummyGroupFromRecordStorageSpy");
+		assertEquals(persons.size(), 1);
+	}
+
+	@Test(expectedExceptions = NotImplementedException.class)
+	public void testBatchUpdateIsReachable() {
+		DivaMixedRecordStorage mixedStorage = (DivaMixedRecordStorage) recordStorage;
+
+		mixedStorage.updatePersonsUsingRecordsById(Map.of());
+	}
+
+	@Test
+	public void testTimedLruCacheIsReachable() {
+		TimedLruCache<String, Boolean> cache = TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10,
+				1000);
+		cache.put("someId", true);
+
+		assertSame(cache.get("someId"), Boolean.TRUE);
+		assertEquals(cache.getMaxSize(), 10);
+	}
+}
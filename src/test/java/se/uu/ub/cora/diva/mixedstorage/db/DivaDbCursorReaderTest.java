@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DivaDbCursorReaderTest {
+	private SqlConnectionProviderSpy sqlConnectionProvider;
+	private DivaDbCursorReader cursorReader;
+	private List<Map<String, Object>> consumedRows;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		sqlConnectionProvider = new SqlConnectionProviderSpy();
+		cursorReader = DivaDbCursorReader
+				.usingSqlConnectionProviderAndFetchSize(sqlConnectionProvider, 50);
+		consumedRows = new ArrayList<>();
+	}
+
+	@Test
+	public void testGetters() throws Exception {
+		assertSame(cursorReader.getSqlConnectionProvider(), sqlConnectionProvider);
+		assertEquals(cursorReader.getFetchSize(), 50);
+	}
+
+	@Test(expectedExceptions = DbException.class, expectedExceptionsMessageRegExp = ""
+			+ "Fetch size must be at least 1, was: 0")
+	public void testFetchSizeLessThanOneThrowsError() throws Exception {
+		DivaDbCursorReader.usingSqlConnectionProviderAndFetchSize(sqlConnectionProvider, 0);
+	}
+
+	@Test
+	public void testReadAllUsesCursorInTransaction() throws Exception {
+		cursorReader.readAllFromTableUsingRowConsumer("divaOrganisation", consumedRows::add);
+
+		assertEquals(sqlConnectionProvider.preparedSql, "select * from divaOrganisation");
+		assertEquals(sqlConnectionProvider.fetchSize, 50);
+		assertEquals(sqlConnectionProvider.autoCommitValuesSet, List.of(false, true));
+		assertTrue(sqlConnectionProvider.rollbackWasCalled);
+		assertTrue(sqlConnectionProvider.resultSetClosed);
+		assertTrue(sqlConnectionProvider.statementClosed);
+		assertTrue(sqlConnectionProvider.connectionClosed);
+		assertTrue(consumedRows.isEmpty());
+	}
+
+	@Test
+	public void testRowsAreHandedToConsumerOneAtATime() throws Exception {
+		sqlConnectionProvider.columnNames = List.of("id", "defaultname");
+		sqlConnectionProvider.rowsToReturn.add(createRowUsingIdAndName(1, "first"));
+		sqlConnectionProvider.rowsToReturn.add(createRowUsingIdAndName(2, "second"));
+		List<Integer> noOfRowsReadWhenConsumed = new ArrayList<>();
+
+		cursorReader.readAllFromTableUsingRowConsumer("divaOrganisation", row -> {
+			noOfRowsReadWhenConsumed.add(sqlConnectionProvider.noOfRowsRead);
+			consumedRows.add(row);
+		});
+
+		assertEquals(noOfRowsReadWhenConsumed, List.of(1, 2));
+		assertEquals(consumedRows, sqlConnectionProvider.rowsToReturn);
+	}
+
+	@Test
+	public void testErrorIsWrappedAndConnectionRestored() throws Exception {
+		sqlConnectionProvider.autoCommitBefore = false;
+		sqlConnectionProvider.throwErrorOnExecute = true;
+		try {
+			cursorReader.readAllFromTableUsingRowConsumer("divaOrganisation", consumedRows::add);
+			assertTrue(false);
+		} catch (DbException e) {
+			assertEquals(e.getMessage(), "Error reading data from divaOrganisation: error from spy");
+		}
+		assertEquals(sqlConnectionProvider.autoCommitValuesSet, List.of(false, false));
+		assertTrue(sqlConnectionProvider.statementClosed);
+		assertTrue(sqlConnectionProvider.connectionClosed);
+		assertFalse(sqlConnectionProvider.resultSetClosed);
+	}
+
+	private Map<String, Object> createRowUsingIdAndName(int id, String name) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("id", id);
+		row.put("defaultname", name);
+		return row;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DivaDbOrganisationAncestryIndexTest {
+	private RecordReaderFactorySpy recordReaderFactory;
+	private DivaDbOrganisationAncestryIndex ancestryIndex;
+	private List<Map<String, Object>> parentRows;
+
+	@BeforeMethod
+	public void setUp() {
+		recordReaderFactory = new RecordReaderFactorySpy();
+		parentRows = new ArrayList<>();
+		addParentRow(2, 1);
+		addParentRow(3, 2);
+		addParentRow(4, 3);
+		addParentRow(5, 2);
+		addParentRow(11, 10);
+		recordReaderFactory.rowsToReturnForTables.put("divaOrganisationParent", parentRows);
+		ancestryIndex = DivaDbOrganisationAncestryIndex
+				.usingRecordReaderFactory(recordReaderFactory);
+	}
+
+	private void addParentRow(Object organisationId, Object parentId) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("organisation_id", organisationId);
+		row.put("organisation_parent_id", parentId);
+		parentRows.add(row);
+	}
+
+	@Test
+	public void testGetRecordReaderFactory() {
+		assertSame(ancestryIndex.getRecordReaderFactory(), recordReaderFactory);
+	}
+
+	@Test
+	public void testIndexIsLoadedOnFirstQueryWithOneRead() {
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		ancestryIndex.getDescendantsOfOrganisation("1");
+		ancestryIndex.getRootsOfOrganisation("4");
+
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+		assertEquals(recordReader.usedTableNames, List.of("divaOrganisationParent"));
+	}
+
+	@Test
+	public void testAncestors() {
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "2", "1"));
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("5"), Set.of("2", "1"));
+		assertTrue(ancestryIndex.getAncestorsOfOrganisation("1").isEmpty());
+		assertTrue(ancestryIndex.getAncestorsOfOrganisation("unknown").isEmpty());
+	}
+
+	@Test
+	public void testDescendants() {
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("1"),
+				Set.of("2", "3", "4", "5"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("3"), Set.of("4"));
+		assertTrue(ancestryIndex.getDescendantsOfOrganisation("4").isEmpty());
+	}
+
+	@Test
+	public void testRoots() {
+		assertEquals(ancestryIndex.getRootsOfOrganisation("4"), Set.of("1"));
+		assertEquals(ancestryIndex.getRootsOfOrganisation("1"), Set.of("1"));
+		assertEquals(ancestryIndex.getRootsOfOrganisation("unknown"), Set.of("unknown"));
+	}
+
+	@Test
+	public void testOrganisationWithTwoParentsHasTwoRoots() {
+		addParentRow(4, 11);
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"),
+				Set.of("3", "2", "1", "11", "10"));
+		assertEquals(ancestryIndex.getRootsOfOrganisation("4"), Set.of("1", "10"));
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testReturnedSetsCanNotBeChanged() {
+		ancestryIndex.getAncestorsOfOrganisation("4").add("someId");
+	}
+
+	@Test
+	public void testRowsWithoutParentAreSkipped() {
+		addParentRow(6, null);
+
+		assertTrue(ancestryIndex.getAncestorsOfOrganisation("6").isEmpty());
+	}
+
+	@Test
+	public void testCycleInParentsDoesNotLoopForever() {
+		addParentRow(1, 4);
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "2", "1"));
+		assertTrue(ancestryIndex.getRootsOfOrganisation("4").isEmpty());
+	}
+
+	@Test
+	public void testRefreshRereadsParentTable() {
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		addParentRow(1, 10);
+
+		ancestryIndex.refresh();
+
+		assertEquals(ancestryIndex.getRootsOfOrganisation("4"), Set.of("10"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("10"),
+				Set.of("11", "1", "2", "3", "4", "5"));
+	}
+
+	@Test
+	public void testReplaceParentsMovesSubtree() {
+		ancestryIndex.replaceParentsOfOrganisation("3", List.of("11"));
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("3"), Set.of("11", "10"));
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "11", "10"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("1"), Set.of("2", "5"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("2"), Set.of("5"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("10"), Set.of("11", "3", "4"));
+		assertEquals(ancestryIndex.getRootsOfOrganisation("4"), Set.of("10"));
+		assertEquals(recordReaderFactory.factored.usedTableNames.size(), 1);
+	}
+
+	@Test
+	public void testReplaceParentsWithNoParentsMakesOrganisationRoot() {
+		ancestryIndex.replaceParentsOfOrganisation("2", List.of());
+
+		assertTrue(ancestryIndex.getAncestorsOfOrganisation("2").isEmpty());
+		assertTrue(ancestryIndex.getDescendantsOfOrganisation("1").isEmpty());
+		assertEquals(ancestryIndex.getRootsOfOrganisation("4"), Set.of("2"));
+	}
+
+	@Test
+	public void testReplaceParentsForNewOrganisation() {
+		ancestryIndex.replaceParentsOfOrganisation("20", List.of("4"));
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("20"), Set.of("4", "3", "2", "1"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("2"),
+				Set.of("3", "5", "4", "20"));
+	}
+
+	@Test
+	public void testMarkParentsAsChangedRereadsOnlyItsParentRowsOnNextQuery() {
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		parentRows.removeIf(row -> row.get("organisation_id").equals(3));
+		addParentRow(3, 11);
+
+		ancestryIndex.markParentsOfOrganisationAsChanged("3");
+		assertEquals(recordReaderFactory.factored.usedTableNames.size(), 1);
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "11", "10"));
+		assertEquals(ancestryIndex.getDescendantsOfOrganisation("2"), Set.of("5"));
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+		assertEquals(recordReader.usedTableNames, List.of("divaOrganisationParent"));
+		assertEquals(recordReader.usedConditions, Map.of("organisation_id", "3"));
+	}
+
+	@Test
+	public void testChangedParentsAreOnlyReadOnce() {
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		ancestryIndex.markParentsOfOrganisationAsChanged("3");
+		ancestryIndex.markParentsOfOrganisationAsChanged("3");
+
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+		ancestryIndex.getRootsOfOrganisation("4");
+
+		assertSame(recordReaderFactory.factored, recordReader);
+		assertEquals(recordReader.usedConditionsList.size(), 1);
+	}
+
+	@Test
+	public void testFailedReadOfChangedParentsIsRetriedOnNextQuery() {
+		ancestryIndex.getAncestorsOfOrganisation("4");
+		ancestryIndex.markParentsOfOrganisationAsChanged("3");
+		recordReaderFactory.throwErrorForReadFromTable = true;
+		parentRows.removeIf(row -> row.get("organisation_id").equals(3));
+		addParentRow(3, 11);
+		try {
+			ancestryIndex.getAncestorsOfOrganisation("4");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		recordReaderFactory.throwErrorForReadFromTable = false;
+
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "11", "10"));
+	}
+
+	@Test
+	public void testMarkParentsAsChangedBeforeIndexIsLoadedDoesNotRead() {
+		ancestryIndex.markParentsOfOrganisationAsChanged("3");
+
+		assertFalse(recordReaderFactory.factorWasCalled);
+		assertEquals(ancestryIndex.getAncestorsOfOrganisation("4"), Set.of("3", "2", "1"));
+		assertEquals(recordReaderFactory.factored.usedTableNames.size(), 1);
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DataGroupFactorySpy;
+
+public class DivaDbOrganisationCacheTest {
+	private TimedLruCache<String, DataGroup> organisations;
+	private DivaDbOrganisationCache organisationCache;
+	private long now = 0;
+
+	@BeforeMethod
+	public void setUp() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		organisations = TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(10, 1000,
+				() -> now);
+		organisationCache = DivaDbOrganisationCache.usingTimedLruCache(organisations);
+	}
+
+	@Test
+	public void testGetOrganisations() {
+		assertSame(organisationCache.getOrganisations(), organisations);
+	}
+
+	@Test
+	public void testGetCopyOfOrganisationNotInCache() {
+		assertNull(organisationCache.getCopyOfOrganisation("26"));
+	}
+
+	@Test
+	public void testPutAndGetReturnsDeepCopies() {
+		DataGroupSpy organisation = createOrganisationWithParentAndFormerName("26", "1", "2");
+		organisation.addAttributeByIdWithValue("type", "unit");
+		DataAtomicSpy name = new DataAtomicSpy("organisationName", "someName");
+		name.setRepeatId("0");
+		organisation.addChild(name);
+
+		organisationCache.putCopyOfOrganisation("26", organisation);
+		DataGroup copy = organisationCache.getCopyOfOrganisation("26");
+
+		assertNotSame(copy, organisation);
+		assertNotSame(organisations.get("26"), organisation);
+		assertEquals(copy.getNameInData(), "organisation");
+		assertEquals(copy.getAttribute("type"), "unit");
+		assertEquals(copy.getChildren().size(), 3);
+		DataGroup parent = copy.getFirstGroupWithNameInData("parentOrganisation");
+		assertNotSame(parent, organisation.getFirstGroupWithNameInData("parentOrganisation"));
+		assertEquals(parent.getRepeatId(), "0");
+		assertEquals(parent.getFirstGroupWithNameInData("organisationLink")
+				.getFirstAtomicValueWithNameInData("linkedRecordId"), "1");
+		DataAtomicSpy copiedName = (DataAtomicSpy) copy
+				.getFirstChildWithNameInData("organisationName");
+		assertNotSame(copiedName, name);
+		assertEquals(copiedName.getValue(), "someName");
+		assertEquals(copiedName.getRepeatId(), "0");
+	}
+
+	@Test
+	public void testChangingReturnedCopyDoesNotChangeCachedOrganisation() {
+		organisationCache.putCopyOfOrganisation("26", new DataGroupSpy("organisation"));
+
+		organisationCache.getCopyOfOrganisation("26")
+				.addChild(new DataAtomicSpy("organisationName", "changed"));
+
+		assertEquals(organisationCache.getCopyOfOrganisation("26").getChildren().size(), 0);
+	}
+
+	@Test
+	public void testChangingPutOrganisationDoesNotChangeCachedOrganisation() {
+		DataGroupSpy organisation = new DataGroupSpy("organisation");
+		organisationCache.putCopyOfOrganisation("26", organisation);
+
+		organisation.addChild(new DataAtomicSpy("organisationName", "changed"));
+
+		assertEquals(organisationCache.getCopyOfOrganisation("26").getChildren().size(), 0);
+	}
+
+	@Test
+	public void testCachedOrganisationExpires() {
+		organisationCache.putCopyOfOrganisation("26", new DataGroupSpy("organisation"));
+		now = 1001;
+
+		assertNull(organisationCache.getCopyOfOrganisation("26"));
+	}
+
+	@Test
+	public void testInvalidateRemovesOrganisationAndRelatedOrganisations() {
+		putOrganisations("1", "2", "3", "4", "5", "99");
+		organisationCache.putCopyOfOrganisation("26",
+				createOrganisationWithParentAndFormerName("26", "1", "2"));
+		DataGroupSpy updatedOrganisation = createOrganisationWithParentAndFormerName("26", "3",
+				"4");
+		updatedOrganisation.addChild(createRelationWithLinkToId("closed", "5"));
+
+		organisationCache.invalidateOrganisationAndRelatedOrganisations("26",
+				updatedOrganisation);
+
+		assertNull(organisations.get("26"));
+		assertNull(organisations.get("1"));
+		assertNull(organisations.get("2"));
+		assertNull(organisations.get("3"));
+		assertNull(organisations.get("4"));
+		assertNull(organisations.get("5"));
+		assertNotNull(organisations.get("99"));
+	}
+
+	@Test
+	public void testInvalidateUsesExpiredCachedOrganisationForRelations() {
+		organisationCache.putCopyOfOrganisation("26",
+				createOrganisationWithParentAndFormerName("26", "1", "2"));
+		now = 1001;
+		putOrganisations("1");
+
+		organisationCache.invalidateOrganisationAndRelatedOrganisations("26",
+				new DataGroupSpy("organisation"));
+
+		assertNull(organisations.get("1"));
+	}
+
+	@Test
+	public void testInvalidateWhenNotCachedAndRelationWithoutLink() {
+		putOrganisations("26");
+		DataGroupSpy updatedOrganisation = new DataGroupSpy("organisation");
+		updatedOrganisation.addChild(new DataGroupSpy("parentOrganisation"));
+
+		organisationCache.invalidateOrganisationAndRelatedOrganisations("26",
+				updatedOrganisation);
+
+		assertNull(organisations.get("26"));
+	}
+
+	private void putOrganisations(String... ids) {
+		for (String id : ids) {
+			organisations.put(id, new DataGroupSpy("organisation"));
+		}
+	}
+
+	private DataGroupSpy createOrganisationWithParentAndFormerName(String id, String parentId,
+			String predecessorId) {
+		DataGroupSpy organisation = new DataGroupSpy("organisation");
+		DataGroupSpy parent = createRelationWithLinkToId("parentOrganisation", parentId);
+		parent.setRepeatId("0");
+		organisation.addChild(parent);
+		organisation.addChild(createRelationWithLinkToId("formerName", predecessorId));
+		return organisation;
+	}
+
+	private DataGroupSpy createRelationWithLinkToId(String relationName, String id) {
+		DataGroupSpy relation = new DataGroupSpy(relationName);
+		DataGroupSpy link = new DataGroupSpy("organisationLink");
+		link.addChild(new DataAtomicSpy("linkedRecordType", "divaOrganisation"));
+		link.addChild(new DataAtomicSpy("linkedRecordId", id));
+		relation.addChild(link);
+		return relation;
+	}
+}
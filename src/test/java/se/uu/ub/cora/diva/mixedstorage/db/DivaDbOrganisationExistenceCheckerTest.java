@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.DataReaderSpy;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+
+public class DivaDbOrganisationExistenceCheckerTest {
+	private DataReaderSpy dataReader;
+	private TimedLruCache<String, Boolean> existenceCache;
+	private DivaDbOrganisationExistenceChecker existenceChecker;
+	private long now = 0;
+
+	@BeforeMethod
+	public void setUp() {
+		dataReader = new DataReaderSpy();
+		existenceCache = TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(10, 1000,
+				() -> now);
+		existenceChecker = DivaDbOrganisationExistenceChecker
+				.usingDataReaderAndExistenceCache(dataReader, existenceCache);
+	}
+
+	@Test
+	public void testGetters() {
+		assertSame(existenceChecker.getDataReader(), dataReader);
+		assertSame(existenceChecker.getExistenceCache(), existenceCache);
+	}
+
+	@Test
+	public void testOrganisationExistsUsesSelectOneLimitOne() {
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+
+		assertTrue(existenceChecker.organisationExists("26"));
+
+		assertEquals(dataReader.sqlSentToReader,
+				"select 1 from organisation where organisation_id = ? limit 1");
+		assertEquals(dataReader.valuesSentToReader, List.of(26));
+	}
+
+	@Test
+	public void testOrganisationDoesNotExistWhenNoRowIsReturned() {
+		assertFalse(existenceChecker.organisationExists("600"));
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+	}
+
+	@Test
+	public void testNonIntegerIdDoesNotExistAndIsNotSentToDb() {
+		assertFalse(existenceChecker.organisationExists("notAnInt"));
+		assertFalse(existenceChecker.organisationExists(null));
+		assertFalse(existenceChecker.organisationExists(""));
+		assertFalse(existenceChecker.organisationExists("2147483648"));
+		assertFalse(existenceChecker.organisationExists("12345678901"));
+
+		assertFalse(dataReader.executePreparedStatementWasCalled);
+		assertEquals(existenceCache.size(), 0);
+	}
+
+	@Test
+	public void testLargestIntegerIdIsSentToDb() {
+		existenceChecker.organisationExists("2147483647");
+		assertEquals(dataReader.valuesSentToReader, List.of(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testPositiveResultIsCached() {
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+
+		assertTrue(existenceChecker.organisationExists("26"));
+		assertTrue(existenceChecker.organisationExists("26"));
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+		assertEquals(existenceCache.getHits(), 1);
+	}
+
+	@Test
+	public void testNegativeResultIsCached() {
+		assertFalse(existenceChecker.organisationExists("600"));
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+
+		assertFalse(existenceChecker.organisationExists("600"));
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+	}
+
+	@Test
+	public void testCachedResultExpiresAfterTimeToLive() {
+		assertFalse(existenceChecker.organisationExists("600"));
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+		now = 1001;
+
+		assertTrue(existenceChecker.organisationExists("600"));
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 2);
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsUsesOneInQuery() {
+		dataReader.listOfRows.add(Map.of("organisation_id", 26));
+		dataReader.listOfRows.add(Map.of("organisation_id", 28));
+
+		Set<String> existingIds = existenceChecker
+				.readExistingOrganisationIds(List.of("26", "27", "28"));
+
+		assertEquals(existingIds, Set.of("26", "28"));
+		assertEquals(dataReader.sqlsSentToReader, List.of(
+				"select organisation_id from organisation where organisation_id in (?, ?, ?)"));
+		assertEquals(dataReader.valuesSentToReader, List.of(26, 27, 28));
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsSkipsInvalidAndDuplicateIds() {
+		dataReader.listOfRows.add(Map.of("organisation_id", 26));
+
+		Set<String> existingIds = existenceChecker
+				.readExistingOrganisationIds(List.of("26", "notAnInt", "26"));
+
+		assertEquals(existingIds, Set.of("26"));
+		assertEquals(dataReader.valuesSentToReader, List.of(26));
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsNoQueryWhenNoValidIds() {
+		Set<String> existingIds = existenceChecker
+				.readExistingOrganisationIds(List.of("notAnInt"));
+
+		assertTrue(existingIds.isEmpty());
+		assertFalse(dataReader.executePreparedStatementWasCalled);
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsCachesPositiveAndNegativeResults() {
+		dataReader.listOfRows.add(Map.of("organisation_id", 26));
+		existenceChecker.readExistingOrganisationIds(List.of("26", "27"));
+
+		assertTrue(existenceChecker.organisationExists("26"));
+		assertFalse(existenceChecker.organisationExists("27"));
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsOnlyReadsUncachedIdsFromDb() {
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+		existenceChecker.organisationExists("26");
+		existenceChecker.organisationExists("27");
+		dataReader.listOfRows.clear();
+		dataReader.listOfRows.add(Map.of("organisation_id", 28));
+
+		Set<String> existingIds = existenceChecker
+				.readExistingOrganisationIds(List.of("26", "27", "28", "29"));
+
+		assertEquals(existingIds, Set.of("26", "27", "28"));
+		assertEquals(dataReader.sqlsSentToReader.get(2),
+				"select organisation_id from organisation where organisation_id in (?, ?)");
+		assertEquals(dataReader.valuesListSentToReader.get(2), List.of(28, 29));
+	}
+
+	@Test
+	public void testIdsWithLeadingZerosAreFoundByBulkCheckAndShareCacheEntry() {
+		dataReader.listOfRows.add(Map.of("organisation_id", 7));
+
+		Set<String> existingIds = existenceChecker
+				.readExistingOrganisationIds(List.of("007", "7", "8"));
+
+		assertEquals(existingIds, Set.of("007", "7"));
+		assertEquals(dataReader.valuesSentToReader, List.of(7, 8));
+		assertTrue(existenceChecker.organisationExists("0007"));
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+	}
+
+	@Test
+	public void testOrganisationExistsWithLeadingZerosUsesSameCacheEntryAsBulkCheck() {
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+		existenceChecker.organisationExists("007");
+		dataReader.listOfRows.clear();
+
+		Set<String> existingIds = existenceChecker.readExistingOrganisationIds(List.of("7"));
+
+		assertEquals(existingIds, Set.of("7"));
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+	}
+
+	@Test
+	public void testReadExistingOrganisationIdsSplitsInListIntoChunks() {
+		List<String> ids = new ArrayList<>();
+		for (int i = 1; i <= 2001; i++) {
+			ids.add(String.valueOf(i));
+		}
+		dataReader.listsOfRowsToReturn.add(List.of(Map.of("organisation_id", 1)));
+		dataReader.listsOfRowsToReturn.add(List.of(Map.of("organisation_id", 1500)));
+		dataReader.listsOfRowsToReturn.add(List.of(Map.of("organisation_id", 2001)));
+
+		Set<String> existingIds = existenceChecker.readExistingOrganisationIds(ids);
+
+		assertEquals(existingIds, Set.of("1", "1500", "2001"));
+		assertEquals(dataReader.valuesListSentToReader.size(), 3);
+		assertEquals(dataReader.valuesListSentToReader.get(0).size(), 1000);
+		assertEquals(dataReader.valuesListSentToReader.get(1).size(), 1000);
+		assertEquals(dataReader.valuesListSentToReader.get(2), List.of(2001));
+		assertEquals(dataReader.sqlsSentToReader.get(2),
+				"select organisation_id from organisation where organisation_id in (?)");
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DivaDbOrganisationLineageIndexTest {
+	private RecordReaderFactorySpy recordReaderFactory;
+	private DivaDbOrganisationLineageIndex lineageIndex;
+	private List<Map<String, Object>> predecessorRows;
+
+	@BeforeMethod
+	public void setUp() {
+		recordReaderFactory = new RecordReaderFactorySpy();
+		predecessorRows = new ArrayList<>();
+		addPredecessorRow(2, 1);
+		addPredecessorRow(3, 2);
+		addPredecessorRow(4, 3);
+		addPredecessorRow(5, 3);
+		recordReaderFactory.rowsToReturnForTables.put("divaOrganisationPredecessor",
+				predecessorRows);
+		lineageIndex = DivaDbOrganisationLineageIndex.usingRecordReaderFactory(recordReaderFactory);
+	}
+
+	private void addPredecessorRow(Object organisationId, Object predecessorId) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("organisation_id", organisationId);
+		row.put("predecessor_id", predecessorId);
+		predecessorRows.add(row);
+	}
+
+	@Test
+	public void testGetRecordReaderFactory() {
+		assertSame(lineageIndex.getRecordReaderFactory(), recordReaderFactory);
+	}
+
+	@Test
+	public void testGraphIsReadOnceOnFirstQuery() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		lineageIndex.getCurrentSuccessorsOfOrganisation("1");
+
+		assertEquals(recordReaderFactory.factored.usedTableNames,
+				List.of("divaOrganisationPredecessor"));
+	}
+
+	@Test
+	public void testAllPredecessors() {
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("4"), List.of("3", "2", "1"));
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("2"), List.of("1"));
+		assertTrue(lineageIndex.getAllPredecessorsOfOrganisation("1").isEmpty());
+	}
+
+	@Test
+	public void testAllSuccessors() {
+		assertEquals(lineageIndex.getAllSuccessorsOfOrganisation("1"),
+				List.of("2", "3", "4", "5"));
+		assertTrue(lineageIndex.getAllSuccessorsOfOrganisation("4").isEmpty());
+	}
+
+	@Test
+	public void testCurrentSuccessors() {
+		assertEquals(lineageIndex.getCurrentSuccessorsOfOrganisation("1"), List.of("4", "5"));
+		assertEquals(lineageIndex.getCurrentSuccessorsOfOrganisation("2"), List.of("4", "5"));
+		assertTrue(lineageIndex.getCurrentSuccessorsOfOrganisation("4").isEmpty());
+	}
+
+	@Test
+	public void testUnknownAndNonNumericIds() {
+		assertTrue(lineageIndex.getAllPredecessorsOfOrganisation("99").isEmpty());
+		assertTrue(lineageIndex.getAllPredecessorsOfOrganisation("notAnInt").isEmpty());
+		assertTrue(lineageIndex.getCurrentSuccessorsOfOrganisation(null).isEmpty());
+	}
+
+	@Test
+	public void testIdsAsStringsAndInvalidRowsInTable() {
+		addPredecessorRow("7", "4");
+		addPredecessorRow(8, null);
+		addPredecessorRow("notAnInt", 4);
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("7"),
+				List.of("4", "3", "2", "1"));
+		assertEquals(lineageIndex.getCurrentSuccessorsOfOrganisation("1"), List.of("5", "7"));
+	}
+
+	@Test
+	public void testMergedOrganisationHasAllPredecessors() {
+		addPredecessorRow(20, 10);
+		addPredecessorRow(20, 4);
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("20"),
+				List.of("10", "4", "3", "2", "1"));
+	}
+
+	@Test
+	public void testCycleDoesNotLoopForever() {
+		addPredecessorRow(1, 4);
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("4"), List.of("3", "2", "1"));
+		assertEquals(lineageIndex.getCurrentSuccessorsOfOrganisation("1"), List.of("5"));
+	}
+
+	@Test
+	public void testEmptyTable() {
+		predecessorRows.clear();
+
+		assertTrue(lineageIndex.getAllPredecessorsOfOrganisation("4").isEmpty());
+	}
+
+	@Test
+	public void testRefreshRereadsTable() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		addPredecessorRow(1, 0);
+
+		lineageIndex.refresh();
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("4"),
+				List.of("3", "2", "1", "0"));
+	}
+
+	@Test
+	public void testInvalidateRereadsTableOnNextQuery() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		addPredecessorRow(1, 0);
+
+		lineageIndex.invalidate();
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("4"),
+				List.of("3", "2", "1", "0"));
+	}
+
+	@Test
+	public void testUnchangedRelationsDoNotInvalidate() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("3", List.of("02"),
+				List.of("5", "4"));
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+
+		assertSame(recordReaderFactory.factored, recordReader);
+	}
+
+	@Test
+	public void testChangedPredecessorsInvalidate() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		addPredecessorRow(3, 0);
+
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("3", List.of("2", "0"),
+				List.of("4", "5"));
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("4"),
+				List.of("3", "2", "0", "1"));
+	}
+
+	@Test
+	public void testChangedSuccessorsInvalidate() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		addPredecessorRow(6, 5);
+
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("5", List.of("3"), List.of("6"));
+
+		assertEquals(lineageIndex.getAllPredecessorsOfOrganisation("6"),
+				List.of("5", "3", "2", "1"));
+	}
+
+	@Test
+	public void testRelationsForUnknownOrganisationInvalidate() {
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("20", List.of(), List.of());
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		assertSame(recordReaderFactory.factored, recordReader);
+
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("20", List.of("4"), List.of());
+		lineageIndex.getAllPredecessorsOfOrganisation("4");
+		assertNotSame(recordReaderFactory.factored, recordReader);
+	}
+
+	@Test
+	public void testRelationsBeforeGraphIsReadDoNotRead() {
+		lineageIndex.invalidateIfRelationsOfOrganisationDiffer("3", List.of("0"), List.of());
+
+		assertFalse(recordReaderFactory.factorWasCalled);
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.diva.mixedstorage.InvalidFilterException;
+
+public class DivaDbOrganisationListQueryTest {
+	private static final String TABLE_NAME = "divaOrganisation";
+
+	@Test
+	public void testNoFilter() throws Exception {
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, null);
+		assertEquals(query.createSqlForCount(), "select count(*) as total from divaOrganisation");
+		assertEquals(query.getValuesForCount(), List.of());
+		assertEquals(query.createSqlForPage(), "select * from divaOrganisation order by cast(id as integer) offset ?");
+		assertEquals(query.getValuesForPage(), List.of(0L));
+	}
+
+	@Test
+	public void testEmptyFilter() throws Exception {
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, new DataGroupSpy("filter"));
+		assertEquals(query.createSqlForPage(), "select * from divaOrganisation order by cast(id as integer) offset ?");
+		assertEquals(query.getValuesForPage(), List.of(0L));
+	}
+
+	@Test
+	public void testFromNoAndToNo() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "11"));
+		filter.addChild(new DataAtomicSpy("toNo", "30"));
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, filter);
+		assertEquals(query.createSqlForPage(),
+				"select * from divaOrganisation order by cast(id as integer) limit ? offset ?");
+		assertEquals(query.getValuesForPage(), List.of(20L, 10L));
+		assertEquals(query.createSqlForCount(), "select count(*) as total from divaOrganisation");
+	}
+
+	@Test
+	public void testToNoBeforeFromNoGivesEmptyPage() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "11"));
+		filter.addChild(new DataAtomicSpy("toNo", "5"));
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, filter);
+		assertEquals(query.getValuesForPage(), List.of(0L, 10L));
+	}
+
+	@Test(expectedExceptions = InvalidFilterException.class, expectedExceptionsMessageRegExp = ""
+			+ "toNo in filter must be a number, was: last")
+	public void testToNoNotANumber() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("toNo", "last"));
+		DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, filter);
+	}
+
+	@Test
+	public void testFilterParts() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(createPartUsingKeyAndValue("organisationName", "Uppsala"));
+		filter.addChild(createPartUsingKeyAndValue("organisationCode", "someCode"));
+		filter.addChild(createPartUsingKeyAndValue("eligible", "yes"));
+		filter.addChild(new DataAtomicSpy("toNo", "10"));
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, filter);
+
+		String where = " where lower(defaultname) like ? escape '\\' and organisation_code = ?"
+				+ " and not_eligible = ?";
+		assertEquals(query.createSqlForCount(),
+				"select count(*) as total from divaOrganisation" + where);
+		assertEquals(query.getValuesForCount(), List.of("%uppsala%", "someCode", false));
+		assertEquals(query.createSqlForPage(),
+				"select * from divaOrganisation" + where + " order by cast(id as integer) limit ? offset ?");
+		assertEquals(query.getValuesForPage(),
+				List.of("%uppsala%", "someCode", false, 10L, 0L));
+	}
+
+	@Test
+	public void testLikeWildcardsInOrganisationNameAreEscaped() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(createPartUsingKeyAndValue("organisationName", "100%_Sure\\"));
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, filter);
+
+		assertEquals(query.getValuesForCount(), List.of("%100\\%\\_sure\\\\%"));
+	}
+
+	@Test
+	public void testFilterNotEligible() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(createPartUsingKeyAndValue("eligible", "no"));
+		DivaDbOrganisationListQuery query = DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, filter);
+		assertEquals(query.getValuesForCount(), List.of(true));
+	}
+
+	@Test(expectedExceptions = InvalidFilterException.class, expectedExceptionsMessageRegExp = ""
+			+ "Filter key not supported for divaOrganisation: someKey")
+	public void testUnknownFilterKey() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(createPartUsingKeyAndValue("someKey", "someValue"));
+		DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, filter);
+	}
+
+	private DataGroupSpy createPartUsingKeyAndValue(String key, String value) {
+		DataGroupSpy part = new DataGroupSpy("part");
+		part.addChild(new DataAtomicSpy("key", key));
+		part.addChild(new DataAtomicSpy("value", value));
+		return part;
+	}
+
+	@Test
+	public void testReadsAllRowsOnlyWithoutConditionsAndPaging() throws Exception {
+		assertTrue(DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, null)
+				.readsAllRows());
+		assertTrue(DivaDbOrganisationListQuery
+				.usingTypeAndFilter(TABLE_NAME, new DataGroupSpy("filter")).readsAllRows());
+
+		DataGroupSpy filterWithFromNo = new DataGroupSpy("filter");
+		filterWithFromNo.addChild(new DataAtomicSpy("fromNo", "2"));
+		assertFalse(DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, filterWithFromNo)
+				.readsAllRows());
+
+		DataGroupSpy filterWithToNo = new DataGroupSpy("filter");
+		filterWithToNo.addChild(new DataAtomicSpy("toNo", "10"));
+		assertFalse(DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, filterWithToNo)
+				.readsAllRows());
+
+		DataGroupSpy filterWithPart = new DataGroupSpy("filter");
+		filterWithPart.addChild(createPartUsingKeyAndValue("organisationCode", "someCode"));
+		assertFalse(DivaDbOrganisationListQuery.usingTypeAndFilter(TABLE_NAME, filterWithPart)
+				.readsAllRows());
+	}
+}
@@ -18,6 +18,7 @@
  */
 package se.uu.ub.cora.diva.mixedstorage.db;
 
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import org.testng.annotations.BeforeMethod;
@@ -66,4 +67,14 @@ public class DivaDbToCoraConverterFactoryTest {
 				.factor("divaOrganisationSuccessor");
 		assertTrue(converter instanceof DivaDbToCoraOrganisationSuccessorConverter);
 	}
+
+	@Test
+	public void testFactoryReturnsSameConverterInstanceForEachCall() throws Exception {
+		for (String type : new String[] { "divaOrganisation", "divaOrganisationParent",
+				"divaOrganisationPredecessor", "divaOrganisationSuccessor" }) {
+			DivaDbToCoraConverter converter = divaDbToCoraConverterFactoryImp.factor(type);
+			assertSame(divaDbToCoraConverterFactoryImp.factor(type), converter);
+			assertSame(new DivaDbToCoraConverterFactoryImp().factor(type), converter);
+		}
+	}
 }
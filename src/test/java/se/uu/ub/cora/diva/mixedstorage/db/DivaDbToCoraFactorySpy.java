@@ -4,12 +4,14 @@ public class DivaDbToCoraFactorySpy implements DivaDbToCoraFactory {
 	public boolean factorWasCalled = false;
 	public DivaDbToCoraSpy factored;
 	public String type;
+	public int noOfDataGroupsToReturn = 1;
 
 	@Override
 	public DivaDbToCora factor(String type) {
 		factorWasCalled = true;
 		this.type = type;
 		factored = new DivaDbToCoraSpy();
+		factored.noOfDataGroupsToReturn = noOfDataGroupsToReturn;
 		return factored;
 	}
 
@@ -24,6 +24,7 @@ import static org.testng.Assert.assertTrue;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.diva.mixedstorage.DataReaderSpy;
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
 
@@ -60,6 +61,18 @@ public class DivaDbToCoraFactoryTest {
 		assertSame(divaDbToCoraOrganisation.getConverterFactory(), converterFactory);
 	}
 
+	@Test
+	public void testFactoryOrganisationSentInDataReaderIsSentToImplementation() {
+		DataReaderSpy dataReader = new DataReaderSpy();
+		divaDbToCoraFactoryImp = new DivaDbToCoraFactoryImp(readerFactory, converterFactory,
+				dataReader);
+		DivaDbToCoraOrganisation divaDbToCoraOrganisation = (DivaDbToCoraOrganisation) divaDbToCoraFactoryImp
+				.factor("divaOrganisation");
+		assertSame(divaDbToCoraOrganisation.getDataReader(), dataReader);
+		assertSame(divaDbToCoraOrganisation.getRecordReaderFactory(), readerFactory);
+		assertSame(divaDbToCoraFactoryImp.getDataReader(), dataReader);
+	}
+
 	@Test
 	public void testGetReaderFactory() {
 		assertSame(divaDbToCoraFactoryImp.getReaderFactory(), readerFactory);
@@ -20,6 +20,7 @@ package se.uu.ub.cora.diva.mixedstorage.db;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -148,6 +149,22 @@ public class DivaDbToCoraOrganisationConverterTest {
 		assertEquals(organisation.getFirstAtomicValueWithNameInData("eligible"), "yes");
 	}
 
+	@Test
+	public void testSameConverterCanConvertSeveralRows() {
+		Map<String, Object> otherRowFromDb = new HashMap<>();
+		otherRowFromDb.put("id", "someOtherOrgId");
+		otherRowFromDb.put("city", "someCity");
+
+		DataGroup organisation = converter.fromMap(rowFromDb);
+		DataGroup otherOrganisation = converter.fromMap(otherRowFromDb);
+
+		assertNotSame(otherOrganisation, organisation);
+		assertCorrectRecordInfoWithId(organisation, "someOrgId");
+		assertCorrectRecordInfoWithId(otherOrganisation, "someOtherOrgId");
+		assertFalse(organisation.containsChildWithNameInData("city"));
+		assertEquals(otherOrganisation.getFirstAtomicValueWithNameInData("city"), "someCity");
+	}
+
 	private void assertCorrectRecordInfoWithId(DataGroup organisation, String id) {
 		DataGroup recordInfo = organisation.getFirstGroupWithNameInData("recordInfo");
 		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"), id);
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.diva.mixedstorage.DataReaderSpy;
+import se.uu.ub.cora.storage.StorageReadResult;
+
+public class DivaDbToCoraOrganisationFilterTest {
+
+	private static final String TABLE_NAME = "divaOrganisation";
+	private DivaDbToCoraConverterFactorySpy converterFactory;
+	private RecordReaderFactorySpy recordReaderFactory;
+	private DataReaderSpy dataReader;
+	private DivaDbToCoraOrganisation toCoraOrganisation;
+	private DataGroupSpy filter;
+
+	@BeforeMethod
+	public void BeforeMethod() {
+		converterFactory = new DivaDbToCoraConverterFactorySpy();
+		recordReaderFactory = new RecordReaderFactorySpy();
+		dataReader = new DataReaderSpy();
+		dataReader.rowToReturn = createRowUsingKeyAndValue("total", 57L);
+		toCoraOrganisation = DivaDbToCoraOrganisation
+				.usingRecordReaderFactoryAndDataReaderAndConverterFactory(recordReaderFactory,
+						dataReader, converterFactory);
+		filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "3"));
+		filter.addChild(new DataAtomicSpy("toNo", "4"));
+	}
+
+	@Test
+	public void testEmptyPageReadsOnlyCountAndPage() throws Exception {
+		StorageReadResult result = toCoraOrganisation.convertRowDataUsingFilter(TABLE_NAME,
+				filter);
+
+		assertEquals(dataReader.sqlsSentToReader, List.of(
+				"select count(*) as total from divaOrganisation",
+				"select * from divaOrganisation order by cast(id as integer) limit ? offset ?"));
+		assertEquals(dataReader.valuesListSentToReader.get(1), List.of(2L, 2L));
+		assertEquals(result.totalNumberOfMatches, 57);
+		assertEquals(result.listOfDataGroups.size(), 0);
+		assertFalse(recordReaderFactory.factorWasCalled);
+	}
+
+	@Test
+	public void testPageIsReadWithRelationsForPageOnly() throws Exception {
+		List<Map<String, Object>> page = new ArrayList<>();
+		page.add(createRowUsingKeyAndValue("id", 3));
+		page.add(createRowUsingKeyAndValue("id", 4));
+		List<Map<String, Object>> parents = new ArrayList<>();
+		parents.add(createRelationRowUsingIds("organisation_parent_id", "3", "1"));
+		List<Map<String, Object>> predecessors = new ArrayList<>();
+		predecessors.add(createRelationRowUsingIds("predecessor_id", "4", "3"));
+		dataReader.listsOfRowsToReturn.add(page);
+		dataReader.listsOfRowsToReturn.add(parents);
+		dataReader.listsOfRowsToReturn.add(predecessors);
+		dataReader.listsOfRowsToReturn.add(predecessors);
+
+		StorageReadResult result = toCoraOrganisation.convertRowDataUsingFilter(TABLE_NAME,
+				filter);
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 5);
+		assertEquals(dataReader.sqlsSentToReader.get(2),
+				"select * from divaOrganisationParent where organisation_id in (?, ?)");
+		assertEquals(dataReader.valuesListSentToReader.get(2), List.of(3, 4));
+		assertEquals(dataReader.sqlsSentToReader.get(3),
+				"select * from divaOrganisationPredecessor where organisation_id in (?, ?)");
+		assertEquals(dataReader.valuesListSentToReader.get(3), List.of(3, 4));
+		assertEquals(dataReader.sqlsSentToReader.get(4),
+				"select * from divaOrganisationPredecessor where predecessor_id in (?, ?)");
+		assertEquals(dataReader.valuesListSentToReader.get(4), List.of(3, 4));
+
+		assertEquals(result.totalNumberOfMatches, 57);
+		assertEquals(result.listOfDataGroups.size(), 2);
+		assertEquals(converterFactory.factoredTypes, List.of(TABLE_NAME, "divaOrganisationParent",
+				"divaOrganisationSuccessor", TABLE_NAME, "divaOrganisationPredecessor"));
+		assertEquals(result.listOfDataGroups.get(0).getChildren().size(), 2);
+		assertEquals(result.listOfDataGroups.get(1).getChildren().size(), 1);
+	}
+
+	@Test
+	public void testRelationsForLargePageAreReadInChunks() throws Exception {
+		List<Map<String, Object>> page = new ArrayList<>();
+		for (int id = 1; id <= 1001; id++) {
+			page.add(createRowUsingKeyAndValue("id", id));
+		}
+		dataReader.listsOfRowsToReturn.add(page);
+		filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("toNo", "2000"));
+
+		StorageReadResult result = toCoraOrganisation.convertRowDataUsingFilter(TABLE_NAME,
+				filter);
+
+		assertEquals(dataReader.sqlsSentToReader.size(), 8);
+		assertEquals(dataReader.valuesListSentToReader.get(2).size(), 1000);
+		assertEquals(dataReader.valuesListSentToReader.get(5), List.of(1001));
+		assertEquals(dataReader.sqlsSentToReader.get(7),
+				"select * from divaOrganisationPredecessor where predecessor_id in (?)");
+		assertEquals(result.listOfDataGroups.size(), 1001);
+	}
+
+	@Test
+	public void testUnfilteredAndUnpagedListReadsAllRowsWithOneReadPerTable() throws Exception {
+		List<Map<String, Object>> organisations = new ArrayList<>();
+		organisations.add(createRowUsingKeyAndValue("id", 3));
+		organisations.add(createRowUsingKeyAndValue("id", 4));
+		recordReaderFactory.rowsToReturnForTables.put(TABLE_NAME, organisations);
+
+		StorageReadResult result = toCoraOrganisation.convertRowDataUsingFilter(TABLE_NAME,
+				new DataGroupSpy("filter"));
+
+		assertEquals(result.totalNumberOfMatches, 2);
+		assertEquals(result.listOfDataGroups.size(), 2);
+		assertEquals(recordReaderFactory.factored.usedTableNames, List.of(TABLE_NAME,
+				"divaOrganisationParent", "divaOrganisationPredecessor"));
+		assertFalse(dataReader.executePreparedStatementWasCalled);
+		assertFalse(dataReader.readOneRowWasCalled);
+	}
+
+	@Test
+	public void testWithoutDataReaderAllOrganisationsAreReturned() throws Exception {
+		toCoraOrganisation = DivaDbToCoraOrganisation
+				.usingRecordReaderFactoryAndConverterFactory(recordReaderFactory, converterFactory);
+		List<Map<String, Object>> organisations = new ArrayList<>();
+		organisations.add(createRowUsingKeyAndValue("id", 3));
+		organisations.add(createRowUsingKeyAndValue("id", 4));
+		recordReaderFactory.rowsToReturnForTables.put(TABLE_NAME, organisations);
+
+		StorageReadResult result = toCoraOrganisation.convertRowDataUsingFilter(TABLE_NAME,
+				filter);
+
+		assertEquals(result.totalNumberOfMatches, 2);
+		assertEquals(result.listOfDataGroups.size(), 2);
+		assertFalse(dataReader.executePreparedStatementWasCalled);
+	}
+
+	private Map<String, Object> createRowUsingKeyAndValue(String key, Object value) {
+		Map<String, Object> row = new HashMap<>();
+		row.put(key, value);
+		return row;
+	}
+
+	private Map<String, Object> createRelationRowUsingIds(String relatedIdColumn,
+			String organisationId, String relatedId) {
+		Map<String, Object> row = createRowUsingKeyAndValue("organisation_id", organisationId);
+		row.put(relatedIdColumn, relatedId);
+		return row;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.sql.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.DataReaderSpy;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class DivaDbToCoraOrganisationOneQueryTest {
+
+	private static final String TABLE_NAME = "divaOrganisation";
+	private DivaDbToCoraConverterFactorySpy converterFactory;
+	private RecordReaderFactorySpy recordReaderFactory;
+	private DataReaderSpy dataReader;
+	private DivaDbToCoraOrganisation toCoraOrganisation;
+
+	@BeforeMethod
+	public void BeforeMethod() {
+		converterFactory = new DivaDbToCoraConverterFactorySpy();
+		recordReaderFactory = new RecordReaderFactorySpy();
+		dataReader = new DataReaderSpy();
+		toCoraOrganisation = DivaDbToCoraOrganisation
+				.usingRecordReaderFactoryAndDataReaderAndConverterFactory(recordReaderFactory,
+						dataReader, converterFactory);
+	}
+
+	@Test
+	public void testGetDataReader() throws Exception {
+		assertSame(toCoraOrganisation.getDataReader(), dataReader);
+		assertSame(toCoraOrganisation.getRecordReaderFactory(), recordReaderFactory);
+		assertSame(toCoraOrganisation.getConverterFactory(), converterFactory);
+	}
+
+	@Test
+	public void testReadOrganisationUsesOneQueryAndNoRecordReader() throws Exception {
+		dataReader.listOfRows.add(createOrganisationRowUsingRelation(null, null, null, null));
+		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
+
+		assertFalse(recordReaderFactory.factorWasCalled);
+		assertTrue(dataReader.executePreparedStatementWasCalled);
+		assertEquals(dataReader.sqlSentToReader, "select organisation.*, relation.relation_type,"
+				+ " relation.relation_organisation_id, relation.relation_related_id,"
+				+ " relation.relation_description from divaOrganisation organisation left join ("
+				+ "select 'parent' as relation_type, organisation_id as relation_organisation_id,"
+				+ " organisation_parent_id as relation_related_id, null as relation_description"
+				+ " from divaOrganisationParent where organisation_id = ?"
+				+ " union all select 'predecessor', organisation_id, predecessor_id, description"
+				+ " from divaOrganisationPredecessor where organisation_id = ?"
+				+ " union all select 'successor', organisation_id, predecessor_id, description"
+				+ " from divaOrganisationPredecessor where predecessor_id = ?"
+				+ ") relation on true where organisation.id = ?");
+		assertEquals(dataReader.valuesSentToReader, List.of("someId", "someId", "someId", "someId"));
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "Organisation not found: someId")
+	public void testReadOrganisationNotFound() throws Exception {
+		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
+	}
+
+	@Test
+	public void testReadOrganisationNoRelations() throws Exception {
+		dataReader.listOfRows.add(createOrganisationRowUsingRelation(null, null, null, null));
+		DataGroup convertedOrganisation = toCoraOrganisation.convertOneRowData(TABLE_NAME,
+				"someId");
+
+		assertEquals(converterFactory.factoredTypes.size(), 1);
+		assertEquals(converterFactory.factoredTypes.get(0), "divaOrganisation");
+		DivaDbToCoraConverterSpy organisationConverter = getConverterSpyUsingIndex(0);
+		assertEquals(organisationConverter.mapToConvert.size(), 2);
+		assertEquals(organisationConverter.mapToConvert.get("id"), "someId");
+		assertEquals(organisationConverter.mapToConvert.get("defaultname"), "someName");
+		assertSame(convertedOrganisation, organisationConverter.convertedDbDataGroup);
+		assertFalse(convertedOrganisation.containsChildWithNameInData("from Db converter"));
+	}
+
+	@Test
+	public void testReadOrganisationWithRelations() throws Exception {
+		dataReader.listOfRows.add(createOrganisationRowUsingRelation("successor", "7", "someId",
+				"someSuccessorDescription"));
+		dataReader.listOfRows
+				.add(createOrganisationRowUsingRelation("parent", "someId", "5", null));
+		dataReader.listOfRows.add(createOrganisationRowUsingRelation("predecessor", "someId", "6",
+				"someDescription"));
+		dataReader.listOfRows
+				.add(createOrganisationRowUsingRelation("parent", "someId", "8", null));
+		DataGroup convertedOrganisation = toCoraOrganisation.convertOneRowData(TABLE_NAME,
+				"someId");
+
+		assertEquals(converterFactory.factoredTypes, List.of("divaOrganisation",
+				"divaOrganisationParent", "divaOrganisationParent", "divaOrganisationPredecessor",
+				"divaOrganisationSuccessor"));
+
+		Map<String, Object> firstParent = getConverterSpyUsingIndex(1).mapToConvert;
+		assertEquals(firstParent.get("organisation_id"), "someId");
+		assertEquals(firstParent.get("organisation_parent_id"), "5");
+		assertEquals(getConverterSpyUsingIndex(2).mapToConvert.get("organisation_parent_id"),
+				"8");
+
+		Map<String, Object> predecessor = getConverterSpyUsingIndex(3).mapToConvert;
+		assertEquals(predecessor.get("organisation_id"), "someId");
+		assertEquals(predecessor.get("predecessor_id"), "6");
+		assertEquals(predecessor.get("description"), "someDescription");
+
+		Map<String, Object> successor = getConverterSpyUsingIndex(4).mapToConvert;
+		assertEquals(successor.get("organisation_id"), "7");
+		assertEquals(successor.get("predecessor_id"), "someId");
+		assertFalse(successor.containsKey("closed_date"));
+
+		List<DataGroup> relations = convertedOrganisation
+				.getAllGroupsWithNameInData("from Db converter");
+		assertEquals(relations.size(), 4);
+		assertEquals(relations.get(0).getRepeatId(), "0");
+		assertEquals(relations.get(1).getRepeatId(), "1");
+		assertEquals(relations.get(2).getRepeatId(), "0");
+		assertEquals(relations.get(3).getRepeatId(), "0");
+	}
+
+	@Test
+	public void testReadOrganisationWithClosedDateAddsClosedDateToSuccessors() throws Exception {
+		Map<String, Object> row = createOrganisationRowUsingRelation("successor", "7", "someId",
+				null);
+		row.put("closed_date", Date.valueOf("2018-12-31"));
+		dataReader.listOfRows.add(row);
+		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
+
+		Map<String, Object> successor = getConverterSpyUsingIndex(1).mapToConvert;
+		assertEquals(successor.get("closed_date"), "2018-12-31");
+	}
+
+	private Map<String, Object> createOrganisationRowUsingRelation(String relationType,
+			String organisationId, String relatedId, String description) {
+		Map<String, Object> row = new HashMap<>();
+		row.put("id", "someId");
+		row.put("defaultname", "someName");
+		row.put("relation_type", relationType);
+		row.put("relation_organisation_id", organisationId);
+		row.put("relation_related_id", relatedId);
+		row.put("relation_description", description);
+		return row;
+	}
+
+	private DivaDbToCoraConverterSpy getConverterSpyUsingIndex(int index) {
+		return (DivaDbToCoraConverterSpy) converterFactory.factoredConverters.get(index);
+	}
+}
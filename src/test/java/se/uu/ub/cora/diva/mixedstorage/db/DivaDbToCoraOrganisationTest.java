@@ -23,6 +23,8 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.sql.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +32,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.sqldatabase.SqlStorageException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
 
 public class DivaDbToCoraOrganisationTest {
 
@@ -64,6 +68,20 @@ public class DivaDbToCoraOrganisationTest {
 		assertEquals(recordReader.usedTableNames.size(), 4);
 	}
 
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "Organisation not found: someId")
+	public void testReadOrganisationNotFound() throws Exception {
+		recordReaderFactory.idsNotInTable.add("someId");
+		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
+	}
+
+	@Test(expectedExceptions = SqlStorageException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error from spy")
+	public void testReadOrganisationErrorForExistingOrganisationIsRethrown() throws Exception {
+		recordReaderFactory.throwErrorForExistingIds = true;
+		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
+	}
+
 	@Test
 	public void testReadOrganisationConditionsForOrganisationTable() throws Exception {
 		toCoraOrganisation.convertOneRowData(TABLE_NAME, "someId");
@@ -422,4 +440,97 @@ public class DivaDbToCoraOrganisationTest {
 
 		assertEquals(convertedOrganisation, organisationConverter.convertedDbDataGroup);
 	}
+
+	@Test
+	public void testReadAllOrganisationsReadsEachTableOnce() throws Exception {
+		toCoraOrganisation.convertAllRowData(TABLE_NAME);
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+		assertEquals(recordReader.usedTableNames, List.of(TABLE_NAME, "divaOrganisationParent",
+				"divaOrganisationPredecessor"));
+	}
+
+	@Test
+	public void testReadAllOrganisationsNoRelations() throws Exception {
+		recordReaderFactory.rowsToReturnForTables.put(TABLE_NAME,
+				List.of(createRowUsingKeyAndValue("id", "1"), createRowUsingKeyAndValue("id", "2")));
+		List<DataGroup> organisations = toCoraOrganisation.convertAllRowData(TABLE_NAME);
+
+		assertEquals(organisations.size(), 2);
+		assertEquals(converterFactory.factoredTypes, List.of(TABLE_NAME, TABLE_NAME));
+		assertEquals(getConverterSpyUsingIndex(0).mapToConvert.get("id"), "1");
+		assertEquals(organisations.get(0), getConverterSpyUsingIndex(0).convertedDbDataGroup);
+		assertEquals(organisations.get(1), getConverterSpyUsingIndex(1).convertedDbDataGroup);
+		assertTrue(organisations.get(0).getChildren().isEmpty());
+	}
+
+	@Test
+	public void testReadAllOrganisationsRelationsAreGroupedByOrganisation() throws Exception {
+		Map<String, Object> closedOrganisation = createRowUsingKeyAndValue("id", 2);
+		closedOrganisation.put("closed_date", Date.valueOf("2018-12-31"));
+		recordReaderFactory.rowsToReturnForTables.put(TABLE_NAME,
+				List.of(createRowUsingKeyAndValue("id", 1), closedOrganisation));
+		recordReaderFactory.rowsToReturnForTables.put("divaOrganisationParent",
+				List.of(createRelationRowUsingIds("organisation_parent_id", "1", "3"),
+						createRelationRowUsingIds("organisation_parent_id", "2", "3"),
+						createRelationRowUsingIds("organisation_parent_id", "1", "4")));
+		recordReaderFactory.rowsToReturnForTables.put("divaOrganisationPredecessor",
+				List.of(createRelationRowUsingIds("predecessor_id", "1", "2")));
+
+		List<DataGroup> organisations = toCoraOrganisation.convertAllRowData(TABLE_NAME);
+
+		assertEquals(recordReaderFactory.factored.usedTableNames.size(), 3);
+		assertEquals(converterFactory.factoredTypes,
+				List.of(TABLE_NAME, "divaOrganisationParent", "divaOrganisationParent",
+						"divaOrganisationPredecessor", TABLE_NAME, "divaOrganisationParent",
+						"divaOrganisationSuccessor"));
+
+		assertEquals(getConverterSpyUsingIndex(1).mapToConvert.get("organisation_parent_id"),
+				"3");
+		assertEquals(getConverterSpyUsingIndex(2).mapToConvert.get("organisation_parent_id"),
+				"4");
+		assertEquals(getConverterSpyUsingIndex(3).mapToConvert.get("predecessor_id"), "2");
+		assertFalse(getConverterSpyUsingIndex(3).mapToConvert.containsKey("closed_date"));
+
+		Map<String, Object> successor = getConverterSpyUsingIndex(6).mapToConvert;
+		assertEquals(successor.get("organisation_id"), "1");
+		assertEquals(successor.get("closed_date"), "2018-12-31");
+
+		assertEquals(organisations.get(0).getChildren().size(), 3);
+		assertEquals(organisations.get(1).getChildren().size(), 2);
+		assertCorrectRepeatIdInAddedChildrenUsingIndex(organisations.get(0), 0);
+		assertCorrectRepeatIdInAddedChildrenUsingIndex(organisations.get(0), 1);
+	}
+
+	@Test
+	public void testReadAllOrganisationsClosedDateIsNotKeptForNextOrganisation() throws Exception {
+		Map<String, Object> closedOrganisation = createRowUsingKeyAndValue("id", 2);
+		closedOrganisation.put("closed_date", Date.valueOf("2018-12-31"));
+		recordReaderFactory.rowsToReturnForTables.put(TABLE_NAME,
+				List.of(closedOrganisation, createRowUsingKeyAndValue("id", 3)));
+		recordReaderFactory.rowsToReturnForTables.put("divaOrganisationPredecessor",
+				List.of(createRelationRowUsingIds("predecessor_id", "4", "3")));
+
+		toCoraOrganisation.convertAllRowData(TABLE_NAME);
+
+		Map<String, Object> successor = getConverterSpyUsingIndex(2).mapToConvert;
+		assertEquals(successor.get("organisation_id"), "4");
+		assertFalse(successor.containsKey("closed_date"));
+	}
+
+	private Map<String, Object> createRowUsingKeyAndValue(String key, Object value) {
+		Map<String, Object> row = new HashMap<>();
+		row.put(key, value);
+		return row;
+	}
+
+	private Map<String, Object> createRelationRowUsingIds(String relatedIdColumn,
+			String organisationId, String relatedId) {
+		Map<String, Object> row = createRowUsingKeyAndValue("organisation_id", organisationId);
+		row.put(relatedIdColumn, relatedId);
+		return row;
+	}
+
+	private DivaDbToCoraConverterSpy getConverterSpyUsingIndex(int index) {
+		return (DivaDbToCoraConverterSpy) converterFactory.factoredConverters.get(index);
+	}
 }
@@ -21,18 +21,29 @@ package se.uu.ub.cora.diva.mixedstorage.db;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicFactorySpy;
 import se.uu.ub.cora.diva.mixedstorage.DataAtomicSpy;
 import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.diva.mixedstorage.DataReaderSpy;
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+import se.uu.ub.cora.diva.mixedstorage.fedora.DataGroupFactorySpy;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
@@ -95,6 +106,115 @@ public class DivaDbToCoraRecordStorageTest {
 		assertEquals(readOrganisation, factored.dataGroup);
 	}
 
+	@Test
+	public void testOrganisationAncestryIndexUsesRecordReaderFactory() throws Exception {
+		DivaDbOrganisationAncestryIndex ancestryIndex = divaToCoraRecordStorage
+				.getOrganisationAncestryIndex();
+
+		assertSame(ancestryIndex.getRecordReaderFactory(), recordReaderFactory);
+		assertSame(divaToCoraRecordStorage.getOrganisationAncestryIndex(), ancestryIndex);
+		assertFalse(recordReaderFactory.factorWasCalled);
+	}
+
+	@Test
+	public void testOrganisationLineageIndexUsesRecordReaderFactory() throws Exception {
+		DivaDbOrganisationLineageIndex lineageIndex = divaToCoraRecordStorage
+				.getOrganisationLineageIndex();
+
+		assertSame(lineageIndex.getRecordReaderFactory(), recordReaderFactory);
+		assertSame(divaToCoraRecordStorage.getOrganisationLineageIndex(), lineageIndex);
+		assertFalse(recordReaderFactory.factorWasCalled);
+	}
+
+	@Test
+	public void testReadOrganisationUsesOrganisationCache() throws Exception {
+		DivaDbOrganisationCache organisationCache = createStorageWithOrganisationCache();
+
+		DataGroup readOrganisation = divaToCoraRecordStorage.read(TABLE_NAME, "someId");
+		DataGroup convertedOrganisation = divaDbToCoraFactory.factored.dataGroup;
+		divaDbToCoraFactory.factorWasCalled = false;
+		DataGroup cachedOrganisation = divaToCoraRecordStorage.read(TABLE_NAME, "someId");
+
+		assertSame(readOrganisation, convertedOrganisation);
+		assertFalse(divaDbToCoraFactory.factorWasCalled);
+		assertNotSame(cachedOrganisation, readOrganisation);
+		assertEquals(cachedOrganisation.getNameInData(), "DataGroupFromSpy");
+		assertSame(divaToCoraRecordStorage.getOrganisationCache(), organisationCache);
+	}
+
+	@Test
+	public void testUpdateOrganisationInvalidatesOrganisationCache() throws Exception {
+		createStorageWithOrganisationCache();
+		divaToCoraRecordStorage.read(TABLE_NAME, "56");
+		divaDbToCoraFactory.factorWasCalled = false;
+		DataGroup record = new DataGroupSpy("organisation");
+		record.addChild(new DataAtomicSpy("organisationName", "someChangedName"));
+
+		divaToCoraRecordStorage.update("divaOrganisation", "56", record, null, null, "");
+		divaToCoraRecordStorage.read(TABLE_NAME, "56");
+
+		assertTrue(divaDbToCoraFactory.factorWasCalled);
+	}
+
+	@Test
+	public void testUpdateOrganisationRefreshesLoadedAncestryIndexOnNextQuery() throws Exception {
+		divaToCoraRecordStorage.getOrganisationAncestryIndex().getAncestorsOfOrganisation("56");
+		divaToCoraRecordStorage.getOrganisationLineageIndex()
+				.getAllPredecessorsOfOrganisation("56");
+		DataGroup record = new DataGroupSpy("organisation");
+		record.addChild(new DataAtomicSpy("organisationName", "someChangedName"));
+
+		RecordReaderSpy recordReaderBeforeUpdate = recordReaderFactory.factored;
+
+		divaToCoraRecordStorage.update("divaOrganisation", "56", record, null, null, "");
+
+		assertSame(recordReaderFactory.factored, recordReaderBeforeUpdate);
+		divaToCoraRecordStorage.getOrganisationAncestryIndex().getAncestorsOfOrganisation("56");
+		RecordReaderSpy recordReader = recordReaderFactory.factored;
+		assertEquals(recordReader.usedTableNames, List.of("divaOrganisationParent"));
+		assertEquals(recordReader.usedConditions, Map.of("organisation_id", "56"));
+
+		divaToCoraRecordStorage.getOrganisationLineageIndex()
+				.getAllPredecessorsOfOrganisation("56");
+		assertSame(recordReaderFactory.factored, recordReader);
+	}
+
+	@Test
+	public void testUpdateOrganisationWithChangedPredecessorInvalidatesLineageIndex()
+			throws Exception {
+		divaToCoraRecordStorage.getOrganisationLineageIndex()
+				.getAllPredecessorsOfOrganisation("56");
+		DataGroup record = new DataGroupSpy("organisation");
+		record.addChild(new DataAtomicSpy("organisationName", "someChangedName"));
+		DataGroup formerName = new DataGroupSpy("formerName");
+		DataGroup organisationLink = new DataGroupSpy("organisationLink");
+		organisationLink.addChild(new DataAtomicSpy("linkedRecordId", "55"));
+		formerName.addChild(organisationLink);
+		record.addChild(formerName);
+		RecordReaderSpy recordReaderBeforeUpdate = recordReaderFactory.factored;
+
+		divaToCoraRecordStorage.update("divaOrganisation", "56", record, null, null, "");
+
+		assertSame(recordReaderFactory.factored, recordReaderBeforeUpdate);
+		divaToCoraRecordStorage.getOrganisationLineageIndex()
+				.getAllPredecessorsOfOrganisation("56");
+		assertNotSame(recordReaderFactory.factored, recordReaderBeforeUpdate);
+		assertEquals(recordReaderFactory.factored.usedTableNames,
+				List.of("divaOrganisationPredecessor"));
+	}
+
+	private DivaDbOrganisationCache createStorageWithOrganisationCache() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DivaDbOrganisationCache organisationCache = DivaDbOrganisationCache
+				.usingTimedLruCache(TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 1000));
+		divaToCoraRecordStorage = DivaDbToCoraRecordStorage
+				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
+						recordReaderFactory, converterFactory, divaDbToCoraFactory,
+						recordUpdaterFactory, null, null, organisationCache);
+		return organisationCache;
+	}
+
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
 			+ "create is not implemented")
 	public void createThrowsNotImplementedException() throws Exception {
@@ -177,73 +297,76 @@ public class DivaDbToCoraRecordStorageTest {
 	}
 
 	@Test
-	public void testReadOrganisationListFactorDbReader() throws Exception {
-		divaToCoraRecordStorage.readList(TABLE_NAME, new DataGroupSpy("filter"));
-		assertTrue(recordReaderFactory.factorWasCalled);
-	}
-
-	@Test
-	public void testReadOrganisationListCountryTableRequestedFromReader() throws Exception {
-		divaToCoraRecordStorage.readList(TABLE_NAME, new DataGroupSpy("filter"));
-		RecordReaderSpy recordReader = recordReaderFactory.factored;
-		assertEquals(recordReader.usedTableName, TABLE_NAME);
-	}
-
-	@Test
-	public void testReadOrganisationListConverterIsFactored() throws Exception {
+	public void testReadOrganisationListFactorDivaDbToCora() throws Exception {
 		divaToCoraRecordStorage.readList(TABLE_NAME, new DataGroupSpy("filter"));
-		DivaDbToCoraConverter divaDbToCoraConverter = converterFactory.factoredConverters.get(0);
-		assertNotNull(divaDbToCoraConverter);
+		assertTrue(divaDbToCoraFactory.factorWasCalled);
+		assertEquals(divaDbToCoraFactory.type, TABLE_NAME);
 	}
 
 	@Test
-	public void testReadOrganisationListConverterIsCalledWithDataFromDbStorage() throws Exception {
-		divaToCoraRecordStorage.readList(TABLE_NAME, new DataGroupSpy("filter"));
-		RecordReaderSpy recordReader = recordReaderFactory.factored;
-		DivaDbToCoraConverterSpy divaDbToCoraConverter = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
-				.get(0);
-		assertNotNull(divaDbToCoraConverter.mapToConvert);
-		assertEquals(recordReader.returnedList.get(0), divaDbToCoraConverter.mapToConvert);
+	public void testReadOrganisationListConvertsRowsUsingFilter() throws Exception {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		StorageReadResult storageReadResult = divaToCoraRecordStorage.readList(TABLE_NAME,
+				filter);
+		DivaDbToCoraSpy divaDbToCora = divaDbToCoraFactory.factored;
+		assertEquals(divaDbToCora.listType, TABLE_NAME);
+		assertEquals(divaDbToCora.filter, filter);
+		assertEquals(storageReadResult, divaDbToCora.storageReadResult);
+		assertEquals(storageReadResult.totalNumberOfMatches, 42);
+		assertFalse(recordReaderFactory.factorWasCalled);
 	}
 
 	@Test
 	public void testReadOrganisationListConverteredIsAddedToList() throws Exception {
 		StorageReadResult spiderReadresult = divaToCoraRecordStorage.readList(TABLE_NAME,
 				new DataGroupSpy("filter"));
-		List<DataGroup> readCountryList = spiderReadresult.listOfDataGroups;
-		RecordReaderSpy recordReader = recordReaderFactory.factored;
-		DivaDbToCoraConverterSpy divaDbToCoraConverter = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
-				.get(0);
-		assertEquals(recordReader.returnedList.size(), 1);
-		assertEquals(recordReader.returnedList.get(0), divaDbToCoraConverter.mapToConvert);
-		assertEquals(readCountryList.get(0), divaDbToCoraConverter.convertedDbDataGroup);
+		List<DataGroup> readOrganisationList = spiderReadresult.listOfDataGroups;
+		DivaDbToCoraSpy divaDbToCora = divaDbToCoraFactory.factored;
+		assertEquals(readOrganisationList.size(), 1);
+		assertEquals(readOrganisationList.get(0), divaDbToCora.dataGroups.get(0));
 	}
 
 	@Test
 	public void testReadOrganisationListConverteredMoreThanOneIsAddedToList() throws Exception {
-		recordReaderFactory.noOfRecordsToReturn = 3;
+		divaDbToCoraFactory.noOfDataGroupsToReturn = 3;
 		StorageReadResult storageReadResult = divaToCoraRecordStorage.readList(TABLE_NAME,
 				new DataGroupSpy("filter"));
 		List<DataGroup> readOrganisationList = storageReadResult.listOfDataGroups;
-		RecordReaderSpy recordReader = recordReaderFactory.factored;
-
-		assertEquals(recordReader.returnedList.size(), 3);
+		assertEquals(readOrganisationList, divaDbToCoraFactory.factored.dataGroups);
+		assertEquals(readOrganisationList.size(), 3);
+	}
 
-		DivaDbToCoraConverterSpy divaDbToCoraConverter = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
-				.get(0);
-		assertEquals(recordReader.returnedList.get(0), divaDbToCoraConverter.mapToConvert);
-		assertEquals(readOrganisationList.get(0), divaDbToCoraConverter.convertedDbDataGroup);
+	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
+			+ "readAllOrganisationsUsingConsumer needs a cursor reader")
+	public void testReadAllOrganisationsWithoutCursorReader() throws Exception {
+		divaToCoraRecordStorage.readAllOrganisationsUsingConsumer(organisation -> {
+		});
+	}
 
-		DivaDbToCoraConverterSpy divaDbToCoraConverter2 = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
-				.get(1);
-		assertEquals(recordReader.returnedList.get(1), divaDbToCoraConverter2.mapToConvert);
-		assertEquals(readOrganisationList.get(1), divaDbToCoraConverter2.convertedDbDataGroup);
+	@Test
+	public void testReadAllOrganisationsUsingConsumer() throws Exception {
+		SqlConnectionProviderSpy sqlConnectionProvider = new SqlConnectionProviderSpy();
+		sqlConnectionProvider.columnNames = List.of("id");
+		sqlConnectionProvider.rowsToReturn.add(Map.of("id", "1"));
+		sqlConnectionProvider.rowsToReturn.add(Map.of("id", "2"));
+		DivaDbCursorReader cursorReader = DivaDbCursorReader
+				.usingSqlConnectionProviderAndFetchSize(sqlConnectionProvider, 10);
+		divaToCoraRecordStorage = DivaDbToCoraRecordStorage
+				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
+						recordReaderFactory, converterFactory, divaDbToCoraFactory,
+						recordUpdaterFactory, cursorReader, null, null);
+		List<DataGroup> organisations = new ArrayList<>();
 
-		DivaDbToCoraConverterSpy divaDbToCoraConverter3 = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
-				.get(2);
-		assertEquals(recordReader.returnedList.get(2), divaDbToCoraConverter3.mapToConvert);
-		assertEquals(readOrganisationList.get(2), divaDbToCoraConverter3.convertedDbDataGroup);
+		divaToCoraRecordStorage.readAllOrganisationsUsingConsumer(organisations::add);
 
+		assertEquals(sqlConnectionProvider.preparedSql, "select * from divaOrganisation");
+		assertEquals(converterFactory.factoredTypes, List.of(TABLE_NAME));
+		DivaDbToCoraConverterSpy converter = (DivaDbToCoraConverterSpy) converterFactory.factoredConverters
+				.get(0);
+		assertEquals(converter.mapToConvert, Map.of("id", "2"));
+		assertEquals(organisations.size(), 2);
+		assertEquals(organisations.get(1), converter.convertedDbDataGroup);
+		assertSame(divaToCoraRecordStorage.getCursorReader(), cursorReader);
 	}
 
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
@@ -311,4 +434,63 @@ public class DivaDbToCoraRecordStorageTest {
 						"notAnInt");
 		assertFalse(organisationExists);
 	}
+
+	@Test
+	public void readExistingRecordIdsForDivaOrganisationWithoutExistenceChecker() {
+		Set<String> existingIds = divaToCoraRecordStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("divaOrganisation",
+						List.of("26", "notAnInt"));
+
+		assertEquals(existingIds, Set.of("26"));
+	}
+
+	@Test
+	public void readExistingRecordIdsForDivaOrganisationUsesExistenceChecker() {
+		DataReaderSpy dataReader = new DataReaderSpy();
+		dataReader.listOfRows.add(Map.of("organisation_id", 26));
+		DivaDbOrganisationExistenceChecker existenceChecker = DivaDbOrganisationExistenceChecker
+				.usingDataReaderAndExistenceCache(dataReader,
+						TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 1000));
+		divaToCoraRecordStorage = DivaDbToCoraRecordStorage
+				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
+						recordReaderFactory, converterFactory, divaDbToCoraFactory,
+						recordUpdaterFactory, null, existenceChecker, null);
+
+		Set<String> existingIds = divaToCoraRecordStorage
+				.readExistingRecordIdsForRecordTypeAndRecordIds("divaOrganisation",
+						List.of("26", "27"));
+
+		assertEquals(existingIds, Set.of("26"));
+		assertEquals(dataReader.sqlsSentToReader.size(), 1);
+		assertNull(recordReaderFactory.factored);
+	}
+
+	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
+			+ "readExistingRecordIdsForRecordTypeAndRecordIds is not implemented for someType")
+	public void readExistingRecordIdsForOtherTypeThrowsNotImplementedException() {
+		divaToCoraRecordStorage.readExistingRecordIdsForRecordTypeAndRecordIds("someType",
+				List.of("26"));
+	}
+
+	@Test
+	public void recordExistsForDivaOrganisationUsesExistenceCheckerWhenPresent() {
+		DataReaderSpy dataReader = new DataReaderSpy();
+		dataReader.listOfRows.add(Map.of("?column?", 1));
+		DivaDbOrganisationExistenceChecker existenceChecker = DivaDbOrganisationExistenceChecker
+				.usingDataReaderAndExistenceCache(dataReader,
+						TimedLruCache.usingMaxSizeAndTimeToLiveMillis(10, 1000));
+		divaToCoraRecordStorage = DivaDbToCoraRecordStorage
+				.usingRecordReaderFactoryAndRecordUpdaterFactoryConverterFactoryAndDbToCoraFactoryAndCursorReaderAndExistenceCheckerAndOrganisationCache(
+						recordReaderFactory, converterFactory, divaDbToCoraFactory,
+						recordUpdaterFactory, null, existenceChecker, null);
+
+		boolean organisationExists = divaToCoraRecordStorage
+				.recordExistsForAbstractOrImplementingRecordTypeAndRecordId("divaOrganisation",
+						"26");
+
+		assertTrue(organisationExists);
+		assertEquals(dataReader.valuesSentToReader, List.of(26));
+		assertNull(recordReaderFactory.factored);
+		assertSame(divaToCoraRecordStorage.getExistenceChecker(), existenceChecker);
+	}
 }
@@ -1,13 +1,22 @@
 package se.uu.ub.cora.diva.mixedstorage.db;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.storage.StorageReadResult;
 
 public class DivaDbToCoraSpy implements DivaDbToCora {
 
 	public String type;
 	public String id;
 	public DataGroup dataGroup;
+	public String listType;
+	public int noOfDataGroupsToReturn = 1;
+	public List<DataGroup> dataGroups;
+	public DataGroup filter;
+	public StorageReadResult storageReadResult;
 
 	@Override
 	public DataGroup convertOneRowData(String type, String id) {
@@ -17,4 +26,23 @@ public class DivaDbToCoraSpy implements DivaDbToCora {
 		return dataGroup;
 	}
 
+	@Override
+	public List<DataGroup> convertAllRowData(String type) {
+		listType = type;
+		dataGroups = new ArrayList<>();
+		for (int i = 0; i < noOfDataGroupsToReturn; i++) {
+			dataGroups.add(new DataGroupSpy("DataGroupFromSpy"));
+		}
+		return dataGroups;
+	}
+
+	@Override
+	public StorageReadResult convertRowDataUsingFilter(String type, DataGroup filter) {
+		this.filter = filter;
+		storageReadResult = new StorageReadResult();
+		storageReadResult.listOfDataGroups = convertAllRowData(type);
+		storageReadResult.totalNumberOfMatches = 42;
+		return storageReadResult;
+	}
+
 }
@@ -18,6 +18,11 @@
  */
 package se.uu.ub.cora.diva.mixedstorage.db;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import se.uu.ub.cora.sqldatabase.RecordReader;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactory;
 
@@ -29,6 +34,10 @@ public class RecordReaderFactorySpy implements RecordReaderFactory {
 	public int numOfPredecessorsToReturn = 0;
 	public int numOfSuccessorsToReturn = 0;
 	public int numOfParentsToReturn = 0;
+	public Map<String, List<Map<String, Object>>> rowsToReturnForTables = new HashMap<>();
+	public List<String> idsNotInTable = new ArrayList<>();
+	public boolean throwErrorForExistingIds = false;
+	public boolean throwErrorForReadFromTable = false;
 
 	@Override
 	public RecordReader factor() {
@@ -38,6 +47,10 @@ public class RecordReaderFactorySpy implements RecordReaderFactory {
 		factored.numOfSuccessorsToReturn = numOfSuccessorsToReturn;
 		factored.numOfParentsToReturn = numOfParentsToReturn;
 		factored.noOfRecordsToReturn = noOfRecordsToReturn;
+		factored.rowsToReturnForTables = rowsToReturnForTables;
+		factored.idsNotInTable = idsNotInTable;
+		factored.throwErrorForExistingIds = throwErrorForExistingIds;
+		factored.throwErrorForReadFromTable = throwErrorForReadFromTable;
 		return factored;
 	}
 
@@ -43,11 +43,18 @@ public class RecordReaderSpy implements RecordReader {
 	public List<Map<String, Object>> predecessorsToReturn = new ArrayList<>();
 	public List<Map<String, Object>> successorsToReturn = new ArrayList<>();
 	public List<Map<String, Object>> parentsToReturn = new ArrayList<>();
+	public Map<String, List<Map<String, Object>>> rowsToReturnForTables = new HashMap<>();
+	public List<String> idsNotInTable = new ArrayList<>();
+	public boolean throwErrorForExistingIds = false;
+	public boolean throwErrorForReadFromTable = false;
 
 	@Override
 	public List<Map<String, Object>> readAllFromTable(String tableName) {
 		usedTableName = tableName;
 		usedTableNames.add(usedTableName);
+		if (rowsToReturnForTables.containsKey(tableName)) {
+			return rowsToReturnForTables.get(tableName);
+		}
 		// returnedList = new ArrayList<>();
 		for (int i = 0; i < noOfRecordsToReturn; i++) {
 			Map<String, Object> map = new HashMap<>();
@@ -68,6 +75,9 @@ public class RecordReaderSpy implements RecordReader {
 				&& conditions.get("organisation_id").equals(600)) {
 			throw SqlStorageException.withMessage("Error from spy");
 		}
+		if (idsNotInTable.contains(conditions.get("id")) || throwErrorForExistingIds) {
+			throw SqlStorageException.withMessage("Error from spy");
+		}
 		Map<String, Object> map = new HashMap<>();
 		map.put("someKey", "someValue");
 		if (conditions.containsKey("id")) {
@@ -90,6 +100,17 @@ public class RecordReaderSpy implements RecordReader {
 		usedTableNames.add(usedTableName);
 		usedConditions = conditions;
 		usedConditionsList.add(usedConditions);
+		if (throwErrorForReadFromTable) {
+			throw SqlStorageException.withMessage("Error from spy");
+		}
+		if (rowsToReturnForTables.containsKey(tableName)
+				&& conditions.containsKey("organisation_id")) {
+			return filterRowsUsingOrganisationId(rowsToReturnForTables.get(tableName),
+					conditions.get("organisation_id"));
+		}
+		if (conditions.containsKey("id")) {
+			return createListToReturn(idsNotInTable.contains(conditions.get("id")) ? 0 : 1);
+		}
 		if (numOfPredecessorsToReturn == -1 || numOfSuccessorsToReturn == -1) {
 			return null;
 		}
@@ -111,6 +132,18 @@ public class RecordReaderSpy implements RecordReader {
 		return successorsToReturn;
 	}
 
+	private List<Map<String, Object>> filterRowsUsingOrganisationId(
+			List<Map<String, Object>> rows, Object organisationId) {
+		List<Map<String, Object>> filteredRows = new ArrayList<>();
+		for (Map<String, Object> row : rows) {
+			if (String.valueOf(organisationId)
+					.equals(String.valueOf(row.get("organisation_id")))) {
+				filteredRows.add(row);
+			}
+		}
+		return filteredRows;
+	}
+
 	private List<Map<String, Object>> createListToReturn(int numToReturn) {
 		List<Map<String, Object>> listToReturn = new ArrayList<>();
 		for (int i = 0; i < numToReturn; i++) {
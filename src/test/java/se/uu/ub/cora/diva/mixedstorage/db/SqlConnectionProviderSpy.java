@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.db;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import se.uu.ub.cora.connection.SqlConnectionProvider;
+
+public class SqlConnectionProviderSpy implements SqlConnectionProvider {
+	public List<String> columnNames = new ArrayList<>();
+	public List<Map<String, Object>> rowsToReturn = new ArrayList<>();
+	public boolean throwErrorOnExecute = false;
+
+	public boolean autoCommitBefore = true;
+	public List<Boolean> autoCommitValuesSet = new ArrayList<>();
+	public boolean rollbackWasCalled = false;
+	public String preparedSql;
+	public int fetchSize;
+	public int noOfRowsRead = 0;
+	public boolean connectionClosed = false;
+	public boolean statementClosed = false;
+	public boolean resultSetClosed = false;
+
+	@Override
+	public Connection getConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getAutoCommit":
+						return autoCommitBefore;
+					case "setAutoCommit":
+						autoCommitValuesSet.add((Boolean) args[0]);
+						return null;
+					case "rollback":
+						rollbackWasCalled = true;
+						return null;
+					case "prepareStatement":
+						preparedSql = (String) args[0];
+						return createPreparedStatement();
+					case "close":
+						connectionClosed = true;
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private PreparedStatement createPreparedStatement() {
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "setFetchSize":
+						fetchSize = (Integer) args[0];
+						return null;
+					case "executeQuery":
+						if (throwErrorOnExecute) {
+							throw new SQLException("error from spy");
+						}
+						return createResultSet();
+					case "close":
+						statementClosed = true;
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private ResultSet createResultSet() {
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMetaData":
+						return createMetaData();
+					case "next":
+						noOfRowsRead++;
+						return noOfRowsRead <= rowsToReturn.size();
+					case "getObject":
+						String columnName = columnNames.get((Integer) args[0] - 1);
+						return rowsToReturn.get(noOfRowsRead - 1).get(columnName);
+					case "close":
+						resultSetClosed = true;
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private ResultSetMetaData createMetaData() {
+		return (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getColumnCount":
+						return columnNames.size();
+					case "getColumnName":
+						return columnNames.get((Integer) args[0] - 1);
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
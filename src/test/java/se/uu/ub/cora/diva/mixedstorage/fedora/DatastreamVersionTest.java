@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class DatastreamVersionTest {
+
+	@Test
+	public void testInit() throws Exception {
+		DatastreamVersion version = DatastreamVersion.usingChecksumAndLastModified("someChecksum",
+				"2019-05-14T07:58:27.651Z");
+		assertEquals(version.getChecksum(), "someChecksum");
+		assertEquals(version.getLastModified(), "2019-05-14T07:58:27.651Z");
+	}
+
+	@Test
+	public void testIsSameVersionAs() throws Exception {
+		DatastreamVersion version = DatastreamVersion.usingChecksumAndLastModified("checksum",
+				"date");
+		assertTrue(version.isSameVersionAs(
+				DatastreamVersion.usingChecksumAndLastModified("checksum", "date")));
+		assertFalse(version.isSameVersionAs(
+				DatastreamVersion.usingChecksumAndLastModified("otherChecksum", "date")));
+		assertFalse(version.isSameVersionAs(
+				DatastreamVersion.usingChecksumAndLastModified("checksum", "otherDate")));
+		assertFalse(version.isSameVersionAs(null));
+	}
+
+	@Test
+	public void testIsChecksumOfContent() throws Exception {
+		DatastreamVersion version = DatastreamVersion
+				.usingChecksumTypeAndChecksumAndLastModified("MD5",
+						"06645e3a620998da94c6ac4f7de115c6", "date");
+		assertEquals(version.getChecksumType(), "MD5");
+		assertTrue(version.isChecksumOfContent("<person>Dummy</person>"));
+		assertFalse(version.isChecksumOfContent("<person>Other</person>"));
+		assertFalse(version.isChecksumOfContent(null));
+	}
+
+	@Test
+	public void testIsNotChecksumOfContentWithoutKnownChecksumType() throws Exception {
+		assertFalse(DatastreamVersion.usingChecksumAndLastModified("checksum", "date")
+				.isChecksumOfContent("content"));
+		assertFalse(DatastreamVersion
+				.usingChecksumTypeAndChecksumAndLastModified("DISABLED", "none", "date")
+				.isChecksumOfContent("content"));
+	}
+}
@@ -23,6 +23,7 @@ import se.uu.ub.cora.data.DataGroup;
 public class DivaCoraToFedoraConverterSpy implements DivaCoraToFedoraConverter {
 
 	public DataGroup record;
+	public String currentFedoraXML;
 	public String returnedXML = "<dummy>Dummy xml from DivaCoraToFedoraConverterSpy</dummy>";
 
 	@Override
@@ -32,4 +33,11 @@ public class DivaCoraToFedoraConverterSpy implements DivaCoraToFedoraConverter {
 		return returnedXML;
 	}
 
+	@Override
+	public String toXMLUsingRecordAndCurrentFedoraXML(DataGroup record, String currentFedoraXML) {
+		this.record = record;
+		this.currentFedoraXML = currentFedoraXML;
+		return returnedXML;
+	}
+
 }
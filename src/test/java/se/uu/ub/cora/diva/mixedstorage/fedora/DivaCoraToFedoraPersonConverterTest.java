@@ -52,6 +52,19 @@ public class DivaCoraToFedoraPersonConverterTest {
 
 	}
 
+	@Test
+	public void testConvertToFedoraXMLUsingCurrentFedoraXMLDoesNotCallFedora() throws Exception {
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		DivaCoraToFedoraConverter converter = DivaCoraToFedoraPersonConverter
+				.usingHttpHandlerFactoryAndFedoraUrl(httpHandlerFactory, "someFedoraURL");
+		DataGroup record = createPerson11685DataGroup();
+
+		String xml = converter.toXMLUsingRecordAndCurrentFedoraXML(record,
+				ResourceReader.readResourceAsString("person/11685.xml"));
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 0);
+		assertEquals(xml, ResourceReader.readResourceAsString("person/expectedUpdated11685.xml"));
+	}
+
 	private DataGroup createPerson11685DataGroup() {
 		DataGroup record = new DataGroupSpy("authorityPerson");
 		DataGroup recordInfo = new DataGroupSpy("recordInfo");
@@ -27,11 +27,13 @@ public class DivaFedoraConverterFactorySpy implements DivaFedoraConverterFactory
 	List<String> factoredTypes = new ArrayList<>();
 	List<DivaCoraToFedoraConverter> factoredToFedoraConverters = new ArrayList<>();
 	public List<String> factoredToFedoraTypes = new ArrayList<>();
+	public int throwErrorForConverterNo = -1;
 
 	@Override
 	public DivaFedoraToCoraConverter factorToCoraConverter(String type) {
 		factoredTypes.add(type);
-		DivaFedoraToCoraConverter converter = new DivaFedoraToCoraConverterSpy();
+		DivaFedoraToCoraConverterSpy converter = new DivaFedoraToCoraConverterSpy();
+		converter.throwError = factoredConverters.size() == throwErrorForConverterNo;
 		factoredConverters.add(converter);
 		return converter;
 	}
@@ -19,6 +19,7 @@
 package se.uu.ub.cora.diva.mixedstorage.fedora;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import org.testng.annotations.BeforeMethod;
@@ -49,6 +50,24 @@ public class DivaFedoraConverterFactoryTest {
 		assertTrue(converter instanceof DivaFedoraToCoraPersonConverter);
 	}
 
+	@Test
+	public void testFactoryPersonUsingStreamingPersonConversion() throws Exception {
+		divaToCoraConverterFactoryImp = DivaFedoraConverterFactoryImp
+				.usingFedoraURLAndStreamingPersonConversion(fedoraURL, true);
+		DivaFedoraToCoraConverter converter = divaToCoraConverterFactoryImp
+				.factorToCoraConverter("person");
+		assertTrue(converter instanceof DivaFedoraToCoraPersonStaxConverter);
+	}
+
+	@Test
+	public void testFactoryPersonNotUsingStreamingPersonConversion() throws Exception {
+		divaToCoraConverterFactoryImp = DivaFedoraConverterFactoryImp
+				.usingFedoraURLAndStreamingPersonConversion(fedoraURL, false);
+		DivaFedoraToCoraConverter converter = divaToCoraConverterFactoryImp
+				.factorToCoraConverter("person");
+		assertTrue(converter instanceof DivaFedoraToCoraPersonConverter);
+	}
+
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
 			+ "No converter implemented for: someType")
 	public void factorToFedoraUnknownTypeThrowsException() throws Exception {
@@ -74,4 +93,9 @@ public class DivaFedoraConverterFactoryTest {
 	public void testGetFedoraURLNeededForTests() throws Exception {
 		assertEquals(divaToCoraConverterFactoryImp.getFedoraURL(), fedoraURL);
 	}
+
+	@Test
+	public void testStreamingPersonConversionIsOffByDefault() throws Exception {
+		assertFalse(divaToCoraConverterFactoryImp.getStreamingPersonConversion());
+	}
 }
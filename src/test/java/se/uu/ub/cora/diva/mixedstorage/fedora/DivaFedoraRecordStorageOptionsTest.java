@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+
+public class DivaFedoraRecordStorageOptionsTest {
+
+	@Test
+	public void testDefaultOptions() {
+		DivaFedoraRecordStorageOptions options = DivaFedoraRecordStorageOptions
+				.createDefaultOptions();
+
+		assertEquals(options.getParallelFetcher().getMaxConcurrentFetches(), 10);
+		assertEquals(options.getBatchUpdateFetcher().getMaxConcurrentFetches(), 2);
+		assertEquals(options.getPersonCache().getMaxSize(), 0);
+		assertFalse(options.getRevalidateExpiredPersons());
+	}
+
+	@Test
+	public void testDefaultOptionsShareFetchers() {
+		DivaFedoraRecordStorageOptions options = DivaFedoraRecordStorageOptions
+				.createDefaultOptions();
+		DivaFedoraRecordStorageOptions otherOptions = DivaFedoraRecordStorageOptions
+				.createDefaultOptions();
+
+		assertSame(options.getParallelFetcher(), otherOptions.getParallelFetcher());
+		assertSame(options.getBatchUpdateFetcher(), otherOptions.getBatchUpdateFetcher());
+	}
+
+	@Test
+	public void testWithMethodsReturnChangedCopy() {
+		DivaFedoraRecordStorageOptions defaultOptions = DivaFedoraRecordStorageOptions
+				.createDefaultOptions();
+		ParallelFetcher parallelFetcher = ParallelFetcher.usingMaxConcurrentFetches(3);
+		ParallelFetcher batchUpdateFetcher = ParallelFetcher.usingMaxConcurrentFetches(1);
+		TimedLruCache<String, CachedPerson> personCache = TimedLruCache
+				.usingMaxSizeAndTimeToLiveMillis(10, 1000);
+
+		DivaFedoraRecordStorageOptions options = defaultOptions
+				.withParallelFetcher(parallelFetcher).withBatchUpdateFetcher(batchUpdateFetcher)
+				.withPersonCache(personCache).withRevalidationOfExpiredPersons(true);
+
+		assertSame(options.getParallelFetcher(), parallelFetcher);
+		assertSame(options.getBatchUpdateFetcher(), batchUpdateFetcher);
+		assertSame(options.getPersonCache(), personCache);
+		assertTrue(options.getRevalidateExpiredPersons());
+		assertEquals(defaultOptions.getParallelFetcher().getMaxConcurrentFetches(), 10);
+		assertFalse(defaultOptions.getRevalidateExpiredPersons());
+	}
+}
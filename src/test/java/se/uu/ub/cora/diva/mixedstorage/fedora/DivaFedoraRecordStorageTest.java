@@ -19,23 +19,41 @@
 package se.uu.ub.cora.diva.mixedstorage.fedora;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicFactorySpy;
 import se.uu.ub.cora.diva.mixedstorage.DataAtomicSpy;
 import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
 import se.uu.ub.cora.diva.mixedstorage.FedoraException;
+import se.uu.ub.cora.diva.mixedstorage.InvalidFilterException;
 import se.uu.ub.cora.diva.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+import se.uu.ub.cora.diva.mixedstorage.TimedLruCache;
+import se.uu.ub.cora.diva.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.RecordStorage;
 
 public class DivaFedoraRecordStorageTest {
@@ -45,15 +63,50 @@ public class DivaFedoraRecordStorageTest {
 	private String baseURL = "http://diva-cora-fedora:8088/fedora/";
 	private String fedoraUsername = "fedoraUser";
 	private String fedoraPassword = "fedoraPassword";
+	private ParallelFetcher parallelFetcher;
+	private ParallelFetcher batchUpdateFetcher;
+	private AtomicLong now;
+	private TimedLruCache<String, CachedPerson> personCache;
+	private LoggerFactorySpy loggerFactorySpy;
+	private String testedClassName = "DivaFedoraRecordStorage";
+	private String firstPageURL = baseURL
+			+ "objects?pid=true&maxResults=100&resultFormat=xml&query=pid%7Eauthority-person:*";
+	private String secondPageURL = firstPageURL + "&sessionToken=someToken";
+	private String personContentURL = baseURL
+			+ "objects/authority-person:11685/datastreams/METADATA/content";
+	private String personProfileURL = baseURL
+			+ "objects/authority-person:11685/datastreams/METADATA?format=xml";
+	private String personUpdateURL = baseURL
+			+ "objects/authority-person:11685/datastreams/METADATA?format=?xml&controlGroup=M"
+			+ "&logMessage=coraWritten&checksumType=SHA-512";
 
 	@BeforeMethod
 	public void BeforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
 		httpHandlerFactory = new HttpHandlerFactorySpy();
+		httpHandlerFactory.responseText = createXMLForMetadataProfileUsingChecksumAndLastModified(
+				"checksum1", "2019-05-14T07:58:27.651Z");
 		converterFactory = new DivaFedoraConverterFactorySpy();
-		divaToCoraRecordStorage = DivaFedoraRecordStorage
-				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPassword(
+		parallelFetcher = ParallelFetcher.usingMaxConcurrentFetches(1);
+		batchUpdateFetcher = ParallelFetcher.usingMaxConcurrentFetches(1);
+		now = new AtomicLong(0);
+		personCache = TimedLruCache.usingMaxSizeAndTimeToLiveMillisAndClock(10, 1000, now::get);
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(false);
+	}
+
+	private DivaFedoraRecordStorage createRecordStorageUsingRevalidation(boolean revalidate) {
+		return DivaFedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPasswordAndOptions(
 						httpHandlerFactory, converterFactory, baseURL, fedoraUsername,
-						fedoraPassword);
+						fedoraPassword,
+						DivaFedoraRecordStorageOptions.createDefaultOptions()
+								.withParallelFetcher(parallelFetcher)
+								.withBatchUpdateFetcher(batchUpdateFetcher)
+								.withPersonCache(personCache)
+								.withRevalidationOfExpiredPersons(revalidate));
 	}
 
 	@Test
@@ -74,7 +127,6 @@ public class DivaFedoraRecordStorageTest {
 
 	@Test
 	public void readPersonCallsFedoraAndReturnsConvertedResult() throws Exception {
-		httpHandlerFactory.responseText = "Dummy response text";
 		DataGroup readPerson = divaToCoraRecordStorage.read("person", "authority-person:11685");
 		assertEquals(httpHandlerFactory.urls.get(0),
 				baseURL + "objects/authority-person:11685/datastreams/METADATA/content");
@@ -90,6 +142,351 @@ public class DivaFedoraRecordStorageTest {
 		assertEquals(readPerson, divaToCoraConverter.convertedDataGroup);
 	}
 
+	@Test
+	public void testPersonCacheIsStored() throws Exception {
+		assertSame(divaToCoraRecordStorage.getPersonCache(), personCache);
+	}
+
+	@Test
+	public void testStorageWithoutOptionsReadsPersonFromFedoraEachTime() throws Exception {
+		divaToCoraRecordStorage = DivaFedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndBaseURLAndUsernameAndPassword(
+						httpHandlerFactory, converterFactory, baseURL, fedoraUsername,
+						fedoraPassword);
+		assertFalse(divaToCoraRecordStorage.getRevalidateExpiredPersons());
+
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(divaToCoraRecordStorage.getPersonCache().size(), 0);
+	}
+
+	@Test
+	public void readPersonTwiceOnlyCallsFedoraOnce() throws Exception {
+		DataGroup readPerson = divaToCoraRecordStorage.read("person", "authority-person:11685");
+		DataGroup readPerson2 = divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(converterFactory.factoredConverters.size(), 1);
+		assertNotSame(readPerson2, readPerson);
+		assertEquals(readPerson2.getNameInData(), readPerson.getNameInData());
+		assertEquals(personCache.getMisses(), 1);
+		assertEquals(personCache.getHits(), 1);
+	}
+
+	@Test
+	public void changesToReadPersonDoNotChangeCachedPerson() throws Exception {
+		DataGroup readPerson = divaToCoraRecordStorage.read("person", "authority-person:11685");
+		readPerson.addChild(new DataAtomicSpy("actionLinks", "read"));
+		DataGroup readPerson2 = divaToCoraRecordStorage.read("person", "authority-person:11685");
+		readPerson2.addChild(new DataAtomicSpy("actionLinks", "update"));
+
+		DataGroup readPerson3 = divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertTrue(readPerson3.getChildren().isEmpty());
+	}
+
+	@Test
+	public void readPersonCallsFedoraAgainWhenCachedPersonHasExpired() throws Exception {
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		now.set(1000);
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(converterFactory.factoredConverters.size(), 2);
+		assertEquals(personCache.getMisses(), 2);
+	}
+
+	@Test
+	public void readPersonListUsesAndFillsPersonCache() throws Exception {
+		divaToCoraRecordStorage.read("person", "authority-person:12685");
+		httpHandlerFactory.responseTextsForUrls.put(firstPageURL, createXMLForPersonList());
+		divaToCoraRecordStorage.readList("person", new DataGroupSpy("filter"));
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertFalse(httpHandlerFactory.urls.subList(1, 4).contains(
+				baseURL + "objects/authority-person:12685/datastreams/METADATA/content"));
+		assertEquals(personCache.size(), 3);
+	}
+
+	@Test
+	public void readPersonWithRevalidationReadsVersionBeforeContent() throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		DataGroup readPerson = divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.urls.get(0), personProfileURL);
+		assertEquals(httpHandlerFactory.urls.get(1), personContentURL);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(readPerson, getConvertedDataGroupFromFactoredConverterNo(0));
+
+		CachedPerson cachedPerson = personCache.get("authority-person:11685");
+		assertEquals(cachedPerson.getXML(), "<person>Dummy</person>");
+		assertEquals(cachedPerson.getVersion().getChecksum(), "checksum1");
+		assertEquals(cachedPerson.getVersion().getLastModified(), "2019-05-14T07:58:27.651Z");
+	}
+
+	private void setUpPersonAndMetadataProfileInFedoraUsingChecksum(String checksum) {
+		setUpPersonAndMetadataProfileInFedoraUsingChecksumAndLastModified(checksum,
+				"2019-05-14T07:58:27.651Z");
+	}
+
+	private void setUpPersonAndMetadataProfileInFedoraUsingChecksumAndLastModified(
+			String checksum, String lastModified) {
+		httpHandlerFactory.responseTextsForUrls.put(personContentURL, "<person>Dummy</person>");
+		httpHandlerFactory.responseTextsForUrls.put(personProfileURL,
+				createXMLForMetadataProfileUsingChecksumAndLastModified(checksum, lastModified));
+	}
+
+	private String createXMLForMetadataProfileUsingChecksumAndLastModified(String checksum,
+			String lastModified) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<datastreamProfile xmlns=\"http://www.fedora.info/definitions/1/0/management/\""
+				+ " pid=\"authority-person:11685\" dsID=\"METADATA\">"
+				+ "<dsLabel>Metadata</dsLabel><dsVersionID>METADATA.2</dsVersionID>"
+				+ "<dsCreateDate>" + lastModified + "</dsCreateDate>"
+				+ "<dsState>A</dsState><dsMIME>text/xml</dsMIME>"
+				+ "<dsChecksumType>SHA-512</dsChecksumType>" + "<dsChecksum>" + checksum
+				+ "</dsChecksum></datastreamProfile>";
+	}
+
+	@Test
+	public void readExpiredPersonWithRevalidationOnlyReadsVersionIfNotChanged()
+			throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		DataGroup readPerson = divaToCoraRecordStorage.read("person", "authority-person:11685");
+		now.set(1000);
+		DataGroup readPerson2 = divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.urls.get(2), personProfileURL);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(converterFactory.factoredConverters.size(), 1);
+		assertNotSame(readPerson2, readPerson);
+		assertEquals(readPerson2.getNameInData(), readPerson.getNameInData());
+
+		now.set(1500);
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+	}
+
+	@Test
+	public void readExpiredPersonWithRevalidationReadsContentIfChanged() throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		now.set(1000);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum2");
+		DataGroup readPerson2 = divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.urls.get(2), personProfileURL);
+		assertEquals(httpHandlerFactory.urls.get(3), personContentURL);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(readPerson2, getConvertedDataGroupFromFactoredConverterNo(1));
+		assertEquals(personCache.get("authority-person:11685").getVersion().getChecksum(),
+				"checksum2");
+	}
+
+	@Test
+	public void readPersonWithoutRevalidationOnlyReadsContent() throws Exception {
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.urls, List.of(personContentURL));
+		CachedPerson cachedPerson = personCache.get("authority-person:11685");
+		assertEquals(cachedPerson.getXML(), "<person>Dummy</person>");
+		assertNull(cachedPerson.getVersion());
+	}
+
+	@Test
+	public void readExpiredPersonWithoutRevalidationReadsContentAgain() throws Exception {
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		now.set(1000);
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		assertEquals(httpHandlerFactory.urls, List.of(personContentURL, personContentURL));
+		assertEquals(converterFactory.factoredConverters.size(), 2);
+	}
+
+	@Test
+	public void updateCachedPersonWithoutVersionReadsVersionAndReusesMatchingXML()
+			throws Exception {
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum(
+				createSha512ChecksumForContent("<person>Dummy</person>"));
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+
+		divaToCoraRecordStorage.update("person", "authority-person:11685",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.urls, List.of(personContentURL, personProfileURL,
+				personUpdateURL + "&lastModifiedDate=2019-05-14T07:58:27.651Z"));
+		DivaCoraToFedoraConverterSpy converterSpy = (DivaCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertEquals(converterSpy.currentFedoraXML, "<person>Dummy</person>");
+	}
+
+	private String createSha512ChecksumForContent(String content) throws Exception {
+		byte[] hash = MessageDigest.getInstance("SHA-512")
+				.digest(content.getBytes(StandardCharsets.UTF_8));
+		StringBuilder checksum = new StringBuilder();
+		for (byte b : hash) {
+			checksum.append(String.format("%02x", b));
+		}
+		return checksum.toString();
+	}
+
+	@Test
+	public void updateCachedPersonWithoutVersionRereadsXMLWhenChecksumDiffers()
+			throws Exception {
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksumOfOtherContent");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		httpHandlerFactory.responseTextsForUrls.put(personContentURL, "<person>New</person>");
+
+		divaToCoraRecordStorage.update("person", "authority-person:11685",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.urls,
+				List.of(personContentURL, personProfileURL, personContentURL,
+						personUpdateURL + "&lastModifiedDate=2019-05-14T07:58:27.651Z"));
+		DivaCoraToFedoraConverterSpy converterSpy = (DivaCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertEquals(converterSpy.currentFedoraXML, "<person>New</person>");
+	}
+
+	@Test
+	public void updateCachedPersonWithVersionReusesXMLAndSendsLastModifiedDate()
+			throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		DataGroup record = new DataGroupSpy("authority");
+
+		divaToCoraRecordStorage.update("person", "authority-person:11685", record,
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(2),
+				personUpdateURL + "&lastModifiedDate=2019-05-14T07:58:27.651Z");
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(2);
+		assertEquals(httpHandler.requestMetod, "PUT");
+
+		DivaCoraToFedoraConverterSpy converterSpy = (DivaCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertSame(converterSpy.record, record);
+		assertEquals(converterSpy.currentFedoraXML, "<person>Dummy</person>");
+		assertEquals(httpHandler.outputStrings.get(0), converterSpy.returnedXML);
+		assertEquals(personCache.size(), 0);
+	}
+
+	@Test
+	public void updateCachedPersonOnConflictRereadsPersonAndRetries() throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksumAndLastModified("checksum1", "date1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		setUpPersonAndMetadataProfileInFedoraUsingChecksumAndLastModified("checksum2", "date2");
+		httpHandlerFactory.responseTextsForUrls.put(personContentURL, "<person>New</person>");
+		httpHandlerFactory.responseCodesForUrls.put(personUpdateURL + "&lastModifiedDate=date1",
+				409);
+
+		divaToCoraRecordStorage.update("person", "authority-person:11685",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.urls.get(2), personUpdateURL + "&lastModifiedDate=date1");
+		assertEquals(httpHandlerFactory.urls.get(3), personProfileURL);
+		assertEquals(httpHandlerFactory.urls.get(4), personContentURL);
+		assertEquals(httpHandlerFactory.urls.get(5), personUpdateURL + "&lastModifiedDate=date2");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 6);
+		DivaCoraToFedoraConverterSpy converterSpy = (DivaCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(1);
+		assertEquals(converterSpy.currentFedoraXML, "<person>New</person>");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "update to fedora failed for record: authority-person:11685")
+	public void updateCachedPersonThrowsErrorOnSecondConflict() throws Exception {
+		divaToCoraRecordStorage = createRecordStorageUsingRevalidation(true);
+		setUpPersonAndMetadataProfileInFedoraUsingChecksum("checksum1");
+		divaToCoraRecordStorage.read("person", "authority-person:11685");
+		httpHandlerFactory.responseCode = 409;
+
+		divaToCoraRecordStorage.update("person", "authority-person:11685",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+	}
+
+	@Test
+	public void batchUpdatePersonsWritesEachPersonAndReportsOutcome() throws Exception {
+		Map<String, DataGroup> recordsById = new LinkedHashMap<>();
+		recordsById.put("authority-person:1", new DataGroupSpy("authority"));
+		recordsById.put("authority-person:2", new DataGroupSpy("authority"));
+		recordsById.put("authority-person:3", new DataGroupSpy("authority"));
+		httpHandlerFactory.responseCodesForUrls.put(createUpdateURLForPerson("authority-person:2"),
+				505);
+
+		BatchUpdateReport report = divaToCoraRecordStorage
+				.updatePersonsUsingRecordsById(recordsById);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(0),
+				createUpdateURLForPerson("authority-person:1"));
+		assertEquals(httpHandlerFactory.urls.get(2),
+				createUpdateURLForPerson("authority-person:3"));
+		assertEquals(converterFactory.factoredToFedoraConverters.size(), 3);
+		DivaCoraToFedoraConverterSpy converterSpy = (DivaCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(2);
+		assertSame(converterSpy.record, recordsById.get("authority-person:3"));
+
+		assertEquals(report.getUpdatedIds(),
+				Arrays.asList("authority-person:1", "authority-person:3"));
+		assertTrue(report.wasUpdated("authority-person:1"));
+		assertFalse(report.wasUpdated("authority-person:2"));
+		assertTrue(report.hasFailures());
+		assertEquals(report.getFailures().size(), 1);
+		Exception failure = report.getFailures().get("authority-person:2");
+		assertTrue(failure instanceof FedoraException);
+		assertEquals(failure.getMessage(), "update to fedora failed for record: authority-person:2");
+	}
+
+	@Test
+	public void batchUpdatePersonsWithNoRecordsReportsNothing() throws Exception {
+		BatchUpdateReport report = divaToCoraRecordStorage
+				.updatePersonsUsingRecordsById(new LinkedHashMap<>());
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 0);
+		assertTrue(report.getUpdatedIds().isEmpty());
+		assertFalse(report.hasFailures());
+	}
+
+	private String createUpdateURLForPerson(String id) {
+		return baseURL + "objects/" + id + "/datastreams/METADATA?format=?xml&controlGroup=M"
+				+ "&logMessage=coraWritten&checksumType=SHA-512";
+	}
+
+	@Test
+	public void updatePersonInvalidatesCachedPerson() throws Exception {
+		divaToCoraRecordStorage.read("person", "diva-person:2233");
+		divaToCoraRecordStorage.update("person", "diva-person:2233",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+		divaToCoraRecordStorage.read("person", "diva-person:2233");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 5);
+		assertEquals(personCache.getMisses(), 2);
+	}
+
+	@Test
+	public void failedUpdateOfPersonAlsoInvalidatesCachedPerson() throws Exception {
+		divaToCoraRecordStorage.read("person", "diva-person:2233");
+		httpHandlerFactory.responseCode = 505;
+		try {
+			divaToCoraRecordStorage.update("person", "diva-person:2233",
+					new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null,
+					null);
+		} catch (FedoraException e) {
+			// expected
+		}
+		assertEquals(personCache.size(), 0);
+	}
+
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
 			+ "create is not implemented")
 	public void createThrowsNotImplementedException() throws Exception {
@@ -196,7 +593,7 @@ public class DivaFedoraRecordStorageTest {
 	}
 
 	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
-			+ "Unable to read list of persons: Can not read xml: "
+			+ "Unable to read list of persons: Can not read xml: .*"
 			+ "The element type \"someTag\" must be terminated by the matching end-tag \"</someTag>\".")
 	public void readListThrowsParseExceptionOnBrokenXML() throws Exception {
 		httpHandlerFactory.responseText = "<someTag></notSameTag>";
@@ -214,12 +611,8 @@ public class DivaFedoraRecordStorageTest {
 		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
 		assertEquals(httpHandler.requestMetod, "GET");
 
-		assertEquals(httpHandlerFactory.urls.get(1),
-				baseURL + "objects/authority-person:11685/datastreams/METADATA/content");
-		assertEquals(httpHandlerFactory.urls.get(2),
-				baseURL + "objects/authority-person:12685/datastreams/METADATA/content");
-		assertEquals(httpHandlerFactory.urls.get(3),
-				baseURL + "objects/authority-person:13685/datastreams/METADATA/content");
+		assertPersonsWereReadFromFedora("authority-person:11685", "authority-person:12685",
+				"authority-person:13685");
 
 		assertEquals(converterFactory.factoredConverters.size(), 3);
 		assertEquals(converterFactory.factoredTypes.get(0), "person");
@@ -231,6 +624,184 @@ public class DivaFedoraRecordStorageTest {
 		assertEquals(readPersonIterator.next(), divaToCoraConverter.convertedDataGroup);
 	}
 
+	@Test
+	public void readPersonListFollowsSessionTokenToNextPage() throws Exception {
+		setUpTwoPagesOfPersonsInFedora();
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				new DataGroupSpy("filter")).listOfDataGroups;
+
+		assertEquals(httpHandlerFactory.urls.get(0), firstPageURL);
+		assertTrue(httpHandlerFactory.urls.contains(secondPageURL));
+		assertPersonsWereReadFromFedora("authority-person:11685", "authority-person:12685",
+				"authority-person:13685");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 5);
+		assertEquals(readPersonList.size(), 3);
+	}
+
+	private void assertPersonsWereReadFromFedora(String... pids) {
+		for (String pid : pids) {
+			assertFalse(httpHandlerFactory.urls
+					.contains(baseURL + "objects/" + pid + "/datastreams/METADATA?format=xml"));
+			assertTrue(httpHandlerFactory.urls
+					.contains(baseURL + "objects/" + pid + "/datastreams/METADATA/content"));
+		}
+	}
+
+	private void setUpTwoPagesOfPersonsInFedora() {
+		httpHandlerFactory.responseTextsForUrls.put(firstPageURL,
+				createXMLForPersonListPageUsingTokenAndPids("someToken", "authority-person:11685",
+						"authority-person:12685"));
+		httpHandlerFactory.responseTextsForUrls.put(secondPageURL,
+				createXMLForPersonListPageUsingTokenAndPids(null, "authority-person:13685"));
+	}
+
+	private String createXMLForPersonListPageUsingTokenAndPids(String token, String... pids) {
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n");
+		if (token != null) {
+			xml.append("  <listSession>\n");
+			xml.append("    <token>" + token + "</token>\n");
+			xml.append("    <cursor>0</cursor>\n");
+			xml.append("  </listSession>\n");
+		}
+		xml.append("  <resultList>\n");
+		for (String pid : pids) {
+			xml.append("    <objectFields><pid>" + pid + "</pid></objectFields>\n");
+		}
+		xml.append("  </resultList>\n");
+		xml.append("</result>");
+		return xml.toString();
+	}
+
+	@Test
+	public void readPersonListOnlyReadsPersonsFromFromNoToToNo() throws Exception {
+		setUpTwoPagesOfPersonsInFedora();
+		DataGroupSpy filter = createFilterUsingFromNoAndToNo("2", "3");
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				filter).listOfDataGroups;
+
+		assertEquals(httpHandlerFactory.urls.get(0), firstPageURL);
+		assertTrue(httpHandlerFactory.urls.contains(secondPageURL));
+		assertPersonsWereReadFromFedora("authority-person:12685", "authority-person:13685");
+		assertFalse(httpHandlerFactory.urls.contains(personContentURL));
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(readPersonList.size(), 2);
+	}
+
+	private DataGroupSpy createFilterUsingFromNoAndToNo(String fromNo, String toNo) {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", fromNo));
+		filter.addChild(new DataAtomicSpy("toNo", toNo));
+		return filter;
+	}
+
+	@Test
+	public void readPersonListDoesNotReadPagesAfterToNo() throws Exception {
+		setUpTwoPagesOfPersonsInFedora();
+		DataGroupSpy filter = createFilterUsingFromNoAndToNo("1", "2");
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				filter).listOfDataGroups;
+
+		assertFalse(httpHandlerFactory.urls.contains(secondPageURL));
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(readPersonList.size(), 2);
+	}
+
+	@Test
+	public void readPersonListWithoutToNoOnlyReadsOnePageOfPersons() throws Exception {
+		setUpFullFirstPageAndOneMorePersonInFedora();
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				new DataGroupSpy("filter")).listOfDataGroups;
+
+		assertFalse(httpHandlerFactory.urls.contains(secondPageURL));
+		assertEquals(readPersonList.size(), 100);
+	}
+
+	private void setUpFullFirstPageAndOneMorePersonInFedora() {
+		String[] pids = new String[100];
+		for (int i = 0; i < pids.length; i++) {
+			pids[i] = "authority-person:" + i;
+		}
+		httpHandlerFactory.responseTextsForUrls.put(firstPageURL,
+				createXMLForPersonListPageUsingTokenAndPids("someToken", pids));
+		httpHandlerFactory.responseTextsForUrls.put(secondPageURL,
+				createXMLForPersonListPageUsingTokenAndPids(null, "authority-person:100"));
+	}
+
+	@Test
+	public void readPersonListWithOnlyFromNoReadsOnePageOfPersonsFromFromNo() throws Exception {
+		setUpFullFirstPageAndOneMorePersonInFedora();
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "2"));
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				filter).listOfDataGroups;
+
+		assertTrue(httpHandlerFactory.urls.contains(secondPageURL));
+		assertPersonsWereReadFromFedora("authority-person:1", "authority-person:100");
+		assertFalse(httpHandlerFactory.urls
+				.contains(baseURL + "objects/authority-person:0/datastreams/METADATA/content"));
+		assertEquals(readPersonList.size(), 100);
+	}
+
+	@Test(expectedExceptions = InvalidFilterException.class, expectedExceptionsMessageRegExp = ""
+			+ "fromNo in filter must be a number, was: first")
+	public void readPersonListThrowsErrorIfFromNoIsNotANumber() throws Exception {
+		DataGroupSpy filter = createFilterUsingFromNoAndToNo("first", "2");
+		divaToCoraRecordStorage.readList("person", filter);
+	}
+
+	@Test
+	public void streamPersonsReadsFromFedoraFirstWhenConsumed() throws Exception {
+		setUpTwoPagesOfPersonsInFedora();
+		Stream<DataGroup> personStream = divaToCoraRecordStorage
+				.streamPersonsUsingFilter(new DataGroupSpy("filter"));
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 0);
+
+		Iterator<DataGroup> personIterator = personStream.iterator();
+		personIterator.next();
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertFalse(httpHandlerFactory.urls.contains(secondPageURL));
+
+		personIterator.next();
+		personIterator.next();
+		assertFalse(personIterator.hasNext());
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 5);
+	}
+
+	@Test
+	public void testParallelFetcherIsStored() throws Exception {
+		assertSame(divaToCoraRecordStorage.getParallelFetcher(), parallelFetcher);
+		assertSame(divaToCoraRecordStorage.getBatchUpdateFetcher(), batchUpdateFetcher);
+	}
+
+	@Test
+	public void readPersonListSkipsAndLogsPersonThatCanNotBeConverted() throws Exception {
+		httpHandlerFactory.responseText = createXMLForPersonList();
+		converterFactory.throwErrorForConverterNo = 1;
+		Collection<DataGroup> readPersonList = divaToCoraRecordStorage.readList("person",
+				new DataGroupSpy("filter")).listOfDataGroups;
+
+		assertEquals(converterFactory.factoredConverters.size(), 3);
+		assertEquals(readPersonList.size(), 2);
+		Iterator<DataGroup> readPersonIterator = readPersonList.iterator();
+		assertEquals(readPersonIterator.next(),
+				getConvertedDataGroupFromFactoredConverterNo(0));
+		assertEquals(readPersonIterator.next(),
+				getConvertedDataGroupFromFactoredConverterNo(2));
+
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Unable to read person from fedora: authority-person:12685");
+		Exception loggedException = loggerFactorySpy.createdLoggers
+				.get(testedClassName).errorExceptions.get(0);
+		assertTrue(loggedException instanceof ParseException);
+	}
+
+	private DataGroup getConvertedDataGroupFromFactoredConverterNo(int converterNo) {
+		return ((DivaFedoraToCoraConverterSpy) converterFactory.factoredConverters
+				.get(converterNo)).convertedDataGroup;
+	}
+
 	private String createXMLForPersonList() {
 		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
 				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\" xmlns:types=\"http://www.fedora.info/definitions/1/0/types/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://www.fedora.info/definitions/1/0/types/ http://localhost:8088/fedora/schema/findObjects.xsd\">\n"
@@ -20,15 +20,20 @@ package se.uu.ub.cora.diva.mixedstorage.fedora;
 
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
 
 public class DivaFedoraToCoraConverterSpy implements DivaFedoraToCoraConverter {
 
 	public String xml;
 	public DataGroup convertedDataGroup;
+	public boolean throwError = false;
 
 	@Override
 	public DataGroup fromXML(String xml) {
 		this.xml = xml;
+		if (throwError) {
+			throw ParseException.withMessage("Error from DivaFedoraToCoraConverterSpy");
+		}
 		convertedDataGroup = new DataGroupSpy("Converted xml");
 		return convertedDataGroup;
 	}
@@ -112,6 +112,17 @@ public class DivaFedoraToCoraPersonConverterTest {
 		}
 	}
 
+	@Test
+	public void convertFromXMLDoesNotCompileXPathsAfterFirstConversion() throws Exception {
+		converter.fromXML(DivaFedoraToCoraPersonConverterTestData.person11685XML);
+		int noOfCompiledXPaths = XMLParsingResources.getNoOfCompiledXPathsForCurrentThread();
+
+		new DivaFedoraToCoraPersonConverter()
+				.fromXML(DivaFedoraToCoraPersonConverterTestData.person11685XML);
+		assertEquals(XMLParsingResources.getNoOfCompiledXPathsForCurrentThread(),
+				noOfCompiledXPaths);
+	}
+
 	@Test
 	public void convertFromXMLPerson10000() throws Exception {
 		DataGroup personDataGroup = converter
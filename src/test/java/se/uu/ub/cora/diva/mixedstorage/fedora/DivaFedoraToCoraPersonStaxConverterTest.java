@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.diva.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+public class DivaFedoraToCoraPersonStaxConverterTest {
+	private DivaFedoraToCoraPersonStaxConverter converter;
+	private DivaFedoraToCoraPersonConverter domConverter;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		converter = new DivaFedoraToCoraPersonStaxConverter();
+		domConverter = new DivaFedoraToCoraPersonConverter();
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error converting person to Cora person: .*")
+	public void parseExceptionShouldBeThrownOnMalformedXML() throws Exception {
+		converter.fromXML("<pid></notPid>");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error converting person to Cora person: No timestamp found in recordInfo events")
+	public void parseExceptionShouldBeThrownWhenNoTimestampInXML() throws Exception {
+		converter.fromXML("<authorityPerson><pid>authority-person:1</pid></authorityPerson>");
+	}
+
+	@DataProvider(name = "personXMLs")
+	public Object[][] personXMLs() {
+		return new Object[][] { { DivaFedoraToCoraPersonConverterTestData.person11685XML },
+				{ DivaFedoraToCoraPersonConverterTestData.person10000XML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoFirstNameXML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoLastNameXML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoNameXML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoFirstNameAlternativeXML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoLastNameAlternativeXML },
+				{ DivaFedoraToCoraPersonConverterTestData.personNoAlternativeNameXML } };
+	}
+
+	@Test(dataProvider = "personXMLs")
+	public void convertFromXMLGivesSameResultAsDomConverter(String personXML) throws Exception {
+		DataGroup expectedPerson = domConverter.fromXML(personXML);
+		DataGroup person = converter.fromXML(personXML);
+
+		assertSameDataGroup(person, expectedPerson);
+	}
+
+	private void assertSameDataGroup(DataGroup dataGroup, DataGroup expectedDataGroup) {
+		assertEquals(dataGroup.getNameInData(), expectedDataGroup.getNameInData());
+		assertEquals(dataGroup.getRepeatId(), expectedDataGroup.getRepeatId());
+		List<DataElement> children = dataGroup.getChildren();
+		List<DataElement> expectedChildren = expectedDataGroup.getChildren();
+		assertEquals(children.size(), expectedChildren.size());
+		for (int i = 0; i < children.size(); i++) {
+			assertSameDataElement(children.get(i), expectedChildren.get(i));
+		}
+	}
+
+	private void assertSameDataElement(DataElement dataElement, DataElement expectedDataElement) {
+		if (expectedDataElement instanceof DataGroup) {
+			assertTrue(dataElement instanceof DataGroup);
+			assertSameDataGroup((DataGroup) dataElement, (DataGroup) expectedDataElement);
+		} else {
+			DataAtomic dataAtomic = (DataAtomic) dataElement;
+			DataAtomic expectedDataAtomic = (DataAtomic) expectedDataElement;
+			assertEquals(dataAtomic.getNameInData(), expectedDataAtomic.getNameInData());
+			assertEquals(dataAtomic.getValue(), expectedDataAtomic.getValue());
+			assertEquals(dataAtomic.getRepeatId(), expectedDataAtomic.getRepeatId());
+		}
+	}
+
+	@Test
+	public void convertFromXMLUsesValuesFromXML() throws Exception {
+		DataGroup person = converter
+				.fromXML(DivaFedoraToCoraPersonConverterTestData.person11685XML);
+		DataGroup recordInfo = person.getFirstGroupWithNameInData("recordInfo");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"),
+				"authority-person:11685");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("tsCreated"),
+				"2016-09-02 10:59:47.428");
+		DataGroup authorizedName = person.getFirstGroupWithNameInData("authorizedName");
+		assertEquals(authorizedName.getFirstAtomicValueWithNameInData("familyName"), "Testsson");
+	}
+
+	@Test
+	public void convertFromXMLCanBeReusedForSeveralRecords() throws Exception {
+		converter.fromXML(DivaFedoraToCoraPersonConverterTestData.person11685XML);
+		DataGroup person = converter
+				.fromXML(DivaFedoraToCoraPersonConverterTestData.personNoAlternativeNameXML);
+		DataGroup expectedPerson = domConverter
+				.fromXML(DivaFedoraToCoraPersonConverterTestData.personNoAlternativeNameXML);
+
+		assertSameDataGroup(person, expectedPerson);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+public class FedoraPidPageExtractorTest {
+	private String resultXML = "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n"
+			+ "  <listSession>\n" + "    <token>someToken</token>\n"
+			+ "    <cursor>0</cursor>\n" + "  </listSession>\n" + "  <resultList>\n"
+			+ "  <objectFields>\n" + "      <pid>authority-person:11685</pid>\n"
+			+ "  </objectFields>\n" + "  <objectFields>\n"
+			+ "      <pid>authority-person:10000</pid>\n" + "  </objectFields>\n"
+			+ "  </resultList>\n" + "</result>";
+
+	@Test
+	public void testExtractPidPage() throws Exception {
+		List<String> pids = new ArrayList<>();
+		FedoraPidPage pidPage = FedoraPidPageExtractor
+				.extractPidPageUsingXMLAndPidConsumer(resultXML, pids::add);
+		assertEquals(pidPage.getNoOfPids(), 2);
+		assertEquals(pids.get(0), "authority-person:11685");
+		assertEquals(pids.get(1), "authority-person:10000");
+		assertEquals(pidPage.getSessionToken(), "someToken");
+		assertTrue(pidPage.hasMorePages());
+	}
+
+	@Test
+	public void testExtractPidPageWithoutListSession() throws Exception {
+		String xml = "<result><resultList><objectFields><pid>authority-person:1</pid>"
+				+ "</objectFields></resultList></result>";
+		FedoraPidPage pidPage = FedoraPidPageExtractor.extractPidPageUsingXMLAndPidConsumer(xml,
+				pid -> {
+				});
+		assertEquals(pidPage.getNoOfPids(), 1);
+		assertEquals(pidPage.getSessionToken(), "");
+		assertFalse(pidPage.hasMorePages());
+	}
+
+	@Test
+	public void testExtractPidPageIgnoresPidsOutsideResultList() throws Exception {
+		String xml = "<result><pid>notAPid</pid><resultList><objectFields><pid></pid>"
+				+ "<label>authority-person:2</label></objectFields></resultList></result>";
+		List<String> pids = new ArrayList<>();
+		FedoraPidPage pidPage = FedoraPidPageExtractor.extractPidPageUsingXMLAndPidConsumer(xml,
+				pids::add);
+		assertEquals(pidPage.getNoOfPids(), 0);
+		assertTrue(pids.isEmpty());
+		assertFalse(pidPage.hasMorePages());
+	}
+
+	@Test
+	public void testPidsAreHandedToConsumerBeforeRestOfXMLIsRead() throws Exception {
+		List<String> pids = new ArrayList<>();
+		String brokenXML = "<result><resultList><objectFields><pid>authority-person:1</pid>"
+				+ "</objectFields><objectFields></notObjectFields>";
+		try {
+			FedoraPidPageExtractor.extractPidPageUsingXMLAndPidConsumer(brokenXML, pids::add);
+		} catch (ParseException e) {
+			assertTrue(e.getMessage().startsWith("Can not read xml: "));
+		}
+		assertEquals(pids.size(), 1);
+		assertEquals(pids.get(0), "authority-person:1");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testExtractPidPageThrowsParseExceptionOnBrokenXML() throws Exception {
+		FedoraPidPageExtractor.extractPidPageUsingXMLAndPidConsumer("<someTag></notSameTag>",
+				pid -> {
+				});
+	}
+}
@@ -1,7 +1,9 @@
 package se.uu.ub.cora.diva.mixedstorage.fedora;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import se.uu.ub.cora.httphandler.HttpHandler;
 import se.uu.ub.cora.httphandler.HttpHandlerFactory;
@@ -12,14 +14,16 @@ public class HttpHandlerFactorySpy implements HttpHandlerFactory {
 	public List<HttpHandlerSpy> factoredHttpHandlers = new ArrayList<>();
 	public String responseText = "";
 	public int responseCode = 200;
+	public Map<String, String> responseTextsForUrls = new HashMap<>();
+	public Map<String, Integer> responseCodesForUrls = new HashMap<>();
 
 	@Override
-	public HttpHandler factor(String url) {
+	public synchronized HttpHandler factor(String url) {
 		urls.add(url);
 		HttpHandlerSpy httpHandlerSpy = new HttpHandlerSpy();
 		factoredHttpHandlers.add(httpHandlerSpy);
-		httpHandlerSpy.responseText = responseText;
-		httpHandlerSpy.responseCode = responseCode;
+		httpHandlerSpy.responseText = responseTextsForUrls.getOrDefault(url, responseText);
+		httpHandlerSpy.responseCode = responseCodesForUrls.getOrDefault(url, responseCode);
 		return httpHandlerSpy;
 	}
 
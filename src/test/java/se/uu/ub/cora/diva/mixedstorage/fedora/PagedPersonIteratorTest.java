@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.diva.mixedstorage.DataGroupSpy;
+
+public class PagedPersonIteratorTest {
+	private List<String> requestedSessionTokens;
+	private List<String> fetchedPids;
+	private List<Integer> noOfFetchedPidsPerPage;
+	private ParallelFetcher parallelFetcher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		requestedSessionTokens = new ArrayList<>();
+		fetchedPids = Collections.synchronizedList(new ArrayList<>());
+		noOfFetchedPidsPerPage = new ArrayList<>();
+		parallelFetcher = ParallelFetcher.usingMaxConcurrentFetches(2);
+	}
+
+	private FedoraPidPage readPageOfThreePidsUntilToken9(String sessionToken,
+			Consumer<String> pidConsumer) {
+		requestedSessionTokens.add(sessionToken);
+		int pageNo = sessionToken == null ? 0 : Integer.parseInt(sessionToken);
+		for (int i = 1; i <= 3; i++) {
+			pidConsumer.accept("pid" + (pageNo * 3 + i));
+		}
+		String nextToken = pageNo < 9 ? String.valueOf(pageNo + 1) : "";
+		return FedoraPidPage.usingNoOfPidsAndSessionToken(3, nextToken);
+	}
+
+	private OrderedFetch<DataGroup> startFetchOfPersons() {
+		return parallelFetcher.startOrderedFetchUsingFetchFunction(pid -> {
+			fetchedPids.add(pid);
+			return new DataGroupSpy(pid);
+		});
+	}
+
+	private List<DataGroup> getResults(ParallelFetchResult<DataGroup> fetchResult) {
+		noOfFetchedPidsPerPage.add(fetchResult.getResults().size());
+		return fetchResult.getResults();
+	}
+
+	private PagedPersonIterator createIteratorUsingFromNoAndToNo(long fromNo, long toNo) {
+		return PagedPersonIterator
+				.usingPidPageReaderAndPersonFetchStarterAndFetchResultHandlerAndFromNoAndToNo(
+						this::readPageOfThreePidsUntilToken9, this::startFetchOfPersons,
+						this::getResults, fromNo, toNo);
+	}
+
+	@Test
+	public void testNoPageIsReadBeforeFirstHasNext() throws Exception {
+		createIteratorUsingFromNoAndToNo(1, Long.MAX_VALUE);
+		assertEquals(requestedSessionTokens.size(), 0);
+	}
+
+	@Test
+	public void testAllPagesAreReadInOrder() throws Exception {
+		PagedPersonIterator iterator = createIteratorUsingFromNoAndToNo(1, Long.MAX_VALUE);
+		List<String> readNames = readNamesOfAllPersons(iterator);
+
+		assertEquals(readNames.size(), 30);
+		assertEquals(readNames.get(0), "pid1");
+		assertEquals(readNames.get(29), "pid30");
+		assertEquals(requestedSessionTokens.size(), 10);
+		assertNull(requestedSessionTokens.get(0));
+		assertEquals(requestedSessionTokens.get(1), "1");
+	}
+
+	private List<String> readNamesOfAllPersons(PagedPersonIterator iterator) {
+		List<String> readNames = new ArrayList<>();
+		while (iterator.hasNext()) {
+			readNames.add(iterator.next().getNameInData());
+		}
+		return readNames;
+	}
+
+	@Test
+	public void testOnlyPersonsInWindowAreReadAndNoPagesAfterToNo() throws Exception {
+		PagedPersonIterator iterator = createIteratorUsingFromNoAndToNo(5, 7);
+		List<String> readNames = readNamesOfAllPersons(iterator);
+
+		assertEquals(readNames, Arrays.asList("pid5", "pid6", "pid7"));
+		assertEquals(requestedSessionTokens.size(), 3);
+		assertEquals(noOfFetchedPidsPerPage, Arrays.asList(0, 2, 1));
+		assertEquals(fetchedPids.size(), 3);
+	}
+
+	@Test
+	public void testToNoAtEndOfPageDoesNotReadNextPage() throws Exception {
+		PagedPersonIterator iterator = createIteratorUsingFromNoAndToNo(1, 3);
+		readNamesOfAllPersons(iterator);
+		assertEquals(requestedSessionTokens.size(), 1);
+	}
+
+	@Test
+	public void testFromNoAfterLastPidReturnsNothing() throws Exception {
+		PagedPersonIterator iterator = createIteratorUsingFromNoAndToNo(31, 40);
+		assertFalse(iterator.hasNext());
+		assertEquals(fetchedPids.size(), 0);
+	}
+
+	@Test(expectedExceptions = NoSuchElementException.class)
+	public void testNextWhenNoMorePersonsThrowsError() throws Exception {
+		PagedPersonIterator iterator = createIteratorUsingFromNoAndToNo(1, 1);
+		iterator.next();
+		iterator.next();
+	}
+
+	@Test
+	public void testFetchOfPersonStartsBeforePageIsFullyRead() throws Exception {
+		CountDownLatch firstFetchStarted = new CountDownLatch(1);
+		BiFunction<String, Consumer<String>, FedoraPidPage> pageReader = (sessionToken,
+				pidConsumer) -> {
+			pidConsumer.accept("pid1");
+			boolean fetchedWhileReading = awaitLatch(firstFetchStarted);
+			pidConsumer.accept(fetchedWhileReading ? "pid2" : "notFetchedWhileReading");
+			return FedoraPidPage.usingNoOfPidsAndSessionToken(2, "");
+		};
+		Supplier<OrderedFetch<DataGroup>> fetchStarter = () -> parallelFetcher
+				.startOrderedFetchUsingFetchFunction(pid -> {
+					firstFetchStarted.countDown();
+					return new DataGroupSpy(pid);
+				});
+		PagedPersonIterator iterator = PagedPersonIterator
+				.usingPidPageReaderAndPersonFetchStarterAndFetchResultHandlerAndFromNoAndToNo(
+						pageReader, fetchStarter, this::getResults, 1, Long.MAX_VALUE);
+
+		assertEquals(readNamesOfAllPersons(iterator), Arrays.asList("pid1", "pid2"));
+	}
+
+	private boolean awaitLatch(CountDownLatch latch) {
+		try {
+			return latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.FedoraException;
+
+public class ParallelFetcherTest {
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxConcurrentFetches must be at least 1, was: 0")
+	public void testMaxConcurrentFetchesLessThanOneThrowsError() throws Exception {
+		ParallelFetcher.usingMaxConcurrentFetches(0);
+	}
+
+	@Test
+	public void testMaxConcurrentFetchesIsStored() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(3);
+		assertEquals(fetcher.getMaxConcurrentFetches(), 3);
+	}
+
+	@Test
+	public void testNoIdsReturnsEmptyResult() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(3);
+		ParallelFetchResult<String> result = fetcher
+				.fetchInOrderUsingIdsAndFetchFunction(new ArrayList<>(), id -> id);
+		assertTrue(result.getResults().isEmpty());
+		assertFalse(result.hasFailures());
+	}
+
+	@Test
+	public void testResultsAreReturnedInIdOrderEvenIfFetchesFinishInOtherOrder()
+			throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(4);
+		List<String> ids = Arrays.asList("30", "5", "20", "1");
+
+		ParallelFetchResult<String> result = fetcher.fetchInOrderUsingIdsAndFetchFunction(ids,
+				this::sleepIdMillisAndReturnFetchedId);
+
+		assertEquals(result.getResults(),
+				Arrays.asList("fetched30", "fetched5", "fetched20", "fetched1"));
+		assertFalse(result.hasFailures());
+	}
+
+	private String sleepIdMillisAndReturnFetchedId(String id) {
+		sleepMillis(Long.parseLong(id));
+		return "fetched" + id;
+	}
+
+	private void sleepMillis(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testFailedFetchesAreCollectedAndOtherResultsKept() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(2);
+		List<String> ids = Arrays.asList("1", "2", "3");
+
+		ParallelFetchResult<String> result = fetcher.fetchInOrderUsingIdsAndFetchFunction(ids,
+				this::throwErrorForIdTwo);
+
+		assertEquals(result.getResults(), Arrays.asList("fetched1", "fetched3"));
+		assertTrue(result.hasFailures());
+		assertEquals(result.getFailures().size(), 1);
+		Exception failure = result.getFailures().get("2");
+		assertTrue(failure instanceof FedoraException);
+		assertEquals(failure.getMessage(), "error fetching: 2");
+	}
+
+	private String throwErrorForIdTwo(String id) {
+		if ("2".equals(id)) {
+			throw FedoraException.withMessage("error fetching: " + id);
+		}
+		return "fetched" + id;
+	}
+
+	@Test
+	public void testNoMoreThanMaxConcurrentFetchesRunAtTheSameTime() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(2);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<String> ids = Arrays.asList("1", "2", "3", "4", "5", "6");
+
+		ParallelFetchResult<String> result = fetcher.fetchInOrderUsingIdsAndFetchFunction(ids,
+				id -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					sleepMillis(10);
+					running.decrementAndGet();
+					return id;
+				});
+
+		assertEquals(result.getResults(), ids);
+		assertTrue(maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void testNoMoreThanMaxPendingFetchesAreSubmittedAtTheSameTime() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(1);
+		CountDownLatch firstFetchStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirstFetch = new CountDownLatch(1);
+		AtomicInteger noOfIdsTakenForSubmit = new AtomicInteger();
+		List<String> ids = createIdListCountingIdsTakenUsingCounter(noOfIdsTakenForSubmit);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<ParallelFetchResult<String>> futureResult = executor
+					.submit(() -> fetcher.fetchInOrderUsingIdsAndFetchFunctionAndMaxPendingFetches(
+							ids, id -> blockFirstFetchUntilReleased(id, firstFetchStarted,
+									releaseFirstFetch),
+							2));
+			assertTrue(firstFetchStarted.await(5, TimeUnit.SECONDS));
+			sleepMillis(50);
+			assertEquals(noOfIdsTakenForSubmit.get(), 3);
+
+			releaseFirstFetch.countDown();
+			ParallelFetchResult<String> result = futureResult.get(5, TimeUnit.SECONDS);
+			assertEquals(result.getResults(), Arrays.asList("1", "2", "3", "4", "5", "6"));
+			assertEquals(noOfIdsTakenForSubmit.get(), 6);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> createIdListCountingIdsTakenUsingCounter(AtomicInteger counter) {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				counter.incrementAndGet();
+				return String.valueOf(index + 1);
+			}
+
+			@Override
+			public int size() {
+				return 6;
+			}
+		};
+	}
+
+	private String blockFirstFetchUntilReleased(String id, CountDownLatch firstFetchStarted,
+			CountDownLatch releaseFirstFetch) {
+		if ("1".equals(id)) {
+			firstFetchStarted.countDown();
+			awaitRelease(releaseFirstFetch);
+		}
+		return id;
+	}
+
+	private void awaitRelease(CountDownLatch release) {
+		try {
+			release.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testOrderedFetchStartsFetchWhenIdIsSubmitted() throws Exception {
+		ParallelFetcher fetcher = ParallelFetcher.usingMaxConcurrentFetches(2);
+		CountDownLatch fetchStarted = new CountDownLatch(1);
+		OrderedFetch<String> fetch = fetcher.startOrderedFetchUsingFetchFunction(id -> {
+			fetchStarted.countDown();
+			return "fetched" + id;
+		});
+
+		fetch.submitFetchForId("1");
+		assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+		fetch.submitFetchForId("2");
+
+		ParallelFetchResult<String> result = fetch.collectResultsInIdOrder();
+		assertEquals(result.getResults(), Arrays.asList("fetched1", "fetched2"));
+	}
+}
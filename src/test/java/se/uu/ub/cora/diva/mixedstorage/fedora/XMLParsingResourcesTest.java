@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.Transformer;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.diva.mixedstorage.ParseException;
+
+public class XMLParsingResourcesTest {
+
+	@Test
+	public void testSameDocumentBuilderIsReusedInSameThread() throws Exception {
+		DocumentBuilder documentBuilder = XMLParsingResources.getDocumentBuilderForCurrentThread();
+		assertSame(XMLParsingResources.getDocumentBuilderForCurrentThread(), documentBuilder);
+	}
+
+	@Test
+	public void testOtherThreadGetsOtherDocumentBuilder() throws Exception {
+		DocumentBuilder documentBuilder = XMLParsingResources.getDocumentBuilderForCurrentThread();
+		assertNotSame(getFromOtherThread(XMLParsingResources::getDocumentBuilderForCurrentThread),
+				documentBuilder);
+	}
+
+	private <T> T getFromOtherThread(Callable<T> callable)
+			throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			return executor.submit(callable).get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSameXPathIsReusedInSameThread() throws Exception {
+		XPath xpath = XMLParsingResources.getXPathForCurrentThread();
+		assertSame(XMLParsingResources.getXPathForCurrentThread(), xpath);
+		assertNotSame(getFromOtherThread(XMLParsingResources::getXPathForCurrentThread), xpath);
+	}
+
+	@Test
+	public void testSameTransformerIsReusedInSameThread() throws Exception {
+		Transformer transformer = XMLParsingResources.getTransformerForCurrentThread();
+		assertSame(XMLParsingResources.getTransformerForCurrentThread(), transformer);
+		assertNotSame(getFromOtherThread(XMLParsingResources::getTransformerForCurrentThread),
+				transformer);
+	}
+
+	@Test
+	public void testCompiledXPathIsReusedInSameThread() throws Exception {
+		XPathExpression expression = XMLParsingResources
+				.getCompiledXPathForCurrentThread("/person/name/text()");
+		assertSame(XMLParsingResources.getCompiledXPathForCurrentThread("/person/name/text()"),
+				expression);
+		assertNotSame(
+				XMLParsingResources.getCompiledXPathForCurrentThread("/person/other/text()"),
+				expression);
+	}
+
+	@Test
+	public void testOtherThreadGetsOtherCompiledXPath() throws Exception {
+		XPathExpression expression = XMLParsingResources
+				.getCompiledXPathForCurrentThread("/person/name/text()");
+		assertNotSame(getFromOtherThread(() -> XMLParsingResources
+				.getCompiledXPathForCurrentThread("/person/name/text()")), expression);
+	}
+
+	@Test
+	public void testNoOfCompiledXPathsPerThreadIsLimited() throws Exception {
+		int noOfCompiledXPaths = getFromOtherThread(() -> {
+			for (int i = 0; i < 300; i++) {
+				XMLParsingResources.getCompiledXPathForCurrentThread("/person/name" + i);
+			}
+			return XMLParsingResources.getNoOfCompiledXPathsForCurrentThread();
+		});
+		assertEquals(noOfCompiledXPaths, 256);
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to use xpathString: .*")
+	public void testInvalidXPathIsNotCached() throws Exception {
+		XMLXPathParser parser = XMLXPathParser.forXML("<person><name>first</name></person>");
+		int noOfCompiledXPaths = XMLParsingResources.getNoOfCompiledXPathsForCurrentThread();
+		try {
+			parser.getStringFromDocumentUsingXPath("/person/[");
+		} finally {
+			assertEquals(XMLParsingResources.getNoOfCompiledXPathsForCurrentThread(),
+					noOfCompiledXPaths);
+		}
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: DOCTYPE is disallowed.*")
+	public void testReusedDocumentBuilderStillDisallowsDoctype() throws Exception {
+		XMLXPathParser.forXML("<person><name>first</name></person>");
+		XMLXPathParser.forXML("<!DOCTYPE person [<!ENTITY name \"entity\">]>"
+				+ "<person><name>&name;</name></person>");
+	}
+
+	@Test
+	public void testReusedDocumentBuilderParsesAfterFailedParse() throws Exception {
+		try {
+			XMLXPathParser.forXML("<someTag></notSameTag>");
+		} catch (ParseException e) {
+			// expected
+		}
+		XMLXPathParser parser = XMLXPathParser.forXML("<person><name>first</name></person>");
+		assertEquals(parser.getStringFromDocumentUsingXPath("/person/name/text()"), "first");
+	}
+}
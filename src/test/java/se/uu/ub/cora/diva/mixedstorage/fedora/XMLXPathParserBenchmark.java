@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.diva.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.diva.mixedstorage.resource.ResourceReader;
+
+public class XMLXPathParserBenchmark {
+	// not run as a test, start main manually to measure parser throughput
+	private static final int WARM_UP_ITERATIONS = 5_000;
+	private static final int ITERATIONS = 20_000;
+	private static final int THREADS = 4;
+	private static final String DATASTREAM_PROFILE = "<datastreamProfile "
+			+ "xmlns=\"http://www.fedora.info/definitions/1/0/management/\" "
+			+ "pid=\"authority-person:11685\" dsID=\"METADATA\"><dsLabel>Metadata</dsLabel>"
+			+ "<dsVersionID>METADATA.2</dsVersionID>"
+			+ "<dsCreateDate>2019-05-14T07:58:27.651Z</dsCreateDate><dsState>A</dsState>"
+			+ "<dsMIME>text/xml</dsMIME><dsChecksumType>SHA-512</dsChecksumType>"
+			+ "<dsChecksum>abc123</dsChecksum></datastreamProfile>";
+
+	public static void main(String[] args) throws Exception {
+		String personXML = ResourceReader.readResourceAsString("person/11685.xml");
+		benchmark("person", personXML, "/authorityPerson/defaultName/lastname/text()");
+		benchmark("profile", DATASTREAM_PROFILE, "/datastreamProfile/dsChecksum/text()");
+	}
+
+	private static void benchmark(String name, String xml, String xpath) throws Exception {
+		runIterations(xml, xpath, WARM_UP_ITERATIONS);
+		reportSingleThreaded(name, xml, xpath);
+		reportMultiThreaded(name, xml, xpath);
+	}
+
+	private static void reportSingleThreaded(String name, String xml, String xpath) {
+		long start = System.nanoTime();
+		runIterations(xml, xpath, ITERATIONS);
+		long elapsed = System.nanoTime() - start;
+		printResult(name + ", 1 thread", ITERATIONS, elapsed);
+	}
+
+	private static void reportMultiThreaded(String name, String xml, String xpath)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> runIterations(xml, xpath, ITERATIONS)));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		printResult(name + ", " + THREADS + " threads", ITERATIONS * THREADS, elapsed);
+	}
+
+	private static void runIterations(String xml, String xpath, int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			XMLXPathParser parser = XMLXPathParser.forXML(xml);
+			parser.getStringFromDocumentUsingXPath(xpath);
+			parser.getDocumentAsString("/");
+		}
+	}
+
+	private static void printResult(String label, int operations, long elapsedNanos) {
+		double seconds = elapsedNanos / 1_000_000_000d;
+		System.out.println(String.format("%-20s %8d ops in %6.2f s, %10.0f ops/s", label,
+				operations, seconds, operations / seconds));
+	}
+}